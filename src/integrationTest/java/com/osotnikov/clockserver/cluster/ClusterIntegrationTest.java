@@ -0,0 +1,149 @@
+package com.osotnikov.clockserver.cluster;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.stubbing.ServeEvent;
+import com.osotnikov.clockserver.ClockServerApplication;
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDto;
+import com.osotnikov.clockserver.subscription.repository.SubscriptionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Two nodes in this JVM on their own ports, coordinated through a temporary membership directory.
+ * */
+public class ClusterIntegrationTest {
+
+	private static final int SUBSCRIPTIONS = 20;
+
+	@TempDir
+	Path membershipDirectory;
+
+	private WireMockServer subscriber;
+	private ConfigurableApplicationContext node1;
+	private ConfigurableApplicationContext node2;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		subscriber = new WireMockServer(options().dynamicPort());
+		subscriber.start();
+		subscriber.stubFor(post(urlPathMatching("/time-consumer/.*")).willReturn(aResponse().withStatus(200)));
+		node1 = startNode(freePort());
+		node2 = startNode(freePort());
+		await().atMost(Duration.ofSeconds(10)).until(() -> nodesOf(node1) == 2 && nodesOf(node2) == 2);
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (node2.isActive()) {
+			node2.close();
+		}
+		node1.close();
+		subscriber.stop();
+	}
+
+	@Test
+	public void givenTwoNodes_whenSubscriptionsCreatedThroughOne_thenSplitBetweenBoth() {
+		for (int i = 0; i < SUBSCRIPTIONS; i++) {
+			assertThat(create(node1, i).getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		}
+
+		int size1 = sizeOf(node1);
+		int size2 = sizeOf(node2);
+		assertThat(size1 + size2).isEqualTo(SUBSCRIPTIONS);
+		assertThat(size1).isPositive();
+		assertThat(size2).isPositive();
+		// the owner answers for an existing subscription no matter which node is asked
+		for (int i = 0; i < SUBSCRIPTIONS; i++) {
+			assertThat(create(node2, i).getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+		}
+	}
+
+	@Test
+	public void givenNodeLeaves_whenItsSubscriptionsHandedOff_thenEveryTickDeliveredOnce() throws Exception {
+		for (int i = 0; i < SUBSCRIPTIONS; i++) {
+			create(node2, i);
+		}
+		Thread.sleep(7000);
+
+		node2.close();
+		assertThat(sizeOf(node1)).isEqualTo(SUBSCRIPTIONS);
+		Thread.sleep(13000);
+
+		Map<String, List<Long>> deliveriesByUrl = new HashMap<>();
+		for (ServeEvent serveEvent : subscriber.getAllServeEvents()) {
+			deliveriesByUrl.computeIfAbsent(serveEvent.getRequest().getUrl(), url -> new ArrayList<>())
+				.add(serveEvent.getRequest().getLoggedDate().getTime());
+		}
+		assertThat(deliveriesByUrl).hasSize(SUBSCRIPTIONS);
+		for (List<Long> deliveries : deliveriesByUrl.values()) {
+			deliveries.sort(Long::compare);
+			assertThat(deliveries.size()).isBetween(3, 5);
+			for (int i = 1; i < deliveries.size(); i++) {
+				// 5 seconds apart, neither duplicated nor missed around the handoff
+				assertThat(deliveries.get(i) - deliveries.get(i - 1)).isBetween(4000L, 6000L);
+			}
+		}
+	}
+
+	private ResponseEntity<String> create(ConfigurableApplicationContext node, int i) {
+		SubscriptionDto subscriptionDto = new SubscriptionDto(
+			"http://localhost:" + subscriber.port() + "/time-consumer/" + i, new FrequencyDto(0, 0, 5));
+		try {
+			return new RestTemplate().postForEntity(nodeUrlOf(node) + "/subscription", subscriptionDto, String.class);
+		} catch (HttpClientErrorException e) {
+			return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
+		}
+	}
+
+	private ConfigurableApplicationContext startNode(int port) {
+		return new SpringApplicationBuilder(ClockServerApplication.class).properties(
+			"server.port=" + port,
+			"clockserver.cluster.enabled=true",
+			"clockserver.cluster.node-url=http://localhost:" + port,
+			"clockserver.cluster.membership-directory=" + membershipDirectory,
+			"clockserver.cluster.heartbeat-interval=200ms",
+			"clockserver.cluster.handoff-delay=1s").run();
+	}
+
+	private static String nodeUrlOf(ConfigurableApplicationContext node) {
+		return node.getBean(ClusterMembership.class).getNodeUrl();
+	}
+
+	private static int nodesOf(ConfigurableApplicationContext node) {
+		ConsistentHashRing ring = node.getBean(ClusterMembership.class).getRing();
+		return ring != null ? ring.getNodes().size() : 0;
+	}
+
+	private static int sizeOf(ConfigurableApplicationContext node) {
+		return node.getBean(SubscriptionRepository.class).size();
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			return serverSocket.getLocalPort();
+		}
+	}
+}
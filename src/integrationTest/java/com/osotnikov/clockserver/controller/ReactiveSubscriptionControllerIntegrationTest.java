@@ -0,0 +1,53 @@
+package com.osotnikov.clockserver.controller;
+
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDeleteDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.netty.NettyWebServer;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+	properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+public class ReactiveSubscriptionControllerIntegrationTest {
+
+	private static final String POSTBACK_URL = "http://localhost:1/time-consumer";
+
+	@Autowired
+	private ReactiveWebServerApplicationContext applicationContext;
+
+	@Autowired
+	private WebTestClient webTestClient;
+
+	@Test
+	public void givenReactiveWebApplication_whenUserCreatesAndDeletesSubscription_thenServedByNetty() {
+		assertThat(applicationContext.getWebServer()).isInstanceOf(NettyWebServer.class);
+
+		webTestClient.post().uri("/subscription")
+			.contentType(MediaType.APPLICATION_JSON)
+			.bodyValue(new SubscriptionDto(POSTBACK_URL, new FrequencyDto(0, 0, 5)))
+			.exchange()
+			.expectStatus().isCreated()
+			.expectBody().json(String.format("{\"name\":\"%s\"}", POSTBACK_URL));
+
+		webTestClient.get().uri("/subscription")
+			.exchange()
+			.expectStatus().isOk()
+			.expectBody().jsonPath("$.subscriptions[0].postbackUrl").isEqualTo(POSTBACK_URL);
+
+		webTestClient.method(HttpMethod.DELETE).uri("/subscription")
+			.contentType(MediaType.APPLICATION_JSON)
+			.bodyValue(new SubscriptionDeleteDto(POSTBACK_URL))
+			.exchange()
+			.expectStatus().isOk();
+	}
+}
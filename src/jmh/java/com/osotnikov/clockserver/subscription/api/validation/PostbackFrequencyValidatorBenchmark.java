@@ -0,0 +1,36 @@
+package com.osotnikov.clockserver.subscription.api.validation;
+
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PostbackFrequencyValidatorBenchmark {
+
+	// valid and invalid frequencies mixed, so that every branch of the validator is taken
+	private final FrequencyDto[] frequencies = {
+		new FrequencyDto(0, 0, 5),
+		new FrequencyDto(4, 0, 0),
+		new FrequencyDto(1, 30, 30),
+		new FrequencyDto(0, 0, 4),
+		new FrequencyDto(4, 0, 1),
+		new FrequencyDto(0, 60, 0),
+		new FrequencyDto(-1, 0, 10),
+		new FrequencyDto(0, 59, 59)
+	};
+	private final PostbackFrequencyValidator validator = new PostbackFrequencyValidator();
+	private int index;
+
+	@Benchmark
+	public boolean isValid() {
+		return validator.isValid(frequencies[index++ & (frequencies.length - 1)], null);
+	}
+}
@@ -0,0 +1,58 @@
+package com.osotnikov.clockserver.subscription.payload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of encoding the time of a new tick in every format and encoding, i.e. what the cache pays once per tick, and
+ * the bytes that go out per postback: the egress counter divided by the score is the size of one payload.
+ * */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(1)
+public class PayloadEncodingBenchmark {
+
+	@Param({"JSON", "CBOR", "TEXT", "BINARY"})
+	private PayloadEncoding encoding;
+	@Param({"LEGACY", "ISO_8601_UTC", "EPOCH_MILLIS"})
+	private TimeFormat timeFormat;
+
+	private CurrentTimePayloadCache currentTimePayloadCache;
+	private Instant tickTime;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		currentTimePayloadCache = new CurrentTimePayloadCache(new ObjectMapper());
+		tickTime = Instant.now();
+	}
+
+	@Benchmark
+	public PostbackPayload encodedPerTick(Egress egress) {
+		// a new tick every call, whatever the resolution of the format, so that nothing is served from the cache
+		tickTime = tickTime.plusSeconds(1);
+		PostbackPayload payload = currentTimePayloadCache.at(tickTime, timeFormat, encoding);
+		egress.bytes += payload.toDataBuffer().readableByteCount();
+		return payload;
+	}
+
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Egress {
+
+		public long bytes;
+	}
+}
@@ -0,0 +1,40 @@
+package com.osotnikov.clockserver.subscription.payload;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.osotnikov.clockserver.subscription.service.model.rest.client.dto.request.CurrentTimeDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Payload a {@code TimePostbackRunnable} hands to the delivery per postback: formatting and encoding the time for
+ * every postback against taking a view of the payload shared by all the postbacks of the second.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class PostbackPayloadBenchmark {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final CurrentTimePayloadCache currentTimePayloadCache = new CurrentTimePayloadCache(objectMapper);
+
+	@Benchmark
+	public byte[] encodedPerPostback() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(new CurrentTimeDto(new Date().toString()));
+	}
+
+	@Benchmark
+	public DataBuffer sharedPerSecond() {
+		return currentTimePayloadCache.current().toDataBuffer();
+	}
+}
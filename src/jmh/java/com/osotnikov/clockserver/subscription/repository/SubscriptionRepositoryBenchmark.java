@@ -0,0 +1,89 @@
+package com.osotnikov.clockserver.subscription.repository;
+
+import com.osotnikov.clockserver.config.RepositoryProperties;
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.service.model.Subscription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repository operations with the repository already holding millions of subscriptions, on both in memory
+ * implementations. The heap retained per subscription is printed at the start of every trial, run with -prof gc to
+ * compare the allocation rates as well.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+@Fork(jvmArgsAppend = "-Xmx4g")
+public class SubscriptionRepositoryBenchmark {
+
+	private static final FrequencyDto FREQUENCY = new FrequencyDto(0, 0, 5);
+
+	@Param({"1000000", "2000000"})
+	private int size;
+
+	@Param({"IN_MEMORY", "COMPACT"})
+	private RepositoryProperties.Mode mode;
+
+	private SubscriptionRepository subscriptionRepository;
+	private String[] postbackUrls;
+	private final AtomicLong urlSequence = new AtomicLong();
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		postbackUrls = new String[size];
+		for (int i = 0; i < size; i++) {
+			postbackUrls[i] = "http://subscriber" + (i % 1000) + ".com/postback/" + i;
+		}
+		long heapBefore = usedHeap();
+		subscriptionRepository = mode == RepositoryProperties.Mode.COMPACT ? new CompactSubscriptionRepository() :
+			new InMemorySubscriptionRepository();
+		for (int i = 0; i < size; i++) {
+			Subscription subscription = new Subscription(postbackUrls[i], FREQUENCY, null);
+			subscription.setPhaseAnchor(Instant.now());
+			subscriptionRepository.storeNew(subscription);
+		}
+		// the urls themselves are not counted, they are retained by the benchmark anyway
+		System.out.printf("%n%s retains %d bytes per subscription%n", mode, (usedHeap() - heapBefore) / size);
+	}
+
+	@Benchmark
+	public Subscription get() {
+		return subscriptionRepository.get(postbackUrls[ThreadLocalRandom.current().nextInt(size)]);
+	}
+
+	@Benchmark
+	public Subscription getMissing() {
+		return subscriptionRepository.get("http://missing.com/postback/" + ThreadLocalRandom.current().nextInt(size));
+	}
+
+	@Benchmark
+	public Subscription storeNewAndDeleteExisting() {
+		String postbackUrl = "http://new.com/postback/" + urlSequence.incrementAndGet();
+		subscriptionRepository.storeNew(new Subscription(postbackUrl, FREQUENCY, null));
+		return subscriptionRepository.deleteExisting(postbackUrl);
+	}
+
+	private static long usedHeap() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,147 @@
+package com.osotnikov.clockserver.subscription.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.osotnikov.clockserver.cluster.ClusterClient;
+import com.osotnikov.clockserver.cluster.ClusterMembership;
+import com.osotnikov.clockserver.config.ClusterProperties;
+import com.osotnikov.clockserver.config.DeliveryProperties;
+import com.osotnikov.clockserver.config.MetricsProperties;
+import com.osotnikov.clockserver.config.PayloadProperties;
+import com.osotnikov.clockserver.config.SchedulerProperties;
+import com.osotnikov.clockserver.metrics.PostbackMetrics;
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionPatchDto;
+import com.osotnikov.clockserver.subscription.delivery.PostbackDeliveryService;
+import com.osotnikov.clockserver.subscription.delivery.PostbackHostResolver;
+import com.osotnikov.clockserver.subscription.payload.CurrentTimePayloadCache;
+import com.osotnikov.clockserver.subscription.repository.InMemorySubscriptionRepository;
+import com.osotnikov.clockserver.subscription.service.mapper.SubscriptionDtoMapper;
+import com.osotnikov.scheduling.HashedTimingWheel;
+import com.osotnikov.scheduling.PeriodicTaskScheduler;
+import com.osotnikov.scheduling.TaskSchedulerAdapter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Subscription lifecycle with several threads hitting the service at once, on both scheduling engines. Postbacks
+ * are not sent, the delivery just completes right away.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class SubscriptionServiceBenchmark {
+
+	private static final int CONTENDED_SUBSCRIPTIONS = 64;
+	private static final FrequencyDto FREQUENCY = new FrequencyDto(0, 0, 5);
+	private static final FrequencyDto OTHER_FREQUENCY = new FrequencyDto(0, 1, 0);
+
+	@Param({"TIMING_WHEEL", "TASK_SCHEDULER"})
+	private SchedulerProperties.Engine engine;
+
+	private HashedTimingWheel timingWheel;
+	private ThreadPoolTaskScheduler threadPoolTaskScheduler;
+	private SubscriptionService subscriptionService;
+	private String[] contendedUrls;
+	private final AtomicLong urlSequence = new AtomicLong();
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		SchedulerProperties schedulerProperties = new SchedulerProperties();
+		DeliveryProperties deliveryProperties = new DeliveryProperties();
+		deliveryProperties.getDns().setEnabled(false); // the benchmarked hosts do not exist
+		ClusterProperties clusterProperties = new ClusterProperties();
+		PostbackDeliveryService noDelivery = (postbackUrl, payload) -> CompletableFuture.completedFuture(true);
+		TimePostbackRunnableFactory timePostbackRunnableFactory = new TimePostbackRunnableFactory(noDelivery,
+			new CurrentTimePayloadCache(new ObjectMapper()),
+			new PostbackMetrics(new SimpleMeterRegistry(), new MetricsProperties()),
+			null); // the timing wheel runs the postbacks itself, batches are never handed off
+		PeriodicTaskScheduler periodicTaskScheduler;
+		if (engine == SchedulerProperties.Engine.TASK_SCHEDULER) {
+			threadPoolTaskScheduler = new ThreadPoolTaskScheduler();
+			threadPoolTaskScheduler.setPoolSize(schedulerProperties.getPoolSize());
+			threadPoolTaskScheduler.initialize();
+			periodicTaskScheduler = new TaskSchedulerAdapter(threadPoolTaskScheduler);
+		} else {
+			Executor sameThread = Runnable::run;
+			timingWheel = new HashedTimingWheel(schedulerProperties.getTickDuration(),
+				schedulerProperties.getWheelSize(), sameThread, "SubscriptionServiceBenchmark");
+			periodicTaskScheduler = timingWheel;
+		}
+		subscriptionService = new SubscriptionService(
+			new SubscriptionDtoMapper(schedulerProperties, deliveryProperties, new PayloadProperties()),
+			new InMemorySubscriptionRepository(),
+			timePostbackRunnableFactory, periodicTaskScheduler, new PhaseSpreader(schedulerProperties),
+			new ClusterMembership(clusterProperties), new ClusterClient(WebClient.builder(), clusterProperties),
+			null, // only standard periods are benchmarked, the high frequency tier is never used
+			new PostbackHostResolver(deliveryProperties));
+
+		contendedUrls = new String[CONTENDED_SUBSCRIPTIONS];
+		for (int i = 0; i < contendedUrls.length; i++) {
+			contendedUrls[i] = "http://contended" + i + ".com/postback";
+			subscriptionService.schedule(new SubscriptionDto(contendedUrls[i], FREQUENCY));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (timingWheel != null) {
+			timingWheel.close();
+		}
+		if (threadPoolTaskScheduler != null) {
+			threadPoolTaskScheduler.shutdown();
+		}
+	}
+
+	/**
+	 * Every call creates a new subscription, so the threads only contend on the repository and the scheduler.
+	 * */
+	@Benchmark
+	public boolean scheduleAndDelete() {
+		String postbackUrl = "http://subscriber" + urlSequence.incrementAndGet() + ".com/postback";
+		subscriptionService.schedule(new SubscriptionDto(postbackUrl, FREQUENCY));
+		return subscriptionService.delete(postbackUrl);
+	}
+
+	/**
+	 * All the threads reschedule the same few subscriptions, i.e. they contend on the subscription locks.
+	 * */
+	@Benchmark
+	public boolean changeScheduleContended() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		String postbackUrl = contendedUrls[random.nextInt(contendedUrls.length)];
+		return subscriptionService.changeSchedule(
+			new SubscriptionPatchDto(postbackUrl, random.nextBoolean() ? FREQUENCY : OTHER_FREQUENCY));
+	}
+
+	/**
+	 * Deletes and recreates the same few subscriptions from all the threads, most calls lose the race and return
+	 * false which is the path that has to stay cheap.
+	 * */
+	@Benchmark
+	public boolean deleteAndScheduleContended() {
+		String postbackUrl = contendedUrls[ThreadLocalRandom.current().nextInt(contendedUrls.length)];
+		subscriptionService.delete(postbackUrl);
+		return subscriptionService.schedule(new SubscriptionDto(postbackUrl, FREQUENCY));
+	}
+}
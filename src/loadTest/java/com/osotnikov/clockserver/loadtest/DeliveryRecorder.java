@@ -0,0 +1,49 @@
+package com.osotnikov.clockserver.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Arrival times of the postbacks per subscription, as seen by the stub subscribers.
+ * */
+class DeliveryRecorder {
+
+	private final ConcurrentMap<String, List<Long>> arrivalsBySubscription = new ConcurrentHashMap<>();
+	private volatile long measureFromNanos = Long.MAX_VALUE;
+
+	/**
+	 * Only arrivals from now on are recorded, so that the registration phase does not skew the numbers.
+	 * */
+	void startMeasuring() {
+		measureFromNanos = System.nanoTime();
+	}
+
+	long getMeasureFromNanos() {
+		return measureFromNanos;
+	}
+
+	void record(String subscription, long arrivalNanos) {
+		if (arrivalNanos < measureFromNanos) {
+			return;
+		}
+		List<Long> arrivals = arrivalsBySubscription.computeIfAbsent(subscription, s -> new ArrayList<>());
+		synchronized (arrivals) {
+			arrivals.add(arrivalNanos);
+		}
+	}
+
+	/**
+	 * @return copy of the arrivals, safe to iterate while postbacks keep arriving
+	 * */
+	List<long[]> snapshot() {
+		List<long[]> snapshot = new ArrayList<>(arrivalsBySubscription.size());
+		for (List<Long> arrivals : arrivalsBySubscription.values()) {
+			synchronized (arrivals) {
+				snapshot.add(arrivals.stream().mapToLong(Long::longValue).toArray());
+			}
+		}
+		return snapshot;
+	}
+}
@@ -0,0 +1,137 @@
+package com.osotnikov.clockserver.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.DoubleSummaryStatistics;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End-to-end load test: starts a fleet of stub subscribers and the clock server on this machine, registers the
+ * subscriptions through the rest api and measures the deliveries for a while. The report is printed and written as
+ * json to loadtest.reportFile, the server's output goes next to it.
+ *
+ * Run with ./gradlew loadTest -Ploadtest.subscriptions=20000 -Ploadtest.durationSeconds=120, see
+ * {@link LoadTestConfig} for all the settings.
+ * */
+public class LoadTest {
+
+	private static final Duration SAMPLE_INTERVAL = Duration.ofSeconds(5);
+
+	public static void main(String[] args) throws Exception {
+		LoadTestConfig config = new LoadTestConfig();
+		File reportFile = new File(config.reportFile);
+		reportFile.getParentFile().mkdirs();
+		System.out.println("Load test: " + config);
+
+		HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+		DeliveryRecorder deliveryRecorder = new DeliveryRecorder();
+		try (StubSubscriberFleet fleet = new StubSubscriberFleet(config, deliveryRecorder);
+			 ServerProcess server = new ServerProcess(config, httpClient)) {
+			fleet.start();
+			server.start(new File(reportFile.getParentFile(), "server.log"));
+			System.out.println("Server started on " + server.baseUrl());
+
+			long registrationStart = System.nanoTime();
+			int registered = register(config, httpClient, server, fleet);
+			double registrationSeconds = (System.nanoTime() - registrationStart) / 1e9;
+			System.out.printf("Registered %d of %d subscriptions in %.1fs%n", registered, config.subscriptions,
+				registrationSeconds);
+
+			// let every subscription fire at least once before measuring
+			Thread.sleep(config.frequencySeconds * 1000L);
+			deliveryRecorder.startMeasuring();
+			long receivedBefore = fleet.getReceived();
+			DoubleSummaryStatistics cpu = new DoubleSummaryStatistics();
+			DoubleSummaryStatistics heapMb = new DoubleSummaryStatistics();
+			long end = System.nanoTime() + config.durationSeconds * 1_000_000_000L;
+			while (System.nanoTime() < end) {
+				Thread.sleep(Math.min(SAMPLE_INTERVAL.toMillis(), Math.max(1, (end - System.nanoTime()) / 1_000_000)));
+				OptionalDouble processCpu = server.metric("process.cpu.usage", "VALUE");
+				OptionalDouble heap = server.metric("jvm.memory.used", "VALUE", "area:heap");
+				processCpu.ifPresent(value -> cpu.accept(value * 100));
+				heap.ifPresent(value -> heapMb.accept(value / (1024 * 1024)));
+				System.out.printf("received=%d cpu=%.1f%% heap=%.0fMB%n", fleet.getReceived() - receivedBefore,
+					processCpu.orElse(Double.NaN) * 100, heap.orElse(Double.NaN) / (1024 * 1024));
+			}
+
+			LoadTestReport report = new LoadTestReport(config, deliveryRecorder.snapshot(),
+				deliveryRecorder.getMeasureFromNanos(), System.nanoTime());
+			report.put("registeredSubscriptions", registered);
+			report.put("registrationsPerSecond", LoadTestReport.round(registered / registrationSeconds));
+			report.put("answeredWithError", fleet.getAnsweredWithError());
+			report.put("serverCpuPercent", summary(cpu));
+			report.put("serverHeapUsedMb", summary(heapMb));
+			Map<String, Object> schedulerLag = new LinkedHashMap<>();
+			schedulerLag.put("meanMillis", meanMillis(server));
+			schedulerLag.put("maxMillis", server.metric("clockserver.scheduler.lag", "MAX").orElse(Double.NaN) * 1000);
+			report.put("serverSchedulerLag", schedulerLag);
+			report.put("config", config.toString());
+
+			ObjectMapper objectMapper = new ObjectMapper();
+			System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report.getValues()));
+			objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile, report.getValues());
+			System.out.println("Report written to " + reportFile.getAbsolutePath());
+		}
+		// the jdk http client keeps a non daemon selector thread around
+		System.exit(0);
+	}
+
+	/**
+	 * @return number of subscriptions that were created
+	 * */
+	private static int register(LoadTestConfig config, HttpClient httpClient, ServerProcess server,
+								StubSubscriberFleet fleet) throws InterruptedException {
+		Semaphore concurrency = new Semaphore(config.registrationConcurrency);
+		AtomicInteger created = new AtomicInteger();
+		List<CompletableFuture<?>> registrations = new ArrayList<>(config.subscriptions);
+		URI subscriptionUri = URI.create(server.baseUrl() + "/subscription");
+		for (int i = 0; i < config.subscriptions; i++) {
+			String body = String.format("{\"postbackUrl\":\"%s\",\"frequency\":{\"hours\":0,\"minutes\":%d,\"seconds\":%d}}",
+				fleet.postbackUrl(i), config.frequencySeconds / 60, config.frequencySeconds % 60);
+			HttpRequest request = HttpRequest.newBuilder(subscriptionUri)
+				.header("Content-Type", "application/json")
+				.header("Accept", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(body))
+				.build();
+			concurrency.acquire();
+			registrations.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+				.whenComplete((response, e) -> {
+					concurrency.release();
+					if (response != null && response.statusCode() == 201) {
+						created.incrementAndGet();
+					}
+				}));
+		}
+		CompletableFuture.allOf(registrations.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+		return created.get();
+	}
+
+	private static double meanMillis(ServerProcess server) {
+		OptionalDouble count = server.metric("clockserver.scheduler.lag", "COUNT");
+		OptionalDouble totalSeconds = server.metric("clockserver.scheduler.lag", "TOTAL_TIME");
+		if (count.isEmpty() || totalSeconds.isEmpty() || count.getAsDouble() == 0) {
+			return Double.NaN;
+		}
+		return LoadTestReport.round(totalSeconds.getAsDouble() / count.getAsDouble() * 1000);
+	}
+
+	private static Map<String, Object> summary(DoubleSummaryStatistics statistics) {
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("mean", statistics.getCount() == 0 ? Double.NaN : LoadTestReport.round(statistics.getAverage()));
+		summary.put("max", statistics.getCount() == 0 ? Double.NaN : LoadTestReport.round(statistics.getMax()));
+		return summary;
+	}
+}
@@ -0,0 +1,77 @@
+package com.osotnikov.clockserver.loadtest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Settings of a load test run, read from loadtest.* system properties (gradle passes on -Ploadtest.* properties).
+ * */
+public class LoadTestConfig {
+
+	/**
+	 * Number of subscriptions registered through the rest api.
+	 * */
+	final int subscriptions = intProperty("loadtest.subscriptions", 5000);
+	/**
+	 * Frequency of every subscription, at least 5 seconds.
+	 * */
+	final int frequencySeconds = intProperty("loadtest.frequencySeconds", 5);
+	/**
+	 * How long deliveries are measured for after all the subscriptions have been registered.
+	 * */
+	final int durationSeconds = intProperty("loadtest.durationSeconds", 60);
+	/**
+	 * Number of stub subscriber servers, the subscriptions are spread evenly over them.
+	 * */
+	final int subscriberServers = intProperty("loadtest.subscriberServers", 4);
+	/**
+	 * Threads per stub subscriber server, bounds how many slow responses can be pending at once.
+	 * */
+	final int subscriberThreads = intProperty("loadtest.subscriberThreads", 64);
+	/**
+	 * Response latency of a stub subscriber.
+	 * */
+	final int latencyMillis = intProperty("loadtest.latencyMillis", 20);
+	/**
+	 * Fraction of the postbacks that are answered after slowLatencyMillis instead.
+	 * */
+	final double slowRate = doubleProperty("loadtest.slowRate", 0.01);
+	final int slowLatencyMillis = intProperty("loadtest.slowLatencyMillis", 2000);
+	/**
+	 * Fraction of the postbacks that are answered with 500.
+	 * */
+	final double errorRate = doubleProperty("loadtest.errorRate", 0.01);
+	/**
+	 * Maximum number of concurrent registration requests.
+	 * */
+	final int registrationConcurrency = intProperty("loadtest.registrationConcurrency", 64);
+	/**
+	 * Extra jvm and application arguments of the server, space separated, e.g.
+	 * "-Xmx512m" and "--clockserver.scheduler.engine=task-scheduler".
+	 * */
+	final List<String> serverJvmArgs = listProperty("loadtest.serverJvmArgs", "-Xmx1g");
+	final List<String> serverArgs = listProperty("loadtest.serverArgs", "");
+	final String reportFile = System.getProperty("loadtest.reportFile", "build/reports/loadtest/report.json");
+
+	private static int intProperty(String name, int defaultValue) {
+		return Integer.parseInt(System.getProperty(name, String.valueOf(defaultValue)));
+	}
+
+	private static double doubleProperty(String name, double defaultValue) {
+		return Double.parseDouble(System.getProperty(name, String.valueOf(defaultValue)));
+	}
+
+	private static List<String> listProperty(String name, String defaultValue) {
+		String value = System.getProperty(name, defaultValue).trim();
+		return value.isEmpty() ? Collections.emptyList() : Arrays.asList(value.split("\\s+"));
+	}
+
+	@Override
+	public String toString() {
+		return "subscriptions=" + subscriptions + ", frequencySeconds=" + frequencySeconds
+			+ ", durationSeconds=" + durationSeconds + ", subscriberServers=" + subscriberServers
+			+ ", latencyMillis=" + latencyMillis + ", slowRate=" + slowRate + ", slowLatencyMillis=" + slowLatencyMillis
+			+ ", errorRate=" + errorRate + ", serverJvmArgs=" + serverJvmArgs + ", serverArgs=" + serverArgs;
+	}
+}
@@ -0,0 +1,106 @@
+package com.osotnikov.clockserver.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the recorded arrivals into deliveries/sec, tick accuracy and missed ticks.
+ *
+ * Tick accuracy is measured at the subscriber: the first arrival of a subscription anchors its grid of ticks (one per
+ * period) and every arrival is compared to the nearest tick of that grid, so it includes the postback's network and
+ * queueing latency as well as the scheduler's lag and drift. A tick of the grid that no arrival is nearest to is missed,
+ * as are the whole periods between the start of the window and the first arrival.
+ * */
+class LoadTestReport {
+
+	private final Map<String, Object> values = new LinkedHashMap<>();
+
+	LoadTestReport(LoadTestConfig config, List<long[]> arrivalsBySubscription, long fromNanos, long toNanos) {
+		long periodNanos = config.frequencySeconds * 1_000_000_000L;
+		// ticks due within the last second of the window may legitimately arrive after it
+		long lastTickNanos = toNanos - 1_000_000_000L;
+		double windowSeconds = (toNanos - fromNanos) / 1e9;
+		long deliveries = 0;
+		long expectedTicks = 0;
+		long missedTicks = 0;
+		long duplicates = 0;
+		long deviationCount = 0;
+		for (long[] arrivals : arrivalsBySubscription) {
+			deliveries += arrivals.length;
+		}
+		long[] deviationsMicros = new long[(int) deliveries];
+		for (long[] arrivals : arrivalsBySubscription) {
+			if (arrivals.length == 0) {
+				continue;
+			}
+			long anchor = arrivals[0];
+			long ticks = Math.max(0, (lastTickNanos - anchor) / periodNanos + 1);
+			long missedBeforeFirst = (anchor - fromNanos) / periodNanos;
+			boolean[] hit = new boolean[(int) ticks];
+			for (long arrival : arrivals) {
+				long tick = Math.round((arrival - anchor) / (double) periodNanos);
+				deviationsMicros[(int) deviationCount++] = Math.abs(arrival - (anchor + tick * periodNanos)) / 1000;
+				if (tick >= hit.length) {
+					continue;
+				}
+				if (hit[(int) tick]) {
+					duplicates++;
+				} else {
+					hit[(int) tick] = true;
+				}
+			}
+			expectedTicks += ticks + missedBeforeFirst;
+			missedTicks += missedBeforeFirst;
+			for (boolean tickHit : hit) {
+				if (!tickHit) {
+					missedTicks++;
+				}
+			}
+		}
+		// subscriptions that did not receive a single postback in the window
+		long silentSubscriptions = Math.max(0, config.subscriptions - arrivalsBySubscription.size());
+		long silentTicks = silentSubscriptions * (long) (windowSeconds / config.frequencySeconds);
+		expectedTicks += silentTicks;
+		missedTicks += silentTicks;
+		Arrays.sort(deviationsMicros, 0, (int) deviationCount);
+
+		values.put("windowSeconds", round(windowSeconds));
+		values.put("deliveries", deliveries);
+		values.put("deliveriesPerSecond", round(deliveries / windowSeconds));
+		values.put("expectedDeliveriesPerSecond", round(config.subscriptions / (double) config.frequencySeconds));
+		values.put("expectedTicks", expectedTicks);
+		values.put("missedTicks", missedTicks);
+		values.put("missedTicksPercent", expectedTicks == 0 ? 0 : round(100.0 * missedTicks / expectedTicks));
+		values.put("duplicateDeliveries", duplicates);
+		values.put("silentSubscriptions", silentSubscriptions);
+		Map<String, Object> tickAccuracy = new LinkedHashMap<>();
+		for (double percentile : new double[] {50, 90, 99, 99.9}) {
+			tickAccuracy.put("p" + (percentile % 1 == 0 ? String.valueOf((int) percentile) : String.valueOf(percentile)),
+				percentileMillis(deviationsMicros, (int) deviationCount, percentile));
+		}
+		tickAccuracy.put("max", deviationCount == 0 ? 0 : round(deviationsMicros[(int) deviationCount - 1] / 1000.0));
+		values.put("tickAccuracyMillis", tickAccuracy);
+	}
+
+	void put(String name, Object value) {
+		values.put(name, value);
+	}
+
+	Map<String, Object> getValues() {
+		return values;
+	}
+
+	private static double percentileMillis(long[] sortedMicros, int count, double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile / 100 * count) - 1;
+		return round(sortedMicros[Math.max(0, Math.min(count - 1, index))] / 1000.0);
+	}
+
+	static double round(double value) {
+		return Math.round(value * 100) / 100.0;
+	}
+}
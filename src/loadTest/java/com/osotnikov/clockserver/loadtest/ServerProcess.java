@@ -0,0 +1,115 @@
+package com.osotnikov.clockserver.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalDouble;
+
+/**
+ * The clock server under test, started in its own jvm with the load test's classpath so that its cpu and heap are
+ * measured without the stub subscribers. Both are read from the server's own actuator metrics.
+ * */
+class ServerProcess implements AutoCloseable {
+
+	private static final String MAIN_CLASS = "com.osotnikov.clockserver.ClockServerApplication";
+
+	private final LoadTestConfig config;
+	private final HttpClient httpClient;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private int port;
+	private Process process;
+
+	ServerProcess(LoadTestConfig config, HttpClient httpClient) {
+		this.config = config;
+		this.httpClient = httpClient;
+	}
+
+	void start(File logFile) throws IOException, InterruptedException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(config.serverJvmArgs);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(MAIN_CLASS);
+		command.add("--server.port=" + port);
+		command.add("--management.endpoints.web.exposure.include=health,metrics");
+		command.addAll(config.serverArgs);
+		process = new ProcessBuilder(command)
+			.redirectErrorStream(true)
+			.redirectOutput(logFile)
+			.start();
+		awaitHealthy(Duration.ofSeconds(60));
+	}
+
+	String baseUrl() {
+		return "http://localhost:" + port;
+	}
+
+	/**
+	 * @return value of a gauge like metric e.g. process.cpu.usage, empty if the server does not have it (yet)
+	 * */
+	OptionalDouble metric(String name, String statistic, String... tags) {
+		StringBuilder uri = new StringBuilder(baseUrl()).append("/actuator/metrics/").append(name);
+		for (int i = 0; i < tags.length; i++) {
+			uri.append(i == 0 ? "?" : "&").append("tag=").append(tags[i]);
+		}
+		try {
+			HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create(uri.toString())).build(),
+				HttpResponse.BodyHandlers.ofString());
+			if (response.statusCode() != 200) {
+				return OptionalDouble.empty();
+			}
+			for (JsonNode measurement : objectMapper.readTree(response.body()).path("measurements")) {
+				if (statistic.equals(measurement.path("statistic").asText())) {
+					return OptionalDouble.of(measurement.path("value").asDouble());
+				}
+			}
+			return OptionalDouble.empty();
+		} catch (IOException e) {
+			return OptionalDouble.empty();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return OptionalDouble.empty();
+		}
+	}
+
+	private void awaitHealthy(Duration timeout) throws InterruptedException {
+		long deadline = System.nanoTime() + timeout.toNanos();
+		HttpRequest health = HttpRequest.newBuilder(URI.create(baseUrl() + "/actuator/health")).build();
+		while (System.nanoTime() < deadline) {
+			if (!process.isAlive()) {
+				throw new IllegalStateException("Server exited with " + process.exitValue() + ", see its log.");
+			}
+			try {
+				if (httpClient.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+					return;
+				}
+			} catch (IOException e) {
+				// not listening yet
+			}
+			Thread.sleep(250);
+		}
+		throw new IllegalStateException("Server did not become healthy within " + timeout + ".");
+	}
+
+	@Override
+	public void close() {
+		if (process != null) {
+			process.destroy();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.osotnikov.clockserver.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local subscribers built on the jdk's http server, every postback to /subscriber/{id} is recorded and answered after
+ * the configured latency, a fraction of them slowly or with an error.
+ * */
+class StubSubscriberFleet implements AutoCloseable {
+
+	private final LoadTestConfig config;
+	private final DeliveryRecorder deliveryRecorder;
+	private final List<HttpServer> servers = new ArrayList<>();
+	private final List<ExecutorService> executors = new ArrayList<>();
+	private final AtomicLong received = new AtomicLong();
+	private final AtomicLong answeredWithError = new AtomicLong();
+
+	StubSubscriberFleet(LoadTestConfig config, DeliveryRecorder deliveryRecorder) {
+		this.config = config;
+		this.deliveryRecorder = deliveryRecorder;
+	}
+
+	void start() throws IOException {
+		for (int i = 0; i < config.subscriberServers; i++) {
+			HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+			ExecutorService executor = Executors.newFixedThreadPool(config.subscriberThreads);
+			server.setExecutor(executor);
+			server.createContext("/subscriber/", this::handle);
+			server.start();
+			servers.add(server);
+			executors.add(executor);
+		}
+	}
+
+	/**
+	 * @return postback url of the n-th subscription, spread round robin over the servers
+	 * */
+	String postbackUrl(int subscription) {
+		HttpServer server = servers.get(subscription % servers.size());
+		return "http://localhost:" + server.getAddress().getPort() + "/subscriber/" + subscription;
+	}
+
+	long getReceived() {
+		return received.get();
+	}
+
+	long getAnsweredWithError() {
+		return answeredWithError.get();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		long arrivalNanos = System.nanoTime();
+		received.incrementAndGet();
+		deliveryRecorder.record(exchange.getRequestURI().getPath(), arrivalNanos);
+		try (InputStream body = exchange.getRequestBody()) {
+			body.readAllBytes();
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		sleep(random.nextDouble() < config.slowRate ? config.slowLatencyMillis : config.latencyMillis);
+		boolean error = random.nextDouble() < config.errorRate;
+		if (error) {
+			answeredWithError.incrementAndGet();
+		}
+		exchange.sendResponseHeaders(error ? 500 : 200, -1);
+		exchange.close();
+	}
+
+	private static void sleep(long millis) {
+		if (millis <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void close() {
+		servers.forEach(server -> server.stop(0));
+		executors.forEach(ExecutorService::shutdownNow);
+	}
+}
@@ -0,0 +1,76 @@
+package com.osotnikov.clockserver.api.error.handler;
+
+import com.osotnikov.clockserver.api.error.model.ApiError;
+import com.osotnikov.clockserver.cluster.ClusterUnavailableException;
+import com.osotnikov.clockserver.subscription.service.SubscriptionQuotaExceededException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * {@link WebApiExceptionHandler} for the reactive api, the errors have the same bodies.
+ * */
+@ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWebApiExceptionHandler {
+
+    @ExceptionHandler({ConstraintViolationException.class})
+    public ResponseEntity<ApiError> handleConstraintViolation(ConstraintViolationException ex) {
+        List<String> errors = new ArrayList<String>();
+        for (ConstraintViolation<?> violation : ex.getConstraintViolations()) {
+            errors.add(violation.getRootBeanClass().getName() + " " +
+                    violation.getPropertyPath() + ": " + violation.getMessage());
+        }
+        return respond(new ApiError(HttpStatus.BAD_REQUEST, ex.getLocalizedMessage(), errors));
+    }
+
+    /**
+     * Invalid request bodies, the counterpart of MethodArgumentNotValidException.
+     * */
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<ApiError> handleWebExchangeBindException(WebExchangeBindException ex) {
+        return respond(new ApiError(HttpStatus.BAD_REQUEST, "Invalid request body.",
+            ex.getFieldErrors().stream().map(FieldError::getDefaultMessage).collect(Collectors.toList())));
+    }
+
+    @ExceptionHandler({ClusterUnavailableException.class})
+    public ResponseEntity<ApiError> handleClusterUnavailable(ClusterUnavailableException ex) {
+        return respond(new ApiError(HttpStatus.SERVICE_UNAVAILABLE, "Owner of the resource is unavailable.",
+            ex.getLocalizedMessage()));
+    }
+
+    @ExceptionHandler({SubscriptionQuotaExceededException.class})
+    public ResponseEntity<ApiError> handleSubscriptionQuotaExceeded(SubscriptionQuotaExceededException ex) {
+        return respond(new ApiError(HttpStatus.TOO_MANY_REQUESTS, "Subscription quota exceeded.",
+            ex.getLocalizedMessage()));
+    }
+
+    /**
+     * Unreadable bodies, unsupported media types and the like keep their status instead of becoming a 500.
+     * */
+    @ExceptionHandler({ResponseStatusException.class})
+    public ResponseEntity<ApiError> handleResponseStatusException(ResponseStatusException ex) {
+        return respond(new ApiError(ex.getStatus(), ex.getReason(), ex.getLocalizedMessage()));
+    }
+
+    @ExceptionHandler({Exception.class})
+    public ResponseEntity<ApiError> handleAnyUnhandledException(Exception ex) {
+        return respond(new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, ex.getLocalizedMessage(),
+            ex.getLocalizedMessage()));
+    }
+
+    private static ResponseEntity<ApiError> respond(ApiError apiError) {
+        return new ResponseEntity<>(apiError, apiError.getStatus());
+    }
+}
@@ -1,6 +1,9 @@
 package com.osotnikov.clockserver.api.error.handler;
 
 import com.osotnikov.clockserver.api.error.model.ApiError;
+import com.osotnikov.clockserver.cluster.ClusterUnavailableException;
+import com.osotnikov.clockserver.subscription.service.SubscriptionQuotaExceededException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -18,6 +21,7 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 @ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class WebApiExceptionHandler {
 
     @ExceptionHandler({ConstraintViolationException.class})
@@ -36,6 +40,23 @@ public class WebApiExceptionHandler {
                 apiError, new HttpHeaders(), apiError.getStatus());
     }
 
+    @ExceptionHandler({ClusterUnavailableException.class})
+    public ResponseEntity<Object> handleClusterUnavailable(ClusterUnavailableException ex, WebRequest request) {
+        ApiError apiError = new ApiError(HttpStatus.SERVICE_UNAVAILABLE, "Owner of the resource is unavailable.",
+            ex.getLocalizedMessage());
+        return new ResponseEntity<>(
+                apiError, new HttpHeaders(), apiError.getStatus());
+    }
+
+    @ExceptionHandler({SubscriptionQuotaExceededException.class})
+    public ResponseEntity<Object> handleSubscriptionQuotaExceeded(SubscriptionQuotaExceededException ex,
+                                                                  WebRequest request) {
+        ApiError apiError = new ApiError(HttpStatus.TOO_MANY_REQUESTS, "Subscription quota exceeded.",
+            ex.getLocalizedMessage());
+        return new ResponseEntity<>(
+                apiError, new HttpHeaders(), apiError.getStatus());
+    }
+
     @ExceptionHandler({Exception.class})
     public ResponseEntity<Object> handleAnyUnhandledException(Exception ex, WebRequest request) {
         ApiError apiError =
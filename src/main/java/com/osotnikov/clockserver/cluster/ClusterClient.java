@@ -0,0 +1,93 @@
+package com.osotnikov.clockserver.cluster;
+
+import com.osotnikov.clockserver.cluster.dto.SubscriptionHandoffDto;
+import com.osotnikov.clockserver.config.ClusterProperties;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDeleteDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionPatchDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Requests to the {@link ClusterController} of another node. They are handled by that node itself and never forwarded
+ * again, so nodes that briefly disagree about the ring cannot bounce a request between each other.
+ * */
+@Component
+public class ClusterClient {
+
+	static final String SUBSCRIPTION_PATH = "/cluster/subscription";
+	static final String HANDOFF_PATH = "/cluster/subscription/handoff";
+
+	private final WebClient webClient;
+	private final Duration requestTimeout;
+
+	@Autowired
+	public ClusterClient(WebClient.Builder webClientBuilder, ClusterProperties clusterProperties) {
+		this.webClient = webClientBuilder.build();
+		this.requestTimeout = clusterProperties.getRequestTimeout();
+	}
+
+	/**
+	 * @returns: false if the subscription already exists on the node, true if it is created
+	 * */
+	public boolean schedule(String node, SubscriptionDto subscriptionDto) {
+		return send(node, HttpMethod.POST, SUBSCRIPTION_PATH, subscriptionDto, HttpStatus.CREATED,
+			HttpStatus.CONFLICT);
+	}
+
+	/**
+	 * @returns: false if there is no such subscription on the node, true if it is deleted
+	 * */
+	public boolean delete(String node, SubscriptionDeleteDto subscriptionDeleteDto) {
+		return send(node, HttpMethod.DELETE, SUBSCRIPTION_PATH, subscriptionDeleteDto, HttpStatus.OK,
+			HttpStatus.NOT_FOUND);
+	}
+
+	/**
+	 * @returns: false if there is no such subscription on the node, true if it is changed
+	 * */
+	public boolean changeSchedule(String node, SubscriptionPatchDto subscriptionPatchDto) {
+		return send(node, HttpMethod.PATCH, SUBSCRIPTION_PATH, subscriptionPatchDto, HttpStatus.OK,
+			HttpStatus.NOT_FOUND);
+	}
+
+	/**
+	 * Returns once the node has scheduled the subscriptions, or already had them.
+	 * */
+	public void handoff(String node, List<SubscriptionHandoffDto> subscriptionHandoffDtos) {
+		send(node, HttpMethod.POST, HANDOFF_PATH, subscriptionHandoffDtos, HttpStatus.OK, null);
+	}
+
+	/**
+	 * @throws ClusterUnavailableException if the node answers with neither of the statuses or not at all
+	 * */
+	private boolean send(String node, HttpMethod method, String path, Object body, HttpStatus success,
+						 HttpStatus failure) {
+		HttpStatus status;
+		try {
+			status = webClient.method(method)
+				.uri(node + path)
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(body)
+				.exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode()))
+				.timeout(requestTimeout)
+				.block();
+		} catch (RuntimeException e) {
+			throw new ClusterUnavailableException("Node " + node + " is unavailable.", e);
+		}
+		if (status == success) {
+			return true;
+		}
+		if (status == failure) {
+			return false;
+		}
+		throw new ClusterUnavailableException("Node " + node + " answered " + status + ".");
+	}
+}
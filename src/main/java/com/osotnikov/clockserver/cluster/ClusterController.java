@@ -0,0 +1,82 @@
+package com.osotnikov.clockserver.cluster;
+
+import com.osotnikov.clockserver.api.error.model.ApiError;
+import com.osotnikov.clockserver.cluster.dto.SubscriptionHandoffDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDeleteDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionPatchDto;
+import com.osotnikov.clockserver.subscription.api.dto.response.ResourceAffectedResponseDto;
+import com.osotnikov.clockserver.subscription.service.SubscriptionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.List;
+
+/**
+ * Requests forwarded by the other nodes of the cluster, see {@link ClusterClient}. They are handled by this node no
+ * matter who owns the subscription according to its own ring.
+ * */
+@RestController
+@RequestMapping("/cluster/subscription")
+@Slf4j
+public class ClusterController {
+
+	private final SubscriptionService subscriptionService;
+
+	@Autowired
+	public ClusterController(SubscriptionService subscriptionService) {
+		this.subscriptionService = subscriptionService;
+	}
+
+	@PostMapping(produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<?> createSubscription(@Valid @RequestBody SubscriptionDto subscriptionDto) {
+		if (!subscriptionService.scheduleLocally(subscriptionDto)) {
+			return new ResponseEntity<>(new ApiError(HttpStatus.CONFLICT, "Conflicting resource exists.",
+				String.format("Resource with name: %s already exists.", subscriptionDto.getPostbackUrl())),
+				HttpStatus.CONFLICT);
+		}
+		return new ResponseEntity<>(
+			new ResourceAffectedResponseDto(subscriptionDto.getPostbackUrl()), HttpStatus.CREATED);
+	}
+
+	@DeleteMapping(produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<?> deleteSubscription(@Valid @RequestBody SubscriptionDeleteDto subscriptionDeleteDto) {
+		return affected(subscriptionDeleteDto.getName(),
+			subscriptionService.deleteLocally(subscriptionDeleteDto.getName()));
+	}
+
+	@PatchMapping(produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<?> changeSubscription(@Valid @RequestBody SubscriptionPatchDto subscriptionPatchDto) {
+		return affected(subscriptionPatchDto.getName(),
+			subscriptionService.changeScheduleLocally(subscriptionPatchDto));
+	}
+
+	/**
+	 * Takes over subscriptions from the node that owned them before, adopting one that is already here is not an
+	 * error since the previous owner retries handoffs it did not get an answer for.
+	 * */
+	@PostMapping(path = "/handoff", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<Void> adoptSubscriptions(@RequestBody List<SubscriptionHandoffDto> subscriptionHandoffDtos) {
+		int adopted = 0;
+		for (SubscriptionHandoffDto subscriptionHandoffDto : subscriptionHandoffDtos) {
+			if (subscriptionService.adopt(subscriptionHandoffDto)) {
+				adopted++;
+			}
+		}
+		log.debug("Adopted {} of {} handed off subscriptions.", adopted, subscriptionHandoffDtos.size());
+		return ResponseEntity.ok().build();
+	}
+
+	private static ResponseEntity<?> affected(String name, boolean affected) {
+		if (!affected) {
+			return new ResponseEntity<>(new ApiError(HttpStatus.NOT_FOUND, "No resource exists.",
+				String.format("Resource with name: %s does not exist.", name)), HttpStatus.NOT_FOUND);
+		}
+		return new ResponseEntity<>(new ResourceAffectedResponseDto(name), HttpStatus.OK);
+	}
+}
@@ -0,0 +1,200 @@
+package com.osotnikov.clockserver.cluster;
+
+import com.osotnikov.clockserver.config.ClusterProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Nodes of the cluster, coordinated through a directory that all the nodes share (e.g. a local directory for nodes
+ * running on one machine, or a network file system). Every node keeps a heartbeat file named after its url in the
+ * directory and touches it every heartbeat interval, a node whose file has not been touched within the member timeout
+ * has left. A node that leaves gracefully deletes its file, so the others notice it within a heartbeat interval.
+ * Every node builds the same {@link ConsistentHashRing} from the live nodes and the listeners are told about every
+ * change of it. With clockserver.cluster.enabled false there is no ring and every subscription is local.
+ * */
+@Slf4j
+@Component
+public class ClusterMembership {
+
+	private static final String HEARTBEAT_SUFFIX = ".node";
+
+	private final ClusterProperties clusterProperties;
+	private final Clock clock;
+	private final List<Consumer<ConsistentHashRing>> ringListeners = new CopyOnWriteArrayList<>();
+	private final Path heartbeatFile;
+	private volatile ConsistentHashRing ring;
+	private volatile boolean leaving;
+	private ScheduledExecutorService heartbeatExecutor;
+
+	@Autowired
+	public ClusterMembership(ClusterProperties clusterProperties) {
+		this(clusterProperties, Clock.systemUTC());
+	}
+
+	ClusterMembership(ClusterProperties clusterProperties, Clock clock) {
+		this.clusterProperties = clusterProperties;
+		this.clock = clock;
+		this.heartbeatFile = clusterProperties.getMembershipDirectory().resolve(Base64.getUrlEncoder().withoutPadding()
+			.encodeToString(clusterProperties.getNodeUrl().getBytes(StandardCharsets.UTF_8)) + HEARTBEAT_SUFFIX);
+	}
+
+	/**
+	 * Joins once the server accepts requests, i.e. once the other nodes can forward to it.
+	 * */
+	@EventListener(ApplicationReadyEvent.class)
+	public synchronized void join() {
+		if (!clusterProperties.isEnabled() || heartbeatExecutor != null) {
+			return;
+		}
+		heartbeat();
+		heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "cluster-heartbeat");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long intervalMillis = clusterProperties.getHeartbeatInterval().toMillis();
+		heartbeatExecutor.scheduleWithFixedDelay(() -> {
+			try {
+				heartbeat();
+			} catch (RuntimeException e) {
+				log.warn("Cluster heartbeat failed.", e);
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+		log.info("Joined cluster as {}.", clusterProperties.getNodeUrl());
+	}
+
+	/**
+	 * Leaves before the server stops accepting requests, the ring listeners hand the subscriptions off to the
+	 * remaining nodes meanwhile.
+	 * */
+	@EventListener(ContextClosedEvent.class)
+	public synchronized void leave() {
+		if (heartbeatExecutor == null) {
+			return;
+		}
+		heartbeatExecutor.shutdownNow();
+		heartbeatExecutor = null;
+		leaving = true;
+		try {
+			Files.deleteIfExists(heartbeatFile);
+		} catch (IOException e) {
+			log.warn("Could not delete heartbeat file {}, the other nodes will notice after the member timeout.",
+				heartbeatFile, e);
+		}
+		updateRing(liveNodes());
+		log.info("Left cluster as {}.", clusterProperties.getNodeUrl());
+	}
+
+	/**
+	 * Touches the heartbeat file of this node and rebuilds the ring if nodes joined or left since the last heartbeat.
+	 * */
+	synchronized void heartbeat() {
+		if (leaving) {
+			return;
+		}
+		try {
+			Files.createDirectories(heartbeatFile.getParent());
+			if (!Files.exists(heartbeatFile)) {
+				Files.write(heartbeatFile, clusterProperties.getNodeUrl().getBytes(StandardCharsets.UTF_8));
+			}
+			Files.setLastModifiedTime(heartbeatFile, FileTime.from(clock.instant()));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not touch heartbeat file " + heartbeatFile, e);
+		}
+		updateRing(liveNodes());
+	}
+
+	public void addRingListener(Consumer<ConsistentHashRing> listener) {
+		ringListeners.add(listener);
+	}
+
+	/**
+	 * @return null if the cluster is disabled or this node has not joined yet
+	 * */
+	public ConsistentHashRing getRing() {
+		return ring;
+	}
+
+	public String getNodeUrl() {
+		return clusterProperties.getNodeUrl();
+	}
+
+	/**
+	 * @return url of the node the subscription has to be forwarded to, null if it is handled by this node
+	 * */
+	public String remoteOwnerOf(String postbackUrl) {
+		ConsistentHashRing currentRing = ring;
+		if (currentRing == null) {
+			return null;
+		}
+		String owner = currentRing.ownerOf(postbackUrl);
+		return owner == null || owner.equals(clusterProperties.getNodeUrl()) ? null : owner;
+	}
+
+	private Set<String> liveNodes() {
+		Set<String> nodes = new TreeSet<>();
+		Instant aliveSince = clock.instant().minus(clusterProperties.getMemberTimeout());
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(clusterProperties.getMembershipDirectory(),
+			"*" + HEARTBEAT_SUFFIX)) {
+			for (Path file : files) {
+				try {
+					if (Files.getLastModifiedTime(file).toInstant().isBefore(aliveSince)) {
+						continue;
+					}
+					nodes.add(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim());
+				} catch (NoSuchFileException e) {
+					// the node left meanwhile
+				}
+			}
+		} catch (NoSuchFileException e) {
+			// nobody has joined yet
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not list membership directory", e);
+		}
+		nodes.remove("");
+		if (leaving) {
+			nodes.remove(clusterProperties.getNodeUrl());
+		} else {
+			nodes.add(clusterProperties.getNodeUrl());
+		}
+		return nodes;
+	}
+
+	private void updateRing(Set<String> nodes) {
+		ConsistentHashRing currentRing = ring;
+		if (currentRing != null && Objects.equals(currentRing.getNodes(), nodes)) {
+			return;
+		}
+		ConsistentHashRing newRing = ConsistentHashRing.of(nodes, clusterProperties.getVirtualNodes());
+		ring = newRing;
+		log.info("Cluster nodes: {}.", nodes);
+		for (Consumer<ConsistentHashRing> listener : ringListeners) {
+			listener.accept(newRing);
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package com.osotnikov.clockserver.cluster;
+
+/**
+ * The node that owns a subscription could not be reached or did not handle a forwarded request.
+ * */
+public class ClusterUnavailableException extends RuntimeException {
+
+	public ClusterUnavailableException(String message) {
+		super(message);
+	}
+
+	public ClusterUnavailableException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
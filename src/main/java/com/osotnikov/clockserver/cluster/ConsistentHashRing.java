@@ -0,0 +1,94 @@
+package com.osotnikov.clockserver.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent hash ring of node urls, every node has a number of points on the ring and a postback url is
+ * owned by the node of the first point at or after the hash of the url. When a node joins or leaves only the urls
+ * between its points and the points before them change owner. The hash is computed from the utf-8 bytes, so every node
+ * of the cluster agrees on the owners no matter which JVM it runs on.
+ * */
+public final class ConsistentHashRing {
+
+	private final Set<String> nodes;
+	private final long[] points; // sorted
+	private final String[] pointNodes;
+
+	private ConsistentHashRing(Set<String> nodes, long[] points, String[] pointNodes) {
+		this.nodes = nodes;
+		this.points = points;
+		this.pointNodes = pointNodes;
+	}
+
+	public static ConsistentHashRing of(Collection<String> nodeUrls, int virtualNodes) {
+		Set<String> nodes = Collections.unmodifiableSet(new TreeSet<>(nodeUrls));
+		int size = nodes.size() * virtualNodes;
+		long[] unsorted = new long[size];
+		String[] unsortedNodes = new String[size];
+		int point = 0;
+		for (String node : nodes) {
+			for (int i = 0; i < virtualNodes; i++) {
+				unsorted[point] = hash(node + '#' + i);
+				unsortedNodes[point++] = node;
+			}
+		}
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		// ties are broken by node url so that every node builds the same ring
+		Arrays.sort(order, (a, b) -> unsorted[a] != unsorted[b] ? Long.compare(unsorted[a], unsorted[b]) :
+			unsortedNodes[a].compareTo(unsortedNodes[b]));
+		long[] points = new long[size];
+		String[] pointNodes = new String[size];
+		for (int i = 0; i < size; i++) {
+			points[i] = unsorted[order[i]];
+			pointNodes[i] = unsortedNodes[order[i]];
+		}
+		return new ConsistentHashRing(nodes, points, pointNodes);
+	}
+
+	/**
+	 * @return url of the node that owns the postback url, null if the ring is empty
+	 * */
+	public String ownerOf(String postbackUrl) {
+		if (points.length == 0) {
+			return null;
+		}
+		int position = Arrays.binarySearch(points, hash(postbackUrl));
+		if (position < 0) {
+			position = -position - 1;
+		} else {
+			while (position > 0 && points[position - 1] == points[position]) {
+				position--; // first of equal points
+			}
+		}
+		return pointNodes[position == points.length ? 0 : position];
+	}
+
+	public Set<String> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * 64 bit FNV-1a of the utf-8 bytes with the murmur3 finalizer on top, FNV alone clusters similar urls.
+	 * */
+	static long hash(String key) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
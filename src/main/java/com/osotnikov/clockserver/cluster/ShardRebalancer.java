@@ -0,0 +1,163 @@
+package com.osotnikov.clockserver.cluster;
+
+import com.osotnikov.clockserver.cluster.dto.SubscriptionHandoffDto;
+import com.osotnikov.clockserver.config.ClusterProperties;
+import com.osotnikov.clockserver.subscription.repository.SubscriptionRepository;
+import com.osotnikov.clockserver.subscription.service.SubscriptionService;
+import com.osotnikov.clockserver.subscription.service.model.Subscription;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands the subscriptions of this node that another node owns after a ring change off to their new owner. The handoff
+ * tells the new owner to fire from the first tick at least handoff delay away, and this node stops firing shortly after
+ * its last tick before that one, half a period or the handoff delay after it, whichever is less. So the postback url
+ * gets every tick exactly once as long as the handoff reaches the new owner within the handoff delay and this node
+ * does not run later than that margin. A failed handoff is retried a heartbeat interval later, the subscription keeps
+ * firing here until then.
+ * */
+@Slf4j
+@Component
+public class ShardRebalancer {
+
+	static final int HANDOFF_BATCH_SIZE = 1000;
+
+	private final ClusterMembership clusterMembership;
+	private final ClusterClient clusterClient;
+	private final SubscriptionService subscriptionService;
+	private final SubscriptionRepository subscriptionRepository;
+	private final Duration handoffDelay;
+	private final Duration retryInterval;
+	private final ScheduledExecutorService executor;
+	private final Map<String, ScheduledFuture<?>> pendingReleases = new ConcurrentHashMap<>();
+	private ScheduledFuture<?> retry; // guarded by this
+
+	@Autowired
+	public ShardRebalancer(ClusterMembership clusterMembership, ClusterClient clusterClient,
+						   SubscriptionService subscriptionService, SubscriptionRepository subscriptionRepository,
+						   ClusterProperties clusterProperties) {
+		this.clusterMembership = clusterMembership;
+		this.clusterClient = clusterClient;
+		this.subscriptionService = subscriptionService;
+		this.subscriptionRepository = subscriptionRepository;
+		this.handoffDelay = clusterProperties.getHandoffDelay();
+		this.retryInterval = clusterProperties.getHeartbeatInterval();
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "cluster-rebalancer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		clusterMembership.addRingListener(this::onRingChange);
+	}
+
+	@PreDestroy
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	private void onRingChange(ConsistentHashRing ring) {
+		if (ring.getNodes().contains(clusterMembership.getNodeUrl())) {
+			executor.execute(this::sweep);
+			return;
+		}
+		// this node is leaving, everything goes to the remaining nodes before the server stops
+		Instant deadline = Instant.now().plus(handoffDelay.multipliedBy(2));
+		sweep();
+		while (!pendingReleases.isEmpty() && Instant.now().isBefore(deadline)) {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		if (!pendingReleases.isEmpty()) {
+			log.warn("Left the cluster before {} handed off subscriptions were released.", pendingReleases.size());
+		}
+	}
+
+	/**
+	 * Hands off every subscription of this node that is owned by another node and not handed off already.
+	 * */
+	synchronized void sweep() {
+		Map<String, List<Subscription>> subscriptionsByOwner = new HashMap<>();
+		subscriptionRepository.forEach(subscription -> {
+			String owner = clusterMembership.remoteOwnerOf(subscription.getPostbackUrl());
+			if (owner != null && !pendingReleases.containsKey(subscription.getPostbackUrl())) {
+				subscriptionsByOwner.computeIfAbsent(owner, key -> new ArrayList<>()).add(subscription);
+			}
+		});
+		boolean failed = false;
+		for (Map.Entry<String, List<Subscription>> ownerSubscriptions : subscriptionsByOwner.entrySet()) {
+			List<Subscription> subscriptions = ownerSubscriptions.getValue();
+			for (int from = 0; from < subscriptions.size(); from += HANDOFF_BATCH_SIZE) {
+				if (!handoff(ownerSubscriptions.getKey(),
+					subscriptions.subList(from, Math.min(from + HANDOFF_BATCH_SIZE, subscriptions.size())))) {
+					failed = true;
+					break;
+				}
+			}
+		}
+		if (failed && (retry == null || retry.isDone())) {
+			retry = executor.schedule(this::sweep, retryInterval.toMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * @return whether the owner has taken the subscriptions over
+	 * */
+	private boolean handoff(String owner, List<Subscription> subscriptions) {
+		// decided right before the request, so that the handoff delay is all the request gets
+		Instant notBefore = Instant.now().plus(handoffDelay);
+		List<SubscriptionHandoffDto> handoffs = new ArrayList<>(subscriptions.size());
+		for (Subscription subscription : subscriptions) {
+			handoffs.add(subscriptionService.toHandoff(subscription, notBefore));
+		}
+		try {
+			clusterClient.handoff(owner, handoffs);
+		} catch (ClusterUnavailableException e) {
+			log.warn("Could not hand {} subscriptions off to {}, retrying in {}.", handoffs.size(), owner,
+				retryInterval, e);
+			return false;
+		}
+		Instant now = Instant.now();
+		for (int i = 0; i < subscriptions.size(); i++) {
+			Instant releaseTime = releaseTime(subscriptions.get(i), handoffs.get(i).getFirstFireTime());
+			String postbackUrl = handoffs.get(i).getPostbackUrl();
+			pendingReleases.put(postbackUrl, executor.schedule(() -> release(postbackUrl),
+				Math.max(0, Duration.between(now, releaseTime).toMillis()), TimeUnit.MILLISECONDS));
+		}
+		return true;
+	}
+
+	/**
+	 * @return time after the last tick this node fires and well before the first tick the new owner fires
+	 * */
+	Instant releaseTime(Subscription subscription, Instant firstFireTime) {
+		Duration period = SubscriptionService.periodOf(subscription);
+		Duration margin = period.dividedBy(2).compareTo(handoffDelay) < 0 ? period.dividedBy(2) : handoffDelay;
+		return firstFireTime.minus(period).plus(margin);
+	}
+
+	private void release(String postbackUrl) {
+		pendingReleases.remove(postbackUrl);
+		// the ring may have changed back meanwhile, the subscription stays then and the other node releases it
+		if (clusterMembership.remoteOwnerOf(postbackUrl) != null) {
+			subscriptionService.deleteLocally(postbackUrl);
+		}
+	}
+}
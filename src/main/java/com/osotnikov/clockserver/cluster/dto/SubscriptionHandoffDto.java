@@ -0,0 +1,29 @@
+package com.osotnikov.clockserver.cluster.dto;
+
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
+import com.osotnikov.scheduling.MissedTickPolicy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A subscription moving to the node that owns it now. The new owner fires from the first fire time on, the previous
+ * owner stops before it.
+ * */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubscriptionHandoffDto {
+    private String postbackUrl;
+    private FrequencyDto frequency;
+    private MissedTickPolicy missedTickPolicy;
+    private int maxInFlight;
+    private TimeFormat timeFormat;
+    private PayloadEncoding encoding;
+    private Instant phaseAnchor;
+    private Instant firstFireTime;
+}
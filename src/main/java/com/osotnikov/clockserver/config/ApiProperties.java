@@ -0,0 +1,21 @@
+package com.osotnikov.clockserver.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Servlet api, the timeout of its streamed responses is spring.mvc.async.request-timeout.
+ * */
+@Data
+@ConfigurationProperties(prefix = "clockserver.api")
+public class ApiProperties {
+
+	/**
+	 * Number of threads that write the streamed responses, i.e. the NDJSON export and the batch results.
+	 * */
+	private int asyncPoolSize = 8;
+	/**
+	 * Maximum number of streamed responses waiting for a thread, further ones fail right away.
+	 * */
+	private int asyncQueueCapacity = 64;
+}
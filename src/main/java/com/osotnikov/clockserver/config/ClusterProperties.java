@@ -0,0 +1,48 @@
+package com.osotnikov.clockserver.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "clockserver.cluster")
+public class ClusterProperties {
+
+	/**
+	 * Partitions the subscriptions across all the nodes that share the membership directory, see
+	 * {@link com.osotnikov.clockserver.cluster.ClusterMembership}.
+	 * */
+	private boolean enabled = false;
+	/**
+	 * Base url the other nodes reach this node at, also identifies the node.
+	 * */
+	private String nodeUrl = "http://localhost:8080";
+	/**
+	 * Directory shared by all the nodes, every node keeps a heartbeat file in it.
+	 * */
+	private Path membershipDirectory = Paths.get("cluster");
+	/**
+	 * How often a node touches its heartbeat file and looks for nodes that joined or left.
+	 * */
+	private Duration heartbeatInterval = Duration.ofSeconds(1);
+	/**
+	 * A node whose heartbeat file has not been touched for this long has left.
+	 * */
+	private Duration memberTimeout = Duration.ofSeconds(5);
+	/**
+	 * Points of every node on the hash ring, more points spread the subscriptions more evenly.
+	 * */
+	private int virtualNodes = 128;
+	/**
+	 * Time a subscription has to reach its new owner when it is handed off, the new owner takes over from the first
+	 * tick after it.
+	 * */
+	private Duration handoffDelay = Duration.ofSeconds(2);
+	/**
+	 * Timeout of the requests between nodes.
+	 * */
+	private Duration requestTimeout = Duration.ofSeconds(5);
+}
@@ -0,0 +1,118 @@
+package com.osotnikov.clockserver.config;
+
+import com.osotnikov.clockserver.metrics.PostbackMetrics;
+import com.osotnikov.clockserver.subscription.delivery.HostAffinePostbackDeliveryService;
+import com.osotnikov.clockserver.subscription.delivery.PostbackDeliveryService;
+import com.osotnikov.clockserver.subscription.delivery.PostbackHostResolver;
+import com.osotnikov.clockserver.subscription.delivery.ReactivePostbackDeliveryService;
+import com.osotnikov.clockserver.subscription.delivery.ResilientPostbackDeliveryService;
+import com.osotnikov.clockserver.subscription.delivery.VirtualThreadPostbackDeliveryService;
+import com.osotnikov.clockserver.subscription.service.model.rest.client.dto.request.CurrentTimeDto;
+import com.osotnikov.rest.client.RestClient;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorResourceFactory;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Selects the {@link PostbackDeliveryService} based on clockserver.delivery.mode, the reactive delivery is used
+ * whenever virtual threads are not available on the running JVM. Either one is put behind per host queues and wrapped
+ * with retries and per host circuit breakers.
+ * */
+@Slf4j
+@Configuration
+public class DeliveryConfiguration {
+
+	/**
+	 * One pool per subscriber host, connections are kept alive between ticks and evicted in the background.
+	 * */
+	@Bean(destroyMethod = "dispose")
+	public ConnectionProvider postbackConnectionProvider(DeliveryProperties deliveryProperties) {
+		DeliveryProperties.Http http = deliveryProperties.getHttp();
+		ConnectionProvider.Builder builder = ConnectionProvider.builder("postback")
+			.maxConnections(http.getMaxConnectionsPerHost())
+			.pendingAcquireMaxCount(http.getPendingAcquireMaxCount())
+			.pendingAcquireTimeout(http.getPendingAcquireTimeout())
+			.maxIdleTime(http.getMaxIdleTime())
+			.maxLifeTime(http.getMaxLifeTime())
+			.evictInBackground(http.getEvictionInterval());
+		for (Map.Entry<String, Integer> hostMaxConnections : http.getMaxConnectionsByHost().entrySet()) {
+			String hostAndPort = hostMaxConnections.getKey();
+			int portSeparator = hostAndPort.lastIndexOf(':');
+			if (portSeparator < 0) {
+				throw new IllegalArgumentException(
+					"clockserver.delivery.http.max-connections-by-host keys must be host:port, got " + hostAndPort);
+			}
+			builder.forRemoteHost(
+				InetSocketAddress.createUnresolved(hostAndPort.substring(0, portSeparator),
+					Integer.parseInt(hostAndPort.substring(portSeparator + 1))),
+				spec -> spec.maxConnections(hostMaxConnections.getValue()));
+		}
+		return builder.build();
+	}
+
+	@Bean
+	public PostbackHostResolver postbackHostResolver(DeliveryProperties deliveryProperties) {
+		return new PostbackHostResolver(deliveryProperties);
+	}
+
+	/**
+	 * Runs on the event loops of the reactor resource factory, i.e. the ones the Reactor Netty server uses when the
+	 * api is served reactively (spring.main.web-application-type reactive). New connections resolve their host
+	 * through the caches of the postback host resolver unless clockserver.delivery.dns.enabled is false.
+	 * */
+	@Bean
+	public RestClient<CurrentTimeDto> postbackRestClient(DeliveryProperties deliveryProperties,
+														  ConnectionProvider postbackConnectionProvider,
+														  ReactorResourceFactory reactorResourceFactory,
+														  PostbackHostResolver postbackHostResolver) {
+		DeliveryProperties.Http http = deliveryProperties.getHttp();
+		HttpClient httpClient = HttpClient.create(postbackConnectionProvider)
+			.runOn(reactorResourceFactory.getLoopResources())
+			.protocol(http.getProtocols().toArray(new HttpProtocol[0]))
+			.keepAlive(http.isKeepAlive())
+			.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) http.getConnectTimeout().toMillis())
+			.responseTimeout(http.getResponseTimeout());
+		if (deliveryProperties.getDns().isEnabled()) {
+			httpClient = httpClient.resolver(postbackHostResolver.addressResolverGroup());
+		}
+		return new RestClient<>(new ReactorClientHttpConnector(httpClient));
+	}
+
+	@Bean
+	public PostbackDeliveryService postbackDeliveryService(DeliveryProperties deliveryProperties,
+														   RestClient<CurrentTimeDto> postbackRestClient,
+														   PostbackMetrics postbackMetrics) {
+		PostbackDeliveryService postbackDeliveryService = null;
+		if (deliveryProperties.getMode() == DeliveryProperties.Mode.VIRTUAL_THREADS) {
+			Optional<ExecutorService> executor = VirtualThreadPostbackDeliveryService.newVirtualThreadPerTaskExecutor();
+			if (executor.isPresent()) {
+				postbackDeliveryService = new VirtualThreadPostbackDeliveryService(postbackRestClient, executor.get(),
+					deliveryProperties.getMaxInFlight(), postbackMetrics);
+			} else {
+				log.warn("Virtual threads are not available on java {}, falling back to reactive delivery.",
+					Runtime.version());
+			}
+		}
+		if (postbackDeliveryService == null) {
+			postbackDeliveryService = new ReactivePostbackDeliveryService(postbackRestClient, deliveryProperties,
+				postbackMetrics);
+		}
+		if (deliveryProperties.getHostQueues().isEnabled()) {
+			// retries go through the queue of their host as well
+			postbackDeliveryService = new HostAffinePostbackDeliveryService(postbackDeliveryService, deliveryProperties,
+				postbackMetrics);
+		}
+		return new ResilientPostbackDeliveryService(postbackDeliveryService, deliveryProperties, postbackMetrics);
+	}
+}
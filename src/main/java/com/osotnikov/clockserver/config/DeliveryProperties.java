@@ -0,0 +1,177 @@
+package com.osotnikov.clockserver.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import reactor.netty.http.HttpProtocol;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "clockserver.delivery")
+public class DeliveryProperties {
+
+	/**
+	 * How the postbacks are executed.
+	 * */
+	private Mode mode = Mode.REACTIVE;
+	/**
+	 * Maximum number of postbacks that are awaiting a response at the same time.
+	 * */
+	private int maxInFlight = 256;
+	/**
+	 * Maximum number of postbacks of one subscription awaiting a response, ticks above this are skipped. Can be
+	 * overridden per subscription.
+	 * */
+	private int maxInFlightPerSubscription = 1;
+	/**
+	 * Maximum number of postbacks waiting for an in-flight slot, postbacks above this are dropped.
+	 * */
+	private int queueCapacity = 65536;
+	/**
+	 * Per host queues in front of the in-flight slots.
+	 * */
+	private HostQueues hostQueues = new HostQueues();
+	/**
+	 * Connection pooling and protocols of the http client that sends the postbacks.
+	 * */
+	private Http http = new Http();
+	/**
+	 * Cached resolution of the subscriber hosts.
+	 * */
+	private Dns dns = new Dns();
+	/**
+	 * Retries of failed postbacks.
+	 * */
+	private Retry retry = new Retry();
+	/**
+	 * Per host circuit breaker that quarantines the subscriptions of failing hosts.
+	 * */
+	private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+	public enum Mode {
+		/**
+		 * Non-blocking requests on the http client's event loop.
+		 * */
+		REACTIVE,
+		/**
+		 * Blocking requests, each on its own virtual thread, requires java 21+. Falls back to REACTIVE otherwise.
+		 * */
+		VIRTUAL_THREADS
+	}
+
+	@Data
+	public static class HostQueues {
+
+		private boolean enabled = true;
+		/**
+		 * Maximum number of postbacks to one host (host and port) that are awaiting a response, the rest wait in the
+		 * queue of the host. 0 for the connection limit of the host, i.e. http.maxConnectionsByHost or
+		 * http.maxConnectionsPerHost, so that every postback finds a pooled connection.
+		 * */
+		private int maxConcurrencyPerHost = 0;
+		/**
+		 * Maximum number of postbacks waiting in the queue of one host, postbacks above this are dropped.
+		 * */
+		private int capacityPerHost = 4096;
+	}
+
+	@Data
+	public static class Http {
+
+		/**
+		 * Maximum number of connections to one subscriber host (host and port), every host has its own pool.
+		 * */
+		private int maxConnectionsPerHost = 50;
+		/**
+		 * Overrides maxConnectionsPerHost for specific hosts, keyed by host:port e.g. "[subscriber.com:443]": 200
+		 * */
+		private Map<String, Integer> maxConnectionsByHost = new HashMap<>();
+		/**
+		 * Maximum number of postbacks waiting for a connection of one host, -1 for no limit.
+		 * */
+		private int pendingAcquireMaxCount = 1000;
+		private Duration pendingAcquireTimeout = Duration.ofSeconds(10);
+		/**
+		 * Pooled connections idle for longer than this are closed, should be longer than the common subscription
+		 * periods so that connections stay warm between ticks.
+		 * */
+		private Duration maxIdleTime = Duration.ofSeconds(30);
+		private Duration maxLifeTime = Duration.ofMinutes(5);
+		/**
+		 * How often idle and expired connections are evicted in the background instead of on acquire.
+		 * */
+		private Duration evictionInterval = Duration.ofSeconds(30);
+		private boolean keepAlive = true;
+		private Duration connectTimeout = Duration.ofSeconds(5);
+		private Duration responseTimeout = Duration.ofSeconds(10);
+		/**
+		 * http11, h2 (negotiated via ALPN with https subscribers) and/or h2c (cleartext upgrade). With http/2 all the
+		 * postbacks to a host are multiplexed over its pooled connections.
+		 * */
+		private List<HttpProtocol> protocols = Arrays.asList(HttpProtocol.HTTP11, HttpProtocol.H2);
+	}
+
+	@Data
+	public static class Dns {
+
+		/**
+		 * Resolve the subscriber hosts through the caches instead of the default resolver of the http client.
+		 * */
+		private boolean enabled = true;
+		/**
+		 * How often the cached hosts in use are re-resolved in the background, their cached addresses are served
+		 * meanwhile and kept if the re-resolution fails.
+		 * */
+		private Duration refreshInterval = Duration.ofSeconds(60);
+		/**
+		 * How long a host that does not resolve is remembered as such, connecting to it fails right away meanwhile.
+		 * */
+		private Duration negativeTtl = Duration.ofSeconds(10);
+		/**
+		 * Maximum number of resolved hosts kept, the least recently used are evicted above this.
+		 * */
+		private int maxHosts = 10000;
+		/**
+		 * Maximum number of hosts that did not resolve kept, the least recently used are evicted above this.
+		 * */
+		private int maxUnresolvableHosts = 1000;
+		/**
+		 * Threads the blocking lookups run on, i.e. the maximum number of concurrent lookups.
+		 * */
+		private int resolverThreads = 2;
+	}
+
+	@Data
+	public static class Retry {
+
+		/**
+		 * Attempts per postback including the first one, 1 disables retries.
+		 * */
+		private int maxAttempts = 3;
+		private Duration initialBackoff = Duration.ofMillis(200);
+		private double multiplier = 2.0;
+		private Duration maxBackoff = Duration.ofSeconds(5);
+		/**
+		 * Fraction of the backoff, in [0, 1], that is randomly taken off each retry delay.
+		 * */
+		private double jitter = 0.5;
+	}
+
+	@Data
+	public static class CircuitBreaker {
+
+		private boolean enabled = true;
+		/**
+		 * Consecutive failed attempts to a host that open its circuit.
+		 * */
+		private int failureThreshold = 5;
+		/**
+		 * How long an open circuit stays open before a single probe postback is let through (half-open).
+		 * */
+		private Duration openDuration = Duration.ofSeconds(30);
+	}
+}
@@ -0,0 +1,37 @@
+package com.osotnikov.clockserver.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Tier of the subscriptions with periods of 100 to 1000 milliseconds, see
+ * {@link com.osotnikov.clockserver.subscription.service.HighFrequencyTier}.
+ * */
+@Data
+@ConfigurationProperties(prefix = "clockserver.high-frequency")
+public class HighFrequencyProperties {
+
+	/**
+	 * Maximum number of high frequency subscriptions of this node, further ones are refused with 429. 0 turns the
+	 * tier off.
+	 * */
+	private int maxSubscriptions = 1000;
+	/**
+	 * Resolution of the tier's own timing wheel, postbacks fire at most this late.
+	 * */
+	private Duration tickDuration = Duration.ofMillis(5);
+	/**
+	 * Number of buckets of the tier's timing wheel, rounded up to the next power of two.
+	 * */
+	private int wheelSize = 256;
+	/**
+	 * Maximum number of high frequency postbacks awaiting a response, separate from clockserver.delivery.max-in-flight.
+	 * */
+	private int maxInFlight = 256;
+	/**
+	 * Maximum number of high frequency postbacks waiting for an in-flight slot, postbacks above this are dropped.
+	 * */
+	private int queueCapacity = 4096;
+}
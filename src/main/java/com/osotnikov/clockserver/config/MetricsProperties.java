@@ -0,0 +1,22 @@
+package com.osotnikov.clockserver.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "clockserver.metrics")
+public class MetricsProperties {
+
+	/**
+	 * Maximum number of distinct host tags of the postback latency, the postbacks to any further host are tagged
+	 * "other" so that many subscriber hosts cannot blow up the number of time series.
+	 * */
+	private int maxHostTags = 50;
+	/**
+	 * Range of the latency histograms, keeps the number of buckets per time series small.
+	 * */
+	private Duration minExpectedLatency = Duration.ofMillis(1);
+	private Duration maxExpectedLatency = Duration.ofSeconds(30);
+}
@@ -0,0 +1,26 @@
+package com.osotnikov.clockserver.config;
+
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.ZoneId;
+
+@Data
+@ConfigurationProperties(prefix = "clockserver.payload")
+public class PayloadProperties {
+
+	/**
+	 * Format of the posted time, unless a subscription specifies its own.
+	 * */
+	private TimeFormat timeFormat = TimeFormat.LEGACY;
+	/**
+	 * Encoding of the postback body, unless a subscription specifies its own.
+	 * */
+	private PayloadEncoding encoding = PayloadEncoding.JSON;
+	/**
+	 * Zone whose offset the ISO_8601_OFFSET format is written with.
+	 * */
+	private ZoneId zone = ZoneId.systemDefault();
+}
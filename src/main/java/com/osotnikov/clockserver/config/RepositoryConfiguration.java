@@ -0,0 +1,37 @@
+package com.osotnikov.clockserver.config;
+
+import com.osotnikov.clockserver.subscription.repository.CompactSubscriptionRepository;
+import com.osotnikov.clockserver.subscription.repository.DurableSubscriptionRepository;
+import com.osotnikov.clockserver.subscription.repository.InMemorySubscriptionRepository;
+import com.osotnikov.clockserver.subscription.repository.SubscriptionRepository;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+/**
+ * Selects the {@link SubscriptionRepository} based on clockserver.repository.mode, either one can be made durable
+ * with clockserver.repository.durable.
+ * */
+@Configuration
+public class RepositoryConfiguration {
+
+	@Bean
+	public SubscriptionRepository subscriptionRepository(RepositoryProperties repositoryProperties) throws IOException {
+		SubscriptionRepository subscriptionRepository;
+		switch (repositoryProperties.getMode()) {
+			case COMPACT:
+				subscriptionRepository = new CompactSubscriptionRepository();
+				break;
+			case IN_MEMORY:
+			default:
+				subscriptionRepository = new InMemorySubscriptionRepository();
+		}
+		if (repositoryProperties.isDurable()) {
+			return new DurableSubscriptionRepository(subscriptionRepository, repositoryProperties.getDirectory(),
+				(int) repositoryProperties.getSegmentSize().toBytes(), repositoryProperties.getSyncInterval(),
+				repositoryProperties.getSnapshotInterval());
+		}
+		return subscriptionRepository;
+	}
+}
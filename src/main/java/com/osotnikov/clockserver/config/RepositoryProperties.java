@@ -0,0 +1,53 @@
+package com.osotnikov.clockserver.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "clockserver.repository")
+public class RepositoryProperties {
+
+	/**
+	 * How the subscriptions are kept in memory.
+	 * */
+	private Mode mode = Mode.IN_MEMORY;
+	/**
+	 * Keeps the subscriptions across restarts, see
+	 * {@link com.osotnikov.clockserver.subscription.repository.DurableSubscriptionRepository}.
+	 * */
+	private boolean durable = false;
+	/**
+	 * Directory of the write ahead log and the snapshots of the durable repository.
+	 * */
+	private Path directory = Paths.get("data");
+	/**
+	 * Size of every memory mapped log segment.
+	 * */
+	private DataSize segmentSize = DataSize.ofMegabytes(64);
+	/**
+	 * How often the log is forced to disk, a crash of the machine loses at most this much of the latest changes.
+	 * */
+	private Duration syncInterval = Duration.ofSeconds(1);
+	/**
+	 * How often the log is compacted into a snapshot, bounds the time it takes to replay the log on startup.
+	 * */
+	private Duration snapshotInterval = Duration.ofMinutes(10);
+
+	public enum Mode {
+		/**
+		 * One object per subscription, see
+		 * {@link com.osotnikov.clockserver.subscription.repository.InMemorySubscriptionRepository}.
+		 * */
+		IN_MEMORY,
+		/**
+		 * Primitive arrays, for millions of subscriptions, see
+		 * {@link com.osotnikov.clockserver.subscription.repository.CompactSubscriptionRepository}.
+		 * */
+		COMPACT
+	}
+}
@@ -0,0 +1,65 @@
+package com.osotnikov.clockserver.config;
+
+import com.osotnikov.clockserver.metrics.SchedulerMetrics;
+import com.osotnikov.clockserver.subscription.service.TimePostbackTickDispatcher;
+import com.osotnikov.scheduling.HashedTimingWheel;
+import com.osotnikov.scheduling.PeriodicTaskScheduler;
+import com.osotnikov.scheduling.TaskSchedulerAdapter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Selects the scheduling engine behind {@link PeriodicTaskScheduler} based on clockserver.scheduler.engine, either
+ * one reports its lag to {@link SchedulerMetrics}.
+ * */
+@Configuration
+public class SchedulerConfiguration {
+
+	@Bean
+	public ThreadPoolTaskScheduler threadPoolTaskScheduler(SchedulerProperties schedulerProperties) {
+		ThreadPoolTaskScheduler threadPoolTaskScheduler
+			= new ThreadPoolTaskScheduler();
+		threadPoolTaskScheduler.setPoolSize(schedulerProperties.getPoolSize());
+		threadPoolTaskScheduler.setThreadNamePrefix(
+			"ThreadPoolTaskScheduler");
+		return threadPoolTaskScheduler;
+	}
+
+	/**
+	 * Executes the postback batches that the timing wheel hands off, threads are only started once the wheel engine
+	 * is used.
+	 * */
+	@Bean
+	public ThreadPoolTaskExecutor postbackTaskExecutor(SchedulerProperties schedulerProperties) {
+		ThreadPoolTaskExecutor postbackTaskExecutor = new ThreadPoolTaskExecutor();
+		postbackTaskExecutor.setCorePoolSize(schedulerProperties.getPoolSize());
+		postbackTaskExecutor.setMaxPoolSize(schedulerProperties.getPoolSize());
+		postbackTaskExecutor.setThreadNamePrefix("PostbackTaskExecutor");
+		return postbackTaskExecutor;
+	}
+
+	@Bean
+	public PeriodicTaskScheduler periodicTaskScheduler(SchedulerProperties schedulerProperties,
+													   ThreadPoolTaskScheduler threadPoolTaskScheduler,
+													   TimePostbackTickDispatcher timePostbackTickDispatcher,
+													   SchedulerMetrics schedulerMetrics) {
+		PeriodicTaskScheduler periodicTaskScheduler;
+		switch (schedulerProperties.getEngine()) {
+			case TASK_SCHEDULER:
+				periodicTaskScheduler = new TaskSchedulerAdapter(threadPoolTaskScheduler);
+				schedulerMetrics.gaugeSchedules(
+					() -> threadPoolTaskScheduler.getScheduledThreadPoolExecutor().getQueue().size());
+				break;
+			case TIMING_WHEEL:
+			default:
+				HashedTimingWheel timingWheel = new HashedTimingWheel(schedulerProperties.getTickDuration(),
+					schedulerProperties.getWheelSize(), timePostbackTickDispatcher, "HashedTimingWheel");
+				schedulerMetrics.gaugeSchedules(timingWheel::size);
+				periodicTaskScheduler = timingWheel;
+		}
+		periodicTaskScheduler.setLatenessRecorder(schedulerMetrics);
+		return periodicTaskScheduler;
+	}
+}
@@ -0,0 +1,54 @@
+package com.osotnikov.clockserver.config;
+
+import com.osotnikov.scheduling.MissedTickPolicy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "clockserver.scheduler")
+public class SchedulerProperties {
+
+	/**
+	 * Engine that triggers the subscriptions.
+	 * */
+	private Engine engine = Engine.TIMING_WHEEL;
+	/**
+	 * Number of threads that execute due postbacks.
+	 * */
+	private int poolSize = 5;
+	/**
+	 * Resolution of the timing wheel, postbacks fire at most this late.
+	 * */
+	private Duration tickDuration = Duration.ofMillis(100);
+	/**
+	 * Number of buckets of the timing wheel, rounded up to the next power of two.
+	 * */
+	private int wheelSize = 512;
+	/**
+	 * Maximum number of postback urls that are due on the same tick and are handed to a single executor task.
+	 * */
+	private int batchSize = 100;
+	/**
+	 * What happens to ticks that were missed because of an overload or a pause, unless a subscription specifies its
+	 * own policy.
+	 * */
+	private MissedTickPolicy missedTickPolicy = MissedTickPolicy.COALESCE;
+	/**
+	 * Spreads the first postback of every subscription over its period by a hash of the postback url instead of
+	 * posting right away, which flattens the load of subscriptions created at the same time.
+	 * */
+	private boolean phaseSpreading = false;
+
+	public enum Engine {
+		/**
+		 * O(1) schedule and cancel, see {@link com.osotnikov.scheduling.HashedTimingWheel}.
+		 * */
+		TIMING_WHEEL,
+		/**
+		 * Spring's ThreadPoolTaskScheduler, O(log n) schedule and cancel under a single lock.
+		 * */
+		TASK_SCHEDULER
+	}
+}
@@ -0,0 +1,41 @@
+package com.osotnikov.clockserver.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Streamed responses, the NDJSON export and the batch results, are written on a bounded executor of their own. Spring
+ * Boot does not create its application task executor since there is the postback one, and without it they would
+ * each get a new thread.
+ * */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class WebConfiguration implements WebMvcConfigurer, DisposableBean {
+
+	private final ThreadPoolTaskExecutor apiAsyncTaskExecutor;
+
+	@Autowired
+	public WebConfiguration(ApiProperties apiProperties) {
+		apiAsyncTaskExecutor = new ThreadPoolTaskExecutor();
+		apiAsyncTaskExecutor.setCorePoolSize(apiProperties.getAsyncPoolSize());
+		apiAsyncTaskExecutor.setMaxPoolSize(apiProperties.getAsyncPoolSize());
+		apiAsyncTaskExecutor.setQueueCapacity(apiProperties.getAsyncQueueCapacity());
+		apiAsyncTaskExecutor.setThreadNamePrefix("ApiAsyncTaskExecutor");
+		apiAsyncTaskExecutor.initialize();
+	}
+
+	@Override
+	public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+		configurer.setTaskExecutor(apiAsyncTaskExecutor);
+	}
+
+	@Override
+	public void destroy() {
+		apiAsyncTaskExecutor.shutdown();
+	}
+}
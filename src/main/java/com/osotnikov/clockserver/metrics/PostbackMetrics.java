@@ -0,0 +1,142 @@
+package com.osotnikov.clockserver.metrics;
+
+import com.osotnikov.clockserver.config.MetricsProperties;
+import com.osotnikov.clockserver.subscription.delivery.PostbackHosts;
+import com.osotnikov.rest.client.PostOutcome;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Postback delivery metrics:
+ * clockserver.postback.latency timer per host (at most maxHostTags hosts, the rest are tagged "other"),
+ * clockserver.postbacks counter per result (success, failure, timeout, or skipped, rejected, quarantined when the
+ * postback was not sent at all), clockserver.postback.retries counter, clockserver.postback.in.flight gauge and
+ * clockserver.postback.queue gauge per delivery lane (standard or high-frequency).
+ * */
+@Component
+public class PostbackMetrics {
+
+	public static final String STANDARD_LANE = "standard";
+	public static final String HIGH_FREQUENCY_LANE = "high-frequency";
+	static final String OTHER_HOSTS = "other";
+
+	private final MeterRegistry meterRegistry;
+	private final MetricsProperties metricsProperties;
+	private final ConcurrentMap<String, Timer> latencyByHost = new ConcurrentHashMap<>();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final Counter[] resultCounters = new Counter[PostOutcome.values().length];
+	private final Counter skipped;
+	private final Counter rejected;
+	private final Counter quarantined;
+	private final Counter retries;
+
+	@Autowired
+	public PostbackMetrics(MeterRegistry meterRegistry, MetricsProperties metricsProperties) {
+		this.meterRegistry = meterRegistry;
+		this.metricsProperties = metricsProperties;
+		for (PostOutcome outcome : PostOutcome.values()) {
+			resultCounters[outcome.ordinal()] = resultCounter(outcome.name().toLowerCase(Locale.ROOT));
+		}
+		this.skipped = resultCounter("skipped");
+		this.rejected = resultCounter("rejected");
+		this.quarantined = resultCounter("quarantined");
+		this.retries = Counter.builder("clockserver.postback.retries")
+			.description("Postbacks that were sent again after a failure")
+			.register(meterRegistry);
+		Gauge.builder("clockserver.postback.in.flight", inFlight, AtomicInteger::get)
+			.description("Postbacks awaiting a response")
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Call right before sending a postback.
+	 * @return start time to pass to {@link #stop(String, long, PostOutcome)}
+	 * */
+	public long start() {
+		inFlight.incrementAndGet();
+		return System.nanoTime();
+	}
+
+	public void stop(String postbackUrl, long startNanos, PostOutcome outcome) {
+		inFlight.decrementAndGet();
+		latencyOf(PostbackHosts.hostOf(postbackUrl)).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+		resultCounters[outcome.ordinal()].increment();
+	}
+
+	/**
+	 * The subscription still had maxInFlight postbacks awaiting a response.
+	 * */
+	public void skipped() {
+		skipped.increment();
+	}
+
+	/**
+	 * The delivery queue was full.
+	 * */
+	public void rejected() {
+		rejected.increment();
+	}
+
+	/**
+	 * The circuit of the subscriber's host was open.
+	 * */
+	public void quarantined() {
+		quarantined.increment();
+	}
+
+	public void retried() {
+		retries.increment();
+	}
+
+	/**
+	 * @param queue postbacks waiting for an in-flight slot
+	 * */
+	public void gaugeQueueDepth(Collection<?> queue) {
+		gaugeQueueDepth(STANDARD_LANE, queue);
+	}
+
+	/**
+	 * @param lane delivery lane the queue belongs to, e.g. the one of the high frequency tier
+	 * */
+	public void gaugeQueueDepth(String lane, Collection<?> queue) {
+		Gauge.builder("clockserver.postback.queue", queue, Collection::size)
+			.description("Postbacks waiting to be sent")
+			.tag("lane", lane)
+			.register(meterRegistry);
+	}
+
+	private Timer latencyOf(String host) {
+		Timer latency = latencyByHost.get(host);
+		if (latency != null) {
+			return latency;
+		}
+		// a few racing threads may go slightly over the limit, that is fine. Hosts over it are not remembered, there
+		// is no limit to how many of them there may be
+		String hostTag = latencyByHost.size() < metricsProperties.getMaxHostTags() ? host : OTHER_HOSTS;
+		return latencyByHost.computeIfAbsent(hostTag, tag -> Timer.builder("clockserver.postback.latency")
+			.description("Time from sending a postback until its response or error")
+			.tag("host", tag)
+			.publishPercentileHistogram()
+			.minimumExpectedValue(metricsProperties.getMinExpectedLatency())
+			.maximumExpectedValue(metricsProperties.getMaxExpectedLatency())
+			.register(meterRegistry));
+	}
+
+	private Counter resultCounter(String result) {
+		return Counter.builder("clockserver.postbacks")
+			.description("Postbacks by result")
+			.tag("result", result)
+			.register(meterRegistry);
+	}
+}
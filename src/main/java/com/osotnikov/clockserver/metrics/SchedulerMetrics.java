@@ -0,0 +1,76 @@
+package com.osotnikov.clockserver.metrics;
+
+import com.osotnikov.clockserver.config.MetricsProperties;
+import com.osotnikov.scheduling.LatenessRecorder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Scheduler metrics for sizing the scheduler pools:
+ * clockserver.scheduler.lag timer (actual minus intended fire time of every run, i.e. when the timing wheel hands the
+ * due postbacks off), clockserver.scheduler.queue.wait timer (time the handed off postbacks then wait in the queue of
+ * the postbackTaskExecutor), clockserver.scheduler.schedules gauge and the executor.* metrics (queued, active, pool
+ * size, completed) of both scheduler pools.
+ * */
+@Component
+public class SchedulerMetrics implements LatenessRecorder {
+
+	private final MeterRegistry meterRegistry;
+	private final Timer lag;
+	private final Timer queueWait;
+
+	@Autowired
+	public SchedulerMetrics(MeterRegistry meterRegistry, MetricsProperties metricsProperties,
+							ThreadPoolTaskScheduler threadPoolTaskScheduler,
+							@Qualifier("postbackTaskExecutor") ThreadPoolTaskExecutor postbackTaskExecutor) {
+		this.meterRegistry = meterRegistry;
+		this.lag = Timer.builder("clockserver.scheduler.lag")
+			.description("Actual minus intended fire time of the subscriptions")
+			.publishPercentileHistogram()
+			.minimumExpectedValue(metricsProperties.getMinExpectedLatency())
+			.maximumExpectedValue(metricsProperties.getMaxExpectedLatency())
+			.register(meterRegistry);
+		this.queueWait = Timer.builder("clockserver.scheduler.queue.wait")
+			.description("Time the due postbacks waited for a thread of the postback executor")
+			.publishPercentileHistogram()
+			.minimumExpectedValue(metricsProperties.getMinExpectedLatency())
+			.maximumExpectedValue(metricsProperties.getMaxExpectedLatency())
+			.register(meterRegistry);
+		new ExecutorServiceMetrics(threadPoolTaskScheduler.getScheduledThreadPoolExecutor(),
+			"threadPoolTaskScheduler", Tags.empty()).bindTo(meterRegistry);
+		new ExecutorServiceMetrics(postbackTaskExecutor.getThreadPoolExecutor(),
+			"postbackTaskExecutor", Tags.empty()).bindTo(meterRegistry);
+	}
+
+	@Override
+	public void record(long latenessNanos) {
+		lag.record(latenessNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param waitNanos time from handing due postbacks off to the postback executor until they started running
+	 * */
+	public void recordQueueWait(long waitNanos) {
+		queueWait.record(waitNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param activeSchedules number of subscriptions that are currently scheduled
+	 * */
+	public void gaugeSchedules(Supplier<Number> activeSchedules) {
+		Gauge.builder("clockserver.scheduler.schedules", activeSchedules)
+			.description("Subscriptions that are currently scheduled")
+			.register(meterRegistry);
+	}
+}
@@ -0,0 +1,46 @@
+package com.osotnikov.clockserver.stream;
+
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.api.validation.PostbackFrequencyConstraint;
+import com.osotnikov.clockserver.subscription.service.SubscriptionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Pull side alternative to postbacks, e.g. GET /stream?seconds=5 streams the current time as a server-sent event every
+ * 5 seconds for as long as the client stays connected. The frequency has the same fields and limits as the one of a
+ * subscription. Needs the reactive api (spring.main.web-application-type reactive), so that an open stream costs a
+ * connection but no thread.
+ * */
+@RestController
+@RequestMapping("/stream")
+@Validated
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class TickStreamController {
+
+	private final TickStreamHub tickStreamHub;
+
+	@Autowired
+	public TickStreamController(TickStreamHub tickStreamHub) {
+		this.tickStreamHub = tickStreamHub;
+	}
+
+	/**
+	 * Every frame is written and flushed on its own, a tick must not wait in a buffer for the next one.
+	 * */
+	@GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public Mono<Void> streamTicks(@PostbackFrequencyConstraint FrequencyDto frequency, ServerHttpResponse response) {
+		response.getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+		response.getHeaders().setCacheControl("no-cache");
+		return response.writeAndFlushWith(tickStreamHub.frames(SubscriptionService.periodOf(frequency))
+			.map(Flux::just));
+	}
+}
@@ -0,0 +1,110 @@
+package com.osotnikov.clockserver.stream;
+
+import com.osotnikov.clockserver.subscription.payload.CurrentTimePayloadCache;
+import com.osotnikov.clockserver.subscription.service.PhaseSpreader;
+import com.osotnikov.scheduling.MissedTickPolicy;
+import com.osotnikov.scheduling.PeriodicTaskScheduler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Broadcasts the current time to every connected stream of a period. There is one schedule per period, no matter how
+ * many streams are connected to it, and every tick is encoded once into a server-sent event frame that all the streams
+ * write from their own view of it. The ticks of a period are aligned to the epoch, so all its streams tick together.
+ * A stream that has not taken the previous frame yet (e.g. its connection is congested) misses the tick rather than
+ * buffering it, a late time is of no use to a clock.
+ * */
+@Component
+public class TickStreamHub {
+
+	private static final byte[] DATA = "data:".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] END_OF_EVENT = "\n\n".getBytes(StandardCharsets.UTF_8);
+
+	private final PeriodicTaskScheduler taskScheduler;
+	private final CurrentTimePayloadCache currentTimePayloadCache;
+	private final PhaseSpreader phaseSpreader;
+	private final ConcurrentHashMap<Duration, Channel> channels = new ConcurrentHashMap<>();
+
+	@Autowired
+	public TickStreamHub(PeriodicTaskScheduler taskScheduler, CurrentTimePayloadCache currentTimePayloadCache,
+						 PhaseSpreader phaseSpreader) {
+		this.taskScheduler = taskScheduler;
+		this.currentTimePayloadCache = currentTimePayloadCache;
+		this.phaseSpreader = phaseSpreader;
+	}
+
+	/**
+	 * @return frames of the ticks of the period, the schedule of the period starts with the first stream subscribing
+	 * and stops once the last one has cancelled
+	 * */
+	public Flux<DataBuffer> frames(Duration period) {
+		return Flux.defer(() -> {
+			Channel channel = acquire(period);
+			return channel.sink.asFlux()
+				.map(frame -> (DataBuffer) DefaultDataBufferFactory.sharedInstance.wrap(frame.duplicate()))
+				.doFinally(signal -> release(channel));
+		});
+	}
+
+	/**
+	 * @return number of periods with at least one stream
+	 * */
+	public int periods() {
+		return channels.size();
+	}
+
+	private Channel acquire(Duration period) {
+		return channels.compute(period, (key, channel) -> {
+			if (channel == null) {
+				channel = new Channel(period);
+				Channel tickingChannel = channel;
+				channel.scheduledFuture = taskScheduler.scheduleAtFixedRate(() -> tick(tickingChannel),
+					phaseSpreader.nextFireTime(Instant.EPOCH, period), period, MissedTickPolicy.SKIP);
+			}
+			channel.streams++;
+			return channel;
+		});
+	}
+
+	private void release(Channel channel) {
+		channels.computeIfPresent(channel.period, (key, current) -> {
+			if (current != channel || --current.streams > 0) {
+				return current;
+			}
+			current.scheduledFuture.cancel(false);
+			current.sink.tryEmitComplete();
+			return null;
+		});
+	}
+
+	private void tick(Channel channel) {
+		byte[] payload = currentTimePayloadCache.current().getContent();
+		ByteBuffer frame = ByteBuffer.allocateDirect(DATA.length + payload.length + END_OF_EVENT.length);
+		frame.put(DATA).put(payload).put(END_OF_EVENT).flip();
+		// a failure means no stream is connected anymore, or one is being added or removed concurrently
+		channel.sink.tryEmitNext(frame.asReadOnlyBuffer());
+	}
+
+	private static final class Channel {
+
+		private final Duration period;
+		private final Sinks.Many<ByteBuffer> sink = Sinks.many().multicast().directBestEffort();
+		private int streams; // guarded by the channels map
+		private ScheduledFuture<?> scheduledFuture;
+
+		Channel(Duration period) {
+			this.period = period;
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package com.osotnikov.clockserver.subscription.api;
+
+import com.osotnikov.clockserver.api.error.model.ApiError;
+import com.osotnikov.clockserver.config.ClusterProperties;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDeleteDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionPatchDto;
+import com.osotnikov.clockserver.subscription.api.dto.response.ResourceAffectedResponseDto;
+import com.osotnikov.clockserver.subscription.api.dto.response.SubscriptionInfoDto;
+import com.osotnikov.clockserver.subscription.api.dto.response.SubscriptionPageDto;
+import com.osotnikov.clockserver.subscription.repository.InMemorySubscriptionRepository;
+import com.osotnikov.clockserver.subscription.repository.SubscriptionRepository;
+import com.osotnikov.clockserver.subscription.service.SubscriptionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Same api as {@link SubscriptionController}, served by Reactor Netty when the application runs with
+ * spring.main.web-application-type reactive. Requests are handled on the event loops that also run the postback
+ * client instead of on servlet worker threads. Service calls only stay on the event loop with the plain in memory
+ * repository, whose changes are a few compare and sets. They are moved to bounded elastic threads in cluster mode,
+ * since forwarding to another node blocks, and with the compact or durable repositories, since those take locks and
+ * the durable one appends to, forces and maps its log files.
+ * */
+@RestController
+@RequestMapping("/subscription")
+@Validated
+@Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSubscriptionController {
+
+    private final SubscriptionService subscriptionService;
+    private final Scheduler serviceScheduler;
+
+    @Autowired
+    public ReactiveSubscriptionController(SubscriptionService subscriptionService,
+                                          ClusterProperties clusterProperties,
+                                          SubscriptionRepository subscriptionRepository) {
+        this.subscriptionService = subscriptionService;
+        boolean nonBlocking = !clusterProperties.isEnabled()
+            && subscriptionRepository instanceof InMemorySubscriptionRepository;
+        this.serviceScheduler = nonBlocking ? Schedulers.immediate() : Schedulers.boundedElastic();
+    }
+
+    /**
+     * See {@link SubscriptionController#listSubscriptions(String, int)}.
+     * */
+    @GetMapping
+    public Mono<ResponseEntity<Object>> listSubscriptions(
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "100") @Min(1) @Max(SubscriptionController.MAX_PAGE_SIZE) int limit) {
+        return Mono.fromCallable(() -> {
+            List<SubscriptionInfoDto> subscriptions = new ArrayList<>(limit);
+            try {
+                String nextCursor = subscriptionService.list(cursor, limit, subscriptions::add);
+                return respond(new SubscriptionPageDto(subscriptions, nextCursor), HttpStatus.OK);
+            } catch (IllegalArgumentException e) {
+                return respond(new ApiError(HttpStatus.BAD_REQUEST, "Invalid cursor.",
+                    String.format("Cursor: %s was not returned by this endpoint.", cursor)), HttpStatus.BAD_REQUEST);
+            }
+        }).subscribeOn(serviceScheduler);
+    }
+
+    /**
+     * See {@link SubscriptionController#exportSubscriptions()}, the next page is only read once the client has taken
+     * the previous one.
+     * */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<SubscriptionInfoDto> exportSubscriptions() {
+        return page(null)
+            .expand(page -> page.getNextCursor() != null ? page(page.getNextCursor()) : Mono.empty())
+            .concatMapIterable(SubscriptionPageDto::getSubscriptions);
+    }
+
+    @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE,
+                 consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Object>> createSubscription(@Valid @RequestBody SubscriptionDto subscriptionDto) {
+        log.debug("Received: " + subscriptionDto.toString());
+
+        return call(() -> subscriptionService.schedule(subscriptionDto)).map(subscriptionCreated -> {
+            if(!subscriptionCreated) {
+                return respond(new ApiError(HttpStatus.CONFLICT, "Conflicting resource exists.",
+                    String.format("Resource with name: %s already exists.", subscriptionDto.getPostbackUrl())),
+                    HttpStatus.CONFLICT);
+            }
+            return respond(new ResourceAffectedResponseDto(subscriptionDto.getPostbackUrl()), HttpStatus.CREATED);
+        });
+    }
+
+    @DeleteMapping(produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Object>> deleteSubscription(
+        @Valid @RequestBody SubscriptionDeleteDto subscriptionDeleteDto) {
+        log.debug("Received: " + subscriptionDeleteDto.toString());
+
+        return call(() -> subscriptionService.delete(subscriptionDeleteDto.getName()))
+            .map(subscriptionDeleted -> affected(subscriptionDeleteDto.getName(), subscriptionDeleted));
+    }
+
+    @PatchMapping(produces = MediaType.APPLICATION_JSON_VALUE,
+        consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Object>> changeSubscription(
+        @Valid @RequestBody SubscriptionPatchDto subscriptionPatchDto) {
+        log.debug("Received: " + subscriptionPatchDto.toString());
+
+        return call(() -> subscriptionService.changeSchedule(subscriptionPatchDto))
+            .map(subscriptionChanged -> affected(subscriptionPatchDto.getName(), subscriptionChanged));
+    }
+
+    private Mono<SubscriptionPageDto> page(String cursor) {
+        return Mono.fromCallable(() -> {
+            List<SubscriptionInfoDto> subscriptions = new ArrayList<>(SubscriptionController.MAX_PAGE_SIZE);
+            String nextCursor = subscriptionService.list(cursor, SubscriptionController.MAX_PAGE_SIZE,
+                subscriptions::add);
+            return new SubscriptionPageDto(subscriptions, nextCursor);
+        }).subscribeOn(serviceScheduler);
+    }
+
+    private <T> Mono<T> call(Callable<T> serviceCall) {
+        return Mono.fromCallable(serviceCall).subscribeOn(serviceScheduler);
+    }
+
+    private static ResponseEntity<Object> affected(String name, boolean affected) {
+        if(!affected) {
+            return respond(new ApiError(HttpStatus.NOT_FOUND, "No resource exists.",
+                String.format("Resource with name: %s does not exist.", name)), HttpStatus.NOT_FOUND);
+        }
+        return respond(new ResourceAffectedResponseDto(name), HttpStatus.OK);
+    }
+
+    private static ResponseEntity<Object> respond(Object body, HttpStatus status) {
+        return new ResponseEntity<>(body, status);
+    }
+}
@@ -0,0 +1,70 @@
+package com.osotnikov.clockserver.subscription.api;
+
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDeleteDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionPatchDto;
+import com.osotnikov.clockserver.subscription.service.SubscriptionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Batch variants of the {@link SubscriptionController} endpoints. The body is a JSON array or NDJSON of the items the
+ * single item endpoint takes, the response is NDJSON with one result per item, in the order of the items. The body is
+ * read while the response is written, so a batch of any size is handled in constant memory.
+ * */
+@RestController
+@RequestMapping("/subscription/batch")
+@Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class SubscriptionBatchController {
+
+    private final SubscriptionService subscriptionService;
+    private final SubscriptionBatchProcessor batchProcessor;
+
+    @Autowired
+    public SubscriptionBatchController(SubscriptionService subscriptionService,
+                                       SubscriptionBatchProcessor batchProcessor) {
+        this.subscriptionService = subscriptionService;
+        this.batchProcessor = batchProcessor;
+    }
+
+    @PostMapping(produces = MediaType.APPLICATION_NDJSON_VALUE,
+                 consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> createSubscriptions(HttpServletRequest request) throws IOException {
+        InputStream body = request.getInputStream();
+        return stream(out -> batchProcessor.process(body, out, SubscriptionDto.class, SubscriptionDto::getPostbackUrl,
+            subscriptionDto -> subscriptionService.schedule(subscriptionDto) ? HttpStatus.CREATED : HttpStatus.CONFLICT));
+    }
+
+    @DeleteMapping(produces = MediaType.APPLICATION_NDJSON_VALUE,
+                   consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> deleteSubscriptions(HttpServletRequest request) throws IOException {
+        InputStream body = request.getInputStream();
+        return stream(out -> batchProcessor.process(body, out, SubscriptionDeleteDto.class,
+            SubscriptionDeleteDto::getName,
+            deleteDto -> subscriptionService.delete(deleteDto.getName()) ? HttpStatus.OK : HttpStatus.NOT_FOUND));
+    }
+
+    @PatchMapping(produces = MediaType.APPLICATION_NDJSON_VALUE,
+                  consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> changeSubscriptions(HttpServletRequest request) throws IOException {
+        InputStream body = request.getInputStream();
+        return stream(out -> batchProcessor.process(body, out, SubscriptionPatchDto.class,
+            SubscriptionPatchDto::getName,
+            patchDto -> subscriptionService.changeSchedule(patchDto) ? HttpStatus.OK : HttpStatus.NOT_FOUND));
+    }
+
+    private static ResponseEntity<StreamingResponseBody> stream(StreamingResponseBody body) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+}
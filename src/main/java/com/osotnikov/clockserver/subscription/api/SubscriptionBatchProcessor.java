@@ -0,0 +1,135 @@
+package com.osotnikov.clockserver.subscription.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.osotnikov.clockserver.cluster.ClusterUnavailableException;
+import com.osotnikov.clockserver.subscription.api.dto.response.BatchItemResultDto;
+import com.osotnikov.clockserver.subscription.service.SubscriptionQuotaExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the items of a batch request one at a time from either a JSON array or NDJSON (whitespace separated JSON
+ * objects) and validates and applies them in chunks, writing one NDJSON result line per item after every chunk. Only
+ * one chunk of items is ever held in memory, no matter how large the request is.
+ *
+ * Invalid items, null ones included, are answered with 400 and skipped, a malformed body ends the batch with a 400
+ * result for the item that could not be read, the items before it have been applied already.
+ * */
+@Slf4j
+@Component
+public class SubscriptionBatchProcessor {
+
+    static final int CHUNK_SIZE = 1000;
+    static final String NULL_ITEM_ERROR = "must be an object, not null";
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter resultWriter;
+    private final Validator validator;
+
+    @Autowired
+    public SubscriptionBatchProcessor(ObjectMapper objectMapper, Validator validator) {
+        this.objectMapper = objectMapper;
+        this.resultWriter = objectMapper.writerFor(BatchItemResultDto.class)
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.validator = validator;
+    }
+
+    /**
+     * @param nameOf name of the item to report in its result
+     * @param operation applies a valid item, returns the status of its result
+     * */
+    public <T> void process(InputStream body, OutputStream response, Class<T> itemType, Function<T, String> nameOf,
+                            Function<T, HttpStatus> operation) throws IOException {
+        OutputStream out = new BufferedOutputStream(response, 1 << 16);
+        List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+        long index = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            try {
+                JsonToken token = parser.nextToken();
+                boolean array = token == JsonToken.START_ARRAY;
+                if (array) {
+                    token = parser.nextToken();
+                }
+                while (token != null && token != JsonToken.END_ARRAY) {
+                    chunk.add(objectMapper.readValue(parser, itemType));
+                    if (chunk.size() == CHUNK_SIZE) {
+                        index = apply(chunk, index, nameOf, operation, out);
+                    }
+                    token = parser.nextToken();
+                }
+            } catch (JsonProcessingException e) {
+                log.debug("Malformed batch item at index {}.", index + chunk.size(), e);
+                index = apply(chunk, index, nameOf, operation, out);
+                write(new BatchItemResultDto(index, null, HttpStatus.BAD_REQUEST.value(),
+                    Collections.singletonList(e.getOriginalMessage())), out);
+            }
+            apply(chunk, index, nameOf, operation, out);
+        }
+        out.flush();
+    }
+
+    /**
+     * @return index of the item after the chunk
+     * */
+    private <T> long apply(List<T> chunk, long index, Function<T, String> nameOf, Function<T, HttpStatus> operation,
+                           OutputStream out) throws IOException {
+        for (T item : chunk) {
+            if (item == null) {
+                // a null element of the array, not validatable
+                write(new BatchItemResultDto(index, null, HttpStatus.BAD_REQUEST.value(),
+                    Collections.singletonList(NULL_ITEM_ERROR)), out);
+                index++;
+                continue;
+            }
+            Set<ConstraintViolation<T>> violations = validator.validate(item);
+            if (violations.isEmpty()) {
+                BatchItemResultDto result;
+                try {
+                    result = new BatchItemResultDto(index, nameOf.apply(item), operation.apply(item).value(), null);
+                } catch (ClusterUnavailableException e) {
+                    // only this item's owner is down, the items of other owners go on
+                    result = new BatchItemResultDto(index, nameOf.apply(item), HttpStatus.SERVICE_UNAVAILABLE.value(),
+                        Collections.singletonList(e.getMessage()));
+                } catch (SubscriptionQuotaExceededException e) {
+                    result = new BatchItemResultDto(index, nameOf.apply(item), HttpStatus.TOO_MANY_REQUESTS.value(),
+                        Collections.singletonList(e.getMessage()));
+                }
+                write(result, out);
+            } else {
+                write(new BatchItemResultDto(index, nameOf.apply(item), HttpStatus.BAD_REQUEST.value(),
+                    violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.toList())),
+                    out);
+            }
+            index++;
+        }
+        chunk.clear();
+        // results of a chunk go out together so the client sees progress on large batches
+        out.flush();
+        return index;
+    }
+
+    private void write(BatchItemResultDto result, OutputStream out) throws IOException {
+        resultWriter.writeValue(out, result);
+        out.write('\n');
+    }
+}
@@ -1,5 +1,8 @@
 package com.osotnikov.clockserver.subscription.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.osotnikov.clockserver.api.error.model.ApiError;
 import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDeleteDto;
 import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDto;
@@ -7,26 +10,92 @@ import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionPatchD
 import com.osotnikov.clockserver.subscription.service.SubscriptionService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import com.osotnikov.clockserver.subscription.api.dto.response.ResourceAffectedResponseDto;
+import com.osotnikov.clockserver.subscription.api.dto.response.SubscriptionInfoDto;
+import com.osotnikov.clockserver.subscription.api.dto.response.SubscriptionPageDto;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 
 @RestController
 @RequestMapping("/subscription")
 @Validated
 @Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class SubscriptionController {
 
+    static final int MAX_PAGE_SIZE = 1000;
+
     private final SubscriptionService subscriptionService;
+    private final ObjectWriter infoWriter;
 
     @Autowired
-    public SubscriptionController(SubscriptionService subscriptionService) {
+    public SubscriptionController(SubscriptionService subscriptionService, ObjectMapper objectMapper) {
         this.subscriptionService = subscriptionService;
+        this.infoWriter = objectMapper.writerFor(SubscriptionInfoDto.class)
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * One page of subscriptions, pass the next cursor of the response to get the following page. Pages are not a
+     * consistent snapshot, subscriptions created or deleted while paging may or may not show up.
+     * */
+    @GetMapping
+    public ResponseEntity<?> listSubscriptions(
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "100") @Min(1) @Max(MAX_PAGE_SIZE) int limit) {
+        List<SubscriptionInfoDto> subscriptions = new ArrayList<>(limit);
+        String nextCursor;
+        try {
+            nextCursor = subscriptionService.list(cursor, limit, subscriptions::add);
+        } catch (IllegalArgumentException e) {
+            ApiError apiError = new ApiError(HttpStatus.BAD_REQUEST, "Invalid cursor.",
+                String.format("Cursor: %s was not returned by this endpoint.", cursor));
+            return new ResponseEntity<>(apiError, HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(new SubscriptionPageDto(subscriptions, nextCursor), HttpStatus.OK);
+    }
+
+    /**
+     * All subscriptions as NDJSON, one line per subscription. They are read from the repository a page at a time, so
+     * the export runs in constant memory and no lock is held for longer than it takes to copy a page.
+     * */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportSubscriptions() {
+        StreamingResponseBody body = response -> {
+            OutputStream out = new BufferedOutputStream(response, 1 << 16);
+            String cursor = null;
+            try {
+                do {
+                    cursor = subscriptionService.list(cursor, MAX_PAGE_SIZE, subscription -> {
+                        try {
+                            infoWriter.writeValue(out, subscription);
+                            out.write('\n');
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } while (cursor != null);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE,
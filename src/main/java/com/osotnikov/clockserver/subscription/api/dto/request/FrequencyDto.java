@@ -13,4 +13,12 @@ public class FrequencyDto {
 	private int hours;
 	private int minutes;
 	private int seconds;
+	/**
+	 * Only for the high frequency tier, i.e. periods of 100 to 1000 milliseconds.
+	 * */
+	private int milliseconds;
+
+	public FrequencyDto(int hours, int minutes, int seconds) {
+		this(hours, minutes, seconds, 0);
+	}
 }
@@ -1,12 +1,17 @@
 package com.osotnikov.clockserver.subscription.api.dto.request;
 
 import com.osotnikov.clockserver.subscription.api.validation.PostbackFrequencyConstraint;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
+import com.osotnikov.scheduling.MissedTickPolicy;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.validator.constraints.URL;
 
+import javax.validation.constraints.Min;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -16,4 +21,18 @@ public class SubscriptionDto {
     private String postbackUrl;
     @PostbackFrequencyConstraint
     private FrequencyDto frequency;
+    // optional, defaults to clockserver.scheduler.missed-tick-policy
+    private MissedTickPolicy missedTickPolicy;
+    // optional, defaults to clockserver.delivery.max-in-flight-per-subscription
+    @Min(1)
+    private Integer maxInFlight;
+    // optional, defaults to clockserver.payload.time-format
+    private TimeFormat timeFormat;
+    // optional, defaults to clockserver.payload.encoding
+    private PayloadEncoding encoding;
+
+    public SubscriptionDto(String postbackUrl, FrequencyDto frequency) {
+        this.postbackUrl = postbackUrl;
+        this.frequency = frequency;
+    }
 }
@@ -0,0 +1,25 @@
+package com.osotnikov.clockserver.subscription.api.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Result of one item of a batch request, the status is the one the single item endpoint would have answered with.
+ * */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchItemResultDto {
+    // position of the item in the request, starting at 0
+    private long index;
+    private String name;
+    private int status;
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<String> errors;
+}
@@ -0,0 +1,27 @@
+package com.osotnikov.clockserver.subscription.api.dto.response;
+
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
+import com.osotnikov.scheduling.MissedTickPolicy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SubscriptionInfoDto {
+    private String postbackUrl;
+    private FrequencyDto frequency;
+    private MissedTickPolicy missedTickPolicy;
+    private int maxInFlight;
+    private TimeFormat timeFormat;
+    private PayloadEncoding encoding;
+    // next tick of the subscription's schedule, a late tick may still be about to fire before it
+    private Instant nextFireTime;
+}
@@ -0,0 +1,18 @@
+package com.osotnikov.clockserver.subscription.api.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SubscriptionPageDto {
+    private List<SubscriptionInfoDto> subscriptions;
+    // pass as the cursor to get the next page, null on the last page
+    private String nextCursor;
+}
@@ -8,10 +8,11 @@ import static java.lang.annotation.RetentionPolicy.*;
 
 @Documented
 @Constraint(validatedBy = PostbackFrequencyValidator.class)
-@Target( { ElementType.METHOD, ElementType.FIELD })
+@Target( { ElementType.METHOD, ElementType.FIELD, ElementType.PARAMETER })
 @Retention(RUNTIME)
 public @interface PostbackFrequencyConstraint {
-	String message() default "Invalid frequency object. Must be between 5 seconds and 4 hours.";
+	String message() default "Invalid frequency object. Must be between 100 and 1000 milliseconds or " +
+		"between 5 seconds and 4 hours.";
 	Class<?>[] groups() default {};
 	Class<? extends Payload>[] payload() default {};
 }
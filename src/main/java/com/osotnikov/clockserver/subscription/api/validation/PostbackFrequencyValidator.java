@@ -15,6 +15,9 @@ public class PostbackFrequencyValidator implements ConstraintValidator<PostbackF
 	public boolean isValid(FrequencyDto frequencyString,
 						   ConstraintValidatorContext cxt) {
 
+		if(isHighFrequency(frequencyString)) {
+			return isValidHighFrequency(frequencyString);
+		}
 		if((frequencyString.getHours() < 0 || frequencyString.getMinutes() < 0 || frequencyString.getSeconds() < 0) ||
 		   (frequencyString.getHours() > 4) ||
 		   (frequencyString.getHours() == 4 && (frequencyString.getMinutes() > 0 || frequencyString.getSeconds() > 0)) ||
@@ -25,4 +28,24 @@ public class PostbackFrequencyValidator implements ConstraintValidator<PostbackF
 		return true;
 	}
 
+	/**
+	 * Periods of up to one second are for the high frequency tier.
+	 * */
+	private static boolean isHighFrequency(FrequencyDto frequency) {
+		return frequency.getMilliseconds() != 0 ||
+			(frequency.getHours() == 0 && frequency.getMinutes() == 0 && frequency.getSeconds() <= 1);
+	}
+
+	/**
+	 * Between 100 and 1000 milliseconds, given either as milliseconds or as 1 second.
+	 * */
+	private static boolean isValidHighFrequency(FrequencyDto frequency) {
+		if(frequency.getHours() != 0 || frequency.getMinutes() != 0 || frequency.getSeconds() < 0 ||
+		   frequency.getMilliseconds() < 0) {
+			return false;
+		}
+		long periodMillis = frequency.getSeconds() * 1000L + frequency.getMilliseconds();
+		return periodMillis >= 100 && periodMillis <= 1000;
+	}
+
 }
@@ -0,0 +1,152 @@
+package com.osotnikov.clockserver.subscription.delivery;
+
+import com.osotnikov.clockserver.config.DeliveryProperties;
+import com.osotnikov.clockserver.metrics.PostbackMetrics;
+import com.osotnikov.clockserver.subscription.payload.PostbackPayload;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Queues the due postbacks by subscriber host (host and port) and lets at most the host's concurrency cap of them
+ * through to the delegate at a time, the rest wait in the queue of their host. With the cap at or below the size of
+ * the host's connection pool every postback that is let through finds a warm pooled connection instead of opening
+ * one or waiting for one, and a host with a lot of subscriptions only ever holds its own share of the in-flight slots
+ * and connections while the postbacks of the other hosts go past its queue.
+ *
+ * Queues are created with the first postback to a host and dropped once they are empty and have nothing in flight.
+ * */
+@Slf4j
+public class HostAffinePostbackDeliveryService implements PostbackDeliveryService, DisposableBean {
+
+	private static final CompletableFuture<Boolean> REJECTED = CompletableFuture.completedFuture(false);
+
+	private final PostbackDeliveryService delegate;
+	private final DeliveryProperties.HostQueues hostQueues;
+	private final DeliveryProperties.Http http;
+	private final PostbackMetrics postbackMetrics;
+	private final ConcurrentMap<String, HostQueue> queuesByHost = new ConcurrentHashMap<>();
+
+	public HostAffinePostbackDeliveryService(PostbackDeliveryService delegate, DeliveryProperties deliveryProperties,
+											 PostbackMetrics postbackMetrics) {
+		this.delegate = delegate;
+		this.hostQueues = deliveryProperties.getHostQueues();
+		this.http = deliveryProperties.getHttp();
+		this.postbackMetrics = postbackMetrics;
+	}
+
+	@Override
+	public CompletableFuture<Boolean> deliver(String postbackUrl, PostbackPayload payload) {
+		QueuedPostback postback = new QueuedPostback(postbackUrl, payload);
+		String host = PostbackHosts.hostOf(postbackUrl);
+		while (true) {
+			HostQueue hostQueue = queuesByHost.computeIfAbsent(host, this::newHostQueue);
+			synchronized (hostQueue) {
+				if (hostQueue.dropped) {
+					// emptied and dropped concurrently, the next computeIfAbsent creates a new one
+					continue;
+				}
+				if (hostQueue.waiting.size() >= hostQueues.getCapacityPerHost()) {
+					log.warn("Dropped postback to {}: queue of its host is full", postbackUrl);
+					postbackMetrics.rejected();
+					return REJECTED;
+				}
+				hostQueue.waiting.add(postback);
+			}
+			drain(hostQueue);
+			return postback.result;
+		}
+	}
+
+	/**
+	 * @return number of hosts that have postbacks waiting or in flight
+	 * */
+	public int hosts() {
+		return queuesByHost.size();
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (delegate instanceof DisposableBean) {
+			((DisposableBean) delegate).destroy();
+		}
+	}
+
+	/**
+	 * hostQueues.maxConcurrencyPerHost if set, otherwise the connection limit of the host's pool.
+	 * */
+	int concurrencyOf(String host) {
+		if (hostQueues.getMaxConcurrencyPerHost() > 0) {
+			return hostQueues.getMaxConcurrencyPerHost();
+		}
+		return http.getMaxConnectionsByHost().getOrDefault(host, http.getMaxConnectionsPerHost());
+	}
+
+	private HostQueue newHostQueue(String host) {
+		return new HostQueue(host, concurrencyOf(host));
+	}
+
+	private void drain(HostQueue hostQueue) {
+		while (true) {
+			QueuedPostback postback;
+			synchronized (hostQueue) {
+				if (hostQueue.inFlight >= hostQueue.concurrency) {
+					return;
+				}
+				postback = hostQueue.waiting.poll();
+				if (postback == null) {
+					if (hostQueue.inFlight == 0) {
+						hostQueue.dropped = true;
+						queuesByHost.remove(hostQueue.host, hostQueue);
+					}
+					return;
+				}
+				hostQueue.inFlight++;
+			}
+			CompletableFuture<Boolean> delivery = delegate.deliver(postback.postbackUrl, postback.payload);
+			// rejected or quarantined postbacks come back completed, this loop takes the next one instead of the
+			// callback so that draining a long queue of them does not recurse once per postback
+			boolean completedAlready = delivery.isDone();
+			delivery.whenComplete((success, e) -> {
+				synchronized (hostQueue) {
+					hostQueue.inFlight--;
+				}
+				postback.result.complete(Boolean.TRUE.equals(success));
+				if (!completedAlready) {
+					drain(hostQueue);
+				}
+			});
+		}
+	}
+
+	private static final class HostQueue {
+
+		private final String host;
+		private final int concurrency;
+		// all guarded by the queue itself
+		private final ArrayDeque<QueuedPostback> waiting = new ArrayDeque<>();
+		private int inFlight;
+		private boolean dropped;
+
+		HostQueue(String host, int concurrency) {
+			this.host = host;
+			this.concurrency = concurrency;
+		}
+	}
+
+	private static final class QueuedPostback {
+
+		private final String postbackUrl;
+		private final PostbackPayload payload;
+		private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+		QueuedPostback(String postbackUrl, PostbackPayload payload) {
+			this.postbackUrl = postbackUrl;
+			this.payload = payload;
+		}
+	}
+}
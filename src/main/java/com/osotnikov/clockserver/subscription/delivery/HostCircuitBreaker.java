@@ -0,0 +1,97 @@
+package com.osotnikov.clockserver.subscription.delivery;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of one subscriber host.
+ *
+ * CLOSED: postbacks go through, failureThreshold consecutive failures open the circuit.
+ * OPEN: postbacks are not sent at all until openDuration has passed.
+ * HALF_OPEN: a single probe postback is let through, its success closes the circuit, its failure opens it again.
+ * */
+public class HostCircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private static final Circuit CLOSED = new Circuit(State.CLOSED, 0);
+	private static final Circuit HALF_OPEN = new Circuit(State.HALF_OPEN, 0);
+
+	private final int failureThreshold;
+	private final long openNanos;
+	private final LongSupplier nanoClock;
+
+	// the state and the time it was opened at change together
+	private final AtomicReference<Circuit> circuit = new AtomicReference<>(CLOSED);
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+	public HostCircuitBreaker(int failureThreshold, long openNanos, LongSupplier nanoClock) {
+		this.failureThreshold = failureThreshold;
+		this.openNanos = openNanos;
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * @return true if a postback may be sent now, in HALF_OPEN only the caller that moved the circuit there gets true
+	 * */
+	public boolean tryAcquirePermission() {
+		Circuit current = circuit.get();
+		if (current.state == State.CLOSED) {
+			return true;
+		}
+		if (current.state == State.OPEN && nanoClock.getAsLong() - current.openedAtNanos >= openNanos) {
+			return circuit.compareAndSet(current, HALF_OPEN);
+		}
+		return false;
+	}
+
+	/**
+	 * Successes of postbacks that were sent before the circuit opened are ignored while it is open, only the probe of
+	 * HALF_OPEN closes it.
+	 * */
+	public void onSuccess() {
+		Circuit current = circuit.get();
+		if (current.state == State.CLOSED) {
+			consecutiveFailures.set(0);
+		} else if (current.state == State.HALF_OPEN && circuit.compareAndSet(current, CLOSED)) {
+			consecutiveFailures.set(0);
+		}
+	}
+
+	/**
+	 * Failures of postbacks that were sent before the circuit opened are ignored while it is open, they must not
+	 * put off its probe.
+	 * */
+	public void onFailure() {
+		Circuit current = circuit.get();
+		if (current.state == State.HALF_OPEN) {
+			open(current);
+		} else if (current.state == State.CLOSED && consecutiveFailures.incrementAndGet() >= failureThreshold) {
+			open(current);
+		}
+	}
+
+	public State getState() {
+		return circuit.get().state;
+	}
+
+	private void open(Circuit from) {
+		if (circuit.compareAndSet(from, new Circuit(State.OPEN, nanoClock.getAsLong()))) {
+			consecutiveFailures.set(0);
+		}
+	}
+
+	private static final class Circuit {
+
+		private final State state;
+		private final long openedAtNanos;
+
+		Circuit(State state, long openedAtNanos) {
+			this.state = state;
+			this.openedAtNanos = openedAtNanos;
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package com.osotnikov.clockserver.subscription.delivery;
+
+import com.osotnikov.clockserver.subscription.payload.PostbackPayload;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends the time to the subscribers, see DeliveryConfiguration for how the implementation is selected.
+ * */
+public interface PostbackDeliveryService {
+
+	/**
+	 * Does not wait for the postback to complete.
+	 * @return future that completes with true if the postback was successful, false if it failed or could not be
+	 * queued, it never completes exceptionally
+	 * */
+	CompletableFuture<Boolean> deliver(String postbackUrl, PostbackPayload payload);
+}
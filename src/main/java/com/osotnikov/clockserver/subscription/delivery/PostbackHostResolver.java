@@ -0,0 +1,282 @@
+package com.osotnikov.clockserver.subscription.delivery;
+
+import com.osotnikov.clockserver.config.DeliveryProperties;
+import io.netty.resolver.AddressResolver;
+import io.netty.resolver.AddressResolverGroup;
+import io.netty.resolver.InetNameResolver;
+import io.netty.resolver.InetSocketAddressResolver;
+import io.netty.util.NetUtil;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Promise;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Resolves the subscriber hosts of the postback http client through caches that are filled off the hot path:
+ * - a host is resolved on a resolver thread as soon as a subscription to it is scheduled, so its first tick finds it
+ *   resolved already
+ * - every dns.refreshInterval the hosts that were used since the previous refresh are re-resolved in the background,
+ *   a host that was not is re-resolved in the background on its next use. The cached addresses are served meanwhile
+ *   and are kept if the re-resolution fails, so a slow or flapping resolver never delays a postback
+ * - a host that does not resolve is remembered for dns.negativeTtl, connecting to it fails right away meanwhile
+ * - both caches are bounded, the least recently used hosts are evicted first
+ * Only a host that is neither cached nor being resolved, e.g. one that was evicted, waits for its resolution, and
+ * never on an event loop.
+ * */
+@Slf4j
+public class PostbackHostResolver implements DisposableBean {
+
+	private final DeliveryProperties.Dns dns;
+	private final HostLookup hostLookup;
+	private final ScheduledExecutorService resolver;
+	private final LongSupplier nanoClock;
+	// both in access order and guarded by themselves
+	private final Map<String, ResolvedHost> resolvedHosts;
+	private final Map<String, Long> unresolvableUntilNanos;
+	private final ConcurrentMap<String, CompletableFuture<InetAddress[]>> resolving = new ConcurrentHashMap<>();
+	private volatile long lastRefreshNanos;
+
+	public PostbackHostResolver(DeliveryProperties deliveryProperties) {
+		this(deliveryProperties, InetAddress::getAllByName,
+			Executors.newScheduledThreadPool(deliveryProperties.getDns().getResolverThreads(), runnable -> {
+				Thread thread = new Thread(runnable, "PostbackHostResolver");
+				thread.setDaemon(true);
+				return thread;
+			}), System::nanoTime);
+	}
+
+	PostbackHostResolver(DeliveryProperties deliveryProperties, HostLookup hostLookup,
+						 ScheduledExecutorService resolver, LongSupplier nanoClock) {
+		this.dns = deliveryProperties.getDns();
+		this.hostLookup = hostLookup;
+		this.resolver = resolver;
+		this.nanoClock = nanoClock;
+		this.resolvedHosts = leastRecentlyUsed(dns.getMaxHosts());
+		this.unresolvableUntilNanos = leastRecentlyUsed(dns.getMaxUnresolvableHosts());
+		this.lastRefreshNanos = nanoClock.getAsLong();
+		if (dns.isEnabled()) {
+			long refreshMillis = dns.getRefreshInterval().toMillis();
+			resolver.scheduleWithFixedDelay(this::refresh, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Starts resolving the host of the url in the background unless it is cached already.
+	 * */
+	public void prefetch(String postbackUrl) {
+		if (!dns.isEnabled()) {
+			return;
+		}
+		try {
+			String host = URI.create(postbackUrl).getHost();
+			if (host != null) {
+				resolve(host);
+			}
+		} catch (IllegalArgumentException e) {
+			// not a valid url, its postbacks fail anyway
+		}
+	}
+
+	/**
+	 * @return resolver group for {@link reactor.netty.http.client.HttpClient#resolver}, every resolution goes through
+	 * the caches
+	 * */
+	public AddressResolverGroup<InetSocketAddress> addressResolverGroup() {
+		return new AddressResolverGroup<InetSocketAddress>() {
+			@Override
+			protected AddressResolver<InetSocketAddress> newResolver(EventExecutor executor) {
+				return new InetSocketAddressResolver(executor, new CachedNameResolver(executor));
+			}
+		};
+	}
+
+	@Override
+	public void destroy() {
+		resolver.shutdownNow();
+	}
+
+	/**
+	 * @return the cached addresses of the host, or its resolution in progress
+	 * */
+	CompletableFuture<InetAddress[]> resolve(String host) {
+		InetAddress ipAddress = NetUtil.createInetAddressFromIpAddressString(host);
+		if (ipAddress != null) {
+			return CompletableFuture.completedFuture(new InetAddress[] {ipAddress});
+		}
+		long now = nanoClock.getAsLong();
+		ResolvedHost resolvedHost;
+		synchronized (resolvedHosts) {
+			resolvedHost = resolvedHosts.get(host);
+		}
+		if (resolvedHost != null) {
+			resolvedHost.lastUsedNanos = now;
+			if (now - resolvedHost.resolvedAtNanos >= dns.getRefreshInterval().toNanos()) {
+				resolveInBackground(host);
+			}
+			return CompletableFuture.completedFuture(resolvedHost.addresses);
+		}
+		Long unresolvableUntil;
+		synchronized (unresolvableUntilNanos) {
+			unresolvableUntil = unresolvableUntilNanos.get(host);
+		}
+		if (unresolvableUntil != null && now - unresolvableUntil < 0) {
+			CompletableFuture<InetAddress[]> unresolvable = new CompletableFuture<>();
+			unresolvable.completeExceptionally(new UnknownHostException(host + " did not resolve recently"));
+			return unresolvable;
+		}
+		return resolveInBackground(host);
+	}
+
+	/**
+	 * Re-resolves the cached hosts that were used since the previous refresh.
+	 * @return completes once all of them are re-resolved
+	 * */
+	CompletableFuture<Void> refresh() {
+		long refreshStart = nanoClock.getAsLong();
+		List<String> usedHosts = new ArrayList<>();
+		synchronized (resolvedHosts) {
+			for (Map.Entry<String, ResolvedHost> resolvedHost : resolvedHosts.entrySet()) {
+				if (resolvedHost.getValue().lastUsedNanos - lastRefreshNanos >= 0) {
+					usedHosts.add(resolvedHost.getKey());
+				}
+			}
+		}
+		lastRefreshNanos = refreshStart;
+		CompletableFuture<?>[] resolutions = new CompletableFuture<?>[usedHosts.size()];
+		for (int i = 0; i < resolutions.length; i++) {
+			resolutions[i] = resolveInBackground(usedHosts.get(i));
+		}
+		return CompletableFuture.allOf(resolutions);
+	}
+
+	private CompletableFuture<InetAddress[]> resolveInBackground(String host) {
+		return resolving.computeIfAbsent(host, h -> {
+			CompletableFuture<InetAddress[]> resolution = new CompletableFuture<>();
+			try {
+				resolver.execute(() -> lookUp(h, resolution));
+			} catch (RejectedExecutionException e) {
+				// shutting down
+				resolution.completeExceptionally(e);
+			}
+			return resolution;
+		});
+	}
+
+	private void lookUp(String host, CompletableFuture<InetAddress[]> resolution) {
+		InetAddress[] addresses = null;
+		Exception failure = null;
+		try {
+			addresses = hostLookup.lookUp(host);
+			long now = nanoClock.getAsLong();
+			synchronized (resolvedHosts) {
+				ResolvedHost previous = resolvedHosts.get(host);
+				resolvedHosts.put(host,
+					new ResolvedHost(addresses, now, previous != null ? previous.lastUsedNanos : now));
+			}
+			synchronized (unresolvableUntilNanos) {
+				unresolvableUntilNanos.remove(host);
+			}
+		} catch (UnknownHostException | RuntimeException e) {
+			ResolvedHost previous;
+			synchronized (resolvedHosts) {
+				previous = resolvedHosts.get(host);
+			}
+			if (previous != null) {
+				log.debug("Could not re-resolve {}, keeping its cached addresses", host, e);
+				addresses = previous.addresses;
+			} else {
+				synchronized (unresolvableUntilNanos) {
+					unresolvableUntilNanos.put(host, nanoClock.getAsLong() + dns.getNegativeTtl().toNanos());
+				}
+				failure = e;
+			}
+		}
+		// no longer in progress once it completes, so that whoever sees it completed can start the next one
+		resolving.remove(host, resolution);
+		if (failure != null) {
+			resolution.completeExceptionally(failure);
+		} else {
+			resolution.complete(addresses);
+		}
+	}
+
+	private static <V> Map<String, V> leastRecentlyUsed(int maxSize) {
+		return new LinkedHashMap<String, V>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Blocking lookup of all the addresses of a host, {@link InetAddress#getAllByName} unless tests replace it.
+	 * */
+	interface HostLookup {
+
+		InetAddress[] lookUp(String host) throws UnknownHostException;
+	}
+
+	private static final class ResolvedHost {
+
+		private final InetAddress[] addresses;
+		private final long resolvedAtNanos;
+		private volatile long lastUsedNanos;
+
+		ResolvedHost(InetAddress[] addresses, long resolvedAtNanos, long lastUsedNanos) {
+			this.addresses = addresses;
+			this.resolvedAtNanos = resolvedAtNanos;
+			this.lastUsedNanos = lastUsedNanos;
+		}
+	}
+
+	/**
+	 * Completes netty's promises from the caches, the promise listeners run on the event loop of the connection.
+	 * */
+	private final class CachedNameResolver extends InetNameResolver {
+
+		CachedNameResolver(EventExecutor executor) {
+			super(executor);
+		}
+
+		@Override
+		protected void doResolve(String inetHost, Promise<InetAddress> promise) {
+			resolve(inetHost).whenComplete((addresses, e) -> {
+				if (e != null) {
+					promise.tryFailure(e);
+				} else {
+					promise.trySuccess(addresses[0]);
+				}
+			});
+		}
+
+		@Override
+		protected void doResolveAll(String inetHost, Promise<List<InetAddress>> promise) {
+			resolve(inetHost).whenComplete((addresses, e) -> {
+				if (e != null) {
+					promise.tryFailure(e);
+				} else {
+					promise.trySuccess(Arrays.asList(addresses));
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.osotnikov.clockserver.subscription.delivery;
+
+import java.net.URI;
+import java.util.Locale;
+
+public final class PostbackHosts {
+
+	private PostbackHosts() {
+	}
+
+	/**
+	 * @return host:port of the url, the key that connection pools, circuit breakers and metrics are kept by, the url
+	 * itself if it has no host
+	 * */
+	public static String hostOf(String postbackUrl) {
+		try {
+			URI uri = URI.create(postbackUrl);
+			if (uri.getHost() == null) {
+				return postbackUrl;
+			}
+			int port = uri.getPort() >= 0 ? uri.getPort() : "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+			return uri.getHost().toLowerCase(Locale.ROOT) + ":" + port;
+		} catch (IllegalArgumentException e) {
+			return postbackUrl;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.osotnikov.clockserver.subscription.delivery;
+
+import com.osotnikov.clockserver.config.DeliveryProperties;
+import com.osotnikov.clockserver.metrics.PostbackMetrics;
+import com.osotnikov.clockserver.subscription.payload.PostbackPayload;
+import com.osotnikov.clockserver.subscription.service.model.rest.client.dto.request.CurrentTimeDto;
+import com.osotnikov.rest.client.RestClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking delivery of postbacks. Submitting only enqueues the postback, a single reactive pipeline sends them
+ * with at most clockserver.delivery.max-in-flight requests awaiting a response, so the threads that submit (the
+ * scheduler threads) are never held by a slow subscriber.
+ * */
+@Slf4j
+public class ReactivePostbackDeliveryService implements PostbackDeliveryService, DisposableBean {
+
+	private static final CompletableFuture<Boolean> REJECTED = CompletableFuture.completedFuture(false);
+
+	private final Sinks.Many<PostbackDelivery> deliveries;
+	private final Disposable pipeline;
+	private final PostbackMetrics postbackMetrics;
+
+	public ReactivePostbackDeliveryService(RestClient<CurrentTimeDto> restClient, DeliveryProperties deliveryProperties,
+										   PostbackMetrics postbackMetrics) {
+		this(restClient, deliveryProperties.getMaxInFlight(), deliveryProperties.getQueueCapacity(),
+			PostbackMetrics.STANDARD_LANE, postbackMetrics);
+	}
+
+	/**
+	 * @param lane name of the delivery lane in the metrics, every lane has its own queue and in-flight cap
+	 * */
+	public ReactivePostbackDeliveryService(RestClient<CurrentTimeDto> restClient, int maxInFlight, int queueCapacity,
+										   String lane, PostbackMetrics postbackMetrics) {
+		this.postbackMetrics = postbackMetrics;
+		Queue<PostbackDelivery> queue = Queues.<PostbackDelivery>get(queueCapacity).get();
+		postbackMetrics.gaugeQueueDepth(lane, queue);
+		this.deliveries = Sinks.many().unicast().onBackpressureBuffer(queue);
+		this.pipeline = deliveries.asFlux()
+			.flatMap(delivery -> Mono.defer(() -> {
+					long startNanos = postbackMetrics.start();
+					return restClient.postEncodedForOutcome(delivery.postbackUrl, delivery.payload.getContentType(),
+							delivery.payload::toDataBuffer)
+						.doOnNext(outcome -> {
+							postbackMetrics.stop(delivery.postbackUrl, startNanos, outcome);
+							delivery.result.complete(outcome.isSuccess());
+						});
+				}),
+				maxInFlight)
+			.subscribe();
+	}
+
+	/**
+	 * Never blocks, the returned future completes on the http client's event loop.
+	 * */
+	@Override
+	public CompletableFuture<Boolean> deliver(String postbackUrl, PostbackPayload payload) {
+		PostbackDelivery delivery = new PostbackDelivery(postbackUrl, payload);
+		while (true) {
+			Sinks.EmitResult emitResult = deliveries.tryEmitNext(delivery);
+			if (emitResult.isSuccess()) {
+				return delivery.result;
+			}
+			if (emitResult != Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+				// queue is full or the pipeline has been shut down
+				log.warn("Dropped postback to {}: {}", postbackUrl, emitResult);
+				postbackMetrics.rejected();
+				return REJECTED;
+			}
+			// another thread is emitting at this very moment, it only takes a queue offer so just retry
+			Thread.onSpinWait();
+		}
+	}
+
+	@Override
+	public void destroy() {
+		deliveries.tryEmitComplete();
+		pipeline.dispose();
+	}
+
+	private static final class PostbackDelivery {
+
+		private final String postbackUrl;
+		private final PostbackPayload payload;
+		private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+		PostbackDelivery(String postbackUrl, PostbackPayload payload) {
+			this.postbackUrl = postbackUrl;
+			this.payload = payload;
+		}
+	}
+}
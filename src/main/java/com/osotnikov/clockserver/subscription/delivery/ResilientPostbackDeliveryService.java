@@ -0,0 +1,142 @@
+package com.osotnikov.clockserver.subscription.delivery;
+
+import com.osotnikov.clockserver.config.DeliveryProperties;
+import com.osotnikov.clockserver.metrics.PostbackMetrics;
+import com.osotnikov.clockserver.subscription.payload.PostbackPayload;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries failed postbacks with exponential backoff and jitter and keeps a {@link HostCircuitBreaker} per subscriber
+ * host. While the circuit of a host is open its postbacks are answered with false right away, so the subscriptions
+ * of that host stay scheduled (quarantined) but do not hold connections, timeouts or in-flight slots that the
+ * healthy subscribers need.
+ *
+ * The returned future only completes after the last attempt, so retries count towards the in-flight cap of the
+ * subscription.
+ * */
+@Slf4j
+public class ResilientPostbackDeliveryService implements PostbackDeliveryService, DisposableBean {
+
+	private static final CompletableFuture<Boolean> QUARANTINED = CompletableFuture.completedFuture(false);
+
+	private final PostbackDeliveryService delegate;
+	private final DeliveryProperties.Retry retry;
+	private final DeliveryProperties.CircuitBreaker circuitBreaker;
+	private final ScheduledExecutorService retryScheduler;
+	private final PostbackMetrics postbackMetrics;
+	private final ConcurrentMap<String, HostCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+	public ResilientPostbackDeliveryService(PostbackDeliveryService delegate, DeliveryProperties deliveryProperties,
+											PostbackMetrics postbackMetrics) {
+		this(delegate, deliveryProperties, postbackMetrics, Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "PostbackRetry");
+			thread.setDaemon(true);
+			return thread;
+		}));
+	}
+
+	ResilientPostbackDeliveryService(PostbackDeliveryService delegate, DeliveryProperties deliveryProperties,
+									 PostbackMetrics postbackMetrics, ScheduledExecutorService retryScheduler) {
+		this.delegate = delegate;
+		this.retry = deliveryProperties.getRetry();
+		this.circuitBreaker = deliveryProperties.getCircuitBreaker();
+		this.postbackMetrics = postbackMetrics;
+		this.retryScheduler = retryScheduler;
+	}
+
+	@Override
+	public CompletableFuture<Boolean> deliver(String postbackUrl, PostbackPayload payload) {
+		HostCircuitBreaker hostCircuitBreaker = circuitBreakerOf(postbackUrl);
+		if (hostCircuitBreaker != null && !hostCircuitBreaker.tryAcquirePermission()) {
+			log.debug("Skipped postback to {}, circuit of its host is open.", postbackUrl);
+			postbackMetrics.quarantined();
+			return QUARANTINED;
+		}
+		CompletableFuture<Boolean> result = new CompletableFuture<>();
+		attempt(postbackUrl, payload, hostCircuitBreaker, 1, result);
+		return result;
+	}
+
+	/**
+	 * @return state of the circuit of the url's host, CLOSED for hosts that have not been posted to yet
+	 * */
+	public HostCircuitBreaker.State getCircuitState(String postbackUrl) {
+		HostCircuitBreaker hostCircuitBreaker = circuitBreakers.get(PostbackHosts.hostOf(postbackUrl));
+		return hostCircuitBreaker == null ? HostCircuitBreaker.State.CLOSED : hostCircuitBreaker.getState();
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		retryScheduler.shutdownNow();
+		if (delegate instanceof DisposableBean) {
+			((DisposableBean) delegate).destroy();
+		}
+	}
+
+	private void attempt(String postbackUrl, PostbackPayload payload, HostCircuitBreaker hostCircuitBreaker,
+						 int attempt, CompletableFuture<Boolean> result) {
+		delegate.deliver(postbackUrl, payload).whenComplete((success, e) -> {
+			if (Boolean.TRUE.equals(success)) {
+				if (hostCircuitBreaker != null) {
+					hostCircuitBreaker.onSuccess();
+				}
+				result.complete(true);
+				return;
+			}
+			if (hostCircuitBreaker != null) {
+				hostCircuitBreaker.onFailure();
+				if (hostCircuitBreaker.getState() != HostCircuitBreaker.State.CLOSED) {
+					// the host is quarantined, retrying now would only probe it early
+					result.complete(false);
+					return;
+				}
+			}
+			if (attempt >= retry.getMaxAttempts()) {
+				result.complete(false);
+				return;
+			}
+			try {
+				retryScheduler.schedule(() -> {
+					if (hostCircuitBreaker != null && hostCircuitBreaker.getState() != HostCircuitBreaker.State.CLOSED) {
+						// other postbacks to the host opened the circuit in the meantime
+						result.complete(false);
+					} else {
+						postbackMetrics.retried();
+						attempt(postbackUrl, payload, hostCircuitBreaker, attempt + 1, result);
+					}
+				}, backoffNanos(attempt), TimeUnit.NANOSECONDS);
+			} catch (RejectedExecutionException rejected) {
+				// shutting down
+				result.complete(false);
+			}
+		});
+	}
+
+	/**
+	 * Exponential backoff capped at maxBackoff, minus a random part of up to jitter times the backoff so that the
+	 * retries of the many subscriptions of a host do not arrive all at once.
+	 * */
+	long backoffNanos(int attempt) {
+		double backoff = retry.getInitialBackoff().toNanos() * Math.pow(retry.getMultiplier(), attempt - 1);
+		backoff = Math.min(backoff, retry.getMaxBackoff().toNanos());
+		return (long) (backoff * (1 - retry.getJitter() * ThreadLocalRandom.current().nextDouble()));
+	}
+
+	private HostCircuitBreaker circuitBreakerOf(String postbackUrl) {
+		if (!circuitBreaker.isEnabled()) {
+			return null;
+		}
+		return circuitBreakers.computeIfAbsent(PostbackHosts.hostOf(postbackUrl), host -> new HostCircuitBreaker(
+			circuitBreaker.getFailureThreshold(), circuitBreaker.getOpenDuration().toNanos(), System::nanoTime));
+	}
+}
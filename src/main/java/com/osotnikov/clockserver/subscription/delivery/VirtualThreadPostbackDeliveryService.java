@@ -0,0 +1,85 @@
+package com.osotnikov.clockserver.subscription.delivery;
+
+import com.osotnikov.clockserver.metrics.PostbackMetrics;
+import com.osotnikov.clockserver.subscription.payload.PostbackPayload;
+import com.osotnikov.clockserver.subscription.service.model.rest.client.dto.request.CurrentTimeDto;
+import com.osotnikov.rest.client.PostOutcome;
+import com.osotnikov.rest.client.RestClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs every postback on its own (virtual) thread using the plain blocking rest client, blocking a virtual thread
+ * only parks it so tens of thousands of postbacks can be awaiting a response without holding platform threads.
+ * The number of postbacks awaiting a response is still capped by clockserver.delivery.max-in-flight.
+ * */
+@Slf4j
+public class VirtualThreadPostbackDeliveryService implements PostbackDeliveryService, DisposableBean {
+
+	private final RestClient<CurrentTimeDto> restClient;
+	private final ExecutorService executor;
+	private final Semaphore inFlight;
+	private final PostbackMetrics postbackMetrics;
+
+	public VirtualThreadPostbackDeliveryService(RestClient<CurrentTimeDto> restClient, ExecutorService executor,
+												int maxInFlight, PostbackMetrics postbackMetrics) {
+		this.restClient = restClient;
+		this.executor = executor;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.postbackMetrics = postbackMetrics;
+	}
+
+	/**
+	 * The project is compiled for java 11, therefore the virtual thread api is looked up reflectively.
+	 * @return executor that starts a new virtual thread per task, empty if the running JVM does not support them
+	 * */
+	public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+		try {
+			return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+				.invoke(null));
+		} catch (NoSuchMethodException e) {
+			return Optional.empty();
+		} catch (InvocationTargetException | IllegalAccessException e) {
+			// e.g. preview feature not enabled on java 19 and 20
+			log.debug("Virtual threads are not usable.", e);
+			return Optional.empty();
+		}
+	}
+
+	@Override
+	public CompletableFuture<Boolean> deliver(String postbackUrl, PostbackPayload payload) {
+		try {
+			return CompletableFuture.supplyAsync(() -> {
+				inFlight.acquireUninterruptibly();
+				long startNanos = postbackMetrics.start();
+				PostOutcome outcome = PostOutcome.FAILURE;
+				try {
+					outcome = restClient.postEncodedForOutcome(postbackUrl, payload.getContentType(),
+						payload::toDataBuffer).block();
+					return outcome.isSuccess();
+				} finally {
+					postbackMetrics.stop(postbackUrl, startNanos, outcome);
+					inFlight.release();
+				}
+			}, executor);
+		} catch (RejectedExecutionException e) {
+			// executor has been shut down
+			log.warn("Dropped postback to {}: {}", postbackUrl, e.getMessage());
+			postbackMetrics.rejected();
+			return CompletableFuture.completedFuture(false);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,279 @@
+package com.osotnikov.clockserver.subscription.payload;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.osotnikov.clockserver.config.PayloadProperties;
+import com.osotnikov.clockserver.subscription.service.model.rest.client.dto.request.CurrentTimeDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Every combination of format and encoding is encoded once per unit of the format's resolution (a second for LEGACY,
+ * a millisecond for the ISO and EPOCH_MILLIS formats, a nanosecond for EPOCH_NANOS) and the payload is shared by
+ * every postback of that format and encoding within it instead of being encoded per postback. Within a second the ISO
+ * formats only differ in their milliseconds, so they are formatted once per second and the milliseconds are written
+ * into a copy of that, the epoch formats are written digit by digit. Nothing but the payload itself is allocated for
+ * a new one.
+ *
+ * Only LEGACY payloads are kept in direct buffers. The finer formats get a new payload whenever their key changes,
+ * which is every postback when the engine does not share one timestamp per tick, e.g. the task-scheduler engine, and
+ * a direct buffer per postback would cost far more than the heap copy it saves.
+ * */
+@Component
+public class CurrentTimePayloadCache {
+
+	private static final byte[] JSON_PREFIX = "{\"currentTime\":".getBytes(StandardCharsets.US_ASCII);
+	// map of one pair, text string of 11 bytes "currentTime"
+	private static final byte[] CBOR_PREFIX =
+		{(byte) 0xa1, 0x6b, 'c', 'u', 'r', 'r', 'e', 'n', 't', 'T', 'i', 'm', 'e'};
+	private static final int CBOR_UNSIGNED = 0;
+	private static final int CBOR_TEXT = 3;
+	private static final DateTimeFormatter ISO_8601_UTC = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSS'Z'")
+		.withZone(ZoneOffset.UTC);
+	private static final int FORMATS = TimeFormat.values().length;
+	private static final int SLOTS = FORMATS * PayloadEncoding.values().length;
+
+	private final ObjectMapper objectMapper;
+	private final DateTimeFormatter iso8601Offset;
+	// latest payload of every format and encoding, by slot
+	private final AtomicReferenceArray<CachedPayload> cachedPayloads = new AtomicReferenceArray<>(SLOTS);
+	// latest second of the ISO formats in every encoding, by slot
+	private final AtomicReferenceArray<SecondTemplate> secondTemplates = new AtomicReferenceArray<>(SLOTS);
+
+	public CurrentTimePayloadCache(ObjectMapper objectMapper) {
+		this(objectMapper, new PayloadProperties());
+	}
+
+	@Autowired
+	public CurrentTimePayloadCache(ObjectMapper objectMapper, PayloadProperties payloadProperties) {
+		this.objectMapper = objectMapper;
+		this.iso8601Offset = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSXXX")
+			.withZone(payloadProperties.getZone());
+	}
+
+	/**
+	 * @return the current time in the LEGACY format as JSON
+	 * */
+	public PostbackPayload current() {
+		return current(TimeFormat.LEGACY, PayloadEncoding.JSON);
+	}
+
+	public PostbackPayload current(TimeFormat timeFormat, PayloadEncoding encoding) {
+		return at(Instant.now(), timeFormat, encoding);
+	}
+
+	/**
+	 * @return the time in the format and encoding, truncated to the resolution of the format
+	 * */
+	public PostbackPayload at(Instant time, TimeFormat timeFormat, PayloadEncoding encoding) {
+		long key = keyOf(time, timeFormat);
+		int slot = encoding.ordinal() * FORMATS + timeFormat.ordinal();
+		CachedPayload cached = cachedPayloads.get(slot);
+		if (cached != null && cached.key == key) {
+			return cached.payload;
+		}
+		// racing threads might both encode the same time, that is cheaper than synchronizing every call
+		PostbackPayload payload = new PostbackPayload(encoding.getContentType(),
+			encode(time, timeFormat, encoding, slot), timeFormat == TimeFormat.LEGACY);
+		if (cached == null || key > cached.key) {
+			cachedPayloads.set(slot, new CachedPayload(key, payload));
+		}
+		return payload;
+	}
+
+	PostbackPayload at(long epochMillis) {
+		return at(Instant.ofEpochMilli(epochMillis), TimeFormat.LEGACY, PayloadEncoding.JSON);
+	}
+
+	private static long keyOf(Instant time, TimeFormat timeFormat) {
+		switch (timeFormat) {
+			case LEGACY:
+				return time.getEpochSecond();
+			case EPOCH_NANOS:
+				return time.getEpochSecond() * 1_000_000_000L + time.getNano();
+			default:
+				return time.toEpochMilli();
+		}
+	}
+
+	private byte[] encode(Instant time, TimeFormat timeFormat, PayloadEncoding encoding, int slot) {
+		if (encoding == PayloadEncoding.BINARY) {
+			return encodeBinary(timeFormat == TimeFormat.EPOCH_NANOS ? keyOf(time, timeFormat) :
+				timeFormat == TimeFormat.LEGACY ? time.getEpochSecond() * 1000 : time.toEpochMilli());
+		}
+		switch (timeFormat) {
+			case ISO_8601_UTC:
+				return encodeIso8601(time, slot, ISO_8601_UTC, encoding);
+			case ISO_8601_OFFSET:
+				return encodeIso8601(time, slot, iso8601Offset, encoding);
+			case EPOCH_MILLIS:
+			case EPOCH_NANOS:
+				return encodeNumber(keyOf(time, timeFormat), encoding);
+			case LEGACY:
+			default:
+				String legacy = new Date(time.getEpochSecond() * 1000).toString();
+				return encoding == PayloadEncoding.JSON ? encode(new CurrentTimeDto(legacy)) :
+					encodeText(legacy.getBytes(StandardCharsets.UTF_8), encoding);
+		}
+	}
+
+	private byte[] encodeIso8601(Instant time, int slot, DateTimeFormatter formatter, PayloadEncoding encoding) {
+		long epochSecond = time.getEpochSecond();
+		SecondTemplate template = secondTemplates.get(slot);
+		if (template == null || template.epochSecond != epochSecond) {
+			String second = formatter.format(Instant.ofEpochSecond(epochSecond));
+			byte[] content = encodeText(second.getBytes(StandardCharsets.US_ASCII), encoding);
+			template = new SecondTemplate(epochSecond, content,
+				textOffset(second.length(), encoding) + second.indexOf('.') + 1);
+			secondTemplates.set(slot, template);
+		}
+		byte[] content = template.content.clone();
+		int millis = time.getNano() / 1_000_000;
+		content[template.millisOffset] = (byte) ('0' + millis / 100);
+		content[template.millisOffset + 1] = (byte) ('0' + millis / 10 % 10);
+		content[template.millisOffset + 2] = (byte) ('0' + millis % 10);
+		return content;
+	}
+
+	/**
+	 * @return the text as a string of the encoding, BINARY has no text
+	 * */
+	private static byte[] encodeText(byte[] text, PayloadEncoding encoding) {
+		int offset = textOffset(text.length, encoding);
+		byte[] content = new byte[offset + text.length + (encoding == PayloadEncoding.JSON ? 2 : 0)];
+		switch (encoding) {
+			case JSON:
+				System.arraycopy(JSON_PREFIX, 0, content, 0, JSON_PREFIX.length);
+				content[JSON_PREFIX.length] = '"';
+				content[content.length - 2] = '"';
+				content[content.length - 1] = '}';
+				break;
+			case CBOR:
+				System.arraycopy(CBOR_PREFIX, 0, content, 0, CBOR_PREFIX.length);
+				writeCborHead(content, CBOR_PREFIX.length, CBOR_TEXT, text.length);
+				break;
+			default:
+				break;
+		}
+		System.arraycopy(text, 0, content, offset, text.length);
+		return content;
+	}
+
+	private static int textOffset(int textLength, PayloadEncoding encoding) {
+		switch (encoding) {
+			case JSON:
+				return JSON_PREFIX.length + 1;
+			case CBOR:
+				return CBOR_PREFIX.length + cborHeadLength(textLength);
+			default:
+				return 0;
+		}
+	}
+
+	/**
+	 * @param value not negative, i.e. a time after the epoch
+	 * */
+	private static byte[] encodeNumber(long value, PayloadEncoding encoding) {
+		if (encoding == PayloadEncoding.CBOR) {
+			byte[] content = new byte[CBOR_PREFIX.length + cborHeadLength(value)];
+			System.arraycopy(CBOR_PREFIX, 0, content, 0, CBOR_PREFIX.length);
+			writeCborHead(content, CBOR_PREFIX.length, CBOR_UNSIGNED, value);
+			return content;
+		}
+		int digits = 1;
+		for (long rest = value / 10; rest > 0; rest /= 10) {
+			digits++;
+		}
+		boolean json = encoding == PayloadEncoding.JSON;
+		int offset = json ? JSON_PREFIX.length : 0;
+		byte[] content = new byte[offset + digits + (json ? 1 : 0)];
+		if (json) {
+			System.arraycopy(JSON_PREFIX, 0, content, 0, JSON_PREFIX.length);
+			content[content.length - 1] = '}';
+		}
+		for (int position = offset + digits - 1; position >= offset; position--) {
+			content[position] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		return content;
+	}
+
+	private static byte[] encodeBinary(long value) {
+		byte[] content = new byte[8];
+		for (int i = 7; i >= 0; i--) {
+			content[i] = (byte) value;
+			value >>>= 8;
+		}
+		return content;
+	}
+
+	/**
+	 * Shortest head of a CBOR data item, as CBOR's preferred serialization asks for.
+	 * */
+	private static int cborHeadLength(long argument) {
+		if (argument < 24) {
+			return 1;
+		}
+		if (argument < 0x100) {
+			return 2;
+		}
+		if (argument < 0x10000) {
+			return 3;
+		}
+		return argument < 0x100000000L ? 5 : 9;
+	}
+
+	private static void writeCborHead(byte[] content, int offset, int majorType, long argument) {
+		int length = cborHeadLength(argument);
+		int additionalInformation = length == 1 ? (int) argument : length == 2 ? 24 : length == 3 ? 25 :
+			length == 5 ? 26 : 27;
+		content[offset] = (byte) (majorType << 5 | additionalInformation);
+		for (int i = offset + length - 1; i > offset; i--) {
+			content[i] = (byte) argument;
+			argument >>>= 8;
+		}
+	}
+
+	private byte[] encode(CurrentTimeDto currentTimeDto) {
+		try {
+			return objectMapper.writeValueAsBytes(currentTimeDto);
+		} catch (JsonProcessingException e) {
+			// a dto with a single string field can always be serialized
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static final class CachedPayload {
+
+		private final long key;
+		private final PostbackPayload payload;
+
+		CachedPayload(long key, PostbackPayload payload) {
+			this.key = key;
+			this.payload = payload;
+		}
+	}
+
+	/**
+	 * Encoded payload of the first millisecond of a second.
+	 * */
+	private static final class SecondTemplate {
+
+		private final long epochSecond;
+		private final byte[] content;
+		private final int millisOffset;
+
+		SecondTemplate(long epochSecond, byte[] content, int millisOffset) {
+			this.epochSecond = epochSecond;
+			this.content = content;
+			this.millisOffset = millisOffset;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package com.osotnikov.clockserver.subscription.payload;
+
+import org.springframework.http.MediaType;
+
+/**
+ * How the postback body is encoded, the time in it is written in the subscription's {@link TimeFormat}.
+ * */
+public enum PayloadEncoding {
+	/**
+	 * {"currentTime": ...}, what the server has always sent.
+	 * */
+	JSON(MediaType.APPLICATION_JSON),
+	/**
+	 * The same map as JSON in CBOR (RFC 8949), the time is a text string or, for the epoch formats, an unsigned
+	 * integer.
+	 * */
+	CBOR(MediaType.APPLICATION_CBOR),
+	/**
+	 * Only the time, as it is written in JSON but without the quotes.
+	 * */
+	TEXT(MediaType.TEXT_PLAIN),
+	/**
+	 * The time as 8 bytes, a big-endian long of nanoseconds since the epoch for EPOCH_NANOS and of milliseconds since
+	 * the epoch for every other format.
+	 * */
+	BINARY(MediaType.APPLICATION_OCTET_STREAM);
+
+	private final MediaType contentType;
+
+	PayloadEncoding(MediaType contentType) {
+		this.contentType = contentType;
+	}
+
+	public MediaType getContentType() {
+		return contentType;
+	}
+}
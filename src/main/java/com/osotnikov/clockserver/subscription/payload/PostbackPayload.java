@@ -0,0 +1,61 @@
+package com.osotnikov.clockserver.subscription.payload;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Already encoded postback body that is shared by every postback of a tick. The content is kept in a read-only buffer,
+ * so each postback only gets its own view of it. A direct buffer is written to the socket without being copied, but
+ * is expensive to allocate, so it only pays off for payloads that are shared by many postbacks.
+ * */
+public final class PostbackPayload {
+
+	private final MediaType contentType;
+	private final ByteBuffer content;
+
+	public PostbackPayload(MediaType contentType, byte[] content) {
+		this(contentType, content, true);
+	}
+
+	/**
+	 * @param direct false to keep the content on the heap, for payloads that are used by few postbacks
+	 * */
+	public PostbackPayload(MediaType contentType, byte[] content, boolean direct) {
+		this.contentType = contentType;
+		if (direct) {
+			ByteBuffer directContent = ByteBuffer.allocateDirect(content.length);
+			directContent.put(content).flip();
+			this.content = directContent.asReadOnlyBuffer();
+		} else {
+			this.content = ByteBuffer.wrap(content).asReadOnlyBuffer();
+		}
+	}
+
+	public MediaType getContentType() {
+		return contentType;
+	}
+
+	boolean isDirect() {
+		return content.isDirect();
+	}
+
+	/**
+	 * @return copy of the content, meant for logging and tests
+	 * */
+	public byte[] getContent() {
+		ByteBuffer view = content.duplicate();
+		byte[] copy = new byte[view.remaining()];
+		view.get(copy);
+		return copy;
+	}
+
+	/**
+	 * @return new view of the shared content, the content itself is not copied
+	 * */
+	public DataBuffer toDataBuffer() {
+		return DefaultDataBufferFactory.sharedInstance.wrap(content.duplicate());
+	}
+}
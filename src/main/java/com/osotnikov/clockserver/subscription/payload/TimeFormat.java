@@ -0,0 +1,28 @@
+package com.osotnikov.clockserver.subscription.payload;
+
+/**
+ * How the current time is written in a postback, how that is put on the wire is up to the {@link PayloadEncoding}.
+ * */
+public enum TimeFormat {
+	/**
+	 * java.util.Date#toString in the server's default time zone, e.g. "Sun Jun 05 16:30:06 UTC 2022", one second
+	 * resolution. What the server has always sent.
+	 * */
+	LEGACY,
+	/**
+	 * ISO-8601 in UTC with milliseconds, e.g. "2022-06-05T16:30:06.123Z".
+	 * */
+	ISO_8601_UTC,
+	/**
+	 * ISO-8601 with milliseconds and the offset of clockserver.payload.zone, e.g. "2022-06-05T18:30:06.123+02:00".
+	 * */
+	ISO_8601_OFFSET,
+	/**
+	 * Milliseconds since the epoch as a number, e.g. 1654446606123.
+	 * */
+	EPOCH_MILLIS,
+	/**
+	 * Nanoseconds since the epoch as a number, e.g. 1654446606123456000, with the precision of the system clock.
+	 * */
+	EPOCH_NANOS
+}
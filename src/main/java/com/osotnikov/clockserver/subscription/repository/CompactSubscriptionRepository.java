@@ -0,0 +1,473 @@
+package com.osotnikov.clockserver.subscription.repository;
+
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
+import com.osotnikov.clockserver.subscription.service.model.Subscription;
+import com.osotnikov.clockserver.subscription.service.model.SubscriptionState;
+import com.osotnikov.scheduling.MissedTickPolicy;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Subscription repository for millions of subscriptions, it keeps no objects per subscription apart from a reference
+ * to its scheduled future. Every subscription gets a slot in a set of primitive arrays:
+ * - the postback url is split into scheme://authority, which is dictionary encoded since most subscribers register
+ *   many urls on the same host, and the rest which is appended as utf-8 bytes to one shared byte array that is
+ *   compacted once half of it belongs to deleted subscriptions
+ * - the frequency is kept as one int of milliseconds, the phase anchor as long epoch millis, the time format, the
+ *   encoding and the state as a byte each and the version as a long
+ * - an open addressing index (linear probing, deletes shift entries back so there are no tombstones) maps the url
+ *   hash to the slot
+ * Gets return a new {@link Subscription} every time, the frequency of which is normalized, e.g. 90 seconds come back
+ * as 1 minute and 30 seconds.
+ *
+ * Reads share a read lock and changes take the write lock, changes only happen on api calls so they are rare
+ * compared to everything else the server does.
+ *
+ * This only shrinks what the repository keeps. The schedule of every subscription is still its own set of objects
+ * owned by the scheduler: the wheel timeout (the future kept here) and the {@code TimePostbackRunnable} with its url
+ * string and in flight counter. Scheduling by slot index would need both scheduler engines and the high frequency
+ * tier to fire handles instead of runnables, which they do not.
+ * */
+public class CompactSubscriptionRepository implements SubscriptionRepository {
+
+	private static final int INITIAL_CAPACITY = 1024; // power of two
+	private static final float MAX_LOAD = 0.7f;
+	private static final int FOR_EACH_CHUNK = 1024;
+	private static final int FREE = -1;
+	private static final byte NO_POLICY = -1;
+	private static final long NO_ANCHOR = Long.MIN_VALUE;
+	private static final MissedTickPolicy[] POLICIES = MissedTickPolicy.values();
+	private static final SubscriptionState[] STATES = SubscriptionState.values();
+	private static final TimeFormat[] TIME_FORMATS = TimeFormat.values();
+	private static final PayloadEncoding[] ENCODINGS = PayloadEncoding.values();
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// host dictionary, hosts are never removed from it
+	private final Map<String, Integer> hostIds = new HashMap<>();
+	private String[] hosts = new String[16];
+
+	// slot + 1 of every subscription at the position of its hash, 0 if the position is empty
+	private int[] index = new int[INITIAL_CAPACITY];
+
+	// one element per slot, a slot is free if its path length is FREE
+	private int[] hashes = new int[INITIAL_CAPACITY];
+	private int[] slotHosts = new int[INITIAL_CAPACITY];
+	private int[] pathOffsets = new int[INITIAL_CAPACITY];
+	private int[] pathLengths = new int[INITIAL_CAPACITY];
+	private int[] periodMillis = new int[INITIAL_CAPACITY];
+	private byte[] missedTickPolicies = new byte[INITIAL_CAPACITY];
+	private int[] maxInFlights = new int[INITIAL_CAPACITY];
+	private byte[] timeFormats = new byte[INITIAL_CAPACITY];
+	private byte[] encodings = new byte[INITIAL_CAPACITY];
+	private long[] phaseAnchors = new long[INITIAL_CAPACITY];
+	private byte[] states = new byte[INITIAL_CAPACITY];
+	private long[] versions = new long[INITIAL_CAPACITY];
+	private ScheduledFuture[] scheduledFutures = new ScheduledFuture[INITIAL_CAPACITY];
+
+	private byte[] pathBytes = new byte[INITIAL_CAPACITY * 32];
+	private int pathBytesEnd;
+	private int deletedPathBytes;
+
+	private int[] freeSlots = new int[16];
+	private int freeSlotCount;
+	private int usedSlots; // slots above this have never been used
+	private int size;
+	private long lastVersion;
+
+	@Override
+	public Subscription storeNew(Subscription subscription) {
+		String postbackUrl = subscription.getPostbackUrl();
+		int hostEnd = hostEnd(postbackUrl);
+		byte[] path = pathOf(postbackUrl, hostEnd);
+		int hash = hash(postbackUrl);
+		lock.writeLock().lock();
+		try {
+			int position = find(postbackUrl.substring(0, hostEnd), path, hash);
+			if (position >= 0) {
+				return subscriptionAt(index[position] - 1);
+			}
+			if (size + 1 > index.length * MAX_LOAD) {
+				resizeIndex(index.length * 2);
+			}
+			int slot = allocateSlot();
+			hashes[slot] = hash;
+			slotHosts[slot] = hostId(postbackUrl.substring(0, hostEnd));
+			appendPath(slot, path);
+			write(slot, subscription);
+			insertIntoIndex(slot);
+			size++;
+			return null;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void updateExisting(Subscription subscription) {
+		String postbackUrl = subscription.getPostbackUrl();
+		lock.writeLock().lock();
+		try {
+			int position = find(postbackUrl);
+			if (position >= 0) {
+				write(index[position] - 1, subscription);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean compareAndSet(Subscription expected, Subscription update) {
+		lock.writeLock().lock();
+		try {
+			int position = find(update.getPostbackUrl());
+			if (position < 0 || versions[index[position] - 1] != expected.getVersion()) {
+				return false;
+			}
+			write(index[position] - 1, update);
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean compareAndDelete(Subscription expected) {
+		lock.writeLock().lock();
+		try {
+			int position = find(expected.getPostbackUrl());
+			if (position < 0 || versions[index[position] - 1] != expected.getVersion()) {
+				return false;
+			}
+			remove(position);
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public Subscription deleteExisting(String name) {
+		lock.writeLock().lock();
+		try {
+			int position = find(name);
+			if (position < 0) {
+				return null;
+			}
+			Subscription removed = subscriptionAt(index[position] - 1);
+			remove(position);
+			return removed;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public Subscription get(String name) {
+		lock.readLock().lock();
+		try {
+			int position = find(name);
+			return position >= 0 ? subscriptionAt(index[position] - 1) : null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Copies a chunk of subscriptions at a time and calls the action without holding the lock, so a long iteration
+	 * (snapshot, restore) does not block changes.
+	 * */
+	@Override
+	public void forEach(Consumer<Subscription> action) {
+		List<Subscription> chunk = new ArrayList<>(FOR_EACH_CHUNK);
+		int from = 0;
+		while (true) {
+			lock.readLock().lock();
+			try {
+				if (from >= usedSlots) {
+					return;
+				}
+				int to = Math.min(from + FOR_EACH_CHUNK, usedSlots);
+				for (int slot = from; slot < to; slot++) {
+					if (pathLengths[slot] != FREE) {
+						chunk.add(subscriptionAt(slot));
+					}
+				}
+				from = to;
+			} finally {
+				lock.readLock().unlock();
+			}
+			chunk.forEach(action);
+			chunk.clear();
+		}
+	}
+
+	/**
+	 * Pages go in slot order, the cursor is the slot to continue from. Slots of deleted subscriptions are reused, so a
+	 * subscription stored while paging may be visited or not, like with {@link #forEach}. The action is called without
+	 * holding the lock.
+	 * */
+	@Override
+	public String page(String cursor, int limit, Consumer<Subscription> action) {
+		int from = cursor != null ? Integer.parseInt(cursor) : 0;
+		if (from < 0) {
+			throw new IllegalArgumentException("Invalid cursor: " + cursor);
+		}
+		List<Subscription> page = new ArrayList<>(Math.min(limit, FOR_EACH_CHUNK));
+		String next = null;
+		lock.readLock().lock();
+		try {
+			for (int slot = from; slot < usedSlots; slot++) {
+				if (pathLengths[slot] != FREE) {
+					if (page.size() == limit) {
+						next = Integer.toString(slot);
+						break;
+					}
+					page.add(subscriptionAt(slot));
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		page.forEach(action);
+		return next;
+	}
+
+	@Override
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Caller holds the write lock.
+	 * */
+	private void remove(int position) {
+		int slot = index[position] - 1;
+		removeFromIndex(position);
+		deletedPathBytes += pathLengths[slot];
+		pathLengths[slot] = FREE;
+		scheduledFutures[slot] = null;
+		freeSlot(slot);
+		size--;
+	}
+
+	/**
+	 * Caller holds the write lock, the url of the slot has already been written. Gives the subscription a new version.
+	 * */
+	private void write(int slot, Subscription subscription) {
+		FrequencyDto frequency = subscription.getFrequency();
+		periodMillis[slot] = ((frequency.getHours() * 60 + frequency.getMinutes()) * 60 + frequency.getSeconds()) * 1000
+			+ frequency.getMilliseconds();
+		missedTickPolicies[slot] = subscription.getMissedTickPolicy() != null ?
+			(byte) subscription.getMissedTickPolicy().ordinal() : NO_POLICY;
+		maxInFlights[slot] = subscription.getMaxInFlight();
+		timeFormats[slot] = (byte) subscription.getTimeFormat().ordinal();
+		encodings[slot] = (byte) subscription.getEncoding().ordinal();
+		phaseAnchors[slot] = subscription.getPhaseAnchor() != null ?
+			subscription.getPhaseAnchor().toEpochMilli() : NO_ANCHOR;
+		scheduledFutures[slot] = subscription.getScheduledFuture();
+		states[slot] = (byte) subscription.getState().ordinal();
+		versions[slot] = ++lastVersion;
+		subscription.setVersion(lastVersion);
+	}
+
+	private Subscription subscriptionAt(int slot) {
+		String postbackUrl = hosts[slotHosts[slot]]
+			+ new String(pathBytes, pathOffsets[slot], pathLengths[slot], StandardCharsets.UTF_8);
+		int period = periodMillis[slot] / 1000;
+		Subscription subscription = new Subscription(postbackUrl,
+			new FrequencyDto(period / 3600, period % 3600 / 60, period % 60, periodMillis[slot] % 1000),
+			scheduledFutures[slot]);
+		byte policy = missedTickPolicies[slot];
+		subscription.setMissedTickPolicy(policy != NO_POLICY ? POLICIES[policy] : null);
+		subscription.setMaxInFlight(maxInFlights[slot]);
+		subscription.setTimeFormat(TIME_FORMATS[timeFormats[slot]]);
+		subscription.setEncoding(ENCODINGS[encodings[slot]]);
+		long phaseAnchor = phaseAnchors[slot];
+		subscription.setPhaseAnchor(phaseAnchor != NO_ANCHOR ? Instant.ofEpochMilli(phaseAnchor) : null);
+		subscription.setState(STATES[states[slot]]);
+		subscription.setVersion(versions[slot]);
+		return subscription;
+	}
+
+	/**
+	 * @return position of the url in the index, -1 if it is not stored
+	 * */
+	private int find(String postbackUrl) {
+		int hostEnd = hostEnd(postbackUrl);
+		return find(postbackUrl.substring(0, hostEnd), pathOf(postbackUrl, hostEnd), hash(postbackUrl));
+	}
+
+	private int find(String host, byte[] path, int hash) {
+		Integer hostId = hostIds.get(host);
+		if (hostId == null) {
+			return -1;
+		}
+		int mask = index.length - 1;
+		for (int position = hash & mask; index[position] != 0; position = (position + 1) & mask) {
+			int slot = index[position] - 1;
+			if (hashes[slot] == hash && slotHosts[slot] == hostId && pathLengths[slot] == path.length
+				&& Arrays.equals(pathBytes, pathOffsets[slot], pathOffsets[slot] + path.length, path, 0, path.length)) {
+				return position;
+			}
+		}
+		return -1;
+	}
+
+	private void insertIntoIndex(int slot) {
+		int mask = index.length - 1;
+		int position = hashes[slot] & mask;
+		while (index[position] != 0) {
+			position = (position + 1) & mask;
+		}
+		index[position] = slot + 1;
+	}
+
+	/**
+	 * Shifts back the entries after the removed one that would otherwise not be found anymore, see Knuth's algorithm R.
+	 * */
+	private void removeFromIndex(int position) {
+		int mask = index.length - 1;
+		int next = position;
+		while (true) {
+			next = (next + 1) & mask;
+			if (index[next] == 0) {
+				break;
+			}
+			int home = hashes[index[next] - 1] & mask;
+			// the entry can fill the gap unless its home lies cyclically in (position, next]
+			boolean homeInBetween = position <= next ? position < home && home <= next : position < home || home <= next;
+			if (!homeInBetween) {
+				index[position] = index[next];
+				position = next;
+			}
+		}
+		index[position] = 0;
+	}
+
+	private void resizeIndex(int capacity) {
+		index = new int[capacity];
+		for (int slot = 0; slot < usedSlots; slot++) {
+			if (pathLengths[slot] != FREE) {
+				insertIntoIndex(slot);
+			}
+		}
+	}
+
+	private int allocateSlot() {
+		if (freeSlotCount > 0) {
+			return freeSlots[--freeSlotCount];
+		}
+		if (usedSlots == hashes.length) {
+			int capacity = hashes.length * 2;
+			hashes = Arrays.copyOf(hashes, capacity);
+			slotHosts = Arrays.copyOf(slotHosts, capacity);
+			pathOffsets = Arrays.copyOf(pathOffsets, capacity);
+			pathLengths = Arrays.copyOf(pathLengths, capacity);
+			periodMillis = Arrays.copyOf(periodMillis, capacity);
+			missedTickPolicies = Arrays.copyOf(missedTickPolicies, capacity);
+			maxInFlights = Arrays.copyOf(maxInFlights, capacity);
+			timeFormats = Arrays.copyOf(timeFormats, capacity);
+			encodings = Arrays.copyOf(encodings, capacity);
+			phaseAnchors = Arrays.copyOf(phaseAnchors, capacity);
+			scheduledFutures = Arrays.copyOf(scheduledFutures, capacity);
+			states = Arrays.copyOf(states, capacity);
+			versions = Arrays.copyOf(versions, capacity);
+		}
+		return usedSlots++;
+	}
+
+	private void appendPath(int slot, byte[] path) {
+		if (pathBytesEnd + path.length > pathBytes.length) {
+			if (deletedPathBytes > pathBytesEnd / 2) {
+				compactPathBytes();
+			}
+			if (pathBytesEnd + path.length > pathBytes.length) {
+				pathBytes = Arrays.copyOf(pathBytes, Math.max(pathBytes.length * 2, pathBytesEnd + path.length));
+			}
+		}
+		System.arraycopy(path, 0, pathBytes, pathBytesEnd, path.length);
+		pathOffsets[slot] = pathBytesEnd;
+		pathLengths[slot] = path.length;
+		pathBytesEnd += path.length;
+	}
+
+	/**
+	 * Moves the paths of the stored subscriptions together, dropping the ones of deleted subscriptions.
+	 * */
+	private void compactPathBytes() {
+		byte[] compacted = new byte[pathBytes.length];
+		int end = 0;
+		for (int slot = 0; slot < usedSlots; slot++) {
+			if (pathLengths[slot] != FREE) {
+				System.arraycopy(pathBytes, pathOffsets[slot], compacted, end, pathLengths[slot]);
+				pathOffsets[slot] = end;
+				end += pathLengths[slot];
+			}
+		}
+		pathBytes = compacted;
+		pathBytesEnd = end;
+		deletedPathBytes = 0;
+	}
+
+	private void freeSlot(int slot) {
+		if (freeSlotCount == freeSlots.length) {
+			freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+		}
+		freeSlots[freeSlotCount++] = slot;
+	}
+
+	private int hostId(String host) {
+		Integer hostId = hostIds.get(host);
+		if (hostId == null) {
+			hostId = hostIds.size();
+			if (hostId == hosts.length) {
+				hosts = Arrays.copyOf(hosts, hosts.length * 2);
+			}
+			hosts[hostId] = host;
+			hostIds.put(host, hostId);
+		}
+		return hostId;
+	}
+
+	/**
+	 * @return end of the scheme://authority part of the url
+	 * */
+	private static int hostEnd(String postbackUrl) {
+		int schemeEnd = postbackUrl.indexOf("://");
+		int hostStart = schemeEnd >= 0 ? schemeEnd + 3 : 0;
+		for (int i = hostStart; i < postbackUrl.length(); i++) {
+			char c = postbackUrl.charAt(i);
+			if (c == '/' || c == '?' || c == '#') {
+				return i;
+			}
+		}
+		return postbackUrl.length();
+	}
+
+	private static byte[] pathOf(String postbackUrl, int hostEnd) {
+		return postbackUrl.substring(hostEnd).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static int hash(String postbackUrl) {
+		int hash = postbackUrl.hashCode();
+		return hash ^ (hash >>> 16);
+	}
+}
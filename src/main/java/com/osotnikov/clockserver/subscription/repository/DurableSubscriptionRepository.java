@@ -0,0 +1,385 @@
+package com.osotnikov.clockserver.subscription.repository;
+
+import com.osotnikov.clockserver.subscription.service.model.Subscription;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Makes any other subscription repository survive restarts.
+ *
+ * Every create, patch and delete is appended to a write ahead log of memory mapped segments (wal-N.log) after it has
+ * been applied in memory, so appending is a copy into the page cache. The pages are forced to disk every sync interval,
+ * i.e. a crash of the process loses nothing and a crash of the machine loses at most the last sync interval.
+ * Every snapshot interval the log is compacted: a new segment is started and all the subscriptions are written to
+ * snapshot-N.dat, where N is the first segment the snapshot does not cover, after which the older segments and
+ * snapshots are deleted.
+ *
+ * On startup the latest snapshot is loaded and the segments after it are replayed in order. Records are idempotent
+ * (create and patch carry the full subscription), so a change that made it into both the snapshot and the log is
+ * simply applied twice. Replaying a segment stops at the first torn record.
+ * */
+@Slf4j
+public class DurableSubscriptionRepository implements SubscriptionRepository, Closeable {
+
+	private static final String SEGMENT_PREFIX = "wal-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final String SNAPSHOT_PREFIX = "snapshot-";
+	private static final String SNAPSHOT_SUFFIX = ".dat";
+	private static final String TMP_SUFFIX = ".tmp";
+	private static final int KEY_LOCKS = 256; // power of two
+
+	private final SubscriptionRepository delegate;
+	private final Path directory;
+	private final int segmentSize;
+	private final Object[] keyLocks = new Object[KEY_LOCKS];
+	private final ScheduledExecutorService maintenance;
+
+	// guarded by this
+	private long segmentNumber;
+	private volatile MappedByteBuffer segment;
+
+	/**
+	 * Restores the subscriptions from the directory into the delegate, the restored subscriptions are not scheduled.
+	 * @param delegate keeps the subscriptions in memory, expected to be empty
+	 * @param segmentSize size of every log segment, a record never spans two segments
+	 * */
+	public DurableSubscriptionRepository(SubscriptionRepository delegate, Path directory, int segmentSize,
+										 Duration syncInterval, Duration snapshotInterval) throws IOException {
+		this.delegate = delegate;
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		for (int i = 0; i < keyLocks.length; i++) {
+			keyLocks[i] = new Object();
+		}
+		Files.createDirectories(directory);
+		long firstUnusedSegment = recover();
+		synchronized (this) {
+			openSegment(firstUnusedSegment);
+		}
+		this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "DurableSubscriptionRepository");
+			thread.setDaemon(true);
+			return thread;
+		});
+		maintenance.scheduleWithFixedDelay(this::sync, syncInterval.toMillis(), syncInterval.toMillis(),
+			TimeUnit.MILLISECONDS);
+		maintenance.scheduleWithFixedDelay(this::snapshotQuietly, snapshotInterval.toMillis(),
+			snapshotInterval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	// The in memory change and its record happen under the same key lock so that the records of one subscription are
+	// logged in the order they were applied.
+
+	@Override
+	public Subscription storeNew(Subscription subscription) {
+		synchronized (lockFor(subscription.getPostbackUrl())) {
+			Subscription existing = delegate.storeNew(subscription);
+			if (existing == null) {
+				append(SubscriptionRecordCodec.encode(SubscriptionRecordCodec.CREATE, subscription));
+			}
+			return existing;
+		}
+	}
+
+	@Override
+	public void updateExisting(Subscription subscription) {
+		synchronized (lockFor(subscription.getPostbackUrl())) {
+			if (delegate.get(subscription.getPostbackUrl()) != null) {
+				delegate.updateExisting(subscription);
+				append(SubscriptionRecordCodec.encode(SubscriptionRecordCodec.PATCH, subscription));
+			}
+		}
+	}
+
+	@Override
+	public boolean compareAndSet(Subscription expected, Subscription update) {
+		synchronized (lockFor(update.getPostbackUrl())) {
+			if (!delegate.compareAndSet(expected, update)) {
+				return false;
+			}
+			// most transitions only change the state and the scheduled future, which are not persisted
+			if (!isPersistedEqual(expected, update)) {
+				append(SubscriptionRecordCodec.encode(SubscriptionRecordCodec.PATCH, update));
+			}
+			return true;
+		}
+	}
+
+	@Override
+	public boolean compareAndDelete(Subscription expected) {
+		synchronized (lockFor(expected.getPostbackUrl())) {
+			if (!delegate.compareAndDelete(expected)) {
+				return false;
+			}
+			append(SubscriptionRecordCodec.encode(SubscriptionRecordCodec.DELETE, expected));
+			return true;
+		}
+	}
+
+	@Override
+	public Subscription deleteExisting(String name) {
+		synchronized (lockFor(name)) {
+			Subscription removed = delegate.deleteExisting(name);
+			if (removed != null) {
+				append(SubscriptionRecordCodec.encode(SubscriptionRecordCodec.DELETE, removed));
+			}
+			return removed;
+		}
+	}
+
+	@Override
+	public Subscription get(String name) {
+		return delegate.get(name);
+	}
+
+	@Override
+	public void forEach(Consumer<Subscription> action) {
+		delegate.forEach(action);
+	}
+
+	@Override
+	public String page(String cursor, int limit, Consumer<Subscription> action) {
+		return delegate.page(cursor, limit, action);
+	}
+
+	@Override
+	public int size() {
+		return delegate.size();
+	}
+
+	/**
+	 * Compacts the log into a new snapshot. Changes keep being logged meanwhile, they go to the new segment which is
+	 * replayed on top of the snapshot.
+	 * */
+	public void snapshot() throws IOException {
+		long firstUncovered;
+		MappedByteBuffer previous;
+		synchronized (this) {
+			// everything applied before this point is either in the map or logged in the new segment
+			previous = openSegment(segmentNumber + 1);
+			firstUncovered = segmentNumber;
+		}
+		previous.force();
+		long startNanos = System.nanoTime();
+		Path snapshot = directory.resolve(SNAPSHOT_PREFIX + firstUncovered + SNAPSHOT_SUFFIX);
+		Path tmp = directory.resolve(snapshot.getFileName() + TMP_SUFFIX);
+		int count;
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.TRUNCATE_EXISTING)) {
+			OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+			int[] written = new int[1];
+			try {
+				delegate.forEach(subscription -> {
+					try {
+						out.write(SubscriptionRecordCodec.encode(SubscriptionRecordCodec.CREATE, subscription));
+						written[0]++;
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			out.flush();
+			channel.force(true);
+			count = written[0];
+		}
+		Files.move(tmp, snapshot, StandardCopyOption.ATOMIC_MOVE);
+		deleteFilesBefore(firstUncovered);
+		log.info("Snapshot of {} subscriptions written in {} ms.", count,
+			TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+	}
+
+	@Override
+	public void close() {
+		maintenance.shutdownNow();
+		sync();
+	}
+
+	private void append(byte[] record) {
+		MappedByteBuffer previous = null;
+		synchronized (this) {
+			if (segment.remaining() < record.length) {
+				previous = openSegment(segmentNumber + 1);
+			}
+			segment.put(record);
+		}
+		if (previous != null) {
+			// flushing a full segment takes a while, appends to the new one need not wait for it
+			previous.force();
+		}
+	}
+
+	/**
+	 * Caller holds the lock of this and forces the returned segment once it has released it.
+	 *
+	 * @return the segment written so far, null when there was none
+	 * */
+	private MappedByteBuffer openSegment(long number) {
+		MappedByteBuffer previous = segment;
+		Path path = directory.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+			StandardOpenOption.WRITE)) {
+			// the mapping stays valid after the channel is closed, the file is zero filled up to segmentSize
+			segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			segmentNumber = number;
+			return previous;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not open subscription log segment " + path, e);
+		}
+	}
+
+	private void sync() {
+		MappedByteBuffer current = segment;
+		if (current != null) {
+			current.force();
+		}
+	}
+
+	private void snapshotQuietly() {
+		try {
+			snapshot();
+		} catch (IOException | RuntimeException e) {
+			// the log keeps growing until the next snapshot succeeds, nothing is lost
+			log.error("Could not write subscription snapshot.", e);
+		}
+	}
+
+	/**
+	 * @return number of the first segment after all the existing ones
+	 * */
+	private long recover() throws IOException {
+		long startNanos = System.nanoTime();
+		try (Stream<Path> tmpFiles = Files.list(directory)) {
+			for (Path tmp : tmpFiles.filter(path -> path.toString().endsWith(TMP_SUFFIX)).collect(Collectors.toList())) {
+				Files.delete(tmp); // unfinished snapshot
+			}
+		}
+		List<Long> snapshots = fileNumbers(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+		long firstUncovered = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+		if (!snapshots.isEmpty()) {
+			loadSnapshot(directory.resolve(SNAPSHOT_PREFIX + firstUncovered + SNAPSHOT_SUFFIX));
+		}
+		long nextSegment = firstUncovered;
+		for (long number : fileNumbers(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+			if (number >= firstUncovered) {
+				replaySegment(directory.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX));
+			}
+			nextSegment = Math.max(nextSegment, number + 1);
+		}
+		log.info("Recovered {} subscriptions from {} in {} ms.", size(), directory,
+			TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+		return nextSegment;
+	}
+
+	private void loadSnapshot(Path snapshot) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+			while (true) {
+				int length;
+				try {
+					length = in.readInt();
+				} catch (EOFException e) {
+					return;
+				}
+				int crc = in.readInt();
+				byte[] payload = new byte[length];
+				in.readFully(payload);
+				if (!SubscriptionRecordCodec.isIntact(payload, crc)) {
+					// snapshots are only renamed into place once complete, so this is actual corruption
+					throw new IOException("Corrupted subscription snapshot " + snapshot);
+				}
+				apply(payload);
+			}
+		}
+	}
+
+	private void replaySegment(Path path) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		while (buffer.remaining() >= SubscriptionRecordCodec.HEADER_SIZE) {
+			int length = buffer.getInt();
+			int crc = buffer.getInt();
+			if (length <= 0 || length > buffer.remaining()) {
+				return; // end of segment or torn header
+			}
+			byte[] payload = new byte[length];
+			buffer.get(payload);
+			if (!SubscriptionRecordCodec.isIntact(payload, crc)) {
+				log.warn("Ignoring torn record at the end of {}.", path);
+				return;
+			}
+			apply(payload);
+		}
+	}
+
+	private void apply(byte[] payload) {
+		Subscription subscription = SubscriptionRecordCodec.decode(payload);
+		delegate.deleteExisting(subscription.getPostbackUrl());
+		if (SubscriptionRecordCodec.typeOf(payload) != SubscriptionRecordCodec.DELETE) {
+			delegate.storeNew(subscription);
+		}
+	}
+
+	private void deleteFilesBefore(long firstUncovered) throws IOException {
+		for (long number : fileNumbers(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+			if (number < firstUncovered) {
+				Files.deleteIfExists(directory.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX));
+			}
+		}
+		for (long number : fileNumbers(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+			if (number < firstUncovered) {
+				Files.deleteIfExists(directory.resolve(SNAPSHOT_PREFIX + number + SNAPSHOT_SUFFIX));
+			}
+		}
+	}
+
+	/**
+	 * @return sorted numbers of the files named prefix + number + suffix
+	 * */
+	private List<Long> fileNumbers(String prefix, String suffix) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.map(path -> path.getFileName().toString())
+				.filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+				.map(name -> Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())))
+				.sorted()
+				.collect(Collectors.toList());
+		}
+	}
+
+	private static boolean isPersistedEqual(Subscription subscription, Subscription other) {
+		return Objects.equals(subscription.getFrequency(), other.getFrequency())
+			&& subscription.getMissedTickPolicy() == other.getMissedTickPolicy()
+			&& subscription.getMaxInFlight() == other.getMaxInFlight()
+			&& Objects.equals(subscription.getPhaseAnchor(), other.getPhaseAnchor());
+	}
+
+	private Object lockFor(String postbackUrl) {
+		return keyLocks[postbackUrl.hashCode() & (KEY_LOCKS - 1)];
+	}
+}
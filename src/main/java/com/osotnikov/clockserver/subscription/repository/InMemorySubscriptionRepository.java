@@ -0,0 +1,84 @@
+package com.osotnikov.clockserver.subscription.repository;
+
+import com.osotnikov.clockserver.subscription.service.model.Subscription;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the subscription objects themselves, i.e. gets return the stored instance. They are ordered by postback url
+ * so that a page can start right after the last url of the previous one, which is the cursor.
+ * */
+public class InMemorySubscriptionRepository implements SubscriptionRepository {
+
+	private final ConcurrentSkipListMap<String, Subscription> subscriptions = new ConcurrentSkipListMap<>();
+	private final AtomicLong versions = new AtomicLong();
+
+	@Override
+	public Subscription storeNew(Subscription subscription) {
+		// the version is set before the subscription is published, if it is not stored the version is not used
+		subscription.setVersion(versions.incrementAndGet());
+		return subscriptions.putIfAbsent(subscription.getPostbackUrl(), subscription);
+	}
+
+	@Override
+	public void updateExisting(Subscription subscription) {
+		subscription.setVersion(versions.incrementAndGet());
+		subscriptions.replace(subscription.getPostbackUrl(), subscription);
+	}
+
+	/**
+	 * The map swaps the value of the entry with a compare and set of its own, so this does not block.
+	 * */
+	@Override
+	public boolean compareAndSet(Subscription expected, Subscription update) {
+		update.setVersion(versions.incrementAndGet());
+		return subscriptions.computeIfPresent(update.getPostbackUrl(), (postbackUrl, stored) ->
+			stored.getVersion() == expected.getVersion() ? update : stored) == update;
+	}
+
+	@Override
+	public boolean compareAndDelete(Subscription expected) {
+		// stored subscriptions have unique versions, so no other subscription can be equal to the stored one
+		Subscription stored = subscriptions.get(expected.getPostbackUrl());
+		return stored != null && stored.getVersion() == expected.getVersion()
+			&& subscriptions.remove(expected.getPostbackUrl(), stored);
+	}
+
+	@Override
+	public Subscription deleteExisting(String name) {
+		return subscriptions.remove(name);
+	}
+
+	@Override
+	public Subscription get(String name) {
+		return subscriptions.get(name);
+	}
+
+	@Override
+	public void forEach(Consumer<Subscription> action) {
+		subscriptions.values().forEach(action);
+	}
+
+	@Override
+	public String page(String cursor, int limit, Consumer<Subscription> action) {
+		NavigableMap<String, Subscription> after = cursor != null ? subscriptions.tailMap(cursor, false) : subscriptions;
+		String last = null;
+		for (Map.Entry<String, Subscription> entry : after.entrySet()) {
+			if (limit-- == 0) {
+				return last;
+			}
+			action.accept(entry.getValue());
+			last = entry.getKey();
+		}
+		return null;
+	}
+
+	@Override
+	public int size() {
+		return subscriptions.size();
+	}
+}
@@ -0,0 +1,121 @@
+package com.osotnikov.clockserver.subscription.repository;
+
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
+import com.osotnikov.clockserver.subscription.service.model.Subscription;
+import com.osotnikov.scheduling.MissedTickPolicy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.zip.CRC32;
+
+/**
+ * Binary format of the records of the write ahead log and of the snapshots:
+ * int payload length | int crc32 of the payload | payload.
+ * The payload is byte type | unsigned short url length | utf-8 postback url and, unless the type is DELETE,
+ * int hours | int minutes | int seconds | byte missed tick policy ordinal | int max in flight |
+ * long phase anchor epoch millis | int milliseconds | byte time format ordinal | byte encoding ordinal. Fields were
+ * appended over time and older records end before them, a missing millisecond is 0, a missing time format LEGACY and
+ * a missing encoding JSON.
+ * A zero length marks the end of a log segment, the rest of a segment is never written to.
+ * */
+final class SubscriptionRecordCodec {
+
+	static final byte CREATE = 1;
+	static final byte PATCH = 2;
+	static final byte DELETE = 3;
+
+	static final int HEADER_SIZE = 8;
+
+	private static final int MAX_URL_LENGTH = 0xffff;
+	private static final int SUBSCRIPTION_SIZE = 4 + 4 + 4 + 1 + 4 + 8 + 4 + 1 + 1;
+	private static final byte NO_POLICY = -1;
+	private static final long NO_ANCHOR = Long.MIN_VALUE;
+	private static final MissedTickPolicy[] POLICIES = MissedTickPolicy.values();
+	private static final TimeFormat[] TIME_FORMATS = TimeFormat.values();
+	private static final PayloadEncoding[] ENCODINGS = PayloadEncoding.values();
+
+	private SubscriptionRecordCodec() {
+	}
+
+	/**
+	 * @return header and payload of the record
+	 * */
+	static byte[] encode(byte type, Subscription subscription) {
+		byte[] url = subscription.getPostbackUrl().getBytes(StandardCharsets.UTF_8);
+		if (url.length > MAX_URL_LENGTH) {
+			throw new IllegalArgumentException("Postback url too long to be stored: " + url.length + " bytes");
+		}
+		int payloadLength = 1 + 2 + url.length + (type != DELETE ? SUBSCRIPTION_SIZE : 0);
+		ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payloadLength);
+		record.position(HEADER_SIZE); // length and crc are filled in below
+		record.put(type);
+		record.putShort((short) url.length);
+		record.put(url);
+		if (type != DELETE) {
+			FrequencyDto frequency = subscription.getFrequency();
+			record.putInt(frequency.getHours());
+			record.putInt(frequency.getMinutes());
+			record.putInt(frequency.getSeconds());
+			record.put(subscription.getMissedTickPolicy() != null ?
+				(byte) subscription.getMissedTickPolicy().ordinal() : NO_POLICY);
+			record.putInt(subscription.getMaxInFlight());
+			record.putLong(subscription.getPhaseAnchor() != null ?
+				subscription.getPhaseAnchor().toEpochMilli() : NO_ANCHOR);
+			record.putInt(frequency.getMilliseconds());
+			record.put((byte) subscription.getTimeFormat().ordinal());
+			record.put((byte) subscription.getEncoding().ordinal());
+		}
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), HEADER_SIZE, payloadLength);
+		record.putInt(0, payloadLength);
+		record.putInt(4, (int) crc.getValue());
+		return record.array();
+	}
+
+	/**
+	 * @return whether the payload matches the crc of its header, a mismatch means a torn or corrupted record
+	 * */
+	static boolean isIntact(byte[] payload, int crc) {
+		CRC32 crc32 = new CRC32();
+		crc32.update(payload);
+		return (int) crc32.getValue() == crc;
+	}
+
+	static byte typeOf(byte[] payload) {
+		return payload[0];
+	}
+
+	/**
+	 * @return the subscription of the payload, only the postback url is set for DELETE records
+	 * */
+	static Subscription decode(byte[] payload) {
+		ByteBuffer in = ByteBuffer.wrap(payload);
+		byte type = in.get();
+		int urlLength = in.getShort() & 0xffff;
+		Subscription subscription = new Subscription(new String(payload, 3, urlLength, StandardCharsets.UTF_8),
+			null, null);
+		in.position(3 + urlLength);
+		if (type != DELETE) {
+			FrequencyDto frequency = new FrequencyDto(in.getInt(), in.getInt(), in.getInt());
+			byte policy = in.get();
+			subscription.setMissedTickPolicy(policy != NO_POLICY ? POLICIES[policy] : null);
+			subscription.setMaxInFlight(in.getInt());
+			long phaseAnchor = in.getLong();
+			subscription.setPhaseAnchor(phaseAnchor != NO_ANCHOR ? Instant.ofEpochMilli(phaseAnchor) : null);
+			if (in.hasRemaining()) {
+				frequency.setMilliseconds(in.getInt());
+			}
+			if (in.hasRemaining()) {
+				subscription.setTimeFormat(TIME_FORMATS[in.get()]);
+			}
+			if (in.hasRemaining()) {
+				subscription.setEncoding(ENCODINGS[in.get()]);
+			}
+			subscription.setFrequency(frequency);
+		}
+		return subscription;
+	}
+}
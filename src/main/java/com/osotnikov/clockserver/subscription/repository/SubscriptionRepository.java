@@ -1,30 +1,64 @@
 package com.osotnikov.clockserver.subscription.repository;
 
 import com.osotnikov.clockserver.subscription.service.model.Subscription;
-import org.springframework.stereotype.Repository;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
-@Repository
-public class SubscriptionRepository {
-
-	private final ConcurrentHashMap<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+/**
+ * Subscriptions by postback url, every method is atomic. Implementations may hand out copies of the stored
+ * subscriptions, so changes to a subscription are only guaranteed to be visible to later gets once they have been
+ * stored with {@link #compareAndSet} or {@link #updateExisting}. Every store gives the subscription a new
+ * {@link Subscription#getVersion() version}, the compare and set methods compare versions.
+ * */
+public interface SubscriptionRepository {
 
 	/**
+	 * Sets the version of the subscription if it is stored.
 	 * @return already existing subscription, if subscription did not exist returns null
 	 * */
-	public Subscription storeNew(Subscription subscription) {
-		return subscriptions.putIfAbsent(subscription.getPostbackUrl(), subscription);
-	}
+	Subscription storeNew(Subscription subscription);
+
+	/**
+	 * Stores a change of a subscription regardless of what is stored for its postback url, does nothing if there is
+	 * no subscription for it. Meant for restoring subscriptions, changes while serving go through
+	 * {@link #compareAndSet}.
+	 * */
+	void updateExisting(Subscription subscription);
+
+	/**
+	 * Replaces the stored subscription with the update if its version is still the version of expected, i.e. nothing
+	 * has been stored for the postback url since expected was read. Sets the version of the update if it is stored.
+	 * @return whether the update was stored
+	 * */
+	boolean compareAndSet(Subscription expected, Subscription update);
+
+	/**
+	 * Removes the stored subscription if its version is still the version of expected.
+	 * @return whether the subscription was removed
+	 * */
+	boolean compareAndDelete(Subscription expected);
 
 	/**
 	 * @return subscription that was removed, if there was no subscription returns null
 	 * */
-	public Subscription deleteExisting(String name) {
-		return subscriptions.remove(name);
-	}
+	Subscription deleteExisting(String name);
+
+	Subscription get(String name);
+
+	/**
+	 * Weakly consistent, subscriptions stored or deleted while iterating may or may not be visited.
+	 * */
+	void forEach(Consumer<Subscription> action);
+
+	/**
+	 * Visits up to limit subscriptions that come after the cursor, in an order of the implementation's choosing that
+	 * does not change between calls, so all subscriptions can be walked page by page without anything being held
+	 * between pages. Weakly consistent like {@link #forEach}.
+	 * @param cursor null for the first page, otherwise the cursor returned for the previous page
+	 * @return cursor of the next page, null if there are no subscriptions after this page
+	 * @throws IllegalArgumentException if the cursor was not returned by this implementation
+	 * */
+	String page(String cursor, int limit, Consumer<Subscription> action);
 
-	public Subscription get(String name) {
-		return subscriptions.get(name);
-	}
+	int size();
 }
@@ -0,0 +1,158 @@
+package com.osotnikov.clockserver.subscription.service;
+
+import com.osotnikov.clockserver.config.HighFrequencyProperties;
+import com.osotnikov.clockserver.metrics.PostbackMetrics;
+import com.osotnikov.clockserver.subscription.delivery.ReactivePostbackDeliveryService;
+import com.osotnikov.clockserver.subscription.payload.CurrentTimePayloadCache;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
+import com.osotnikov.clockserver.subscription.service.model.rest.client.dto.request.CurrentTimeDto;
+import com.osotnikov.rest.client.RestClient;
+import com.osotnikov.scheduling.HashedTimingWheel;
+import com.osotnikov.scheduling.MissedTickPolicy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Subscriptions with periods of up to one second are kept apart from the standard tier, so that they cannot take
+ * the standard tier's timer, executor or in-flight slots:
+ * - they have their own timing wheel with a finer tick on its own thread, which also runs their postbacks since
+ *   submitting a postback only enqueues it
+ * - their postbacks go through their own delivery lane with its own bounded queue and in-flight cap, without retries
+ *   or circuit breakers, a retried tick would be stale by the time it is sent
+ * - at most clockserver.high-frequency.max-subscriptions of them are admitted, subscribing above that is refused
+ * The wheel and the lane are only created with the first high frequency subscription, a node that has none, e.g.
+ * because the tier is turned off, runs no extra thread.
+ * */
+@Component
+public class HighFrequencyTier {
+
+	private static final Duration MAX_PERIOD = Duration.ofSeconds(1);
+
+	private final HighFrequencyProperties highFrequencyProperties;
+	private final RestClient<CurrentTimeDto> postbackRestClient;
+	private final int maxSubscriptions;
+	private final CurrentTimePayloadCache currentTimePayloadCache;
+	private final PostbackMetrics postbackMetrics;
+	private final AtomicInteger admitted = new AtomicInteger();
+	// both created by the first schedule, guarded by the tier
+	private volatile ReactivePostbackDeliveryService postbackDeliveryService;
+	private volatile HashedTimingWheel taskScheduler;
+	private boolean closed;
+
+	@Autowired
+	public HighFrequencyTier(HighFrequencyProperties highFrequencyProperties,
+							 RestClient<CurrentTimeDto> postbackRestClient,
+							 CurrentTimePayloadCache currentTimePayloadCache, PostbackMetrics postbackMetrics) {
+		this.highFrequencyProperties = highFrequencyProperties;
+		this.postbackRestClient = postbackRestClient;
+		this.maxSubscriptions = highFrequencyProperties.getMaxSubscriptions();
+		this.currentTimePayloadCache = currentTimePayloadCache;
+		this.postbackMetrics = postbackMetrics;
+	}
+
+	public static boolean isHighFrequency(Duration period) {
+		return period.compareTo(MAX_PERIOD) <= 0;
+	}
+
+	/**
+	 * Takes a place of the quota for a new subscription, to be given back with {@link #release()}.
+	 * @throws SubscriptionQuotaExceededException if all the places are taken
+	 * */
+	public void admit() {
+		while (true) {
+			int current = admitted.get();
+			if (current >= maxSubscriptions) {
+				throw new SubscriptionQuotaExceededException(
+					"At most " + maxSubscriptions + " high frequency subscriptions are allowed.");
+			}
+			if (admitted.compareAndSet(current, current + 1)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Takes a place of the quota even if all are taken, for subscriptions that already exist, i.e. restored or handed
+	 * off ones, which must not be lost.
+	 * */
+	public void readmit() {
+		admitted.incrementAndGet();
+	}
+
+	public void release() {
+		admitted.decrementAndGet();
+	}
+
+	public int admitted() {
+		return admitted.get();
+	}
+
+	public ScheduledFuture<?> schedule(String postbackUrl, int maxInFlight, TimeFormat timeFormat,
+									   PayloadEncoding encoding, Instant firstFireTime, Duration period,
+									   MissedTickPolicy missedTickPolicy) {
+		return start().scheduleAtFixedRate(new TimePostbackRunnable(postbackUrl, postbackDeliveryService,
+			currentTimePayloadCache, postbackMetrics, maxInFlight, timeFormat, encoding), firstFireTime, period,
+			missedTickPolicy);
+	}
+
+	/**
+	 * @return true once the wheel and the lane have been created
+	 * */
+	boolean started() {
+		return taskScheduler != null;
+	}
+
+	@PreDestroy
+	public synchronized void close() {
+		closed = true;
+		if (taskScheduler != null) {
+			taskScheduler.close();
+			postbackDeliveryService.destroy();
+		}
+	}
+
+	/**
+	 * @return the wheel, created along with the lane on the first call
+	 * */
+	private HashedTimingWheel start() {
+		HashedTimingWheel started = taskScheduler;
+		if (started != null) {
+			return started;
+		}
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException("The high frequency tier is closed.");
+			}
+			if (taskScheduler == null) {
+				postbackDeliveryService = new ReactivePostbackDeliveryService(postbackRestClient,
+					highFrequencyProperties.getMaxInFlight(), highFrequencyProperties.getQueueCapacity(),
+					PostbackMetrics.HIGH_FREQUENCY_LANE, postbackMetrics);
+				// published last, whoever sees the wheel sees the lane too
+				taskScheduler = new HashedTimingWheel(highFrequencyProperties.getTickDuration(),
+					highFrequencyProperties.getWheelSize(), this::dispatch, "HighFrequencyTimingWheel");
+			}
+			return taskScheduler;
+		}
+	}
+
+	private void dispatch(List<Runnable> dueTasks) {
+		// one timestamp per tick like the standard tier's dispatcher, so its postbacks share their payloads
+		Instant tickTime = Instant.now();
+		for (int i = 0; i < dueTasks.size(); i++) {
+			Runnable task = dueTasks.get(i);
+			if (task instanceof TimePostbackRunnable) {
+				((TimePostbackRunnable) task).postback(tickTime);
+			} else {
+				task.run();
+			}
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.osotnikov.clockserver.subscription.service;
+
+import com.osotnikov.clockserver.config.SchedulerProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Decides when the first postback of a subscription happens. With clockserver.scheduler.phase-spreading enabled every
+ * postback url gets a fixed phase within its period derived from a hash of the url, so subscriptions created in a burst
+ * with the same frequency do not all fire within the same few milliseconds of each period. The phase is relative to
+ * the epoch, so a url always fires at the same offset within its period no matter when it was (re)scheduled.
+ * */
+@Component
+public class PhaseSpreader {
+
+	private final boolean enabled;
+
+	@Autowired
+	public PhaseSpreader(SchedulerProperties schedulerProperties) {
+		this.enabled = schedulerProperties.isPhaseSpreading();
+	}
+
+	/**
+	 * @return time of the first postback, now if phase spreading is disabled
+	 * */
+	public Instant firstFireTime(String postbackUrl, Duration period) {
+		Instant now = Instant.now();
+		if (!enabled) {
+			return now;
+		}
+		long periodMillis = period.toMillis();
+		long phaseMillis = Math.floorMod(mix(postbackUrl.hashCode()), periodMillis);
+		long sincePhaseMillis = Math.floorMod(now.toEpochMilli() - phaseMillis, periodMillis);
+		return sincePhaseMillis == 0 ? now : now.plusMillis(periodMillis - sincePhaseMillis);
+	}
+
+	/**
+	 * @return first time that is not in the past and is a whole number of periods away from the phase anchor, i.e.
+	 * the next postback of a subscription that is rescheduled with its original phase
+	 * */
+	public Instant nextFireTime(Instant phaseAnchor, Duration period) {
+		return nextFireTime(phaseAnchor, period, Instant.now());
+	}
+
+	/**
+	 * @return first time that is not before notBefore and is a whole number of periods away from the phase anchor
+	 * */
+	public Instant nextFireTime(Instant phaseAnchor, Duration period, Instant notBefore) {
+		if (!phaseAnchor.isBefore(notBefore)) {
+			return phaseAnchor;
+		}
+		long periodMillis = period.toMillis();
+		long sinceAnchorMillis = Math.floorMod(notBefore.toEpochMilli() - phaseAnchor.toEpochMilli(), periodMillis);
+		return sinceAnchorMillis == 0 ? notBefore : notBefore.plusMillis(periodMillis - sinceAnchorMillis);
+	}
+
+	/**
+	 * Urls of one client tend to differ only in a few characters, i.e. their hash codes are close to each other,
+	 * mixing spreads them over the whole long range (murmur3 finalizer).
+	 * */
+	static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,11 @@
+package com.osotnikov.clockserver.subscription.service;
+
+/**
+ * A subscription was refused because its tier has no room for it, see {@link HighFrequencyTier}.
+ * */
+public class SubscriptionQuotaExceededException extends RuntimeException {
+
+	public SubscriptionQuotaExceededException(String message) {
+		super(message);
+	}
+}
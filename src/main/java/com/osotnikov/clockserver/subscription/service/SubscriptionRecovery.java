@@ -0,0 +1,34 @@
+package com.osotnikov.clockserver.subscription.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the subscriptions restored by the repository once all the beans are ready, i.e. before the server starts
+ * accepting requests.
+ * */
+@Slf4j
+@Component
+public class SubscriptionRecovery implements SmartInitializingSingleton {
+
+	private final SubscriptionService subscriptionService;
+
+	@Autowired
+	public SubscriptionRecovery(SubscriptionService subscriptionService) {
+		this.subscriptionService = subscriptionService;
+	}
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		long startNanos = System.nanoTime();
+		int restored = subscriptionService.scheduleRestored();
+		if (restored > 0) {
+			log.info("Scheduled {} restored subscriptions in {} ms.", restored,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+		}
+	}
+}
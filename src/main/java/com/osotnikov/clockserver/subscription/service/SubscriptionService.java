@@ -1,32 +1,51 @@
 package com.osotnikov.clockserver.subscription.service;
 
 
+import com.osotnikov.clockserver.cluster.ClusterClient;
+import com.osotnikov.clockserver.cluster.ClusterMembership;
+import com.osotnikov.clockserver.cluster.dto.SubscriptionHandoffDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDeleteDto;
 import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDto;
 import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionPatchDto;
+import com.osotnikov.clockserver.subscription.api.dto.response.SubscriptionInfoDto;
+import com.osotnikov.clockserver.subscription.delivery.PostbackHostResolver;
 import com.osotnikov.clockserver.subscription.repository.SubscriptionRepository;
 import com.osotnikov.clockserver.subscription.service.mapper.SubscriptionDtoMapper;
 import com.osotnikov.clockserver.subscription.service.model.Subscription;
+import com.osotnikov.clockserver.subscription.service.model.SubscriptionState;
+import com.osotnikov.scheduling.PeriodicTaskScheduler;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /*
-* Ideally we'd want to separate the scheduling/triggering of the tasks and the management of the worker threads that
-* execute them (either locally or remotely on other nodes).
-* Currently, the decision is made not to have two separate services for this since both the scheduling/triggering and
-* execution will be managed by spring's TaskScheduler.
-* If there will be a need in the future to use some different executor logic TaskScheduler can be extensively configured
-* by using SchedulingConfigurer @Configuration component.
-* If there will be a need not to use TaskScheduler, we could create our own scheduler and executor and provide them
-* as dependencies to this class which would change the implementation but not its API.
+* The scheduling/triggering of the tasks is separated from the threads that execute them by PeriodicTaskScheduler.
+* By default it is a HashedTimingWheel (clockserver.scheduler.engine=timing-wheel) whose single thread only does the
+* bookkeeping and hands all the postbacks due on a tick to the TimePostbackTickDispatcher, which sends them in batches
+* with one timestamp per tick on the postbackTaskExecutor. With clockserver.scheduler.engine=task-scheduler every
+* subscription is a task of spring's TaskScheduler instead. Either way this service only depends on the interface.
 *
-* As far as the concurrency is concerned the decision was to synchronize on the element level instead of the store/action
-* level which resulted in a more complex code. Care was taken to ensure that there will never be two concurrent schedules
-* for the same subscription, or a schedule for a deleted subscription. There are no other guarantees given for scenarios
-* with multiple different concurrent requests for the same subscription.
+* As far as the concurrency is concerned there are no locks, every change of a subscription is a compare and set of its
+* state in the repository (see SubscriptionState): INITIALIZING -> ACTIVE on create, ACTIVE -> RESCHEDULING -> ACTIVE
+* on patch, and a compare and delete from any state on delete. Futures are only ever scheduled before a compare and set
+* that would publish them, whoever loses the compare and set cancels the future it scheduled, and whoever moves a
+* subscription out of ACTIVE cancels its published future. Therefore there is at most one published schedule per
+* subscription and none for a deleted one. A patch or delete that overtakes a create or another patch wins, i.e. the
+* outcome is the same as if the operations had happened one after the other in the order of their compare and sets.
+*
+* In cluster mode (see ClusterMembership) every subscription is owned by one node, the public methods forward to the
+* owner and the *Locally methods are what the owner runs.
+*
+* Subscriptions with periods of up to one second are scheduled by the HighFrequencyTier, which admits them against its
+* quota before they are stored and gets their place back once they are deleted or patched to a longer period.
  * */
 @Service
 public class SubscriptionService {
@@ -34,97 +53,271 @@ public class SubscriptionService {
 	private final SubscriptionDtoMapper subscriptionDtoMapper;
 	private final SubscriptionRepository subscriptionRepository; // any method calls in this service are atomic
 	private final TimePostbackRunnableFactory timePostbackRunnableFactory;
-	private final TaskScheduler taskScheduler;
+	private final PeriodicTaskScheduler taskScheduler;
+	private final PhaseSpreader phaseSpreader;
+	private final ClusterMembership clusterMembership;
+	private final ClusterClient clusterClient;
+	private final HighFrequencyTier highFrequencyTier;
+	private final PostbackHostResolver postbackHostResolver;
 
 	@Autowired
 	public SubscriptionService(SubscriptionDtoMapper subscriptionDtoMapper, SubscriptionRepository subscriptionRepository,
-							   TimePostbackRunnableFactory timePostbackRunnableFactory, TaskScheduler taskScheduler) {
+							   TimePostbackRunnableFactory timePostbackRunnableFactory, PeriodicTaskScheduler taskScheduler,
+							   PhaseSpreader phaseSpreader, ClusterMembership clusterMembership,
+							   ClusterClient clusterClient, HighFrequencyTier highFrequencyTier,
+							   PostbackHostResolver postbackHostResolver) {
 		this.subscriptionDtoMapper = subscriptionDtoMapper;
 		this.subscriptionRepository = subscriptionRepository;
 		this.timePostbackRunnableFactory = timePostbackRunnableFactory;
 		this.taskScheduler = taskScheduler;
+		this.phaseSpreader = phaseSpreader;
+		this.clusterMembership = clusterMembership;
+		this.clusterClient = clusterClient;
+		this.highFrequencyTier = highFrequencyTier;
+		this.postbackHostResolver = postbackHostResolver;
 	}
 
 	/**
 	 * @returns: false if there is already a schedule for this subscription request, true if it is successfully created
+	 * @throws SubscriptionQuotaExceededException if it is a high frequency subscription and the tier is full
+	 * @throws com.osotnikov.clockserver.cluster.ClusterUnavailableException if the owner of the subscription is
+	 * another node and it cannot be reached
 	 * */
 	public boolean schedule(SubscriptionDto subscriptionDto) {
+		String owner = clusterMembership.remoteOwnerOf(subscriptionDto.getPostbackUrl());
+		return owner != null ? clusterClient.schedule(owner, subscriptionDto) : scheduleLocally(subscriptionDto);
+	}
+
+	public boolean scheduleLocally(SubscriptionDto subscriptionDto) {
 		Subscription subscription = subscriptionDtoMapper.map(subscriptionDto);
+		// the anchor is part of what gets stored, so it has to be decided before storing
+		subscription.setPhaseAnchor(phaseSpreader.firstFireTime(subscription.getPostbackUrl(), periodOf(subscription)));
+		boolean highFrequency = isHighFrequency(subscription);
+		if (highFrequency) {
+			highFrequencyTier.admit();
+		}
 		Subscription subscription2 = subscriptionRepository.storeNew(subscription); // atomic
 		if (subscription2 != null) {
+			if (highFrequency) {
+				highFrequencyTier.release();
+			}
 			return false; // subscription already exists
 		}
-		// subscription has now been created with subscription.getScheduledFuture() == null, any deletes or patches
-		// that might happen immediately after will not go through and any other creates will return from
-		// the "if" above (see delete and changeSchedule methods), therefore there is no need for a synchronized block
-		// here.
-		scheduleSubscription(subscription);
+		// the subscription is created, if a patch or delete gets to it before it is activated that is their outcome
+		activate(subscription, subscription.getPhaseAnchor());
 		return true;
 	}
 
 	/**
-	 * @returns: false if there was no subscription for the given name, true if it is successfully deleted
+	 * Schedules every subscription of the repository that is not scheduled yet, i.e. the ones restored by a durable
+	 * repository on startup. They keep firing in the phase they had before the restart.
+	 * @returns: number of subscriptions that were scheduled
 	 * */
-	public boolean delete(String name) {
-		Subscription subscription = subscriptionRepository.get(name);
-		if(subscription == null) {
+	public int scheduleRestored() {
+		AtomicInteger restored = new AtomicInteger();
+		subscriptionRepository.forEach(subscription -> {
+			if(subscription.getState() != SubscriptionState.INITIALIZING) {
+				return;
+			}
+			Instant phaseAnchor = subscription.getPhaseAnchor();
+			Instant firstFireTime = phaseAnchor != null ? phaseSpreader.nextFireTime(phaseAnchor, periodOf(subscription)) :
+				phaseSpreader.firstFireTime(subscription.getPostbackUrl(), periodOf(subscription));
+			if(activate(subscription, firstFireTime)) {
+				if(isHighFrequency(subscription)) {
+					highFrequencyTier.readmit();
+				}
+				restored.incrementAndGet();
+			}
+		});
+		return restored.get();
+	}
+
+	/**
+	 * Schedules a subscription handed off by the node that owned it before, it fires from the first fire time of the
+	 * handoff on, the previous owner stops before that.
+	 * @returns: false if the subscription is already here, e.g. the handoff is retried
+	 * */
+	public boolean adopt(SubscriptionHandoffDto subscriptionHandoffDto) {
+		Subscription subscription = new Subscription(subscriptionHandoffDto.getPostbackUrl(),
+			subscriptionHandoffDto.getFrequency(), null);
+		subscription.setMissedTickPolicy(subscriptionHandoffDto.getMissedTickPolicy());
+		subscription.setMaxInFlight(subscriptionHandoffDto.getMaxInFlight());
+		if (subscriptionHandoffDto.getTimeFormat() != null) {
+			// null when handed off by a node that predates time formats
+			subscription.setTimeFormat(subscriptionHandoffDto.getTimeFormat());
+		}
+		if (subscriptionHandoffDto.getEncoding() != null) {
+			// null when handed off by a node that predates encodings
+			subscription.setEncoding(subscriptionHandoffDto.getEncoding());
+		}
+		subscription.setPhaseAnchor(subscriptionHandoffDto.getPhaseAnchor());
+		if (subscriptionRepository.storeNew(subscription) != null) {
 			return false;
 		}
-		// subscription might have been changed before entering this synchronized block, in that case it has already
-		// been deleted and recreated so this method just returns false since it is only synchronized on the initial value
-		synchronized(subscription) {
-			Subscription subscription2 = subscriptionRepository.get(name);
-			if(subscription != subscription2 || subscription.getScheduledFuture() == null) {
-				// If subscription.getScheduledFuture() has not been initialized don't consider this as an existing subscription
-				// since it is in the process of initialization.
+		if (isHighFrequency(subscription)) {
+			highFrequencyTier.readmit();
+		}
+		activate(subscription, subscriptionHandoffDto.getFirstFireTime());
+		return true;
+	}
+
+	/**
+	 * @return the subscription as it is handed off to another node, to fire there from its first tick at or after
+	 * notBefore on
+	 * */
+	public SubscriptionHandoffDto toHandoff(Subscription subscription, Instant notBefore) {
+		Instant phaseAnchor = subscription.getPhaseAnchor() != null ? subscription.getPhaseAnchor() : notBefore;
+		return new SubscriptionHandoffDto(subscription.getPostbackUrl(), subscription.getFrequency(),
+			subscription.getMissedTickPolicy(), subscription.getMaxInFlight(), subscription.getTimeFormat(),
+			subscription.getEncoding(), phaseAnchor,
+			phaseSpreader.nextFireTime(phaseAnchor, periodOf(subscription), notBefore));
+	}
+
+	/**
+	 * @returns: false if there was no subscription for the given name, true if it is successfully deleted
+	 * @throws com.osotnikov.clockserver.cluster.ClusterUnavailableException if the owner of the subscription is
+	 * another node and it cannot be reached
+	 * */
+	public boolean delete(String name) {
+		String owner = clusterMembership.remoteOwnerOf(name);
+		return owner != null ? clusterClient.delete(owner, new SubscriptionDeleteDto(name)) : deleteLocally(name);
+	}
+
+	public boolean deleteLocally(String name) {
+		while(true) {
+			Subscription subscription = subscriptionRepository.get(name);
+			if(subscription == null) {
 				return false;
 			}
-			subscriptionRepository.deleteExisting(name);
-			subscription.getScheduledFuture().cancel(false);
-			return true;
+			if(subscriptionRepository.compareAndDelete(subscription)) {
+				// only an ACTIVE subscription has a published future, in the other states its creator or rescheduler
+				// will fail to publish theirs and cancel it
+				cancel(subscription.getScheduledFuture());
+				if(isHighFrequency(subscription)) {
+					highFrequencyTier.release();
+				}
+				return true;
+			}
 		}
 	}
 
 	/**
 	 * @returns: false if there was no subscription for the given name, true if it is successfully changed
+	 * @throws SubscriptionQuotaExceededException if it is changed to a high frequency and the tier is full
+	 * @throws com.osotnikov.clockserver.cluster.ClusterUnavailableException if the owner of the subscription is
+	 * another node and it cannot be reached
 	 * */
 	public boolean changeSchedule(SubscriptionPatchDto subscriptionPatchDto) {
-		Subscription subscription = subscriptionRepository.get(subscriptionPatchDto.getName());
-		if(subscription == null) {
-			return false;
-		}
-		// subscription might have been deleted or changed before entering this synchronized block, also it might not
-		// have been fully initialized.
-		synchronized(subscription) {
-			if(subscription.getScheduledFuture() == null) {
-				// If subscription.getScheduledFuture() has not been initialized don't consider this as an existing
-				// subscription since it is in the process of initialization.
+		String owner = clusterMembership.remoteOwnerOf(subscriptionPatchDto.getName());
+		return owner != null ? clusterClient.changeSchedule(owner, subscriptionPatchDto) :
+			changeScheduleLocally(subscriptionPatchDto);
+	}
+
+	public boolean changeScheduleLocally(SubscriptionPatchDto subscriptionPatchDto) {
+		String name = subscriptionPatchDto.getName();
+		boolean highFrequency = HighFrequencyTier.isHighFrequency(periodOf(subscriptionPatchDto.getFrequency()));
+		while(true) {
+			Subscription subscription = subscriptionRepository.get(name);
+			if(subscription == null) {
 				return false;
 			}
-			// if it was deleted or is just being created we need to exit, if it's been changed we need the reference
-			// to the new scheduled feature
-			Subscription subscription2 = subscriptionRepository.get(subscriptionPatchDto.getName());
-			if(subscription2 != subscription) {
-				// different reference means subscription was deleted and recreated, could be argued that we still need
-				// to modify it but we're not synchronized on the new reference, therefore we just act as if the subscription
-				// does not exist and return false because this is an unlikely edge case anyway.
-				return false;
+			// a high frequency subscription changed to another high frequency keeps its place of the quota
+			boolean wasHighFrequency = isHighFrequency(subscription);
+			boolean admitted = highFrequency && !wasHighFrequency;
+			if(admitted) {
+				highFrequencyTier.admit();
+			}
+			Subscription rescheduling = subscription.toBuilder()
+				.state(SubscriptionState.RESCHEDULING)
+				.scheduledFuture(null)
+				.frequency(subscriptionPatchDto.getFrequency())
+				.build();
+			rescheduling.setPhaseAnchor(phaseSpreader.firstFireTime(name, periodOf(rescheduling)));
+			if(subscriptionRepository.compareAndSet(subscription, rescheduling)) {
+				cancel(subscription.getScheduledFuture());
+				if(wasHighFrequency && !highFrequency) {
+					highFrequencyTier.release();
+				}
+				activate(rescheduling, rescheduling.getPhaseAnchor());
+				return true;
+			}
+			if(admitted) {
+				highFrequencyTier.release();
 			}
-			subscription.getScheduledFuture().cancel(false);
-			subscription.setFrequency(subscriptionPatchDto.getFrequency());
-			scheduleSubscription(subscription);
-			return true;
 		}
 	}
 
-	private void scheduleSubscription(Subscription subscription) {
-		Duration duration = Duration.ofSeconds(subscription.getFrequency().getSeconds())
-			.plusMinutes(subscription.getFrequency().getMinutes())
-			.plusHours(subscription.getFrequency().getHours());
-		ScheduledFuture sf = taskScheduler.scheduleAtFixedRate(
-			timePostbackRunnableFactory.createRunnable(subscription.getPostbackUrl()),
-			duration);
-		subscription.setScheduledFuture(sf);
+	/**
+	 * Visits up to limit subscriptions after the cursor. In cluster mode these are the subscriptions of this node only.
+	 * @param cursor null for the first page, otherwise the cursor returned for the previous page
+	 * @returns: opaque cursor of the next page, null after the last page
+	 * @throws IllegalArgumentException if the cursor is not one returned by this method
+	 * */
+	public String list(String cursor, int limit, Consumer<SubscriptionInfoDto> action) {
+		String next = subscriptionRepository.page(cursor != null ? decodeCursor(cursor) : null, limit, subscription -> {
+			action.accept(toInfo(subscription));
+		});
+		return next != null ? Base64.getUrlEncoder().withoutPadding().encodeToString(
+			next.getBytes(StandardCharsets.UTF_8)) : null;
+	}
+
+	private SubscriptionInfoDto toInfo(Subscription subscription) {
+		return new SubscriptionInfoDto(subscription.getPostbackUrl(), subscription.getFrequency(),
+			subscription.getMissedTickPolicy(), subscription.getMaxInFlight(), subscription.getTimeFormat(),
+			subscription.getEncoding(), subscription.getPhaseAnchor() != null ?
+				phaseSpreader.nextFireTime(subscription.getPhaseAnchor(), periodOf(subscription)) : null);
+	}
+
+	private static String decodeCursor(String cursor) {
+		return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Schedules an INITIALIZING or RESCHEDULING subscription and publishes the schedule by moving it to ACTIVE.
+	 * @returns: false if the subscription changed meanwhile, the schedule has been cancelled again then
+	 * */
+	private boolean activate(Subscription subscription, Instant firstFireTime) {
+		// resolved in the background, in time for the first tick unless it is due right away
+		postbackHostResolver.prefetch(subscription.getPostbackUrl());
+		Duration period = periodOf(subscription);
+		ScheduledFuture scheduledFuture = HighFrequencyTier.isHighFrequency(period) ?
+			highFrequencyTier.schedule(subscription.getPostbackUrl(), subscription.getMaxInFlight(),
+				subscription.getTimeFormat(), subscription.getEncoding(), firstFireTime, period,
+				subscription.getMissedTickPolicy()) :
+			taskScheduler.scheduleAtFixedRate(
+				timePostbackRunnableFactory.createRunnable(subscription.getPostbackUrl(), subscription.getMaxInFlight(),
+					subscription.getTimeFormat(), subscription.getEncoding()),
+				firstFireTime, period, subscription.getMissedTickPolicy());
+		Subscription active = subscription.toBuilder()
+			.state(SubscriptionState.ACTIVE)
+			.scheduledFuture(scheduledFuture)
+			.build();
+		if(!subscriptionRepository.compareAndSet(subscription, active)) {
+			scheduledFuture.cancel(false);
+			return false;
+		}
+		return true;
+	}
+
+	private static void cancel(ScheduledFuture scheduledFuture) {
+		if(scheduledFuture != null) {
+			scheduledFuture.cancel(false);
+		}
+	}
+
+	private static boolean isHighFrequency(Subscription subscription) {
+		return HighFrequencyTier.isHighFrequency(periodOf(subscription));
+	}
+
+	public static Duration periodOf(Subscription subscription) {
+		return periodOf(subscription.getFrequency());
+	}
+
+	public static Duration periodOf(FrequencyDto frequency) {
+		return Duration.ofSeconds(frequency.getSeconds())
+			.plusMinutes(frequency.getMinutes())
+			.plusHours(frequency.getHours())
+			.plusMillis(frequency.getMilliseconds());
 	}
 
 }
@@ -0,0 +1,40 @@
+package com.osotnikov.clockserver.subscription.service;
+
+import com.osotnikov.clockserver.metrics.SchedulerMetrics;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Posts the same time to all the subscriptions that were due on the same tick, and reports how long it waited for an
+ * executor thread.
+ * */
+public class TimePostbackBatch implements Runnable {
+
+	private final List<TimePostbackRunnable> postbacks;
+	private final Instant tickTime;
+	private final SchedulerMetrics schedulerMetrics;
+	private final long createdAtNanos = System.nanoTime();
+
+	TimePostbackBatch(List<TimePostbackRunnable> postbacks, Instant tickTime, SchedulerMetrics schedulerMetrics) {
+		this.postbacks = postbacks;
+		this.tickTime = tickTime;
+		this.schedulerMetrics = schedulerMetrics;
+	}
+
+	public List<TimePostbackRunnable> getPostbacks() {
+		return postbacks;
+	}
+
+	public Instant getTickTime() {
+		return tickTime;
+	}
+
+	@Override
+	public void run() {
+		schedulerMetrics.recordQueueWait(System.nanoTime() - createdAtNanos);
+		for (TimePostbackRunnable postback : postbacks) {
+			postback.postback(tickTime);
+		}
+	}
+}
@@ -1,22 +1,84 @@
 package com.osotnikov.clockserver.subscription.service;
 
-import com.osotnikov.clockserver.subscription.service.model.rest.client.dto.request.CurrentTimeDto;
-import com.osotnikov.rest.client.RestClient;
+import com.osotnikov.clockserver.metrics.PostbackMetrics;
+import com.osotnikov.clockserver.subscription.delivery.PostbackDeliveryService;
+import com.osotnikov.clockserver.subscription.payload.CurrentTimePayloadCache;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.PostbackPayload;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
+import lombok.extern.slf4j.Slf4j;
 
-import java.util.Date;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
 
+@Slf4j
 public class TimePostbackRunnable implements Runnable {
 
 	private final String postbackUrl;
-	private final RestClient<CurrentTimeDto> restClient;
+	private final PostbackDeliveryService postbackDeliveryService;
+	private final CurrentTimePayloadCache currentTimePayloadCache;
+	private final PostbackMetrics postbackMetrics;
+	private final int maxInFlight;
+	private final TimeFormat timeFormat;
+	private final PayloadEncoding encoding;
+	private final AtomicInteger inFlight = new AtomicInteger();
 
-	TimePostbackRunnable(String postbackUrl, RestClient<CurrentTimeDto> restClient) {
+	TimePostbackRunnable(String postbackUrl, PostbackDeliveryService postbackDeliveryService,
+						 CurrentTimePayloadCache currentTimePayloadCache, PostbackMetrics postbackMetrics,
+						 int maxInFlight) {
+		this(postbackUrl, postbackDeliveryService, currentTimePayloadCache, postbackMetrics, maxInFlight,
+			TimeFormat.LEGACY, PayloadEncoding.JSON);
+	}
+
+	TimePostbackRunnable(String postbackUrl, PostbackDeliveryService postbackDeliveryService,
+						 CurrentTimePayloadCache currentTimePayloadCache, PostbackMetrics postbackMetrics,
+						 int maxInFlight, TimeFormat timeFormat, PayloadEncoding encoding) {
 		this.postbackUrl = postbackUrl;
-		this.restClient = restClient;
+		this.postbackDeliveryService = postbackDeliveryService;
+		this.currentTimePayloadCache = currentTimePayloadCache;
+		this.postbackMetrics = postbackMetrics;
+		this.maxInFlight = maxInFlight;
+		this.timeFormat = timeFormat;
+		this.encoding = encoding;
+	}
+
+	public String getPostbackUrl() {
+		return postbackUrl;
+	}
+
+	public TimeFormat getTimeFormat() {
+		return timeFormat;
+	}
+
+	public PayloadEncoding getEncoding() {
+		return encoding;
 	}
 
 	@Override
 	public void run() {
-		restClient.postAndIgnoreResponseBody(postbackUrl, new CurrentTimeDto(new Date().toString()));
+		postback(currentTimePayloadCache.current(timeFormat, encoding));
+	}
+
+	/**
+	 * Posts the tick time in the subscription's format and encoding, the payload is shared with all the postbacks of
+	 * the same tick, format and encoding.
+	 * */
+	void postback(Instant tickTime) {
+		postback(currentTimePayloadCache.at(tickTime, timeFormat, encoding));
+	}
+
+	/**
+	 * Skips the tick if the subscriber has not yet answered maxInFlight previous postbacks, so that a slow subscriber
+	 * is not flooded with more and more concurrent requests.
+	 * */
+	void postback(PostbackPayload payload) {
+		if (inFlight.incrementAndGet() > maxInFlight) {
+			inFlight.decrementAndGet();
+			log.debug("Skipped postback to {}, {} postbacks still in flight.", postbackUrl, maxInFlight);
+			postbackMetrics.skipped();
+			return;
+		}
+		postbackDeliveryService.deliver(postbackUrl, payload)
+			.whenComplete((success, e) -> inFlight.decrementAndGet());
 	}
 }
@@ -1,22 +1,46 @@
 package com.osotnikov.clockserver.subscription.service;
 
-import com.osotnikov.clockserver.subscription.service.model.rest.client.dto.request.CurrentTimeDto;
-import com.osotnikov.rest.client.RestClient;
+import com.osotnikov.clockserver.metrics.PostbackMetrics;
+import com.osotnikov.clockserver.metrics.SchedulerMetrics;
+import com.osotnikov.clockserver.subscription.delivery.PostbackDeliveryService;
+import com.osotnikov.clockserver.subscription.payload.CurrentTimePayloadCache;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+import java.util.List;
+
 @Component
 public class TimePostbackRunnableFactory {
 
-	private RestClient<CurrentTimeDto> restClient = new RestClient<>();
+	private final PostbackDeliveryService postbackDeliveryService;
+	private final CurrentTimePayloadCache currentTimePayloadCache;
+	private final PostbackMetrics postbackMetrics;
+	private final SchedulerMetrics schedulerMetrics;
 
 	@Autowired
-	public TimePostbackRunnableFactory() {
+	public TimePostbackRunnableFactory(PostbackDeliveryService postbackDeliveryService,
+									   CurrentTimePayloadCache currentTimePayloadCache,
+									   PostbackMetrics postbackMetrics, SchedulerMetrics schedulerMetrics) {
+		this.postbackDeliveryService = postbackDeliveryService;
+		this.currentTimePayloadCache = currentTimePayloadCache;
+		this.postbackMetrics = postbackMetrics;
+		this.schedulerMetrics = schedulerMetrics;
+	}
 
+	/**
+	 * @param maxInFlight maximum number of postbacks awaiting a response, ticks above this are skipped
+	 * */
+	public TimePostbackRunnable createRunnable(String postbackUrl, int maxInFlight, TimeFormat timeFormat,
+											   PayloadEncoding encoding) {
+		return new TimePostbackRunnable(postbackUrl, postbackDeliveryService, currentTimePayloadCache,
+			postbackMetrics, maxInFlight, timeFormat, encoding);
 	}
 
-	public TimePostbackRunnable createRunnable(String postbackUrl) {
-		return new TimePostbackRunnable(postbackUrl, restClient);
+	public TimePostbackBatch createBatch(List<TimePostbackRunnable> postbacks, Instant tickTime) {
+		return new TimePostbackBatch(postbacks, tickTime, schedulerMetrics);
 	}
 
 }
@@ -0,0 +1,62 @@
+package com.osotnikov.clockserver.subscription.service;
+
+import com.osotnikov.clockserver.config.SchedulerProperties;
+import com.osotnikov.scheduling.DueTaskDispatcher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Coalesces all the postbacks that are due on the same tick, they share a single timestamp and are handed to the
+ * executor in batches of up to clockserver.scheduler.batch-size postbacks instead of one task per subscription.
+ * Any other due task is executed on its own.
+ * */
+@Component
+public class TimePostbackTickDispatcher implements DueTaskDispatcher {
+
+	private final TimePostbackRunnableFactory timePostbackRunnableFactory;
+	private final Executor executor;
+	private final int batchSize;
+
+	@Autowired
+	public TimePostbackTickDispatcher(TimePostbackRunnableFactory timePostbackRunnableFactory,
+									  @Qualifier("postbackTaskExecutor") Executor executor,
+									  SchedulerProperties schedulerProperties) {
+		this.timePostbackRunnableFactory = timePostbackRunnableFactory;
+		this.executor = executor;
+		this.batchSize = schedulerProperties.getBatchSize();
+	}
+
+	@Override
+	public void dispatch(List<Runnable> dueTasks) {
+		Instant tickTime = null;
+		List<TimePostbackRunnable> postbacks = null;
+		for (int i = 0; i < dueTasks.size(); i++) {
+			Runnable task = dueTasks.get(i);
+			if (!(task instanceof TimePostbackRunnable)) {
+				executor.execute(task);
+				continue;
+			}
+			if (tickTime == null) {
+				// one timestamp per tick, each format of it is encoded once by the payload cache
+				tickTime = Instant.now();
+			}
+			if (postbacks == null) {
+				postbacks = new ArrayList<>(Math.min(batchSize, dueTasks.size() - i));
+			}
+			postbacks.add((TimePostbackRunnable) task);
+			if (postbacks.size() == batchSize) {
+				executor.execute(timePostbackRunnableFactory.createBatch(postbacks, tickTime));
+				postbacks = null;
+			}
+		}
+		if (postbacks != null) {
+			executor.execute(timePostbackRunnableFactory.createBatch(postbacks, tickTime));
+		}
+	}
+}
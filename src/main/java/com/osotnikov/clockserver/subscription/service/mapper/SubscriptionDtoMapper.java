@@ -1,15 +1,41 @@
 package com.osotnikov.clockserver.subscription.service.mapper;
 
+import com.osotnikov.clockserver.config.DeliveryProperties;
+import com.osotnikov.clockserver.config.PayloadProperties;
+import com.osotnikov.clockserver.config.SchedulerProperties;
 import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDto;
 import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionPatchDto;
 import com.osotnikov.clockserver.subscription.service.model.Subscription;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 @Service
 public class SubscriptionDtoMapper {
 
+	private final SchedulerProperties schedulerProperties;
+	private final DeliveryProperties deliveryProperties;
+	private final PayloadProperties payloadProperties;
+
+	@Autowired
+	public SubscriptionDtoMapper(SchedulerProperties schedulerProperties, DeliveryProperties deliveryProperties,
+								 PayloadProperties payloadProperties) {
+		this.schedulerProperties = schedulerProperties;
+		this.deliveryProperties = deliveryProperties;
+		this.payloadProperties = payloadProperties;
+	}
+
 	public Subscription map(SubscriptionDto subscriptionDto) {
-		return new Subscription(subscriptionDto.getPostbackUrl(), subscriptionDto.getFrequency(), null);
+		Subscription subscription = new Subscription(subscriptionDto.getPostbackUrl(), subscriptionDto.getFrequency(),
+			null);
+		subscription.setMissedTickPolicy(subscriptionDto.getMissedTickPolicy() != null ?
+			subscriptionDto.getMissedTickPolicy() : schedulerProperties.getMissedTickPolicy());
+		subscription.setMaxInFlight(subscriptionDto.getMaxInFlight() != null ?
+			subscriptionDto.getMaxInFlight() : deliveryProperties.getMaxInFlightPerSubscription());
+		subscription.setTimeFormat(subscriptionDto.getTimeFormat() != null ?
+			subscriptionDto.getTimeFormat() : payloadProperties.getTimeFormat());
+		subscription.setEncoding(subscriptionDto.getEncoding() != null ?
+			subscriptionDto.getEncoding() : payloadProperties.getEncoding());
+		return subscription;
 	}
 
 	public Subscription map(SubscriptionPatchDto subscriptionPatchDto) {
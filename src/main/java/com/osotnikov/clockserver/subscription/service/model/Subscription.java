@@ -1,19 +1,53 @@
 package com.osotnikov.clockserver.subscription.service.model;
 
 import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
+import com.osotnikov.scheduling.MissedTickPolicy;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
 import java.util.concurrent.ScheduledFuture;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Subscription {
 	private String postbackUrl;
 	private FrequencyDto frequency;
 	private ScheduledFuture scheduledFuture;
+	private MissedTickPolicy missedTickPolicy;
+	private int maxInFlight;
+	@Builder.Default
+	private TimeFormat timeFormat = TimeFormat.LEGACY;
+	@Builder.Default
+	private PayloadEncoding encoding = PayloadEncoding.JSON;
+	/**
+	 * A fire time of the subscription, every postback happens a whole number of periods before or after it. It is
+	 * persisted so that a restored subscription keeps firing in the same phase.
+	 * */
+	private Instant phaseAnchor;
+	@Builder.Default
+	private SubscriptionState state = SubscriptionState.INITIALIZING;
+	/**
+	 * Set by the repository whenever the subscription is stored, unique among all subscriptions it has ever stored.
+	 * Subscriptions read from the repository are never changed in place, a change is a compare and set of a copy
+	 * against the version that was read.
+	 * */
+	private long version;
+
+	public Subscription(String postbackUrl, FrequencyDto frequency, ScheduledFuture scheduledFuture) {
+		this.postbackUrl = postbackUrl;
+		this.frequency = frequency;
+		this.scheduledFuture = scheduledFuture;
+		this.missedTickPolicy = MissedTickPolicy.CATCH_UP;
+		this.maxInFlight = 1;
+		this.timeFormat = TimeFormat.LEGACY;
+		this.encoding = PayloadEncoding.JSON;
+		this.state = SubscriptionState.INITIALIZING;
+	}
 }
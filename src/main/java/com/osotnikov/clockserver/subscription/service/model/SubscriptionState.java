@@ -0,0 +1,22 @@
+package com.osotnikov.clockserver.subscription.service.model;
+
+/**
+ * Lifecycle of a stored subscription, every transition is a compare and set of the whole subscription in the
+ * repository. There is no deleted state, deleting is a compare and delete that removes the subscription from the
+ * repository, so any later compare and set against it fails.
+ * */
+public enum SubscriptionState {
+	/**
+	 * Stored, its first schedule has not been published yet. No scheduled future.
+	 * */
+	INITIALIZING,
+	/**
+	 * The scheduled future is the one schedule of the subscription.
+	 * */
+	ACTIVE,
+	/**
+	 * The frequency has been changed and the previous schedule cancelled, the new schedule has not been published yet.
+	 * No scheduled future.
+	 * */
+	RESCHEDULING
+}
@@ -0,0 +1,36 @@
+package com.osotnikov.rest.client;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * How a post ended, for callers that need more than success or not, e.g. for metrics.
+ * */
+public enum PostOutcome {
+
+	SUCCESS,
+	/**
+	 * Error response, connection refused, reset etc.
+	 * */
+	FAILURE,
+	/**
+	 * Connect, pool acquire or response timeout.
+	 * */
+	TIMEOUT;
+
+	public boolean isSuccess() {
+		return this == SUCCESS;
+	}
+
+	static PostOutcome of(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof TimeoutException
+				|| cause instanceof SocketTimeoutException
+				|| cause instanceof io.netty.handler.timeout.TimeoutException
+				|| cause instanceof io.netty.channel.ConnectTimeoutException) {
+				return TIMEOUT;
+			}
+		}
+		return FAILURE;
+	}
+}
@@ -1,18 +1,38 @@
 package com.osotnikov.rest.client;
 
 import org.apache.http.HttpHeaders;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
 
 /**
  * Abstracts the logic to make remote rest requests
  * */
 public class RestClient<T> {
 
-	private WebClient webClient = WebClient.builder()
-		.defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-		.build();
+	private final WebClient webClient;
+
+	public RestClient() {
+		this(WebClient.builder());
+	}
+
+	/**
+	 * @param clientHttpConnector underlying http client, e.g. with tuned connection pools and protocols
+	 * */
+	public RestClient(ClientHttpConnector clientHttpConnector) {
+		this(WebClient.builder().clientConnector(clientHttpConnector));
+	}
+
+	private RestClient(WebClient.Builder webClientBuilder) {
+		this.webClient = webClientBuilder
+			.defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+			.build();
+	}
 
 	/**
 	 * returns true if successful, false otherwise, ignores response body
@@ -20,19 +40,57 @@ public class RestClient<T> {
 	 * Ideally it should map to a ResponseDto that's independent of underlying implementation.
 	 * */
 	public boolean postAndIgnoreResponseBody(String uri, T bodyContent) {
-		try {
-			ResponseEntity<Void> r = webClient
+		return Boolean.TRUE.equals(post(uri, bodyContent).block());
+	}
+
+	/**
+	 * Non-blocking version of {@link #postAndIgnoreResponseBody(String, Object)}, the returned mono completes on the
+	 * http client's event loop with true if successful, false otherwise, it never completes with an error.
+	 * */
+	public Mono<Boolean> post(String uri, T bodyContent) {
+		return Mono.defer(() -> webClient
 				.post()
 				.uri(uri)
 				.bodyValue(bodyContent)
 				.retrieve()
-				.toBodilessEntity()
-				.block();
-			return !r.getStatusCode().isError();
-		} catch (Exception e) {
-			// on 500 internal ClientHttpConnector throws an exception hence we need the catch, known bug cannot handle
+				.toBodilessEntity())
+			.map(r -> !r.getStatusCode().isError())
+			// on 500 internal ClientHttpConnector signals an exception instead of a response, known bug cannot handle
 			// in async stream with onErrorContinue ...
-			return false;
-		}
+			.onErrorReturn(false)
+			.defaultIfEmpty(false);
+	}
+
+	/**
+	 * Same as {@link #postAndIgnoreResponseBody(String, Object)} for a body that is already encoded.
+	 * */
+	public boolean postEncodedAndIgnoreResponseBody(String uri, MediaType contentType, Supplier<DataBuffer> body) {
+		return Boolean.TRUE.equals(postEncoded(uri, contentType, body).block());
+	}
+
+	/**
+	 * Same as {@link #post(String, Object)} for a body that is already encoded, the buffer is written as is (no
+	 * codecs involved) and released once written.
+	 * @param body called once per request, e.g. to get a view of a buffer that is shared by many requests
+	 * */
+	public Mono<Boolean> postEncoded(String uri, MediaType contentType, Supplier<DataBuffer> body) {
+		return postEncodedForOutcome(uri, contentType, body).map(PostOutcome::isSuccess);
+	}
+
+	/**
+	 * Same as {@link #postEncoded(String, MediaType, Supplier)} but tells failures and timeouts apart, it never
+	 * completes with an error either.
+	 * */
+	public Mono<PostOutcome> postEncodedForOutcome(String uri, MediaType contentType, Supplier<DataBuffer> body) {
+		return Mono.defer(() -> webClient
+				.post()
+				.uri(uri)
+				.contentType(contentType)
+				.body(BodyInserters.fromDataBuffers(Mono.fromSupplier(body)))
+				.retrieve()
+				.toBodilessEntity())
+			.map(r -> r.getStatusCode().isError() ? PostOutcome.FAILURE : PostOutcome.SUCCESS)
+			.onErrorResume(e -> Mono.just(PostOutcome.of(e)))
+			.defaultIfEmpty(PostOutcome.FAILURE);
 	}
 }
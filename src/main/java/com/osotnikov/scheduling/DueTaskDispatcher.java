@@ -0,0 +1,29 @@
+package com.osotnikov.scheduling;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Receives every task that is due on the same tick of the {@link HashedTimingWheel} in one call, this allows
+ * coalescing the work of many tasks into a few batches instead of waking up a thread per task.
+ * */
+@FunctionalInterface
+public interface DueTaskDispatcher {
+
+	/**
+	 * Called on the timing wheel thread once per tick that has due tasks, therefore it must never block.
+	 * The list is reused by the wheel and is only valid for the duration of the call.
+	 * */
+	void dispatch(List<Runnable> dueTasks);
+
+	/**
+	 * Dispatcher that hands off each due task individually to the executor.
+	 * */
+	static DueTaskDispatcher perTask(Executor executor) {
+		return dueTasks -> {
+			for (int i = 0; i < dueTasks.size(); i++) {
+				executor.execute(dueTasks.get(i));
+			}
+		};
+	}
+}
@@ -0,0 +1,342 @@
+package com.osotnikov.scheduling;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashed timing wheel (Varghese & Lauck) for periodic tasks.
+ *
+ * Schedule and cancel never touch the wheel directly, they only enqueue into lock free queues that the single worker
+ * thread drains once per tick, therefore both are O(1) and callers never contend on a shared lock. Each timeout
+ * remembers the absolute tick it is due on, so timeouts with periods longer than one wheel rotation simply stay in
+ * their bucket until the worker reaches that tick.
+ *
+ * The worker thread only does the bookkeeping, all the tasks due on a tick are handed off together to the
+ * {@link DueTaskDispatcher} so a slow task can never delay the wheel and tasks that share a tick can be coalesced.
+ * Tasks are fired at most one tick late and never early, ticks that are missed by more than that (e.g. the wheel
+ * thread was paused by GC) are handled according to the {@link MissedTickPolicy} of the schedule.
+ * */
+@Slf4j
+public class HashedTimingWheel implements PeriodicTaskScheduler, AutoCloseable {
+
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final DueTaskDispatcher dueTaskDispatcher;
+	private final Thread worker;
+
+	private final Queue<WheelTimeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+	private final Queue<WheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+	private final AtomicLong scheduledCount = new AtomicLong();
+
+	private final long startNanos;
+	private volatile boolean running;
+	private volatile LatenessRecorder latenessRecorder = LatenessRecorder.NONE;
+
+	/**
+	 * @param tickDuration resolution of the wheel, tasks fire at most this late
+	 * @param wheelSize number of buckets, rounded up to the next power of two
+	 * @param executor runs each due task, the wheel thread never runs them itself
+	 * */
+	public HashedTimingWheel(Duration tickDuration, int wheelSize, Executor executor, String threadName) {
+		this(tickDuration, wheelSize, DueTaskDispatcher.perTask(executor), threadName);
+	}
+
+	/**
+	 * @param dueTaskDispatcher receives all the tasks that are due on a tick in one call
+	 * */
+	public HashedTimingWheel(Duration tickDuration, int wheelSize, DueTaskDispatcher dueTaskDispatcher,
+							 String threadName) {
+		if (tickDuration.toNanos() <= 0) {
+			throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration);
+		}
+		if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+			throw new IllegalArgumentException("wheelSize must be in (0, 2^30]: " + wheelSize);
+		}
+		this.tickNanos = tickDuration.toNanos();
+		int bucketCount = 1;
+		while (bucketCount < wheelSize) {
+			bucketCount <<= 1;
+		}
+		this.wheel = new Bucket[bucketCount];
+		for (int i = 0; i < wheel.length; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = wheel.length - 1;
+		this.dueTaskDispatcher = dueTaskDispatcher;
+		this.startNanos = System.nanoTime();
+		this.running = true;
+		this.worker = new Thread(this::runWorker, threadName);
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Instant startTime, Duration period,
+												  MissedTickPolicy missedTickPolicy) {
+		if (!running) {
+			throw new IllegalStateException("Timing wheel has been stopped.");
+		}
+		long periodNanos = period.toNanos();
+		if (periodNanos <= 0) {
+			throw new IllegalArgumentException("period must be positive: " + period);
+		}
+		long delayNanos = Math.max(0, Duration.between(Instant.now(), startTime).toNanos());
+		WheelTimeout timeout = new WheelTimeout(task, periodNanos, missedTickPolicy,
+			System.nanoTime() - startNanos + delayNanos);
+		scheduledCount.incrementAndGet();
+		pendingTimeouts.add(timeout);
+		return timeout;
+	}
+
+	@Override
+	public void setLatenessRecorder(LatenessRecorder latenessRecorder) {
+		this.latenessRecorder = latenessRecorder;
+	}
+
+	/**
+	 * @return number of schedules that are currently active (not cancelled)
+	 * */
+	public long size() {
+		return scheduledCount.get();
+	}
+
+	@Override
+	public void close() {
+		running = false;
+		worker.interrupt();
+		try {
+			worker.join(tickNanos / 1_000_000 + 1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void runWorker() {
+		long tick = 0;
+		List<WheelTimeout> expired = new ArrayList<>();
+		List<Runnable> dueTasks = new ArrayList<>();
+		while (running) {
+			if (!waitForTick(tick)) {
+				break;
+			}
+			processCancelled();
+			transferPending(tick);
+			wheel[(int) (tick & mask)].expire(tick, expired);
+			long nowNanos = System.nanoTime() - startNanos;
+			LatenessRecorder recorder = latenessRecorder;
+			for (int i = 0; i < expired.size(); i++) {
+				WheelTimeout timeout = expired.get(i);
+				long lateness = Math.max(0, nowNanos - timeout.deadlineNanos);
+				if (timeout.missedTickPolicy.shouldRun(lateness, timeout.periodNanos)) {
+					recorder.record(lateness);
+					dueTasks.add(timeout.task);
+				}
+				// fixed rate, no drift
+				timeout.deadlineNanos += timeout.missedTickPolicy.periodsToAdvance(lateness, timeout.periodNanos)
+					* timeout.periodNanos;
+			}
+			if (!dueTasks.isEmpty()) {
+				dispatch(dueTasks);
+				dueTasks.clear();
+			}
+			for (int i = 0; i < expired.size(); i++) {
+				WheelTimeout timeout = expired.get(i);
+				if (!timeout.isCancelled()) {
+					place(timeout, tick + 1);
+				}
+			}
+			expired.clear();
+			tick++;
+		}
+	}
+
+	/**
+	 * Sleeps until the end of the given tick, returns false if the wheel was stopped in the meantime.
+	 * */
+	private boolean waitForTick(long tick) {
+		long tickEndNanos = tickNanos * (tick + 1);
+		while (true) {
+			long sleepNanos = tickEndNanos - (System.nanoTime() - startNanos);
+			if (sleepNanos <= 0) {
+				return true;
+			}
+			try {
+				TimeUnit.NANOSECONDS.sleep(sleepNanos);
+			} catch (InterruptedException e) {
+				if (!running) {
+					return false;
+				}
+			}
+		}
+	}
+
+	private void processCancelled() {
+		WheelTimeout timeout;
+		while ((timeout = cancelledTimeouts.poll()) != null) {
+			if (timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+
+	private void transferPending(long tick) {
+		WheelTimeout timeout;
+		while ((timeout = pendingTimeouts.poll()) != null) {
+			if (!timeout.isCancelled()) {
+				place(timeout, tick);
+			}
+		}
+	}
+
+	/**
+	 * Puts the timeout into the bucket of the tick it is due on, timeouts that are already late go to minTick.
+	 * */
+	private void place(WheelTimeout timeout, long minTick) {
+		timeout.dueTick = Math.max(timeout.deadlineNanos / tickNanos, minTick);
+		wheel[(int) (timeout.dueTick & mask)].add(timeout);
+	}
+
+	private void dispatch(List<Runnable> dueTasks) {
+		try {
+			dueTaskDispatcher.dispatch(dueTasks);
+		} catch (RuntimeException e) {
+			// e.g. rejected by the executor, the next period will try again
+			log.warn("Could not dispatch timing wheel tasks.", e);
+		}
+	}
+
+	/**
+	 * Doubly linked list of timeouts, only ever touched by the worker thread.
+	 * */
+	private static final class Bucket {
+
+		private WheelTimeout head;
+		private WheelTimeout tail;
+
+		void add(WheelTimeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		void expire(long tick, List<WheelTimeout> expired) {
+			WheelTimeout timeout = head;
+			while (timeout != null) {
+				WheelTimeout next = timeout.next;
+				if (timeout.isCancelled()) {
+					remove(timeout);
+				} else if (timeout.dueTick <= tick) {
+					remove(timeout);
+					expired.add(timeout);
+				}
+				timeout = next;
+			}
+		}
+
+		void remove(WheelTimeout timeout) {
+			if (timeout.prev != null) {
+				timeout.prev.next = timeout.next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			}
+			if (timeout == head) {
+				head = timeout.next;
+			}
+			if (timeout == tail) {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+	}
+
+	private final class WheelTimeout implements ScheduledFuture<Object> {
+
+		private static final int ST_ACTIVE = 0;
+		private static final int ST_CANCELLED = 1;
+
+		private final Runnable task;
+		private final long periodNanos;
+		private final MissedTickPolicy missedTickPolicy;
+		// relative to startNanos, only written by the worker thread after creation
+		private volatile long deadlineNanos;
+		volatile int state = ST_ACTIVE; // not private so that the field updater can access it
+
+		// worker thread only
+		private long dueTick;
+		private Bucket bucket;
+		private WheelTimeout prev;
+		private WheelTimeout next;
+
+		WheelTimeout(Runnable task, long periodNanos, MissedTickPolicy missedTickPolicy, long deadlineNanos) {
+			this.task = task;
+			this.periodNanos = periodNanos;
+			this.missedTickPolicy = missedTickPolicy;
+			this.deadlineNanos = deadlineNanos;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			if (!STATE_UPDATER.compareAndSet(this, ST_ACTIVE, ST_CANCELLED)) {
+				return false;
+			}
+			scheduledCount.decrementAndGet();
+			cancelledTimeouts.add(this);
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return state == ST_CANCELLED;
+		}
+
+		@Override
+		public boolean isDone() {
+			// periodic schedules only ever finish by being cancelled
+			return isCancelled();
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(deadlineNanos - (System.nanoTime() - startNanos), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+
+		@Override
+		public Object get() {
+			throw new UnsupportedOperationException("Periodic schedules never complete with a result.");
+		}
+
+		@Override
+		public Object get(long timeout, TimeUnit unit) {
+			throw new UnsupportedOperationException("Periodic schedules never complete with a result.");
+		}
+	}
+
+	private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE_UPDATER =
+		AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+}
@@ -0,0 +1,15 @@
+package com.osotnikov.scheduling;
+
+/**
+ * Receives how late each periodic run fires compared to its intended fire time, e.g. to publish the scheduler lag.
+ * */
+@FunctionalInterface
+public interface LatenessRecorder {
+
+	LatenessRecorder NONE = latenessNanos -> {};
+
+	/**
+	 * Called on the scheduler thread for every run that is due, therefore it must be cheap and never block.
+	 * */
+	void record(long latenessNanos);
+}
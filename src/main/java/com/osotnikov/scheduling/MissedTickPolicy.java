@@ -0,0 +1,62 @@
+package com.osotnikov.scheduling;
+
+/**
+ * What a periodic schedule does about ticks that were missed, e.g. because of a GC pause or an overloaded executor.
+ * A tick counts as missed once the run is late by at least one period, i.e. the next tick is also already due.
+ * */
+public enum MissedTickPolicy {
+
+	/**
+	 * Runs every missed tick back to back until the schedule is on time again.
+	 * */
+	CATCH_UP {
+		@Override
+		public boolean shouldRun(long lateness, long period) {
+			return true;
+		}
+
+		@Override
+		public long periodsToAdvance(long lateness, long period) {
+			return 1;
+		}
+	},
+	/**
+	 * Runs once for all the missed ticks and continues with the next tick that is not yet due.
+	 * */
+	COALESCE {
+		@Override
+		public boolean shouldRun(long lateness, long period) {
+			return true;
+		}
+
+		@Override
+		public long periodsToAdvance(long lateness, long period) {
+			return lateness / period + 1;
+		}
+	},
+	/**
+	 * Does not run for the missed ticks at all and continues with the next tick that is not yet due.
+	 * */
+	SKIP {
+		@Override
+		public boolean shouldRun(long lateness, long period) {
+			return lateness < period;
+		}
+
+		@Override
+		public long periodsToAdvance(long lateness, long period) {
+			return lateness / period + 1;
+		}
+	};
+
+	/**
+	 * @param lateness how much later than its deadline the tick is being processed, not negative
+	 * @return true if the task should run for this tick
+	 * */
+	public abstract boolean shouldRun(long lateness, long period);
+
+	/**
+	 * @return number of periods that the deadline moves forward after processing this tick
+	 * */
+	public abstract long periodsToAdvance(long lateness, long period);
+}
@@ -0,0 +1,39 @@
+package com.osotnikov.scheduling;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Abstracts the engine that triggers periodic tasks, so that the subscription logic does not depend on a particular
+ * scheduler implementation.
+ * */
+public interface PeriodicTaskScheduler {
+
+	/**
+	 * Schedules the task to run at a fixed rate, the first run happens at startTime (or as soon as possible if
+	 * startTime is in the past).
+	 * @return handle that can be used to cancel the schedule
+	 * */
+	ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Instant startTime, Duration period,
+										   MissedTickPolicy missedTickPolicy);
+
+	/**
+	 * Same as {@link #scheduleAtFixedRate(Runnable, Instant, Duration, MissedTickPolicy)} with missed ticks caught up.
+	 * */
+	default ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Instant startTime, Duration period) {
+		return scheduleAtFixedRate(task, startTime, period, MissedTickPolicy.CATCH_UP);
+	}
+
+	/**
+	 * Same as {@link #scheduleAtFixedRate(Runnable, Instant, Duration)} with the first run happening immediately.
+	 * */
+	default ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Duration period) {
+		return scheduleAtFixedRate(task, Instant.now(), period);
+	}
+
+	/**
+	 * @param latenessRecorder receives the lateness of every run from now on, {@link LatenessRecorder#NONE} to stop
+	 * */
+	void setLatenessRecorder(LatenessRecorder latenessRecorder);
+}
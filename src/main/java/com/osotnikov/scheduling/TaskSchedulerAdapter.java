@@ -0,0 +1,82 @@
+package com.osotnikov.scheduling;
+
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Delegates to spring's {@link TaskScheduler}, every schedule ends up in the single binary heap of the underlying
+ * ScheduledThreadPoolExecutor so inserts and cancels are O(log n) under one lock. Kept as a fallback engine.
+ * */
+public class TaskSchedulerAdapter implements PeriodicTaskScheduler {
+
+	private final TaskScheduler taskScheduler;
+	private volatile LatenessRecorder latenessRecorder = LatenessRecorder.NONE;
+
+	public TaskSchedulerAdapter(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Only applies to the tasks that are scheduled after the call.
+	 * */
+	@Override
+	public void setLatenessRecorder(LatenessRecorder latenessRecorder) {
+		this.latenessRecorder = latenessRecorder;
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Instant startTime, Duration period,
+												  MissedTickPolicy missedTickPolicy) {
+		LatenessRecorder recorder = latenessRecorder;
+		if (missedTickPolicy == MissedTickPolicy.CATCH_UP && recorder == LatenessRecorder.NONE) {
+			// what the underlying executor does anyway
+			return taskScheduler.scheduleAtFixedRate(task, startTime, period);
+		}
+		long delayNanos = Math.max(0, Duration.between(Instant.now(), startTime).toNanos());
+		return taskScheduler.scheduleAtFixedRate(
+			new MissedTickGuard(task, period.toNanos(), System.nanoTime() + delayNanos, missedTickPolicy, recorder),
+			startTime, period);
+	}
+
+	/**
+	 * The executor always catches up on missed runs, this drops the runs that the policy does not want and records
+	 * the lateness of the others. The executor never runs the same periodic task concurrently, so no synchronization
+	 * is needed.
+	 * */
+	private static final class MissedTickGuard implements Runnable {
+
+		private final Runnable task;
+		private final long periodNanos;
+		private final MissedTickPolicy missedTickPolicy;
+		private final LatenessRecorder latenessRecorder;
+		private long deadlineNanos;
+
+		MissedTickGuard(Runnable task, long periodNanos, long deadlineNanos, MissedTickPolicy missedTickPolicy,
+						LatenessRecorder latenessRecorder) {
+			this.task = task;
+			this.periodNanos = periodNanos;
+			this.deadlineNanos = deadlineNanos;
+			this.missedTickPolicy = missedTickPolicy;
+			this.latenessRecorder = latenessRecorder;
+		}
+
+		@Override
+		public void run() {
+			long lateness = System.nanoTime() - deadlineNanos;
+			if (lateness < -periodNanos / 2) {
+				// a catch up run for a tick that was already coalesced or skipped
+				return;
+			}
+			lateness = Math.max(0, lateness);
+			boolean shouldRun = missedTickPolicy.shouldRun(lateness, periodNanos);
+			deadlineNanos += missedTickPolicy.periodsToAdvance(lateness, periodNanos) * periodNanos;
+			if (shouldRun) {
+				latenessRecorder.record(lateness);
+				task.run();
+			}
+		}
+	}
+}
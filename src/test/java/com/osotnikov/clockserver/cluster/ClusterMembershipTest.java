@@ -0,0 +1,123 @@
+package com.osotnikov.clockserver.cluster;
+
+import com.osotnikov.clockserver.config.ClusterProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterMembershipTest {
+
+	private static final String NODE_1 = "http://localhost:8081";
+	private static final String NODE_2 = "http://localhost:8082";
+
+	@TempDir
+	Path directory;
+
+	private final List<ClusterMembership> memberships = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		memberships.forEach(ClusterMembership::leave);
+	}
+
+	@Test
+	void givenClusterDisabled_whenRemoteOwnerOf_thenEverySubscriptionLocal() {
+		ClusterProperties clusterProperties = properties(NODE_1);
+		clusterProperties.setEnabled(false);
+		ClusterMembership membership = membership(clusterProperties);
+
+		membership.join();
+
+		assertNull(membership.getRing());
+		assertNull(membership.remoteOwnerOf("http://some.url/path"));
+	}
+
+	@Test
+	void givenTwoNodesSharingDirectory_whenHeartbeat_thenBothBuildSameRingAndEverySubscriptionHasOneOwner() {
+		ClusterMembership membership1 = membership(properties(NODE_1));
+		ClusterMembership membership2 = membership(properties(NODE_2));
+
+		membership1.join();
+		membership2.join();
+		membership1.heartbeat();
+
+		assertThat(membership1.getRing().getNodes()).containsExactly(NODE_1, NODE_2);
+		assertThat(membership2.getRing().getNodes()).containsExactly(NODE_1, NODE_2);
+		int local1 = 0;
+		for (int i = 0; i < 1000; i++) {
+			String postbackUrl = "http://some.url/subscriber" + i;
+			String remoteOwner1 = membership1.remoteOwnerOf(postbackUrl);
+			String remoteOwner2 = membership2.remoteOwnerOf(postbackUrl);
+			if (remoteOwner1 == null) {
+				assertEquals(NODE_1, remoteOwner2);
+				local1++;
+			} else {
+				assertEquals(NODE_2, remoteOwner1);
+				assertNull(remoteOwner2);
+			}
+		}
+		assertThat(local1).isBetween(300, 700);
+	}
+
+	@Test
+	void givenHeartbeatFileNotTouchedWithinMemberTimeout_whenHeartbeat_thenNodeLeftTheRing() throws Exception {
+		ClusterMembership membership = membership(properties(NODE_1));
+		Path stale = directory.resolve("stale.node");
+		Files.write(stale, NODE_2.getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(stale, FileTime.from(Instant.now().minus(Duration.ofMinutes(1))));
+
+		membership.join();
+
+		assertThat(membership.getRing().getNodes()).containsExactly(NODE_1);
+	}
+
+	@Test
+	void givenNodeLeaves_whenHeartbeat_thenOtherNodesRingWithoutItAndListenersNotified() {
+		ClusterMembership membership1 = membership(properties(NODE_1));
+		ClusterMembership membership2 = membership(properties(NODE_2));
+		membership1.join();
+		membership2.join();
+		membership1.heartbeat();
+		List<ConsistentHashRing> rings1 = new ArrayList<>();
+		List<ConsistentHashRing> rings2 = new ArrayList<>();
+		membership1.addRingListener(rings1::add);
+		membership2.addRingListener(rings2::add);
+
+		membership2.leave();
+		membership1.heartbeat();
+
+		assertThat(rings2).hasSize(1);
+		assertThat(rings2.get(0).getNodes()).containsExactly(NODE_1);
+		assertThat(rings1).hasSize(1);
+		assertThat(rings1.get(0).getNodes()).containsExactly(NODE_1);
+		assertNull(membership1.remoteOwnerOf("http://some.url/path"));
+	}
+
+	private ClusterMembership membership(ClusterProperties clusterProperties) {
+		ClusterMembership membership = new ClusterMembership(clusterProperties);
+		memberships.add(membership);
+		return membership;
+	}
+
+	private ClusterProperties properties(String nodeUrl) {
+		ClusterProperties clusterProperties = new ClusterProperties();
+		clusterProperties.setEnabled(true);
+		clusterProperties.setNodeUrl(nodeUrl);
+		clusterProperties.setMembershipDirectory(directory);
+		// heartbeats are driven by the tests
+		clusterProperties.setHeartbeatInterval(Duration.ofHours(1));
+		return clusterProperties;
+	}
+}
@@ -0,0 +1,72 @@
+package com.osotnikov.clockserver.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+	private static final String NODE_1 = "http://localhost:8081";
+	private static final String NODE_2 = "http://localhost:8082";
+	private static final String NODE_3 = "http://localhost:8083";
+	private static final String NODE_4 = "http://localhost:8084";
+	private static final int URLS = 30_000;
+
+	@Test
+	void givenSameNodesInDifferentOrder_whenOwnerOf_thenSameOwners() {
+		ConsistentHashRing ring = ConsistentHashRing.of(Arrays.asList(NODE_1, NODE_2, NODE_3), 128);
+		ConsistentHashRing ring2 = ConsistentHashRing.of(Arrays.asList(NODE_3, NODE_1, NODE_2), 128);
+
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(ring.ownerOf(url(i)), ring2.ownerOf(url(i)));
+		}
+	}
+
+	@Test
+	void givenSimilarUrls_whenOwnerOf_thenSpreadEvenlyOverTheNodes() {
+		ConsistentHashRing ring = ConsistentHashRing.of(Arrays.asList(NODE_1, NODE_2, NODE_3), 128);
+		Map<String, Integer> urlsByOwner = new HashMap<>();
+
+		for (int i = 0; i < URLS; i++) {
+			urlsByOwner.merge(ring.ownerOf(url(i)), 1, Integer::sum);
+		}
+
+		// 10000 each if perfectly even
+		assertThat(urlsByOwner).hasSize(3);
+		assertThat(urlsByOwner.values()).allSatisfy(urls -> assertThat(urls).isBetween(8000, 12000));
+	}
+
+	@Test
+	void givenNodeJoins_whenOwnerOf_thenOnlyUrlsMovingToItChangeOwner() {
+		ConsistentHashRing ring = ConsistentHashRing.of(Arrays.asList(NODE_1, NODE_2, NODE_3), 128);
+		ConsistentHashRing joined = ConsistentHashRing.of(Arrays.asList(NODE_1, NODE_2, NODE_3, NODE_4), 128);
+		int moved = 0;
+
+		for (int i = 0; i < URLS; i++) {
+			String owner = ring.ownerOf(url(i));
+			String newOwner = joined.ownerOf(url(i));
+			if (!owner.equals(newOwner)) {
+				assertEquals(NODE_4, newOwner);
+				moved++;
+			}
+		}
+
+		// a quarter of the urls if perfectly even
+		assertThat(moved).isBetween(URLS / 4 - 2000, URLS / 4 + 2000);
+	}
+
+	@Test
+	void givenNoNodes_whenOwnerOf_thenNull() {
+		assertNull(ConsistentHashRing.of(Collections.emptyList(), 128).ownerOf(url(1)));
+	}
+
+	private static String url(int i) {
+		return "http://some.url/subscriber" + i;
+	}
+}
@@ -0,0 +1,129 @@
+package com.osotnikov.clockserver.cluster;
+
+import com.osotnikov.clockserver.cluster.dto.SubscriptionHandoffDto;
+import com.osotnikov.clockserver.config.ClusterProperties;
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
+import com.osotnikov.clockserver.subscription.repository.SubscriptionRepository;
+import com.osotnikov.clockserver.subscription.service.SubscriptionService;
+import com.osotnikov.clockserver.subscription.service.model.Subscription;
+import com.osotnikov.scheduling.MissedTickPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShardRebalancerTest {
+
+	private static final String URL = "http://some.url/path";
+	private static final String LOCAL_URL = "http://some.url/local";
+	private static final String NODE = "http://localhost:8082";
+
+	@Mock
+	private ClusterMembership clusterMembership;
+	@Mock
+	private ClusterClient clusterClient;
+	@Mock
+	private SubscriptionService subscriptionService;
+	@Mock
+	private SubscriptionRepository subscriptionRepository;
+
+	private ShardRebalancer shardRebalancer;
+
+	@BeforeEach
+	void setUp() {
+		ClusterProperties clusterProperties = new ClusterProperties();
+		clusterProperties.setHandoffDelay(Duration.ofMillis(100));
+		clusterProperties.setHeartbeatInterval(Duration.ofMillis(50));
+		shardRebalancer = new ShardRebalancer(clusterMembership, clusterClient, subscriptionService,
+			subscriptionRepository, clusterProperties);
+	}
+
+	@AfterEach
+	void tearDown() {
+		shardRebalancer.close();
+	}
+
+	@Test
+	void givenSubscriptionOwnedByAnotherNode_whenSweep_thenHandedOffAndReleasedHere() {
+		Subscription subscription = subscription(URL);
+		givenSubscriptions(subscription, subscription(LOCAL_URL));
+		when(clusterMembership.remoteOwnerOf(URL)).thenReturn(NODE);
+		SubscriptionHandoffDto handoff = handoff(Instant.now());
+		when(subscriptionService.toHandoff(same(subscription), any())).thenReturn(handoff);
+
+		shardRebalancer.sweep();
+
+		then(clusterClient).should().handoff(NODE, Collections.singletonList(handoff));
+		then(subscriptionService).should(timeout(1000)).deleteLocally(URL);
+		then(subscriptionService).should(never()).deleteLocally(LOCAL_URL);
+	}
+
+	@Test
+	void givenOwnerUnavailable_whenSweep_thenKeptHereAndRetried() {
+		Subscription subscription = subscription(URL);
+		givenSubscriptions(subscription);
+		when(clusterMembership.remoteOwnerOf(URL)).thenReturn(NODE);
+		when(subscriptionService.toHandoff(same(subscription), any())).thenReturn(handoff(Instant.now()));
+		doThrow(new ClusterUnavailableException("Node " + NODE + " is unavailable."))
+			.when(clusterClient).handoff(eq(NODE), any());
+
+		shardRebalancer.sweep();
+
+		then(clusterClient).should(timeout(1000).atLeast(2)).handoff(eq(NODE), any());
+		then(subscriptionService).should(never()).deleteLocally(any());
+	}
+
+	@Test
+	void givenRingChangedBackBeforeRelease_whenReleased_thenKeptHere() {
+		Subscription subscription = subscription(URL);
+		givenSubscriptions(subscription);
+		when(clusterMembership.remoteOwnerOf(URL)).thenReturn(NODE, (String) null);
+		when(subscriptionService.toHandoff(same(subscription), any())).thenReturn(handoff(Instant.now()));
+
+		shardRebalancer.sweep();
+
+		then(clusterMembership).should(timeout(1000).times(2)).remoteOwnerOf(URL);
+		then(subscriptionService).should(never()).deleteLocally(any());
+	}
+
+	@Test
+	void givenPeriodLongerThanTwiceTheHandoffDelay_whenReleaseTime_thenHandoffDelayAfterLastTickHere() {
+		Instant firstFireTime = Instant.parse("2022-06-05T17:00:00Z");
+
+		assertEquals(Instant.parse("2022-06-05T16:59:50.100Z"),
+			shardRebalancer.releaseTime(subscription(URL), firstFireTime));
+	}
+
+	private void givenSubscriptions(Subscription... subscriptions) {
+		doAnswer(invocation -> {
+			Consumer<Subscription> action = invocation.getArgument(0);
+			for (Subscription subscription : subscriptions) {
+				action.accept(subscription);
+			}
+			return null;
+		}).when(subscriptionRepository).forEach(any());
+	}
+
+	private static SubscriptionHandoffDto handoff(Instant firstFireTime) {
+		return new SubscriptionHandoffDto(URL, new FrequencyDto(0, 0, 10), MissedTickPolicy.CATCH_UP, 1,
+			TimeFormat.LEGACY, PayloadEncoding.JSON, firstFireTime, firstFireTime);
+	}
+
+	private static Subscription subscription(String postbackUrl) {
+		return new Subscription(postbackUrl, new FrequencyDto(0, 0, 10), null);
+	}
+}
@@ -0,0 +1,32 @@
+package com.osotnikov.clockserver.metrics;
+
+import com.osotnikov.clockserver.config.MetricsProperties;
+import com.osotnikov.rest.client.PostOutcome;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostbackMetricsTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void givenMoreHostsThanMaxHostTags_whenStop_thenFurtherHostsAreTaggedOther() {
+		MetricsProperties metricsProperties = new MetricsProperties();
+		metricsProperties.setMaxHostTags(2);
+		PostbackMetrics postbackMetrics = new PostbackMetrics(meterRegistry, metricsProperties);
+
+		for (String url : new String[] {"http://a/1", "http://b/1", "http://c/1", "http://d/1", "http://a/2"}) {
+			postbackMetrics.stop(url, postbackMetrics.start(), PostOutcome.SUCCESS);
+		}
+
+		assertEquals(2, meterRegistry.get("clockserver.postback.latency").tag("host", "a:80").timer().count());
+		assertEquals(1, meterRegistry.get("clockserver.postback.latency").tag("host", "b:80").timer().count());
+		assertEquals(2, meterRegistry.get("clockserver.postback.latency").tag("host", PostbackMetrics.OTHER_HOSTS)
+			.timer().count());
+		assertEquals(3, meterRegistry.get("clockserver.postback.latency").timers().size());
+		assertEquals(5, meterRegistry.get("clockserver.postbacks").tag("result", "success").counter().count());
+		assertEquals(0, meterRegistry.get("clockserver.postback.in.flight").gauge().value());
+	}
+}
@@ -0,0 +1,99 @@
+package com.osotnikov.clockserver.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.osotnikov.clockserver.config.SchedulerProperties;
+import com.osotnikov.clockserver.subscription.payload.CurrentTimePayloadCache;
+import com.osotnikov.clockserver.subscription.service.PhaseSpreader;
+import com.osotnikov.scheduling.MissedTickPolicy;
+import com.osotnikov.scheduling.PeriodicTaskScheduler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.Disposable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TickStreamHubTest {
+
+	private static final Duration PERIOD = Duration.ofSeconds(5);
+
+	@Mock
+	private PeriodicTaskScheduler taskScheduler;
+	@Mock
+	private ScheduledFuture<?> scheduledFuture;
+
+	private final CurrentTimePayloadCache currentTimePayloadCache = new CurrentTimePayloadCache(new ObjectMapper());
+
+	@Test
+	void givenTwoStreamsOfOnePeriod_whenTick_thenOneScheduleAndSameFrameForBoth() {
+		TickStreamHub tickStreamHub = hub();
+		ArgumentCaptor<Runnable> tickCaptor = ArgumentCaptor.forClass(Runnable.class);
+		ArgumentCaptor<Instant> startCaptor = ArgumentCaptor.forClass(Instant.class);
+		doReturn(scheduledFuture).when(taskScheduler).scheduleAtFixedRate(tickCaptor.capture(), startCaptor.capture(),
+			eq(PERIOD), eq(MissedTickPolicy.SKIP));
+		List<String> frames1 = new ArrayList<>();
+		List<String> frames2 = new ArrayList<>();
+
+		tickStreamHub.frames(PERIOD).subscribe(frame -> frames1.add(read(frame)));
+		tickStreamHub.frames(PERIOD).subscribe(frame -> frames2.add(read(frame)));
+		tickCaptor.getValue().run();
+
+		then(taskScheduler).should(times(1)).scheduleAtFixedRate(any(), any(), any(), any());
+		assertEquals(0, startCaptor.getValue().toEpochMilli() % PERIOD.toMillis());
+		assertEquals(1, frames1.size());
+		assertEquals(frames1, frames2);
+		assertThat(frames1.get(0)).startsWith("data:{\"currentTime\":").endsWith("}\n\n");
+	}
+
+	@Test
+	void givenLastStreamCancelled_whenReleased_thenScheduleCancelledAndNextStreamStartsANewOne() {
+		TickStreamHub tickStreamHub = hub();
+		doReturn(scheduledFuture).when(taskScheduler).scheduleAtFixedRate(any(), any(), eq(PERIOD),
+			eq(MissedTickPolicy.SKIP));
+		Disposable stream1 = tickStreamHub.frames(PERIOD).subscribe();
+		Disposable stream2 = tickStreamHub.frames(PERIOD).subscribe();
+
+		stream1.dispose();
+		then(scheduledFuture).shouldHaveNoInteractions();
+		stream2.dispose();
+
+		then(scheduledFuture).should().cancel(false);
+		assertEquals(0, tickStreamHub.periods());
+		tickStreamHub.frames(PERIOD).subscribe();
+		then(taskScheduler).should(times(2)).scheduleAtFixedRate(any(), any(), any(), any());
+	}
+
+	@Test
+	void givenStreamsOfDifferentPeriods_whenSubscribed_thenOneSchedulePerPeriod() {
+		TickStreamHub tickStreamHub = hub();
+		doReturn(scheduledFuture).when(taskScheduler).scheduleAtFixedRate(any(), any(), any(), any());
+
+		tickStreamHub.frames(PERIOD).subscribe();
+		tickStreamHub.frames(PERIOD.multipliedBy(2)).subscribe();
+		tickStreamHub.frames(PERIOD).subscribe();
+
+		assertEquals(2, tickStreamHub.periods());
+	}
+
+	private TickStreamHub hub() {
+		return new TickStreamHub(taskScheduler, currentTimePayloadCache, new PhaseSpreader(new SchedulerProperties()));
+	}
+
+	private static String read(DataBuffer frame) {
+		return frame.toString(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,175 @@
+package com.osotnikov.clockserver.subscription.api;
+
+import com.osotnikov.clockserver.cluster.ClusterUnavailableException;
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDeleteDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionPatchDto;
+import com.osotnikov.clockserver.subscription.api.dto.response.SubscriptionInfoDto;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
+import com.osotnikov.clockserver.subscription.repository.SubscriptionRepository;
+import com.osotnikov.clockserver.subscription.service.SubscriptionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Instant;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+
+@WebFluxTest(ReactiveSubscriptionController.class)
+public class ReactiveSubscriptionControllerTest {
+
+    private static final String VALID_POSTBACK_URL = "http://some.postback/url";
+    private static final String INVALID_POSTBACK_URL = "ptth://some.postback/url";
+
+    @MockBean
+    private SubscriptionService subscriptionService;
+
+    @MockBean
+    private SubscriptionRepository subscriptionRepository;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    public void givenNonExistingSubscription_whenUserCreatesNewSubscription_then201() {
+        SubscriptionDto subscriptionDto = new SubscriptionDto(VALID_POSTBACK_URL, new FrequencyDto(1, 5, 2));
+        given(subscriptionService.schedule(subscriptionDto)).willReturn(true);
+
+        webTestClient.post().uri("/subscription")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(subscriptionDto)
+            .exchange()
+            .expectStatus().isCreated()
+            .expectHeader().contentType(MediaType.APPLICATION_JSON)
+            .expectBody().json(String.format("{\"name\":\"%s\"}", VALID_POSTBACK_URL));
+    }
+
+    @Test
+    public void givenExistingSubscription_whenUserCreatesNewSubscription_then409() {
+        SubscriptionDto subscriptionDto = new SubscriptionDto(VALID_POSTBACK_URL, new FrequencyDto(0, 0, 6));
+        given(subscriptionService.schedule(subscriptionDto)).willReturn(false);
+
+        webTestClient.post().uri("/subscription")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(subscriptionDto)
+            .exchange()
+            .expectStatus().isEqualTo(409)
+            .expectBody().json(String.format("{\"status\":\"CONFLICT\",\"message\":\"Conflicting resource exists.\"," +
+                "\"errors\":[\"Resource with name: %s already exists.\"]}", VALID_POSTBACK_URL));
+    }
+
+    @Test
+    public void givenInvalidPostbackUrlAndInvalidFrequency_whenUserCreatesNewSubscription_then400() {
+        SubscriptionDto subscriptionDto = new SubscriptionDto(INVALID_POSTBACK_URL, new FrequencyDto(0, 0, 4));
+
+        webTestClient.post().uri("/subscription")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(subscriptionDto)
+            .exchange()
+            .expectStatus().isBadRequest()
+            .expectBody().json("{\"status\":\"BAD_REQUEST\",\"message\":\"Invalid request body.\"," +
+                "\"errors\":[\"Invalid frequency object. Must be between 100 and 1000 milliseconds or " +
+                "between 5 seconds and 4 hours.\"," +
+                "\"must be a valid URL\"]}");
+    }
+
+    @Test
+    public void givenOwnerNodeUnavailable_whenUserCreatesNewSubscription_then503() {
+        SubscriptionDto subscriptionDto = new SubscriptionDto(VALID_POSTBACK_URL, new FrequencyDto(0, 0, 6));
+        given(subscriptionService.schedule(subscriptionDto))
+            .willThrow(new ClusterUnavailableException("Node http://localhost:8081 is unavailable."));
+
+        webTestClient.post().uri("/subscription")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(subscriptionDto)
+            .exchange()
+            .expectStatus().isEqualTo(503)
+            .expectBody().json("{\"status\":\"SERVICE_UNAVAILABLE\"," +
+                "\"message\":\"Owner of the resource is unavailable.\"," +
+                "\"errors\":[\"Node http://localhost:8081 is unavailable.\"]}");
+    }
+
+    @Test
+    public void givenNonExistingSubscription_whenDelete_then404() {
+        given(subscriptionService.delete(VALID_POSTBACK_URL)).willReturn(false);
+
+        webTestClient.method(HttpMethod.DELETE).uri("/subscription")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(new SubscriptionDeleteDto(VALID_POSTBACK_URL))
+            .exchange()
+            .expectStatus().isNotFound()
+            .expectBody().json(String.format("{\"status\":\"NOT_FOUND\",\"message\":\"No resource exists.\"," +
+                "\"errors\":[\"Resource with name: %s does not exist.\"]}", VALID_POSTBACK_URL));
+    }
+
+    @Test
+    public void givenExistingSubscription_whenPatch_then200() {
+        SubscriptionPatchDto subscriptionPatchDto = new SubscriptionPatchDto(VALID_POSTBACK_URL,
+            new FrequencyDto(1, 5, 2));
+        given(subscriptionService.changeSchedule(subscriptionPatchDto)).willReturn(true);
+
+        webTestClient.patch().uri("/subscription")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(subscriptionPatchDto)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody().json(String.format("{\"name\":\"%s\"}", VALID_POSTBACK_URL));
+    }
+
+    @Test
+    public void givenInvalidCursor_whenUserListsSubscriptions_then400() {
+        given(subscriptionService.list(eq("invalid"), eq(100), any())).willThrow(new IllegalArgumentException());
+
+        webTestClient.get().uri("/subscription?cursor=invalid")
+            .exchange()
+            .expectStatus().isBadRequest()
+            .expectBody().json("{\"status\":\"BAD_REQUEST\",\"message\":\"Invalid cursor.\"}");
+    }
+
+    @Test
+    public void givenLimitOverMax_whenUserListsSubscriptions_then400() {
+        webTestClient.get().uri("/subscription?limit=1001")
+            .exchange()
+            .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void givenTwoPagesOfSubscriptions_whenUserExportsSubscriptions_thenAllStreamedAsNdjson() {
+        willAnswer(invocation -> {
+            Consumer<SubscriptionInfoDto> action = invocation.getArgument(2);
+            action.accept(info(VALID_POSTBACK_URL));
+            return "next";
+        }).given(subscriptionService).list(isNull(), eq(SubscriptionController.MAX_PAGE_SIZE), any());
+        willAnswer(invocation -> {
+            Consumer<SubscriptionInfoDto> action = invocation.getArgument(2);
+            action.accept(info(VALID_POSTBACK_URL + 2));
+            return null;
+        }).given(subscriptionService).list(eq("next"), eq(SubscriptionController.MAX_PAGE_SIZE), any());
+
+        webTestClient.get().uri("/subscription")
+            .accept(MediaType.APPLICATION_NDJSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+            .expectBodyList(SubscriptionInfoDto.class)
+            .contains(info(VALID_POSTBACK_URL), info(VALID_POSTBACK_URL + 2))
+            .hasSize(2);
+    }
+
+    private static SubscriptionInfoDto info(String postbackUrl) {
+        return new SubscriptionInfoDto(postbackUrl, new FrequencyDto(0, 0, 6), null, 1, TimeFormat.LEGACY,
+            PayloadEncoding.JSON, Instant.parse("2022-06-05T16:30:06Z"));
+    }
+}
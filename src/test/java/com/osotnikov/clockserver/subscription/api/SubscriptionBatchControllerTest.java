@@ -0,0 +1,136 @@
+package com.osotnikov.clockserver.subscription.api;
+
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionPatchDto;
+import com.osotnikov.clockserver.subscription.service.SubscriptionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(SubscriptionBatchController.class)
+@Import(SubscriptionBatchProcessor.class)
+public class SubscriptionBatchControllerTest {
+
+    private static final String VALID_POSTBACK_URL = "http://some.postback/url";
+    private static final String VALID_POSTBACK_URL2 = "http://some.postback/url2";
+    private static final String INVALID_POSTBACK_URL = "ptth://some.postback/url";
+
+    @MockBean
+    private SubscriptionService subscriptionService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void givenJsonArray_whenUserCreatesSubscriptions_thenResultPerItem() throws Exception {
+        given(subscriptionService.schedule(new SubscriptionDto(VALID_POSTBACK_URL, new FrequencyDto(0, 0, 6))))
+            .willReturn(true);
+        given(subscriptionService.schedule(new SubscriptionDto(VALID_POSTBACK_URL2, new FrequencyDto(0, 0, 6))))
+            .willReturn(false);
+
+        performAsync(post("/subscription/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(String.format("[{\"postbackUrl\":\"%s\",\"frequency\":{\"seconds\":6}}," +
+                    "{\"postbackUrl\":\"%s\",\"frequency\":{\"seconds\":6}}]", VALID_POSTBACK_URL, VALID_POSTBACK_URL2)),
+            String.format("{\"index\":0,\"name\":\"%s\",\"status\":201}\n" +
+                "{\"index\":1,\"name\":\"%s\",\"status\":409}\n", VALID_POSTBACK_URL, VALID_POSTBACK_URL2));
+    }
+
+    @Test
+    public void givenNdjsonWithInvalidItem_whenUserCreatesSubscriptions_thenInvalidItemRejectedAndOthersCreated()
+        throws Exception {
+        given(subscriptionService.schedule(any())).willReturn(true);
+
+        performAsync(post("/subscription/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(String.format("{\"postbackUrl\":\"%s\",\"frequency\":{\"seconds\":2}}\n" +
+                    "{\"postbackUrl\":\"%s\",\"frequency\":{\"seconds\":6}}\n", INVALID_POSTBACK_URL, VALID_POSTBACK_URL)),
+            String.format("{\"index\":0,\"name\":\"%s\",\"status\":400,\"errors\":[" +
+                "\"Invalid frequency object. Must be between 100 and 1000 milliseconds or " +
+                "between 5 seconds and 4 hours.\",\"must be a valid URL\"]}\n" +
+                "{\"index\":1,\"name\":\"%s\",\"status\":201}\n", INVALID_POSTBACK_URL, VALID_POSTBACK_URL));
+        verify(subscriptionService, never()).schedule(new SubscriptionDto(INVALID_POSTBACK_URL,
+            new FrequencyDto(0, 0, 2)));
+    }
+
+    @Test
+    public void givenNullItem_whenUserCreatesSubscriptions_thenNullItemRejectedAndOthersCreated() throws Exception {
+        given(subscriptionService.schedule(any())).willReturn(true);
+
+        performAsync(post("/subscription/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(String.format("[null,{\"postbackUrl\":\"%s\",\"frequency\":{\"seconds\":6}}]",
+                    VALID_POSTBACK_URL)),
+            String.format("{\"index\":0,\"status\":400,\"errors\":[\"must be an object, not null\"]}\n" +
+                "{\"index\":1,\"name\":\"%s\",\"status\":201}\n", VALID_POSTBACK_URL));
+    }
+
+    @Test
+    public void givenMalformedSecondItem_whenUserCreatesSubscriptions_thenFirstCreatedAndBatchEnded() throws Exception {
+        given(subscriptionService.schedule(any())).willReturn(true);
+
+        MvcResult result = mockMvc.perform(post("/subscription/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(String.format("{\"postbackUrl\":\"%s\",\"frequency\":{\"seconds\":6}}\n" +
+                    "{\"postbackUrl\":", VALID_POSTBACK_URL)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().string(startsWith(String.format(
+                "{\"index\":0,\"name\":\"%s\",\"status\":201}\n{\"index\":1,\"status\":400,\"errors\":[",
+                VALID_POSTBACK_URL))));
+    }
+
+    @Test
+    public void givenExistingAndNonExistingSubscriptions_whenUserDeletesSubscriptions_thenResultPerItem()
+        throws Exception {
+        given(subscriptionService.delete(VALID_POSTBACK_URL)).willReturn(true);
+        given(subscriptionService.delete(VALID_POSTBACK_URL2)).willReturn(false);
+
+        performAsync(delete("/subscription/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(String.format("{\"name\":\"%s\"}\n{\"name\":\"%s\"}", VALID_POSTBACK_URL, VALID_POSTBACK_URL2)),
+            String.format("{\"index\":0,\"name\":\"%s\",\"status\":200}\n" +
+                "{\"index\":1,\"name\":\"%s\",\"status\":404}\n", VALID_POSTBACK_URL, VALID_POSTBACK_URL2));
+    }
+
+    @Test
+    public void givenExistingSubscription_whenUserPatchesSubscriptions_thenResultPerItem() throws Exception {
+        given(subscriptionService.changeSchedule(new SubscriptionPatchDto(VALID_POSTBACK_URL,
+            new FrequencyDto(1, 5, 2)))).willReturn(true);
+
+        performAsync(patch("/subscription/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(String.format("[{\"name\":\"%s\",\"frequency\":{\"hours\":1,\"minutes\":5,\"seconds\":2}}]",
+                    VALID_POSTBACK_URL)),
+            String.format("{\"index\":0,\"name\":\"%s\",\"status\":200}\n", VALID_POSTBACK_URL));
+    }
+
+    private void performAsync(MockHttpServletRequestBuilder request, String expectedResults) throws Exception {
+        MvcResult result = mockMvc.perform(request)
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+            .andExpect(content().string(expectedResults));
+    }
+}
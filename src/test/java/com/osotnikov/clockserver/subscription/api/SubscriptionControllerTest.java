@@ -4,10 +4,15 @@ package com.osotnikov.clockserver.subscription.api;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.osotnikov.clockserver.cluster.ClusterUnavailableException;
 import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
 import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDeleteDto;
 import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDto;
 import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionPatchDto;
+import com.osotnikov.clockserver.subscription.api.dto.response.SubscriptionInfoDto;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
+import com.osotnikov.clockserver.subscription.service.SubscriptionQuotaExceededException;
 import com.osotnikov.clockserver.subscription.service.SubscriptionService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,11 +20,20 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.Instant;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(SubscriptionController.class)
@@ -74,6 +88,43 @@ public class SubscriptionControllerTest {
                 "\"errors\":[\"Resource with name: %s already exists.\"]}", VALID_POSTBACK_URL)));
     }
 
+    @Test
+    public void givenOwnerNodeUnavailable_whenUserCreatesNewSubscription_then503() throws Exception {
+        SubscriptionDto subscriptionDto = new SubscriptionDto(VALID_POSTBACK_URL,
+            new FrequencyDto(0, 0, 6));
+        given(subscriptionService.schedule(subscriptionDto))
+            .willThrow(new ClusterUnavailableException("Node http://localhost:8081 is unavailable."));
+
+        this.mockMvc.perform(
+                post("/subscription")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectWriter.writeValueAsString(subscriptionDto)))
+            .andDo(print())
+            .andExpect(status().isServiceUnavailable())
+            .andExpect(content().json("{\"status\":\"SERVICE_UNAVAILABLE\"," +
+                "\"message\":\"Owner of the resource is unavailable.\"," +
+                "\"errors\":[\"Node http://localhost:8081 is unavailable.\"]}"));
+    }
+
+    @Test
+    public void givenHighFrequencyTierFull_whenUserCreatesHighFrequencySubscription_then429() throws Exception {
+        SubscriptionDto subscriptionDto = new SubscriptionDto(VALID_POSTBACK_URL,
+            new FrequencyDto(0, 0, 0, 200));
+        given(subscriptionService.schedule(subscriptionDto))
+            .willThrow(new SubscriptionQuotaExceededException(
+                "At most 1000 high frequency subscriptions are allowed."));
+
+        this.mockMvc.perform(
+                post("/subscription")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectWriter.writeValueAsString(subscriptionDto)))
+            .andDo(print())
+            .andExpect(status().isTooManyRequests())
+            .andExpect(content().json("{\"status\":\"TOO_MANY_REQUESTS\"," +
+                "\"message\":\"Subscription quota exceeded.\"," +
+                "\"errors\":[\"At most 1000 high frequency subscriptions are allowed.\"]}"));
+    }
+
     @Test
     public void givenInvalidFrequencyUnderMin_whenUserCreatesNewSubscription_then400() throws Exception {
         SubscriptionDto subscriptionDto = new SubscriptionDto(VALID_POSTBACK_URL,
@@ -87,7 +138,8 @@ public class SubscriptionControllerTest {
             .andExpect(status().isBadRequest())
             .andExpect(content().contentType(MediaType.APPLICATION_JSON))
             .andExpect(content().json("{\"status\":\"BAD_REQUEST\",\"message\":\"Invalid request body.\"," +
-                "\"errors\":[\"Invalid frequency object. Must be between 5 seconds and 4 hours.\"]}"));
+                "\"errors\":[\"Invalid frequency object. Must be between 100 and 1000 milliseconds or " +
+                "between 5 seconds and 4 hours.\"]}"));
     }
 
     @Test
@@ -121,7 +173,8 @@ public class SubscriptionControllerTest {
             .andExpect(content().json(
                 "{\"status\":\"BAD_REQUEST\"," +
                 "\"message\":\"Invalid request body.\"," +
-                "\"errors\":[\"Invalid frequency object. Must be between 5 seconds and 4 hours.\"," +
+                "\"errors\":[\"Invalid frequency object. Must be between 100 and 1000 milliseconds or " +
+                "between 5 seconds and 4 hours.\"," +
                 "\"must be a valid URL\"]}"));
     }
 
@@ -221,7 +274,88 @@ public class SubscriptionControllerTest {
             .andExpect(status().isBadRequest())
             .andExpect(content().contentType(MediaType.APPLICATION_JSON))
             .andExpect(content().json(" {\"status\":\"BAD_REQUEST\",\"message\":\"Invalid request body.\"," +
-                "\"errors\":[\"must be a valid URL\",\"Invalid frequency object. Must be between 5 seconds and 4 hours.\"]}"));
+                "\"errors\":[\"must be a valid URL\"," +
+                "\"Invalid frequency object. Must be between 100 and 1000 milliseconds or " +
+                "between 5 seconds and 4 hours.\"]}"));
+    }
+
+    @Test
+    public void givenSubscriptions_whenUserListsSubscriptions_thenPageWithNextCursor() throws Exception {
+        willAnswer(invocation -> {
+            Consumer<SubscriptionInfoDto> action = invocation.getArgument(2);
+            action.accept(info(VALID_POSTBACK_URL));
+            return "next";
+        }).given(subscriptionService).list(eq("previous"), eq(1), any());
+
+        this.mockMvc.perform(
+                get("/subscription")
+                    .param("cursor", "previous")
+                    .param("limit", "1"))
+            .andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+            .andExpect(content().json(String.format("{\"subscriptions\":[{\"postbackUrl\":\"%s\"," +
+                "\"frequency\":{\"hours\":0,\"minutes\":0,\"seconds\":6},\"maxInFlight\":1," +
+                "\"nextFireTime\":\"2022-06-05T16:30:06Z\"}],\"nextCursor\":\"next\"}", VALID_POSTBACK_URL)));
+    }
+
+    @Test
+    public void givenInvalidCursor_whenUserListsSubscriptions_then400() throws Exception {
+        given(subscriptionService.list(eq("invalid"), eq(100), any())).willThrow(new IllegalArgumentException());
+
+        this.mockMvc.perform(
+                get("/subscription")
+                    .param("cursor", "invalid"))
+            .andDo(print())
+            .andExpect(status().isBadRequest())
+            .andExpect(content().json("{\"status\":\"BAD_REQUEST\",\"message\":\"Invalid cursor.\"}"));
+    }
+
+    @Test
+    public void givenLimitOverMax_whenUserListsSubscriptions_then400() throws Exception {
+        this.mockMvc.perform(
+                get("/subscription")
+                    .param("limit", "1001"))
+            .andDo(print())
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenTwoPagesOfSubscriptions_whenUserExportsSubscriptions_thenAllStreamedAsNdjson() throws Exception {
+        willAnswer(invocation -> {
+            Consumer<SubscriptionInfoDto> action = invocation.getArgument(2);
+            action.accept(info(VALID_POSTBACK_URL));
+            return "next";
+        }).given(subscriptionService).list(isNull(), eq(SubscriptionController.MAX_PAGE_SIZE), any());
+        willAnswer(invocation -> {
+            Consumer<SubscriptionInfoDto> action = invocation.getArgument(2);
+            action.accept(info(VALID_POSTBACK_URL + 2));
+            return null;
+        }).given(subscriptionService).list(eq("next"), eq(SubscriptionController.MAX_PAGE_SIZE), any());
+
+        MvcResult result = this.mockMvc.perform(
+                get("/subscription")
+                    .accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(result))
+            .andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+            .andExpect(content().string(String.format(
+                "{\"postbackUrl\":\"%1$s\",\"frequency\":{\"hours\":0,\"minutes\":0,\"seconds\":6," +
+                    "\"milliseconds\":0},\"missedTickPolicy\":null,\"maxInFlight\":1,\"timeFormat\":\"LEGACY\"," +
+                    "\"encoding\":\"JSON\",\"nextFireTime\":\"2022-06-05T16:30:06Z\"}\n" +
+                "{\"postbackUrl\":\"%1$s2\",\"frequency\":{\"hours\":0,\"minutes\":0,\"seconds\":6," +
+                    "\"milliseconds\":0},\"missedTickPolicy\":null,\"maxInFlight\":1,\"timeFormat\":\"LEGACY\"," +
+                    "\"encoding\":\"JSON\",\"nextFireTime\":\"2022-06-05T16:30:06Z\"}\n",
+                VALID_POSTBACK_URL)));
+    }
+
+    private static SubscriptionInfoDto info(String postbackUrl) {
+        return new SubscriptionInfoDto(postbackUrl, new FrequencyDto(0, 0, 6), null, 1, TimeFormat.LEGACY,
+            PayloadEncoding.JSON, Instant.parse("2022-06-05T16:30:06Z"));
     }
 
 }
@@ -27,7 +27,7 @@ public class PostbackFrequencyValidatorTest {
 		return Stream.of(
 			Arguments.of(new FrequencyDto(-1, -1, -1)),
 			Arguments.of(new FrequencyDto(0, 0, 0)),
-			Arguments.of(new FrequencyDto(0, 0, 2),
+			Arguments.of(new FrequencyDto(0, 0, 2)),
 			Arguments.of(new FrequencyDto(1, -1, 6)),
 			Arguments.of(new FrequencyDto(1, -1, 6)),
 			Arguments.of(new FrequencyDto(0, 0, 4)),
@@ -35,8 +35,14 @@ public class PostbackFrequencyValidatorTest {
 			Arguments.of(new FrequencyDto(3, 60, 59)),
 			Arguments.of(new FrequencyDto(3, 58, 60)),
 			Arguments.of(new FrequencyDto(3, 61, 6)),
-			Arguments.of(new FrequencyDto(3, 56, 61))
-		));
+			Arguments.of(new FrequencyDto(3, 56, 61)),
+			Arguments.of(new FrequencyDto(0, 0, 0, 99)),
+			Arguments.of(new FrequencyDto(0, 0, 1, 1)),
+			Arguments.of(new FrequencyDto(0, 0, 5, 500)),
+			Arguments.of(new FrequencyDto(0, 1, 0, 100)),
+			Arguments.of(new FrequencyDto(0, 0, 0, -100)),
+			Arguments.of(new FrequencyDto(0, 0, -1, 1500))
+		);
 	}
 
 	@ParameterizedTest(name = "{1}")
@@ -49,10 +55,13 @@ public class PostbackFrequencyValidatorTest {
 		return Stream.of(
 			Arguments.of(new FrequencyDto(4, 0, 0)),
 			Arguments.of(new FrequencyDto(0, 0, 5)),
-			Arguments.of(new FrequencyDto(1, 0, 2),
+			Arguments.of(new FrequencyDto(1, 0, 2)),
 			Arguments.of(new FrequencyDto(3, 1, 4)),
-			Arguments.of(new FrequencyDto(3, 59, 59))
-		));
+			Arguments.of(new FrequencyDto(3, 59, 59)),
+			Arguments.of(new FrequencyDto(0, 0, 0, 100)),
+			Arguments.of(new FrequencyDto(0, 0, 0, 1000)),
+			Arguments.of(new FrequencyDto(0, 0, 1))
+		);
 	}
 
 }
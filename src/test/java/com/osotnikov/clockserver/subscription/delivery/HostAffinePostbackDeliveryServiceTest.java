@@ -0,0 +1,135 @@
+package com.osotnikov.clockserver.subscription.delivery;
+
+import com.osotnikov.clockserver.config.DeliveryProperties;
+import com.osotnikov.clockserver.config.MetricsProperties;
+import com.osotnikov.clockserver.metrics.PostbackMetrics;
+import com.osotnikov.clockserver.subscription.payload.PostbackPayload;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HostAffinePostbackDeliveryServiceTest {
+
+	private static final String BUSY_HOST_URL = "http://busy.host/postback";
+	private static final String OTHER_HOST_URL = "http://other.host/postback";
+	private static final PostbackPayload CURRENT_TIME = new PostbackPayload(MediaType.APPLICATION_JSON,
+		"{\"currentTime\":\"time\"}".getBytes());
+
+	@Mock
+	private PostbackDeliveryService delegate;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private DeliveryProperties deliveryProperties;
+	private final List<CompletableFuture<Boolean>> delegated = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		deliveryProperties = new DeliveryProperties();
+		deliveryProperties.getHostQueues().setMaxConcurrencyPerHost(2);
+		deliveryProperties.getHostQueues().setCapacityPerHost(3);
+		lenient().when(delegate.deliver(any(), any())).thenAnswer(invocation -> {
+			CompletableFuture<Boolean> result = new CompletableFuture<>();
+			delegated.add(result);
+			return result;
+		});
+	}
+
+	@Test
+	void givenMorePostbacksToAHostThanItsConcurrency_whenDeliver_thenRestWaitUntilOneCompletes() {
+		HostAffinePostbackDeliveryService postbackDeliveryService = postbackDeliveryService();
+
+		CompletableFuture<Boolean> first = postbackDeliveryService.deliver(BUSY_HOST_URL, CURRENT_TIME);
+		postbackDeliveryService.deliver(BUSY_HOST_URL, CURRENT_TIME);
+		CompletableFuture<Boolean> third = postbackDeliveryService.deliver(BUSY_HOST_URL, CURRENT_TIME);
+
+		then(delegate).should(times(2)).deliver(BUSY_HOST_URL, CURRENT_TIME);
+		delegated.get(0).complete(true);
+		assertTrue(first.join());
+		then(delegate).should(times(3)).deliver(BUSY_HOST_URL, CURRENT_TIME);
+		assertFalse(third.isDone());
+	}
+
+	@Test
+	void givenBusyHost_whenDeliverToOtherHost_thenNotQueuedBehindIt() {
+		HostAffinePostbackDeliveryService postbackDeliveryService = postbackDeliveryService();
+		for (int i = 0; i < 5; i++) {
+			postbackDeliveryService.deliver(BUSY_HOST_URL, CURRENT_TIME);
+		}
+
+		postbackDeliveryService.deliver(OTHER_HOST_URL, CURRENT_TIME);
+
+		then(delegate).should().deliver(OTHER_HOST_URL, CURRENT_TIME);
+		assertEquals(2, postbackDeliveryService.hosts());
+	}
+
+	@Test
+	void givenQueueOfHostFull_whenDeliver_thenRejected() {
+		HostAffinePostbackDeliveryService postbackDeliveryService = postbackDeliveryService();
+		for (int i = 0; i < 5; i++) {
+			postbackDeliveryService.deliver(BUSY_HOST_URL, CURRENT_TIME);
+		}
+
+		assertFalse(postbackDeliveryService.deliver(BUSY_HOST_URL, CURRENT_TIME).join());
+
+		assertEquals(1, meterRegistry.get("clockserver.postbacks").tag("result", "rejected").counter().count());
+	}
+
+	@Test
+	void givenAllPostbacksOfHostCompleted_whenDrained_thenQueueDropped() {
+		HostAffinePostbackDeliveryService postbackDeliveryService = postbackDeliveryService();
+		CompletableFuture<Boolean> postback = postbackDeliveryService.deliver(BUSY_HOST_URL, CURRENT_TIME);
+
+		delegated.get(0).complete(false);
+
+		assertFalse(postback.join());
+		assertEquals(0, postbackDeliveryService.hosts());
+	}
+
+	@Test
+	void givenDelegateCompletesRightAway_whenLongQueueOfHostDrained_thenAllDeliveredWithoutRecursing() {
+		deliveryProperties.getHostQueues().setMaxConcurrencyPerHost(1);
+		deliveryProperties.getHostQueues().setCapacityPerHost(20_000);
+		CompletableFuture<Boolean> first = new CompletableFuture<>();
+		when(delegate.deliver(any(), any())).thenReturn(first, CompletableFuture.completedFuture(false));
+		HostAffinePostbackDeliveryService postbackDeliveryService = postbackDeliveryService();
+		postbackDeliveryService.deliver(BUSY_HOST_URL, CURRENT_TIME);
+		List<CompletableFuture<Boolean>> queued = new ArrayList<>();
+		for (int i = 0; i < 20_000; i++) {
+			queued.add(postbackDeliveryService.deliver(BUSY_HOST_URL, CURRENT_TIME));
+		}
+
+		first.complete(true);
+
+		assertTrue(queued.stream().allMatch(CompletableFuture::isDone));
+		assertEquals(0, postbackDeliveryService.hosts());
+	}
+
+	@Test
+	void givenNoConcurrencySet_whenConcurrencyOf_thenConnectionLimitOfTheHost() {
+		deliveryProperties.getHostQueues().setMaxConcurrencyPerHost(0);
+		deliveryProperties.getHttp().setMaxConnectionsPerHost(50);
+		deliveryProperties.getHttp().getMaxConnectionsByHost().put("busy.host:80", 200);
+		HostAffinePostbackDeliveryService postbackDeliveryService = postbackDeliveryService();
+
+		assertEquals(200, postbackDeliveryService.concurrencyOf(PostbackHosts.hostOf(BUSY_HOST_URL)));
+		assertEquals(50, postbackDeliveryService.concurrencyOf(PostbackHosts.hostOf(OTHER_HOST_URL)));
+	}
+
+	private HostAffinePostbackDeliveryService postbackDeliveryService() {
+		return new HostAffinePostbackDeliveryService(delegate, deliveryProperties,
+			new PostbackMetrics(meterRegistry, new MetricsProperties()));
+	}
+}
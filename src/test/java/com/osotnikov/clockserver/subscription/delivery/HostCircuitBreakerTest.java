@@ -0,0 +1,102 @@
+package com.osotnikov.clockserver.subscription.delivery;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostCircuitBreakerTest {
+
+	private final AtomicLong nanoTime = new AtomicLong();
+	private final HostCircuitBreaker circuitBreaker = new HostCircuitBreaker(3, 1000, nanoTime::get);
+
+	@Test
+	void givenFailuresBelowThreshold_whenSuccess_thenStaysClosedAndFailuresReset() {
+		circuitBreaker.onFailure();
+		circuitBreaker.onFailure();
+		circuitBreaker.onSuccess();
+		circuitBreaker.onFailure();
+		circuitBreaker.onFailure();
+
+		assertEquals(HostCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		assertTrue(circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	void givenConsecutiveFailuresReachThreshold_whenTryAcquire_thenOpenUntilOpenDurationPassed() {
+		failThreeTimes();
+
+		assertEquals(HostCircuitBreaker.State.OPEN, circuitBreaker.getState());
+		assertFalse(circuitBreaker.tryAcquirePermission());
+		nanoTime.set(999);
+		assertFalse(circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	void givenOpenDurationPassed_whenTryAcquire_thenSingleProbeIsLetThrough() {
+		failThreeTimes();
+		nanoTime.set(1000);
+
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		assertEquals(HostCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+		assertFalse(circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	void givenHalfOpen_whenProbeSucceeds_thenClosed() {
+		failThreeTimes();
+		nanoTime.set(1000);
+		circuitBreaker.tryAcquirePermission();
+
+		circuitBreaker.onSuccess();
+
+		assertEquals(HostCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		assertTrue(circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	void givenHalfOpen_whenProbeFails_thenOpenAgainForAnotherOpenDuration() {
+		failThreeTimes();
+		nanoTime.set(1000);
+		circuitBreaker.tryAcquirePermission();
+
+		circuitBreaker.onFailure();
+
+		assertEquals(HostCircuitBreaker.State.OPEN, circuitBreaker.getState());
+		nanoTime.set(1999);
+		assertFalse(circuitBreaker.tryAcquirePermission());
+		nanoTime.set(2000);
+		assertTrue(circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	void givenOpen_whenFailuresOfEarlierPostbacksArrive_thenProbeNotPutOff() {
+		failThreeTimes();
+		nanoTime.set(500);
+
+		failThreeTimes();
+
+		assertEquals(HostCircuitBreaker.State.OPEN, circuitBreaker.getState());
+		nanoTime.set(1000);
+		assertTrue(circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	void givenOpen_whenSuccessOfEarlierPostbackArrives_thenStaysOpenUntilTheProbe() {
+		failThreeTimes();
+
+		circuitBreaker.onSuccess();
+
+		assertEquals(HostCircuitBreaker.State.OPEN, circuitBreaker.getState());
+		assertFalse(circuitBreaker.tryAcquirePermission());
+		nanoTime.set(1000);
+		assertTrue(circuitBreaker.tryAcquirePermission());
+	}
+
+	private void failThreeTimes() {
+		for (int i = 0; i < 3; i++) {
+			circuitBreaker.onFailure();
+		}
+	}
+}
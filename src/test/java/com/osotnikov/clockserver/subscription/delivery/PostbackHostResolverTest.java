@@ -0,0 +1,149 @@
+package com.osotnikov.clockserver.subscription.delivery;
+
+import com.osotnikov.clockserver.config.DeliveryProperties;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostbackHostResolverTest {
+
+	private static final String HOST = "subscriber.com";
+
+	private final AtomicLong nanoClock = new AtomicLong();
+	private final Map<String, InetAddress[]> records = new ConcurrentHashMap<>();
+	private final AtomicInteger lookups = new AtomicInteger();
+	private final DeliveryProperties deliveryProperties = new DeliveryProperties();
+
+	private PostbackHostResolver postbackHostResolver;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		deliveryProperties.getDns().setRefreshInterval(Duration.ofHours(1)); // refreshed by the tests only
+		deliveryProperties.getDns().setNegativeTtl(Duration.ofSeconds(10));
+		deliveryProperties.getDns().setMaxHosts(2);
+		records.put(HOST, new InetAddress[] {address(HOST, 1)});
+		postbackHostResolver = new PostbackHostResolver(deliveryProperties, host -> {
+			lookups.incrementAndGet();
+			InetAddress[] addresses = records.get(host);
+			if (addresses == null) {
+				throw new UnknownHostException(host);
+			}
+			return addresses;
+		}, Executors.newSingleThreadScheduledExecutor(), nanoClock::get);
+	}
+
+	@AfterEach
+	void tearDown() {
+		postbackHostResolver.destroy();
+	}
+
+	@Test
+	void givenPrefetchedHost_whenResolved_thenServedFromTheCacheWithoutLookingItUpAgain() throws Exception {
+		postbackHostResolver.prefetch("http://" + HOST + ":8080/path");
+		InetAddress[] prefetched = postbackHostResolver.resolve(HOST).get();
+
+		assertSame(prefetched, postbackHostResolver.resolve(HOST).get());
+		assertEquals(1, lookups.get());
+	}
+
+	@Test
+	void givenUnresolvableHost_whenResolvedWithinNegativeTtl_thenFailsWithoutLookingItUpAgain() {
+		assertUnknownHost("missing.com");
+		assertUnknownHost("missing.com");
+		assertEquals(1, lookups.get());
+
+		nanoClock.addAndGet(Duration.ofSeconds(11).toNanos());
+
+		assertUnknownHost("missing.com");
+		assertEquals(2, lookups.get());
+	}
+
+	@Test
+	void givenUsedHost_whenRefreshed_thenNewAddressesServed() throws Exception {
+		postbackHostResolver.resolve(HOST).get();
+		records.put(HOST, new InetAddress[] {address(HOST, 2)});
+
+		postbackHostResolver.refresh().get();
+
+		assertEquals(address(HOST, 2), postbackHostResolver.resolve(HOST).get()[0]);
+	}
+
+	@Test
+	void givenResolverFailsOnRefresh_whenResolved_thenCachedAddressesStillServed() throws Exception {
+		postbackHostResolver.resolve(HOST).get();
+		records.remove(HOST);
+
+		postbackHostResolver.refresh().get();
+
+		assertEquals(2, lookups.get());
+		assertEquals(address(HOST, 1), postbackHostResolver.resolve(HOST).get()[0]);
+	}
+
+	@Test
+	void givenHostNotUsedSinceLastRefresh_whenRefreshed_thenNotLookedUp() throws Exception {
+		postbackHostResolver.resolve(HOST).get();
+		nanoClock.incrementAndGet();
+		postbackHostResolver.refresh().get();
+		nanoClock.incrementAndGet();
+
+		postbackHostResolver.refresh().get();
+
+		assertEquals(2, lookups.get());
+	}
+
+	@Test
+	void givenMoreHostsThanMaxHosts_whenResolved_thenLeastRecentlyUsedEvicted() throws Exception {
+		records.put("a.com", new InetAddress[] {address("a.com", 3)});
+		records.put("b.com", new InetAddress[] {address("b.com", 4)});
+		postbackHostResolver.resolve(HOST).get();
+		postbackHostResolver.resolve("a.com").get();
+		postbackHostResolver.resolve(HOST).get();
+		postbackHostResolver.resolve("b.com").get();
+
+		postbackHostResolver.resolve(HOST).get();
+		postbackHostResolver.resolve("a.com").get();
+
+		assertEquals(4, lookups.get()); // a.com again, it was the least recently used when b.com came in
+	}
+
+	@Test
+	void givenAddressResolverGroup_whenNettyResolves_thenCachedAddressWithThePort() throws Exception {
+		InetSocketAddress resolved = postbackHostResolver.addressResolverGroup()
+			.getResolver(GlobalEventExecutor.INSTANCE)
+			.resolve(InetSocketAddress.createUnresolved(HOST, 8080))
+			.get();
+
+		assertEquals(address(HOST, 1), resolved.getAddress());
+		assertEquals(8080, resolved.getPort());
+	}
+
+	@Test
+	void givenIpAddress_whenResolved_thenNotLookedUp() throws Exception {
+		assertEquals(InetAddress.getByName("10.0.0.1"), postbackHostResolver.resolve("10.0.0.1").get()[0]);
+		assertEquals(0, lookups.get());
+	}
+
+	private void assertUnknownHost(String host) {
+		ExecutionException e = assertThrows(ExecutionException.class, () -> postbackHostResolver.resolve(host).get());
+		assertThat(e.getCause()).isInstanceOf(UnknownHostException.class);
+	}
+
+	private static InetAddress address(String host, int lastByte) throws UnknownHostException {
+		return InetAddress.getByAddress(host, new byte[] {10, 0, 0, (byte) lastByte});
+	}
+}
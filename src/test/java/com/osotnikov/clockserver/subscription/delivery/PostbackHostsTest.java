@@ -0,0 +1,20 @@
+package com.osotnikov.clockserver.subscription.delivery;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostbackHostsTest {
+
+	@Test
+	void givenUrlsOfSameHost_whenHostOf_thenSameKeyWithDefaultPort() {
+		assertEquals("down.host:80", PostbackHosts.hostOf("http://down.host/postback"));
+		assertEquals("down.host:80", PostbackHosts.hostOf("http://DOWN.host:80/other"));
+		assertEquals("down.host:443", PostbackHosts.hostOf("https://down.host/postback"));
+	}
+
+	@Test
+	void givenUrlWithoutHost_whenHostOf_thenUrlItself() {
+		assertEquals("not a url", PostbackHosts.hostOf("not a url"));
+	}
+}
@@ -0,0 +1,105 @@
+package com.osotnikov.clockserver.subscription.delivery;
+
+import com.osotnikov.clockserver.config.DeliveryProperties;
+import com.osotnikov.clockserver.config.MetricsProperties;
+import com.osotnikov.clockserver.metrics.PostbackMetrics;
+import com.osotnikov.clockserver.subscription.payload.PostbackPayload;
+import com.osotnikov.clockserver.subscription.service.model.rest.client.dto.request.CurrentTimeDto;
+import com.osotnikov.rest.client.PostOutcome;
+import com.osotnikov.rest.client.RestClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactivePostbackDeliveryServiceTest {
+
+	private static final PostbackPayload CURRENT_TIME = new PostbackPayload(MediaType.APPLICATION_JSON,
+		"{\"currentTime\":\"time\"}".getBytes());
+
+	@Mock
+	private RestClient<CurrentTimeDto> restClient;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private ReactivePostbackDeliveryService postbackDeliveryService;
+
+	@BeforeEach
+	void setUp() {
+		DeliveryProperties deliveryProperties = new DeliveryProperties();
+		deliveryProperties.setMaxInFlight(2);
+		deliveryProperties.setQueueCapacity(4);
+		postbackDeliveryService = new ReactivePostbackDeliveryService(restClient, deliveryProperties,
+			new PostbackMetrics(meterRegistry, new MetricsProperties()));
+	}
+
+	@AfterEach
+	void tearDown() {
+		postbackDeliveryService.destroy();
+	}
+
+	@Test
+	void givenRemoteResponds_whenDeliver_thenFutureCompletesWithResult() throws Exception {
+		when(restClient.postEncodedForOutcome(eq("http://a"), eq(MediaType.APPLICATION_JSON), any()))
+			.thenReturn(Mono.just(PostOutcome.SUCCESS));
+		when(restClient.postEncodedForOutcome(eq("http://b"), eq(MediaType.APPLICATION_JSON), any()))
+			.thenReturn(Mono.just(PostOutcome.TIMEOUT));
+
+		assertTrue(postbackDeliveryService.deliver("http://a", CURRENT_TIME).get());
+		assertFalse(postbackDeliveryService.deliver("http://b", CURRENT_TIME).get());
+		assertEquals(1, meterRegistry.get("clockserver.postbacks").tag("result", "success").counter().count());
+		assertEquals(1, meterRegistry.get("clockserver.postbacks").tag("result", "timeout").counter().count());
+		assertEquals(1, meterRegistry.get("clockserver.postback.latency").tag("host", "a:80").timer().count());
+		assertEquals(0, meterRegistry.get("clockserver.postback.in.flight").gauge().value());
+	}
+
+	@Test
+	void givenMaxInFlightReached_whenDeliver_thenQueuedUntilAnInFlightPostbackCompletes() throws Exception {
+		Sinks.One<PostOutcome> slowResponse = Sinks.one();
+		when(restClient.postEncodedForOutcome(any(), any(), any()))
+			.thenReturn(slowResponse.asMono(), slowResponse.asMono(),
+				Mono.just(PostOutcome.SUCCESS));
+
+		CompletableFuture<Boolean> first = postbackDeliveryService.deliver("http://a", CURRENT_TIME);
+		postbackDeliveryService.deliver("http://b", CURRENT_TIME);
+		CompletableFuture<Boolean> third = postbackDeliveryService.deliver("http://c", CURRENT_TIME);
+
+		assertFalse(third.isDone());
+		then(restClient).should(times(2)).postEncodedForOutcome(any(), any(), any());
+
+		slowResponse.tryEmitValue(PostOutcome.SUCCESS);
+
+		assertTrue(first.get());
+		assertTrue(third.get());
+		then(restClient).should(times(3)).postEncodedForOutcome(any(), any(), any());
+	}
+
+	@Test
+	void givenQueueFull_whenDeliver_thenRejectedWithoutBlocking() throws Exception {
+		when(restClient.postEncodedForOutcome(any(), any(), any())).thenReturn(Mono.never());
+
+		// 2 in flight and 4 queued
+		for (int i = 0; i < 6; i++) {
+			postbackDeliveryService.deliver("http://a" + i, CURRENT_TIME);
+		}
+
+		assertFalse(postbackDeliveryService.deliver("http://rejected", CURRENT_TIME).get());
+		assertEquals(2, meterRegistry.get("clockserver.postback.in.flight").gauge().value());
+		assertEquals(4, meterRegistry.get("clockserver.postback.queue").gauge().value());
+		assertEquals(1, meterRegistry.get("clockserver.postbacks").tag("result", "rejected").counter().count());
+	}
+}
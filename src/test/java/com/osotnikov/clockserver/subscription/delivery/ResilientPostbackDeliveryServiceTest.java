@@ -0,0 +1,114 @@
+package com.osotnikov.clockserver.subscription.delivery;
+
+import com.osotnikov.clockserver.config.DeliveryProperties;
+import com.osotnikov.clockserver.config.MetricsProperties;
+import com.osotnikov.clockserver.metrics.PostbackMetrics;
+import com.osotnikov.clockserver.subscription.payload.PostbackPayload;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResilientPostbackDeliveryServiceTest {
+
+	private static final String URL = "http://down.host/postback";
+	private static final String OTHER_URL_OF_SAME_HOST = "http://DOWN.host:80/other";
+	private static final PostbackPayload CURRENT_TIME = new PostbackPayload(MediaType.APPLICATION_JSON,
+		"{\"currentTime\":\"time\"}".getBytes());
+
+	@Mock
+	private PostbackDeliveryService delegate;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private DeliveryProperties deliveryProperties;
+	private ResilientPostbackDeliveryService postbackDeliveryService;
+
+	@BeforeEach
+	void setUp() {
+		deliveryProperties = new DeliveryProperties();
+		deliveryProperties.getRetry().setMaxAttempts(3);
+		deliveryProperties.getRetry().setInitialBackoff(Duration.ofMillis(10));
+		deliveryProperties.getCircuitBreaker().setFailureThreshold(5);
+		deliveryProperties.getCircuitBreaker().setOpenDuration(Duration.ofMinutes(1));
+		postbackDeliveryService = new ResilientPostbackDeliveryService(delegate, deliveryProperties,
+			new PostbackMetrics(meterRegistry, new MetricsProperties()), Executors.newSingleThreadScheduledExecutor());
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		postbackDeliveryService.destroy();
+	}
+
+	@Test
+	void givenFirstAttemptFails_whenDeliver_thenRetriedAndCompletesWithTrue() throws Exception {
+		when(delegate.deliver(URL, CURRENT_TIME))
+			.thenReturn(CompletableFuture.completedFuture(false), CompletableFuture.completedFuture(true));
+
+		assertTrue(postbackDeliveryService.deliver(URL, CURRENT_TIME).get(5, TimeUnit.SECONDS));
+		then(delegate).should(times(2)).deliver(URL, CURRENT_TIME);
+	}
+
+	@Test
+	void givenEveryAttemptFails_whenDeliver_thenGivesUpAfterMaxAttempts() throws Exception {
+		when(delegate.deliver(URL, CURRENT_TIME)).thenReturn(CompletableFuture.completedFuture(false));
+
+		assertFalse(postbackDeliveryService.deliver(URL, CURRENT_TIME).get(5, TimeUnit.SECONDS));
+		then(delegate).should(times(3)).deliver(URL, CURRENT_TIME);
+		assertEquals(2, meterRegistry.get("clockserver.postback.retries").counter().count());
+	}
+
+	@Test
+	void givenHostKeepsFailing_whenCircuitOpens_thenPostbacksToThatHostAreQuarantined() throws Exception {
+		deliveryProperties.getRetry().setMaxAttempts(1);
+		when(delegate.deliver(any(), any())).thenReturn(CompletableFuture.completedFuture(false));
+		for (int i = 0; i < 5; i++) {
+			postbackDeliveryService.deliver(URL, CURRENT_TIME).get(5, TimeUnit.SECONDS);
+		}
+
+		assertEquals(HostCircuitBreaker.State.OPEN, postbackDeliveryService.getCircuitState(URL));
+		assertFalse(postbackDeliveryService.deliver(OTHER_URL_OF_SAME_HOST, CURRENT_TIME).get());
+		then(delegate).should(times(5)).deliver(any(), any());
+		assertEquals(1, meterRegistry.get("clockserver.postbacks").tag("result", "quarantined").counter().count());
+
+		when(delegate.deliver("http://healthy.host", CURRENT_TIME)).thenReturn(CompletableFuture.completedFuture(true));
+		assertTrue(postbackDeliveryService.deliver("http://healthy.host", CURRENT_TIME).get());
+	}
+
+	@Test
+	void givenCircuitBreakerDisabled_whenHostKeepsFailing_thenEveryPostbackIsAttempted() throws Exception {
+		deliveryProperties.getRetry().setMaxAttempts(1);
+		deliveryProperties.getCircuitBreaker().setEnabled(false);
+		when(delegate.deliver(URL, CURRENT_TIME)).thenReturn(CompletableFuture.completedFuture(false));
+
+		for (int i = 0; i < 10; i++) {
+			postbackDeliveryService.deliver(URL, CURRENT_TIME).get(5, TimeUnit.SECONDS);
+		}
+
+		then(delegate).should(times(10)).deliver(URL, CURRENT_TIME);
+	}
+
+	@Test
+	void givenRetries_whenBackoff_thenGrowsExponentiallyWithJitterAndIsCapped() {
+		deliveryProperties.getRetry().setInitialBackoff(Duration.ofMillis(100));
+		deliveryProperties.getRetry().setMaxBackoff(Duration.ofMillis(300));
+
+		assertThat(postbackDeliveryService.backoffNanos(1)).isBetween(50_000_000L, 100_000_000L);
+		assertThat(postbackDeliveryService.backoffNanos(2)).isBetween(100_000_000L, 200_000_000L);
+		assertThat(postbackDeliveryService.backoffNanos(5)).isBetween(150_000_000L, 300_000_000L);
+	}
+}
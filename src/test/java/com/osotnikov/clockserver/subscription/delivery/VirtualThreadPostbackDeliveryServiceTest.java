@@ -0,0 +1,91 @@
+package com.osotnikov.clockserver.subscription.delivery;
+
+import com.osotnikov.clockserver.config.MetricsProperties;
+import com.osotnikov.clockserver.metrics.PostbackMetrics;
+import com.osotnikov.clockserver.subscription.payload.PostbackPayload;
+import com.osotnikov.clockserver.subscription.service.model.rest.client.dto.request.CurrentTimeDto;
+import com.osotnikov.rest.client.PostOutcome;
+import com.osotnikov.rest.client.RestClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VirtualThreadPostbackDeliveryServiceTest {
+
+	private static final PostbackPayload CURRENT_TIME = new PostbackPayload(MediaType.APPLICATION_JSON,
+		"{\"currentTime\":\"time\"}".getBytes());
+
+	@Mock
+	private RestClient<CurrentTimeDto> restClient;
+
+	// a platform thread per task behaves the same as a virtual thread per task apart from the cost
+	private VirtualThreadPostbackDeliveryService postbackDeliveryService;
+
+	@BeforeEach
+	void setUp() {
+		postbackDeliveryService = new VirtualThreadPostbackDeliveryService(restClient, Executors.newCachedThreadPool(),
+			2, new PostbackMetrics(new SimpleMeterRegistry(), new MetricsProperties()));
+	}
+
+	@AfterEach
+	void tearDown() {
+		postbackDeliveryService.destroy();
+	}
+
+	@Test
+	void givenRemoteResponds_whenDeliver_thenBlockingPostResultIsReturned() throws Exception {
+		when(restClient.postEncodedForOutcome(eq("http://a"), eq(MediaType.APPLICATION_JSON), any()))
+			.thenReturn(Mono.just(PostOutcome.SUCCESS));
+		when(restClient.postEncodedForOutcome(eq("http://b"), eq(MediaType.APPLICATION_JSON), any()))
+			.thenReturn(Mono.just(PostOutcome.FAILURE));
+
+		assertTrue(postbackDeliveryService.deliver("http://a", CURRENT_TIME).get(5, TimeUnit.SECONDS));
+		assertFalse(postbackDeliveryService.deliver("http://b", CURRENT_TIME).get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void givenMaxInFlightReached_whenDeliver_thenWaitsForAnInFlightPostback() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger started = new AtomicInteger();
+		when(restClient.postEncodedForOutcome(any(), any(), any())).thenAnswer(invocation -> {
+			started.incrementAndGet();
+			return Mono.just(release.await(5, TimeUnit.SECONDS) ? PostOutcome.SUCCESS : PostOutcome.TIMEOUT);
+		});
+
+		postbackDeliveryService.deliver("http://a", CURRENT_TIME);
+		postbackDeliveryService.deliver("http://b", CURRENT_TIME);
+		CompletableFuture<Boolean> third = postbackDeliveryService.deliver("http://c", CURRENT_TIME);
+		Thread.sleep(200);
+
+		assertEquals(2, started.get());
+		release.countDown();
+		assertTrue(third.get(5, TimeUnit.SECONDS));
+		assertEquals(3, started.get());
+	}
+
+	@Test
+	void givenShutDown_whenDeliver_thenFalseWithoutPosting() throws Exception {
+		postbackDeliveryService.destroy();
+
+		assertFalse(postbackDeliveryService.deliver("http://a", CURRENT_TIME).get());
+		verifyNoInteractions(restClient);
+	}
+}
@@ -0,0 +1,166 @@
+package com.osotnikov.clockserver.subscription.payload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.osotnikov.clockserver.config.PayloadProperties;
+import com.osotnikov.clockserver.subscription.service.model.rest.client.dto.request.CurrentTimeDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CurrentTimePayloadCacheTest {
+
+	private static final long EPOCH_MILLIS = 1654446606000L;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final CurrentTimePayloadCache currentTimePayloadCache = new CurrentTimePayloadCache(objectMapper);
+
+	@Test
+	void givenSameSecond_whenAt_thenSamePayloadIsShared() {
+		PostbackPayload payload = currentTimePayloadCache.at(EPOCH_MILLIS);
+
+		assertSame(payload, currentTimePayloadCache.at(EPOCH_MILLIS + 999));
+		assertNotSame(payload, currentTimePayloadCache.at(EPOCH_MILLIS + 1000));
+	}
+
+	@Test
+	void givenFormatFinerThanASecond_whenAt_thenPayloadKeptOnTheHeap() {
+		Instant time = Instant.ofEpochMilli(EPOCH_MILLIS);
+
+		assertTrue(currentTimePayloadCache.at(time, TimeFormat.LEGACY, PayloadEncoding.JSON).isDirect());
+		assertFalse(currentTimePayloadCache.at(time, TimeFormat.EPOCH_MILLIS, PayloadEncoding.JSON).isDirect());
+		assertFalse(currentTimePayloadCache.at(time, TimeFormat.EPOCH_NANOS, PayloadEncoding.CBOR).isDirect());
+		assertFalse(currentTimePayloadCache.at(time, TimeFormat.ISO_8601_UTC, PayloadEncoding.TEXT).isDirect());
+	}
+
+	@Test
+	void givenPayload_whenDecoded_thenCurrentTimeOfThatSecond() throws Exception {
+		PostbackPayload payload = currentTimePayloadCache.at(EPOCH_MILLIS + 500);
+
+		assertEquals(MediaType.APPLICATION_JSON, payload.getContentType());
+		CurrentTimeDto currentTimeDto = objectMapper.readValue(payload.getContent(), CurrentTimeDto.class);
+		assertEquals(new Date(EPOCH_MILLIS).toString(), currentTimeDto.getCurrentTime());
+	}
+
+	@Test
+	void givenSharedPayload_whenDataBufferConsumed_thenOtherViewsAreUnaffected() {
+		PostbackPayload payload = currentTimePayloadCache.at(EPOCH_MILLIS);
+		int length = payload.getContent().length;
+
+		DataBuffer first = payload.toDataBuffer();
+		first.read(new byte[length]);
+
+		assertEquals(0, first.readableByteCount());
+		assertEquals(length, payload.toDataBuffer().readableByteCount());
+	}
+
+	@Test
+	void givenSameMillisecond_whenAtInIsoFormat_thenSamePayloadIsSharedAndMillisecondsWritten() {
+		Instant time = Instant.ofEpochMilli(EPOCH_MILLIS + 7);
+
+		PostbackPayload payload = json(time, TimeFormat.ISO_8601_UTC);
+
+		assertSame(payload, json(time.plusNanos(999_999), TimeFormat.ISO_8601_UTC));
+		assertEquals("{\"currentTime\":\"2022-06-05T16:30:06.007Z\"}", contentOf(payload));
+		assertEquals("{\"currentTime\":\"2022-06-05T16:30:06.250Z\"}",
+			contentOf(json(time.plusMillis(243), TimeFormat.ISO_8601_UTC)));
+		assertEquals("{\"currentTime\":\"2022-06-05T16:30:07.999Z\"}",
+			contentOf(json(time.plusMillis(1992), TimeFormat.ISO_8601_UTC)));
+	}
+
+	@Test
+	void givenConfiguredZone_whenAtInIsoOffsetFormat_thenLocalTimeWithOffset() {
+		PayloadProperties payloadProperties = new PayloadProperties();
+		payloadProperties.setZone(ZoneId.of("+02:00"));
+		CurrentTimePayloadCache cache = new CurrentTimePayloadCache(objectMapper, payloadProperties);
+
+		PostbackPayload payload = cache.at(Instant.ofEpochMilli(EPOCH_MILLIS + 42), TimeFormat.ISO_8601_OFFSET,
+			PayloadEncoding.JSON);
+
+		assertEquals("{\"currentTime\":\"2022-06-05T18:30:06.042+02:00\"}", contentOf(payload));
+	}
+
+	@Test
+	void givenEpochFormats_whenAt_thenTimeAsNumber() {
+		Instant time = Instant.ofEpochMilli(EPOCH_MILLIS + 123).plusNanos(456_789);
+
+		assertEquals("{\"currentTime\":1654446606123}", contentOf(json(time, TimeFormat.EPOCH_MILLIS)));
+		assertEquals("{\"currentTime\":1654446606123456789}", contentOf(json(time, TimeFormat.EPOCH_NANOS)));
+		assertEquals("{\"currentTime\":0}", contentOf(json(Instant.EPOCH, TimeFormat.EPOCH_MILLIS)));
+	}
+
+	@Test
+	void givenDifferentFormatsAndEncodingsOfSameTime_whenAt_thenEachCachedSeparately() {
+		Instant time = Instant.ofEpochMilli(EPOCH_MILLIS);
+
+		PostbackPayload legacy = json(time, TimeFormat.LEGACY);
+		PostbackPayload epochMillis = json(time, TimeFormat.EPOCH_MILLIS);
+		PostbackPayload binary = currentTimePayloadCache.at(time, TimeFormat.EPOCH_MILLIS, PayloadEncoding.BINARY);
+
+		assertNotSame(legacy, epochMillis);
+		assertNotSame(epochMillis, binary);
+		assertSame(legacy, json(time, TimeFormat.LEGACY));
+		assertSame(epochMillis, json(time, TimeFormat.EPOCH_MILLIS));
+		assertSame(binary, currentTimePayloadCache.at(time, TimeFormat.EPOCH_MILLIS, PayloadEncoding.BINARY));
+	}
+
+	@Test
+	void givenTextEncoding_whenAt_thenOnlyTheTime() {
+		Instant time = Instant.ofEpochMilli(EPOCH_MILLIS + 7);
+
+		PostbackPayload iso = currentTimePayloadCache.at(time, TimeFormat.ISO_8601_UTC, PayloadEncoding.TEXT);
+
+		assertEquals(MediaType.TEXT_PLAIN, iso.getContentType());
+		assertEquals("2022-06-05T16:30:06.007Z", contentOf(iso));
+		assertEquals("1654446606007",
+			contentOf(currentTimePayloadCache.at(time, TimeFormat.EPOCH_MILLIS, PayloadEncoding.TEXT)));
+		assertEquals(new Date(EPOCH_MILLIS).toString(),
+			contentOf(currentTimePayloadCache.at(time, TimeFormat.LEGACY, PayloadEncoding.TEXT)));
+	}
+
+	@Test
+	void givenBinaryEncoding_whenAt_thenEightByteBigEndianEpochTime() {
+		Instant time = Instant.ofEpochMilli(EPOCH_MILLIS + 123).plusNanos(456_789);
+
+		PostbackPayload millis = currentTimePayloadCache.at(time, TimeFormat.ISO_8601_UTC, PayloadEncoding.BINARY);
+		PostbackPayload nanos = currentTimePayloadCache.at(time, TimeFormat.EPOCH_NANOS, PayloadEncoding.BINARY);
+
+		assertEquals(MediaType.APPLICATION_OCTET_STREAM, millis.getContentType());
+		assertEquals(8, millis.getContent().length);
+		assertEquals(EPOCH_MILLIS + 123, ByteBuffer.wrap(millis.getContent()).getLong());
+		assertEquals(1654446606123456789L, ByteBuffer.wrap(nanos.getContent()).getLong());
+	}
+
+	@Test
+	void givenCborEncoding_whenAt_thenMapOfCurrentTime() {
+		Instant time = Instant.ofEpochMilli(EPOCH_MILLIS + 7);
+		byte[] mapOfCurrentTime = {(byte) 0xa1, 0x6b, 'c', 'u', 'r', 'r', 'e', 'n', 't', 'T', 'i', 'm', 'e'};
+
+		PostbackPayload iso = currentTimePayloadCache.at(time, TimeFormat.ISO_8601_UTC, PayloadEncoding.CBOR);
+		PostbackPayload epochMillis = currentTimePayloadCache.at(time, TimeFormat.EPOCH_MILLIS, PayloadEncoding.CBOR);
+
+		assertEquals(MediaType.APPLICATION_CBOR, iso.getContentType());
+		ByteBuffer isoContent = ByteBuffer.allocate(13 + 2 + 24).put(mapOfCurrentTime)
+			.put((byte) 0x78).put((byte) 24) // text string, length in the next byte
+			.put("2022-06-05T16:30:06.007Z".getBytes(StandardCharsets.US_ASCII));
+		assertArrayEquals(isoContent.array(), iso.getContent());
+		ByteBuffer epochMillisContent = ByteBuffer.allocate(13 + 1 + 8).put(mapOfCurrentTime)
+			.put((byte) 0x1b).putLong(EPOCH_MILLIS + 7); // unsigned integer, in the next 8 bytes
+		assertArrayEquals(epochMillisContent.array(), epochMillis.getContent());
+	}
+
+	private PostbackPayload json(Instant time, TimeFormat timeFormat) {
+		return currentTimePayloadCache.at(time, timeFormat, PayloadEncoding.JSON);
+	}
+
+	private static String contentOf(PostbackPayload payload) {
+		return new String(payload.getContent(), StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,199 @@
+package com.osotnikov.clockserver.subscription.repository;
+
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.service.model.Subscription;
+import com.osotnikov.clockserver.subscription.service.model.SubscriptionState;
+import com.osotnikov.scheduling.MissedTickPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class CompactSubscriptionRepositoryTest {
+
+	private static final String URL = "https://some.url:8443/path?query=1";
+	private static final Instant PHASE_ANCHOR = Instant.parse("2022-06-05T16:30:06.123Z");
+
+	private final CompactSubscriptionRepository repository = new CompactSubscriptionRepository();
+
+	@Test
+	void givenStoredSubscription_whenGet_thenEqualCopyWithNormalizedFrequency() {
+		ScheduledFuture scheduledFuture = mock(ScheduledFuture.class);
+		Subscription subscription = subscription(URL, new FrequencyDto(0, 0, 3723));
+		subscription.setScheduledFuture(scheduledFuture);
+
+		assertNull(repository.storeNew(subscription));
+		Subscription stored = repository.get(URL);
+
+		assertNotSame(subscription, stored);
+		assertEquals(URL, stored.getPostbackUrl());
+		assertEquals(new FrequencyDto(1, 2, 3), stored.getFrequency());
+		assertEquals(MissedTickPolicy.SKIP, stored.getMissedTickPolicy());
+		assertEquals(3, stored.getMaxInFlight());
+		assertEquals(PHASE_ANCHOR, stored.getPhaseAnchor());
+		assertSame(scheduledFuture, stored.getScheduledFuture());
+		assertEquals(1, repository.size());
+	}
+
+	@Test
+	void givenStoredSubscription_whenStoreNewAgain_thenExistingReturnedAndNotReplaced() {
+		repository.storeNew(subscription(URL, new FrequencyDto(0, 0, 10)));
+
+		Subscription existing = repository.storeNew(subscription(URL, new FrequencyDto(0, 0, 20)));
+
+		assertEquals(10, existing.getFrequency().getSeconds());
+		assertEquals(10, repository.get(URL).getFrequency().getSeconds());
+		assertEquals(1, repository.size());
+	}
+
+	@Test
+	void givenStoredSubscription_whenCompareAndSetWithReadVersion_thenGetReturnsChanges() {
+		repository.storeNew(subscription(URL, new FrequencyDto(0, 0, 10)));
+		Subscription subscription = repository.get(URL);
+		ScheduledFuture scheduledFuture = mock(ScheduledFuture.class);
+		Subscription update = subscription.toBuilder()
+			.frequency(new FrequencyDto(0, 1, 0))
+			.phaseAnchor(PHASE_ANCHOR.plusSeconds(1))
+			.state(SubscriptionState.ACTIVE)
+			.scheduledFuture(scheduledFuture)
+			.build();
+
+		assertTrue(repository.compareAndSet(subscription, update));
+
+		Subscription updated = repository.get(URL);
+		assertEquals(new FrequencyDto(0, 1, 0), updated.getFrequency());
+		assertEquals(PHASE_ANCHOR.plusSeconds(1), updated.getPhaseAnchor());
+		assertEquals(SubscriptionState.ACTIVE, updated.getState());
+		assertSame(scheduledFuture, updated.getScheduledFuture());
+		assertEquals(update.getVersion(), updated.getVersion());
+		assertNotEquals(subscription.getVersion(), updated.getVersion());
+	}
+
+	@Test
+	void givenSubscriptionChangedSinceRead_whenCompareAndSetOrDelete_thenNothingChanged() {
+		repository.storeNew(subscription(URL, new FrequencyDto(0, 0, 10)));
+		Subscription stale = repository.get(URL);
+		repository.compareAndSet(stale, stale.toBuilder().state(SubscriptionState.ACTIVE).build());
+
+		assertFalse(repository.compareAndSet(stale, stale.toBuilder().frequency(new FrequencyDto(0, 0, 20)).build()));
+		assertFalse(repository.compareAndDelete(stale));
+
+		assertEquals(10, repository.get(URL).getFrequency().getSeconds());
+		assertTrue(repository.compareAndDelete(repository.get(URL)));
+		assertNull(repository.get(URL));
+	}
+
+	@Test
+	void givenSubscriptionDeletedAndStoredAgain_whenCompareAndSetWithOldVersion_thenNothingChanged() {
+		repository.storeNew(subscription(URL, new FrequencyDto(0, 0, 10)));
+		Subscription old = repository.get(URL);
+		repository.deleteExisting(URL);
+		repository.storeNew(subscription(URL, new FrequencyDto(0, 0, 10)));
+
+		assertFalse(repository.compareAndSet(old, old.toBuilder().state(SubscriptionState.ACTIVE).build()));
+		assertEquals(SubscriptionState.INITIALIZING, repository.get(URL).getState());
+	}
+
+	@Test
+	void givenNoSubscription_whenUpdatedOrDeleted_thenNothingStored() {
+		Subscription subscription = subscription(URL, new FrequencyDto(0, 0, 10));
+		repository.updateExisting(subscription);
+
+		assertFalse(repository.compareAndSet(subscription, subscription));
+		assertFalse(repository.compareAndDelete(subscription));
+		assertNull(repository.deleteExisting(URL));
+		assertNull(repository.get(URL));
+		assertEquals(0, repository.size());
+	}
+
+	@Test
+	void givenRandomStoresAndDeletes_whenComparedToHashMap_thenSameContent() {
+		Map<String, Integer> expected = new HashMap<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 200_000; i++) {
+			// few hosts and a small key space so that slots, hosts and index positions get reused a lot
+			String postbackUrl = "http://host" + random.nextInt(10) + ".com/" + random.nextInt(5000);
+			if (random.nextInt(3) == 0) {
+				Subscription removed = repository.deleteExisting(postbackUrl);
+				Integer expectedRemoved = expected.remove(postbackUrl);
+				assertEquals(expectedRemoved, removed == null ? null : removed.getFrequency().getSeconds());
+			} else {
+				int seconds = 5 + random.nextInt(50);
+				Subscription existing = repository.storeNew(subscription(postbackUrl, new FrequencyDto(0, 0, seconds)));
+				Integer expectedExisting = expected.putIfAbsent(postbackUrl, seconds);
+				assertEquals(expectedExisting, existing == null ? null : existing.getFrequency().getSeconds());
+			}
+		}
+
+		assertEquals(expected.size(), repository.size());
+		Set<String> visited = new HashSet<>();
+		repository.forEach(subscription -> {
+			assertEquals(expected.get(subscription.getPostbackUrl()), subscription.getFrequency().getSeconds());
+			assertTrue(visited.add(subscription.getPostbackUrl()));
+		});
+		assertEquals(expected.keySet(), visited);
+		for (int i = 0; i < 5000; i++) {
+			assertEquals(expected.containsKey("http://host3.com/" + i), repository.get("http://host3.com/" + i) != null);
+		}
+	}
+
+	@Test
+	void givenSubscriptionsWithDeletedOnes_whenPaged_thenEveryStoredOneVisitedOnce() {
+		for (int i = 0; i < 25; i++) {
+			repository.storeNew(subscription(URL + i, new FrequencyDto(0, 0, 10)));
+		}
+		for (int i = 0; i < 25; i += 3) {
+			repository.deleteExisting(URL + i);
+		}
+
+		Set<String> visited = new HashSet<>();
+		int pages = 0;
+		String cursor = null;
+		do {
+			int[] pageSize = new int[1];
+			cursor = repository.page(cursor, 4, subscription -> {
+				assertTrue(visited.add(subscription.getPostbackUrl()));
+				pageSize[0]++;
+			});
+			assertTrue(pageSize[0] == 4 || cursor == null);
+			pages++;
+		} while (cursor != null);
+
+		assertEquals(16, visited.size());
+		assertEquals(4, pages);
+		assertFalse(visited.contains(URL + 3));
+		assertTrue(visited.contains(URL + 4));
+	}
+
+	@Test
+	void givenForeignCursor_whenPaged_thenIllegalArgument() {
+		assertThrows(IllegalArgumentException.class, () -> repository.page("http://some.url", 10, subscription -> {
+		}));
+	}
+
+	@Test
+	void givenUrlsWithoutPathOrScheme_whenStored_thenFoundAgain() {
+		repository.storeNew(subscription("http://some.url", new FrequencyDto(0, 0, 10)));
+		repository.storeNew(subscription("some.url/path", new FrequencyDto(0, 0, 10)));
+
+		assertEquals("http://some.url", repository.get("http://some.url").getPostbackUrl());
+		assertEquals("some.url/path", repository.get("some.url/path").getPostbackUrl());
+		assertNull(repository.get("http://some.url/"));
+	}
+
+	private static Subscription subscription(String postbackUrl, FrequencyDto frequency) {
+		Subscription subscription = new Subscription(postbackUrl, frequency, null);
+		subscription.setMissedTickPolicy(MissedTickPolicy.SKIP);
+		subscription.setMaxInFlight(3);
+		subscription.setPhaseAnchor(PHASE_ANCHOR);
+		return subscription;
+	}
+}
@@ -0,0 +1,197 @@
+package com.osotnikov.clockserver.subscription.repository;
+
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
+import com.osotnikov.clockserver.subscription.service.model.Subscription;
+import com.osotnikov.clockserver.subscription.service.model.SubscriptionState;
+import com.osotnikov.scheduling.MissedTickPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DurableSubscriptionRepositoryTest {
+
+	private static final String URL = "http://some.url/path";
+	private static final String URL2 = "http://some.url/path2";
+	private static final Instant PHASE_ANCHOR = Instant.parse("2022-06-05T16:30:06.123Z");
+
+	@TempDir
+	Path directory;
+
+	private DurableSubscriptionRepository repository;
+
+	@AfterEach
+	void tearDown() {
+		repository.close();
+	}
+
+	@Test
+	void givenCreatedPatchedAndDeletedSubscriptions_whenReopened_thenLatestStateRestored() throws Exception {
+		repository = open(1024);
+		repository.storeNew(subscription(URL, 10));
+		repository.storeNew(subscription(URL2, 10));
+		Subscription patched = repository.get(URL);
+		patched.setFrequency(new FrequencyDto(1, 2, 3));
+		repository.updateExisting(patched);
+		repository.deleteExisting(URL2);
+
+		repository = reopen();
+
+		Subscription restored = repository.get(URL);
+		assertEquals(new FrequencyDto(1, 2, 3), restored.getFrequency());
+		assertEquals(PHASE_ANCHOR, restored.getPhaseAnchor());
+		assertEquals(MissedTickPolicy.SKIP, restored.getMissedTickPolicy());
+		assertEquals(3, restored.getMaxInFlight());
+		assertEquals(TimeFormat.ISO_8601_UTC, restored.getTimeFormat());
+		assertEquals(PayloadEncoding.CBOR, restored.getEncoding());
+		assertNull(restored.getScheduledFuture());
+		assertNull(repository.get(URL2));
+		assertEquals(1, repository.size());
+	}
+
+	@Test
+	void givenCompareAndSetAndCompareAndDelete_whenReopened_thenChangesRestoredWithoutState() throws Exception {
+		repository = open(1024);
+		repository.storeNew(subscription(URL, 10));
+		repository.storeNew(subscription(URL2, 10));
+		Subscription subscription = repository.get(URL);
+		Subscription rescheduling = subscription.toBuilder()
+			.state(SubscriptionState.RESCHEDULING)
+			.frequency(new FrequencyDto(0, 0, 20))
+			.build();
+		repository.compareAndSet(subscription, rescheduling);
+		repository.compareAndSet(rescheduling, rescheduling.toBuilder().state(SubscriptionState.ACTIVE).build());
+		repository.compareAndDelete(repository.get(URL2));
+
+		repository = reopen();
+
+		Subscription restored = repository.get(URL);
+		assertEquals(20, restored.getFrequency().getSeconds());
+		assertEquals(SubscriptionState.INITIALIZING, restored.getState());
+		assertNull(repository.get(URL2));
+	}
+
+	@Test
+	void givenMoreRecordsThanFitInOneSegment_whenReopened_thenAllRestored() throws Exception {
+		repository = open(256);
+		for (int i = 0; i < 100; i++) {
+			repository.storeNew(subscription(URL + i, i + 5));
+		}
+
+		repository = reopen();
+
+		assertEquals(100, repository.size());
+		assertEquals(55, repository.get(URL + 50).getFrequency().getSeconds());
+	}
+
+	@Test
+	void givenSnapshotAndChangesAfterIt_whenReopened_thenSnapshotAndLogRestoredAndOldSegmentsDeleted() throws Exception {
+		repository = open(256);
+		for (int i = 0; i < 10; i++) {
+			repository.storeNew(subscription(URL + i, 10));
+		}
+		repository.snapshot();
+		repository.deleteExisting(URL + 0);
+		repository.storeNew(subscription(URL, 10));
+
+		repository = reopen();
+
+		assertEquals(10, repository.size());
+		assertNull(repository.get(URL + 0));
+		assertNotNull(repository.get(URL + 9));
+		assertNotNull(repository.get(URL));
+		List<String> fileNames = fileNames();
+		assertThat(fileNames).doesNotContain("wal-0.log");
+		assertThat(fileNames).filteredOn(name -> name.startsWith("snapshot-")).hasSize(1);
+	}
+
+	@Test
+	void givenHighFrequencySubscription_whenReopenedIntoCompactRepository_thenMillisecondsRestored() throws Exception {
+		repository = open(1024);
+		Subscription subscription = subscription(URL, 0);
+		subscription.setFrequency(new FrequencyDto(0, 0, 0, 250));
+		repository.storeNew(subscription);
+		repository.close();
+
+		repository = new DurableSubscriptionRepository(new CompactSubscriptionRepository(), directory, 1024,
+			Duration.ofHours(1), Duration.ofHours(1));
+
+		assertEquals(new FrequencyDto(0, 0, 0, 250), repository.get(URL).getFrequency());
+	}
+
+	@Test
+	void givenCompactRepository_whenReopened_thenRestoredIntoIt() throws Exception {
+		repository = open(1024);
+		repository.storeNew(subscription(URL, 90));
+		repository.close();
+
+		repository = new DurableSubscriptionRepository(new CompactSubscriptionRepository(), directory, 1024,
+			Duration.ofHours(1), Duration.ofHours(1));
+
+		Subscription restored = repository.get(URL);
+		assertEquals(new FrequencyDto(0, 1, 30), restored.getFrequency());
+		assertEquals(PHASE_ANCHOR, restored.getPhaseAnchor());
+		assertEquals(TimeFormat.ISO_8601_UTC, restored.getTimeFormat());
+		assertEquals(PayloadEncoding.CBOR, restored.getEncoding());
+	}
+
+	@Test
+	void givenTornLastRecord_whenReopened_thenRecordsBeforeItRestored() throws Exception {
+		repository = open(1024);
+		repository.storeNew(subscription(URL, 10));
+		repository.storeNew(subscription(URL2, 10));
+		repository.close();
+		Path segment = directory.resolve("wal-0.log");
+		byte[] bytes = Files.readAllBytes(segment);
+		int last = bytes.length - 1;
+		while (bytes[last] == 0) {
+			last--;
+		}
+		bytes[last] ^= 0x5a; // e.g. only part of the record made it to disk
+		Files.write(segment, bytes);
+
+		repository = open(1024);
+
+		assertNotNull(repository.get(URL));
+		assertNull(repository.get(URL2));
+	}
+
+	private DurableSubscriptionRepository open(int segmentSize) throws IOException {
+		return new DurableSubscriptionRepository(new InMemorySubscriptionRepository(), directory, segmentSize,
+			Duration.ofHours(1), Duration.ofHours(1));
+	}
+
+	private DurableSubscriptionRepository reopen() throws IOException {
+		repository.close();
+		return open(256);
+	}
+
+	private List<String> fileNames() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.map(path -> path.getFileName().toString()).collect(Collectors.toList());
+		}
+	}
+
+	private static Subscription subscription(String postbackUrl, int seconds) {
+		Subscription subscription = new Subscription(postbackUrl, new FrequencyDto(0, 0, seconds), null);
+		subscription.setMissedTickPolicy(MissedTickPolicy.SKIP);
+		subscription.setMaxInFlight(3);
+		subscription.setTimeFormat(TimeFormat.ISO_8601_UTC);
+		subscription.setEncoding(PayloadEncoding.CBOR);
+		subscription.setPhaseAnchor(PHASE_ANCHOR);
+		return subscription;
+	}
+}
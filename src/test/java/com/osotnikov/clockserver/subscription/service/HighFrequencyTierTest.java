@@ -0,0 +1,108 @@
+package com.osotnikov.clockserver.subscription.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.osotnikov.clockserver.config.HighFrequencyProperties;
+import com.osotnikov.clockserver.config.MetricsProperties;
+import com.osotnikov.clockserver.metrics.PostbackMetrics;
+import com.osotnikov.clockserver.subscription.payload.CurrentTimePayloadCache;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
+import com.osotnikov.clockserver.subscription.service.model.rest.client.dto.request.CurrentTimeDto;
+import com.osotnikov.rest.client.PostOutcome;
+import com.osotnikov.rest.client.RestClient;
+import com.osotnikov.scheduling.MissedTickPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ScheduledFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HighFrequencyTierTest {
+
+	private static final String URL = "http://some.url/path";
+
+	@Mock
+	private RestClient<CurrentTimeDto> restClient;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private HighFrequencyTier highFrequencyTier;
+
+	@BeforeEach
+	void setUp() {
+		HighFrequencyProperties highFrequencyProperties = new HighFrequencyProperties();
+		highFrequencyProperties.setMaxSubscriptions(2);
+		highFrequencyTier = new HighFrequencyTier(highFrequencyProperties, restClient,
+			new CurrentTimePayloadCache(new ObjectMapper()), new PostbackMetrics(meterRegistry, new MetricsProperties()));
+	}
+
+	@AfterEach
+	void tearDown() {
+		highFrequencyTier.close();
+	}
+
+	@Test
+	void givenPeriods_whenIsHighFrequency_thenOnlyUpToOneSecond() {
+		assertTrue(HighFrequencyTier.isHighFrequency(Duration.ofMillis(100)));
+		assertTrue(HighFrequencyTier.isHighFrequency(Duration.ofSeconds(1)));
+		assertFalse(HighFrequencyTier.isHighFrequency(Duration.ofSeconds(5)));
+	}
+
+	@Test
+	void givenQuotaTaken_whenAdmit_thenRefusedUntilAPlaceIsGivenBack() {
+		highFrequencyTier.admit();
+		highFrequencyTier.admit();
+
+		assertThrows(SubscriptionQuotaExceededException.class, () -> highFrequencyTier.admit());
+		highFrequencyTier.release();
+		highFrequencyTier.admit();
+
+		assertEquals(2, highFrequencyTier.admitted());
+	}
+
+	@Test
+	void givenQuotaTaken_whenReadmit_thenAdmittedAnyway() {
+		highFrequencyTier.admit();
+		highFrequencyTier.admit();
+
+		highFrequencyTier.readmit();
+
+		assertEquals(3, highFrequencyTier.admitted());
+	}
+
+	@Test
+	void givenNothingScheduled_whenAdmitted_thenNoWheelOrLaneCreated() {
+		highFrequencyTier.admit();
+
+		assertFalse(highFrequencyTier.started());
+	}
+
+	@Test
+	void givenScheduled_whenDue_thenPostedBackThroughTheHighFrequencyLane() {
+		when(restClient.postEncodedForOutcome(eq(URL), eq(MediaType.APPLICATION_OCTET_STREAM), any()))
+			.thenReturn(Mono.just(PostOutcome.SUCCESS));
+
+		ScheduledFuture<?> scheduledFuture = highFrequencyTier.schedule(URL, 1, TimeFormat.EPOCH_MILLIS,
+			PayloadEncoding.BINARY, Instant.now(), Duration.ofMillis(100), MissedTickPolicy.SKIP);
+
+		assertTrue(highFrequencyTier.started());
+
+		then(restClient).should(timeout(2000).atLeast(3)).postEncodedForOutcome(eq(URL), any(), any());
+		scheduledFuture.cancel(false);
+		assertNotNull(meterRegistry.get("clockserver.postback.queue").tag("lane", "high-frequency").gauge());
+	}
+}
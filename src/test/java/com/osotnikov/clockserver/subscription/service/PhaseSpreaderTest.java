@@ -0,0 +1,90 @@
+package com.osotnikov.clockserver.subscription.service;
+
+import com.osotnikov.clockserver.config.SchedulerProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhaseSpreaderTest {
+
+	private static final Duration PERIOD = Duration.ofSeconds(10);
+
+	@Test
+	void givenPhaseSpreadingDisabled_whenFirstFireTime_thenNow() {
+		PhaseSpreader phaseSpreader = new PhaseSpreader(new SchedulerProperties());
+		Instant before = Instant.now();
+
+		Instant firstFireTime = phaseSpreader.firstFireTime("http://some.url/path", PERIOD);
+
+		assertThat(firstFireTime).isBetween(before, Instant.now());
+	}
+
+	@Test
+	void givenPhaseSpreadingEnabled_whenFirstFireTime_thenWithinOnePeriodAndSamePhaseForSameUrl() {
+		PhaseSpreader phaseSpreader = new PhaseSpreader(phaseSpreadingProperties());
+		Instant before = Instant.now();
+
+		Instant firstFireTime = phaseSpreader.firstFireTime("http://some.url/path", PERIOD);
+		Instant secondFireTime = phaseSpreader.firstFireTime("http://some.url/path", PERIOD);
+
+		assertThat(firstFireTime).isBetween(before, Instant.now().plus(PERIOD));
+		assertEquals(0, (secondFireTime.toEpochMilli() - firstFireTime.toEpochMilli()) % PERIOD.toMillis());
+	}
+
+	@Test
+	void givenSimilarUrlsCreatedTogether_whenFirstFireTime_thenSpreadOverThePeriod() {
+		PhaseSpreader phaseSpreader = new PhaseSpreader(phaseSpreadingProperties());
+		int[] postbacksPerSecond = new int[10];
+
+		for (int i = 0; i < 1000; i++) {
+			Instant firstFireTime = phaseSpreader.firstFireTime("http://some.url/subscriber" + i, PERIOD);
+			postbacksPerSecond[(int) ((firstFireTime.toEpochMilli() / 1000) % 10)]++;
+		}
+
+		// 100 per second if evenly spread, all 1000 in one second without spreading
+		for (int postbacks : postbacksPerSecond) {
+			assertThat(postbacks).isBetween(50, 150);
+		}
+	}
+
+	@Test
+	void givenPhaseAnchorInThePast_whenNextFireTime_thenNextTimeInTheSamePhase() {
+		PhaseSpreader phaseSpreader = new PhaseSpreader(new SchedulerProperties());
+		Instant phaseAnchor = Instant.now().minus(Duration.ofDays(3)).plusMillis(1234);
+		Instant before = Instant.now();
+
+		Instant nextFireTime = phaseSpreader.nextFireTime(phaseAnchor, PERIOD);
+
+		assertThat(nextFireTime).isBetween(before, Instant.now().plus(PERIOD));
+		assertEquals(0, (nextFireTime.toEpochMilli() - phaseAnchor.toEpochMilli()) % PERIOD.toMillis());
+	}
+
+	@Test
+	void givenPhaseAnchorInTheFuture_whenNextFireTime_thenPhaseAnchor() {
+		PhaseSpreader phaseSpreader = new PhaseSpreader(new SchedulerProperties());
+		Instant phaseAnchor = Instant.now().plusSeconds(5);
+
+		assertEquals(phaseAnchor, phaseSpreader.nextFireTime(phaseAnchor, PERIOD));
+	}
+
+	@Test
+	void givenNotBefore_whenNextFireTime_thenFirstTimeInThePhaseAtOrAfterIt() {
+		PhaseSpreader phaseSpreader = new PhaseSpreader(new SchedulerProperties());
+		Instant phaseAnchor = Instant.parse("2022-06-05T16:30:06Z");
+
+		assertEquals(Instant.parse("2022-06-05T16:31:06Z"),
+			phaseSpreader.nextFireTime(phaseAnchor, PERIOD, Instant.parse("2022-06-05T16:30:58Z")));
+		assertEquals(Instant.parse("2022-06-05T16:31:06Z"),
+			phaseSpreader.nextFireTime(phaseAnchor, PERIOD, Instant.parse("2022-06-05T16:31:06Z")));
+	}
+
+	private static SchedulerProperties phaseSpreadingProperties() {
+		SchedulerProperties schedulerProperties = new SchedulerProperties();
+		schedulerProperties.setPhaseSpreading(true);
+		return schedulerProperties;
+	}
+}
@@ -0,0 +1,178 @@
+package com.osotnikov.clockserver.subscription.service;
+
+import com.osotnikov.clockserver.cluster.ClusterClient;
+import com.osotnikov.clockserver.cluster.ClusterMembership;
+import com.osotnikov.clockserver.config.ClusterProperties;
+import com.osotnikov.clockserver.config.DeliveryProperties;
+import com.osotnikov.clockserver.config.PayloadProperties;
+import com.osotnikov.clockserver.config.RepositoryProperties;
+import com.osotnikov.clockserver.config.SchedulerProperties;
+import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionPatchDto;
+import com.osotnikov.clockserver.subscription.delivery.PostbackHostResolver;
+import com.osotnikov.clockserver.subscription.repository.CompactSubscriptionRepository;
+import com.osotnikov.clockserver.subscription.repository.InMemorySubscriptionRepository;
+import com.osotnikov.clockserver.subscription.repository.SubscriptionRepository;
+import com.osotnikov.clockserver.subscription.service.mapper.SubscriptionDtoMapper;
+import com.osotnikov.clockserver.subscription.service.model.SubscriptionState;
+import com.osotnikov.scheduling.LatenessRecorder;
+import com.osotnikov.scheduling.MissedTickPolicy;
+import com.osotnikov.scheduling.PeriodicTaskScheduler;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Hammers a few subscriptions with concurrent creates, patches and deletes and checks that once everything settled
+ * every stored subscription is ACTIVE with a schedule of its own and there is no other schedule that is not cancelled,
+ * i.e. there were neither double schedules nor orphaned futures.
+ * */
+class SubscriptionServiceConcurrencyTest {
+
+	private static final int THREADS = 8;
+	private static final int OPERATIONS_PER_THREAD = 20_000;
+	private static final int URLS = 16;
+
+	private final RecordingScheduler taskScheduler = new RecordingScheduler();
+
+	@ParameterizedTest
+	@EnumSource(RepositoryProperties.Mode.class)
+	void givenConcurrentCreatesPatchesAndDeletes_whenSettled_thenOneLiveSchedulePerSubscription(
+		RepositoryProperties.Mode mode) throws Exception {
+		SubscriptionRepository repository = mode == RepositoryProperties.Mode.COMPACT ?
+			new CompactSubscriptionRepository() : new InMemorySubscriptionRepository();
+		SchedulerProperties schedulerProperties = new SchedulerProperties();
+		SubscriptionService subscriptionService = new SubscriptionService(
+			new SubscriptionDtoMapper(schedulerProperties, new DeliveryProperties(), new PayloadProperties()),
+			repository, mock(TimePostbackRunnableFactory.class, withSettings().stubOnly()), taskScheduler,
+			new PhaseSpreader(schedulerProperties),
+			new ClusterMembership(new ClusterProperties()), mock(ClusterClient.class),
+			mock(HighFrequencyTier.class, withSettings().stubOnly()),
+			mock(PostbackHostResolver.class, withSettings().stubOnly()));
+		CountDownLatch start = new CountDownLatch(1);
+		Callable<Void> hammer = () -> {
+			start.await();
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+				String postbackUrl = "http://some.url/" + random.nextInt(URLS);
+				FrequencyDto frequency = new FrequencyDto(0, 0, 5 + random.nextInt(55));
+				switch (random.nextInt(3)) {
+					case 0:
+						subscriptionService.schedule(new SubscriptionDto(postbackUrl, frequency));
+						break;
+					case 1:
+						subscriptionService.changeSchedule(new SubscriptionPatchDto(postbackUrl, frequency));
+						break;
+					default:
+						subscriptionService.delete(postbackUrl);
+				}
+			}
+			return null;
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Void>> results = IntStream.range(0, THREADS)
+				.mapToObj(thread -> executor.submit(hammer))
+				.collect(Collectors.toList());
+			start.countDown();
+			for (Future<Void> result : results) {
+				result.get(1, TimeUnit.MINUTES);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		Set<ScheduledFuture<?>> published = Collections.newSetFromMap(new IdentityHashMap<>());
+		repository.forEach(subscription -> {
+			assertEquals(SubscriptionState.ACTIVE, subscription.getState());
+			assertNotNull(subscription.getScheduledFuture());
+			assertFalse(subscription.getScheduledFuture().isCancelled());
+			assertTrue(published.add(subscription.getScheduledFuture()));
+		});
+		long live = taskScheduler.futures.stream().filter(future -> !future.isCancelled()).count();
+		assertEquals(published.size(), live);
+		assertTrue(taskScheduler.futures.size() > URLS); // the operations did overlap
+	}
+
+	private static class RecordingScheduler implements PeriodicTaskScheduler {
+
+		private final Queue<RecordedFuture> futures = new ConcurrentLinkedQueue<>();
+
+		@Override
+		public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Instant startTime, Duration period,
+													  MissedTickPolicy missedTickPolicy) {
+			RecordedFuture future = new RecordedFuture();
+			futures.add(future);
+			return future;
+		}
+
+		@Override
+		public void setLatenessRecorder(LatenessRecorder latenessRecorder) {
+		}
+	}
+
+	private static class RecordedFuture implements ScheduledFuture<Object> {
+
+		private final AtomicBoolean cancelled = new AtomicBoolean();
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return cancelled.compareAndSet(false, true);
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled.get();
+		}
+
+		@Override
+		public boolean isDone() {
+			return isCancelled();
+		}
+
+		@Override
+		public Object get() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Object get(long timeout, TimeUnit unit) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return 0;
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			return 0;
+		}
+	}
+}
@@ -1,11 +1,22 @@
 package com.osotnikov.clockserver.subscription.service;
 
+import com.osotnikov.clockserver.cluster.ClusterClient;
+import com.osotnikov.clockserver.cluster.ClusterMembership;
+import com.osotnikov.clockserver.cluster.dto.SubscriptionHandoffDto;
 import com.osotnikov.clockserver.subscription.api.dto.request.FrequencyDto;
+import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDeleteDto;
 import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionDto;
 import com.osotnikov.clockserver.subscription.api.dto.request.SubscriptionPatchDto;
+import com.osotnikov.clockserver.subscription.api.dto.response.SubscriptionInfoDto;
+import com.osotnikov.clockserver.subscription.delivery.PostbackHostResolver;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
 import com.osotnikov.clockserver.subscription.repository.SubscriptionRepository;
 import com.osotnikov.clockserver.subscription.service.mapper.SubscriptionDtoMapper;
 import com.osotnikov.clockserver.subscription.service.model.Subscription;
+import com.osotnikov.clockserver.subscription.service.model.SubscriptionState;
+import com.osotnikov.scheduling.MissedTickPolicy;
+import com.osotnikov.scheduling.PeriodicTaskScheduler;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,11 +26,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.scheduling.TaskScheduler;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.BDDMockito.then;
@@ -29,6 +44,7 @@ import static org.mockito.Mockito.*;
 class SubscriptionServiceTest {
 
 	private static final String URL = "http://some.url/path";
+	private static final String NODE = "http://localhost:8081";
 
 	@Mock
 	private SubscriptionDto subscriptionDto;
@@ -44,37 +60,176 @@ class SubscriptionServiceTest {
 	@Mock
 	private TimePostbackRunnableFactory timePostbackRunnableFactory;
 	@Mock
-	private TaskScheduler taskScheduler;
+	private PeriodicTaskScheduler taskScheduler;
+	@Mock
+	private PhaseSpreader phaseSpreader;
+	@Mock
+	private ClusterMembership clusterMembership;
+	@Mock
+	private ClusterClient clusterClient;
+	@Mock
+	private HighFrequencyTier highFrequencyTier;
+	@Mock
+	private PostbackHostResolver postbackHostResolver;
 	@InjectMocks
 	private SubscriptionService subscriptionService;
 
 	@Test
 	void givenSubscriptionExists_whenSchedule_thenReturnFalse() {
-		Subscription subscription = mock(Subscription.class);
+		Subscription subscription = new Subscription(URL, new FrequencyDto(0, 0, 10), null);
 		when(subscriptionDtoMapper.map(subscriptionDto)).thenReturn(subscription);
 		when(subscriptionRepository.storeNew(subscription)).thenReturn(mock(Subscription.class));
 
 		assertFalse(subscriptionService.schedule(subscriptionDto));
+
+		then(taskScheduler).shouldHaveNoInteractions();
 	}
 
 	@Test
-	void givenSubscriptionDoesNotExist_whenSchedule_thenScheduleAndReturnTrue() {
+	void givenSubscriptionDoesNotExist_whenSchedule_thenScheduleActivatedAndReturnTrue() {
 		FrequencyDto frequencyDto = new FrequencyDto(1, 2, 3);
 		Subscription subscription = new Subscription(URL, frequencyDto, null);
 		when(subscriptionDtoMapper.map(subscriptionDto)).thenReturn(subscription);
 		when(subscriptionRepository.storeNew(subscription)).thenReturn(null);
-		TimePostbackRunnable timePostbackRunnable = mock(TimePostbackRunnable.class);
-		when(timePostbackRunnableFactory.createRunnable(URL)).thenReturn(timePostbackRunnable);
+		Instant firstFireTime = Instant.now();
+		when(phaseSpreader.firstFireTime(eq(URL), any(Duration.class))).thenReturn(firstFireTime);
 		ArgumentCaptor<Duration> durationCaptor = ArgumentCaptor.forClass(Duration.class);
-		when(taskScheduler.scheduleAtFixedRate(eq(timePostbackRunnable), durationCaptor.capture()))
+		when(taskScheduler.scheduleAtFixedRate(any(), eq(firstFireTime), durationCaptor.capture(),
+			eq(MissedTickPolicy.CATCH_UP)))
 			.thenReturn(scheduledFuture);
+		ArgumentCaptor<Subscription> activeCaptor = ArgumentCaptor.forClass(Subscription.class);
+		when(subscriptionRepository.compareAndSet(same(subscription), activeCaptor.capture())).thenReturn(true);
+
+		assertTrue(subscriptionService.schedule(subscriptionDto));
+
+		assertEquals(3723, durationCaptor.getValue().getSeconds());
+		assertEquals(firstFireTime, subscription.getPhaseAnchor());
+		then(postbackHostResolver).should().prefetch(URL);
+		Subscription active = activeCaptor.getValue();
+		assertEquals(SubscriptionState.ACTIVE, active.getState());
+		assertEquals(scheduledFuture, active.getScheduledFuture());
+		assertEquals(firstFireTime, active.getPhaseAnchor());
+		assertEquals(SubscriptionState.INITIALIZING, subscription.getState());
+		assertNull(subscription.getScheduledFuture());
+		then(scheduledFuture).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void givenSubscriptionChangedBeforeActivated_whenSchedule_thenOwnScheduleCancelledAndReturnTrue() {
+		Subscription subscription = new Subscription(URL, new FrequencyDto(0, 0, 10), null);
+		when(subscriptionDtoMapper.map(subscriptionDto)).thenReturn(subscription);
+		when(subscriptionRepository.storeNew(subscription)).thenReturn(null);
+		when(taskScheduler.scheduleAtFixedRate(any(), any(), any(), any())).thenReturn(scheduledFuture);
+		when(subscriptionRepository.compareAndSet(same(subscription), any())).thenReturn(false);
+
+		assertTrue(subscriptionService.schedule(subscriptionDto));
+
+		then(scheduledFuture).should().cancel(false);
+	}
+
+	@Test
+	void givenHighFrequencySubscription_whenSchedule_thenAdmittedAndScheduledOnTheHighFrequencyTier() {
+		Subscription subscription = new Subscription(URL, new FrequencyDto(0, 0, 0, 250), null);
+		subscription.setMaxInFlight(1);
+		when(subscriptionDtoMapper.map(subscriptionDto)).thenReturn(subscription);
+		Instant firstFireTime = Instant.now();
+		when(phaseSpreader.firstFireTime(URL, Duration.ofMillis(250))).thenReturn(firstFireTime);
+		doReturn(scheduledFuture).when(highFrequencyTier).schedule(URL, 1, TimeFormat.LEGACY, PayloadEncoding.JSON,
+			firstFireTime, Duration.ofMillis(250), null);
+		when(subscriptionRepository.compareAndSet(same(subscription), any())).thenReturn(true);
 
 		assertTrue(subscriptionService.schedule(subscriptionDto));
 
-		assertEquals(scheduledFuture, subscription.getScheduledFuture());
-		Duration actualDuration = durationCaptor.getValue();
-		assertEquals(3723, actualDuration.getSeconds());
-		assertEquals(scheduledFuture, subscription.getScheduledFuture());
+		then(highFrequencyTier).should().admit();
+		then(taskScheduler).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void givenHighFrequencyTierFull_whenSchedule_thenRefusedWithoutStoring() {
+		Subscription subscription = new Subscription(URL, new FrequencyDto(0, 0, 0, 250), null);
+		when(subscriptionDtoMapper.map(subscriptionDto)).thenReturn(subscription);
+		doThrow(new SubscriptionQuotaExceededException("full")).when(highFrequencyTier).admit();
+
+		assertThrows(SubscriptionQuotaExceededException.class, () -> subscriptionService.schedule(subscriptionDto));
+
+		then(subscriptionRepository).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void givenHighFrequencySubscriptionExists_whenSchedule_thenPlaceGivenBack() {
+		Subscription subscription = new Subscription(URL, new FrequencyDto(0, 0, 0, 250), null);
+		when(subscriptionDtoMapper.map(subscriptionDto)).thenReturn(subscription);
+		when(subscriptionRepository.storeNew(subscription)).thenReturn(mock(Subscription.class));
+
+		assertFalse(subscriptionService.schedule(subscriptionDto));
+
+		then(highFrequencyTier).should().admit();
+		then(highFrequencyTier).should().release();
+	}
+
+	@Test
+	void givenRestoredSubscriptions_whenScheduleRestored_thenInitializingOnesActivatedInTheirOriginalPhase() {
+		Subscription restored = new Subscription(URL, new FrequencyDto(0, 0, 10), null);
+		Instant phaseAnchor = Instant.parse("2022-06-05T16:30:06Z");
+		restored.setPhaseAnchor(phaseAnchor);
+		Subscription alreadyActive = Subscription.builder()
+			.postbackUrl("http://other.url")
+			.frequency(new FrequencyDto(0, 0, 10))
+			.scheduledFuture(scheduledFuture)
+			.state(SubscriptionState.ACTIVE)
+			.build();
+		doAnswer(invocation -> {
+			Consumer<Subscription> action = invocation.getArgument(0);
+			action.accept(restored);
+			action.accept(alreadyActive);
+			return null;
+		}).when(subscriptionRepository).forEach(any());
+		TimePostbackRunnable timePostbackRunnable = mock(TimePostbackRunnable.class);
+		when(timePostbackRunnableFactory.createRunnable(URL, 1, TimeFormat.LEGACY, PayloadEncoding.JSON))
+			.thenReturn(timePostbackRunnable);
+		Instant nextFireTime = Instant.now();
+		when(phaseSpreader.nextFireTime(phaseAnchor, Duration.ofSeconds(10))).thenReturn(nextFireTime);
+		ScheduledFuture scheduledFuture2 = mock(ScheduledFuture.class);
+		when(taskScheduler.scheduleAtFixedRate(timePostbackRunnable, nextFireTime, Duration.ofSeconds(10),
+			MissedTickPolicy.CATCH_UP)).thenReturn(scheduledFuture2);
+		ArgumentCaptor<Subscription> activeCaptor = ArgumentCaptor.forClass(Subscription.class);
+		when(subscriptionRepository.compareAndSet(same(restored), activeCaptor.capture())).thenReturn(true);
+
+		assertEquals(1, subscriptionService.scheduleRestored());
+
+		assertEquals(scheduledFuture2, activeCaptor.getValue().getScheduledFuture());
+		assertEquals(phaseAnchor, activeCaptor.getValue().getPhaseAnchor());
+		then(taskScheduler).shouldHaveNoMoreInteractions();
+	}
+
+	@Test
+	void givenSubscriptions_whenList_thenListedWithNextFireTime() {
+		Subscription scheduled = new Subscription(URL, new FrequencyDto(0, 0, 10), scheduledFuture);
+		Instant phaseAnchor = Instant.parse("2022-06-05T16:30:06Z");
+		scheduled.setPhaseAnchor(phaseAnchor);
+		doAnswer(invocation -> {
+			Consumer<Subscription> action = invocation.getArgument(2);
+			action.accept(scheduled);
+			return "repository cursor";
+		}).when(subscriptionRepository).page(eq("previous cursor"), eq(2), any());
+		Instant nextFireTime = Instant.now();
+		when(phaseSpreader.nextFireTime(phaseAnchor, Duration.ofSeconds(10))).thenReturn(nextFireTime);
+		List<SubscriptionInfoDto> listed = new ArrayList<>();
+
+		String cursor = subscriptionService.list(encode("previous cursor"), 2, listed::add);
+
+		assertEquals(encode("repository cursor"), cursor);
+		assertEquals(1, listed.size());
+		assertEquals(URL, listed.get(0).getPostbackUrl());
+		assertEquals(new FrequencyDto(0, 0, 10), listed.get(0).getFrequency());
+		assertEquals(nextFireTime, listed.get(0).getNextFireTime());
+	}
+
+	@Test
+	void givenLastPage_whenList_thenNoCursor() {
+		when(subscriptionRepository.page(isNull(), eq(2), any())).thenReturn(null);
+
+		assertNull(subscriptionService.list(null, 2, subscription -> fail()));
 	}
 
 	@Test
@@ -87,81 +242,223 @@ class SubscriptionServiceTest {
 	}
 
 	@Test
-	void givenSubscriptionExistsAndIsNotChangedDuringExecution_whenDelete_thenReturnTrue() {
-		Subscription subscription = mock(Subscription.class);
-		when(subscription.getScheduledFuture()).thenReturn(mock(ScheduledFuture.class));
+	void givenActiveSubscription_whenDelete_thenDeletedScheduleCancelledAndReturnTrue() {
+		Subscription subscription = active(new FrequencyDto(0, 0, 10), scheduledFuture);
 		when(subscriptionRepository.get(URL)).thenReturn(subscription);
+		when(subscriptionRepository.compareAndDelete(subscription)).thenReturn(true);
 
 		assertTrue(subscriptionService.delete(URL));
 
-		then(subscriptionRepository).should().deleteExisting(URL);
-		then(subscriptionRepository).shouldHaveNoMoreInteractions();
+		then(scheduledFuture).should().cancel(false);
 	}
 
 	@Test
-	void givenSubscriptionExistsAndIsNotChangedDuringExecutionButIsNotScheduled_whenDelete_thenReturnFalse() {
-		Subscription subscription = mock(Subscription.class);
+	void givenInitializingSubscription_whenDelete_thenDeletedAndReturnTrue() {
+		Subscription subscription = new Subscription(URL, new FrequencyDto(0, 0, 10), null);
 		when(subscriptionRepository.get(URL)).thenReturn(subscription);
+		when(subscriptionRepository.compareAndDelete(subscription)).thenReturn(true);
 
-		assertFalse(subscriptionService.delete(URL));
+		assertTrue(subscriptionService.delete(URL));
+	}
 
-		then(subscriptionRepository).shouldHaveNoMoreInteractions();
+	@Test
+	void givenHighFrequencySubscription_whenDelete_thenPlaceGivenBack() {
+		Subscription subscription = active(new FrequencyDto(0, 0, 0, 500), scheduledFuture);
+		when(subscriptionRepository.get(URL)).thenReturn(subscription);
+		when(subscriptionRepository.compareAndDelete(subscription)).thenReturn(true);
+
+		assertTrue(subscriptionService.delete(URL));
+
+		then(highFrequencyTier).should().release();
 	}
 
 	@Test
-	void givenSubscriptionExistsAndIsChangedDuringExecution_whenDelete_thenReturnFalse() {
-		Subscription subscription = mock(Subscription.class);
-		Subscription subscription2 = mock(Subscription.class);
-		when(subscriptionRepository.get(URL)).thenReturn(subscription, subscription2);
+	void givenHighFrequencySubscription_whenChangeScheduleToStandardPeriod_thenPlaceGivenBack() {
+		Subscription subscription = active(new FrequencyDto(0, 0, 0, 500), scheduledFuture);
+		when(subscriptionRepository.get(URL)).thenReturn(subscription);
+		when(taskScheduler.scheduleAtFixedRate(any(), any(), any(), any())).thenReturn(mock(ScheduledFuture.class));
+		when(subscriptionRepository.compareAndSet(any(), any())).thenReturn(true);
 
-		assertFalse(subscriptionService.delete(URL));
+		assertTrue(subscriptionService.changeSchedule(new SubscriptionPatchDto(URL, new FrequencyDto(0, 0, 10))));
 
-		then(subscriptionRepository).shouldHaveNoMoreInteractions();
+		then(highFrequencyTier).should(never()).admit();
+		then(highFrequencyTier).should().release();
 	}
 
 	@Test
-	void givenSubscriptionExistsAndIsNotChangedDuringExecution_whenChangeSchedule_thenTrueAndRescheduled() {
-		FrequencyDto frequencyDto = new FrequencyDto(0, 2, 3);
-		SubscriptionPatchDto subscriptionPatchDto = new SubscriptionPatchDto(URL, frequencyDto);
-		FrequencyDto frequencyDto2 = new FrequencyDto(1, 2, 3);
-		Subscription subscription = new Subscription(URL, frequencyDto2, scheduledFuture);
+	void givenHighFrequencyTierFull_whenChangeScheduleToAnotherHighFrequency_thenKeepsItsPlace() {
+		Subscription subscription = active(new FrequencyDto(0, 0, 0, 500), scheduledFuture);
 		when(subscriptionRepository.get(URL)).thenReturn(subscription);
-		TimePostbackRunnable timePostbackRunnable = mock(TimePostbackRunnable.class);
-		when(timePostbackRunnableFactory.createRunnable(URL)).thenReturn(timePostbackRunnable);
-		ArgumentCaptor<Duration> durationCaptor = ArgumentCaptor.forClass(Duration.class);
+		lenient().doThrow(new SubscriptionQuotaExceededException("full")).when(highFrequencyTier).admit();
+		doReturn(mock(ScheduledFuture.class)).when(highFrequencyTier).schedule(any(), anyInt(), any(), any(), any(),
+			any(), any());
+		when(subscriptionRepository.compareAndSet(any(), any())).thenReturn(true);
+
+		assertTrue(subscriptionService.changeSchedule(new SubscriptionPatchDto(URL, new FrequencyDto(0, 0, 0, 200))));
+
+		then(highFrequencyTier).should(never()).admit();
+		then(highFrequencyTier).should(never()).release();
+		then(scheduledFuture).should().cancel(false);
+	}
+
+	@Test
+	void givenSubscriptionChangedDuringDelete_whenDelete_thenRetriedWithChangedSubscription() {
+		Subscription subscription = active(new FrequencyDto(0, 0, 10), mock(ScheduledFuture.class));
+		Subscription changed = active(new FrequencyDto(0, 0, 20), scheduledFuture);
+		when(subscriptionRepository.get(URL)).thenReturn(subscription, changed);
+		when(subscriptionRepository.compareAndDelete(subscription)).thenReturn(false);
+		when(subscriptionRepository.compareAndDelete(changed)).thenReturn(true);
+
+		assertTrue(subscriptionService.delete(URL));
+
+		then(scheduledFuture).should().cancel(false);
+		then(subscription.getScheduledFuture()).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void givenActiveSubscription_whenChangeSchedule_thenRescheduledAndOldScheduleCancelled() {
+		SubscriptionPatchDto subscriptionPatchDto = new SubscriptionPatchDto(URL, new FrequencyDto(0, 2, 3));
+		Subscription subscription = active(new FrequencyDto(1, 2, 3), scheduledFuture);
+		when(subscriptionRepository.get(URL)).thenReturn(subscription);
+		Instant firstFireTime = Instant.now();
+		when(phaseSpreader.firstFireTime(URL, Duration.ofSeconds(123))).thenReturn(firstFireTime);
 		ScheduledFuture scheduledFuture2 = mock(ScheduledFuture.class);
-		when(taskScheduler.scheduleAtFixedRate(eq(timePostbackRunnable), durationCaptor.capture()))
+		when(taskScheduler.scheduleAtFixedRate(any(), eq(firstFireTime), eq(Duration.ofSeconds(123)),
+			eq(MissedTickPolicy.CATCH_UP)))
 			.thenReturn(scheduledFuture2);
+		ArgumentCaptor<Subscription> expectedCaptor = ArgumentCaptor.forClass(Subscription.class);
+		ArgumentCaptor<Subscription> updateCaptor = ArgumentCaptor.forClass(Subscription.class);
+		when(subscriptionRepository.compareAndSet(expectedCaptor.capture(), updateCaptor.capture())).thenReturn(true);
 
 		assertTrue(subscriptionService.changeSchedule(subscriptionPatchDto));
 
-		Duration actualDuration = durationCaptor.getValue();
-		assertEquals(123, actualDuration.getSeconds());
-		assertEquals(scheduledFuture2, subscription.getScheduledFuture());
+		Subscription rescheduling = updateCaptor.getAllValues().get(0);
+		assertSame(subscription, expectedCaptor.getAllValues().get(0));
+		assertEquals(SubscriptionState.RESCHEDULING, rescheduling.getState());
+		assertNull(rescheduling.getScheduledFuture());
+		assertEquals(new FrequencyDto(0, 2, 3), rescheduling.getFrequency());
+		assertEquals(firstFireTime, rescheduling.getPhaseAnchor());
+		Subscription active = updateCaptor.getAllValues().get(1);
+		assertSame(rescheduling, expectedCaptor.getAllValues().get(1));
+		assertEquals(SubscriptionState.ACTIVE, active.getState());
+		assertEquals(scheduledFuture2, active.getScheduledFuture());
 		then(scheduledFuture).should().cancel(false);
-		then(subscriptionRepository).shouldHaveNoMoreInteractions();
+		then(scheduledFuture2).shouldHaveNoInteractions();
 	}
 
 	@Test
-	void givenSubscriptionExistsAndIsChangedDuringExecution_whenChangeSchedule_thenFalse() {
-		FrequencyDto frequencyDto = new FrequencyDto(0, 2, 3);
-		SubscriptionPatchDto subscriptionPatchDto = new SubscriptionPatchDto(URL, frequencyDto);
-		FrequencyDto frequencyDto2 = new FrequencyDto(1, 2, 3);
-		Subscription subscription = new Subscription(URL, frequencyDto2, scheduledFuture);
-		when(subscriptionRepository.get(URL)).thenReturn(subscription, mock(Subscription.class));
+	void givenRescheduledSubscriptionChangedBeforeActivated_whenChangeSchedule_thenNewScheduleCancelledAndTrue() {
+		SubscriptionPatchDto subscriptionPatchDto = new SubscriptionPatchDto(URL, new FrequencyDto(0, 2, 3));
+		Subscription subscription = active(new FrequencyDto(1, 2, 3), scheduledFuture);
+		when(subscriptionRepository.get(URL)).thenReturn(subscription);
+		ScheduledFuture scheduledFuture2 = mock(ScheduledFuture.class);
+		when(taskScheduler.scheduleAtFixedRate(any(), any(), any(), any())).thenReturn(scheduledFuture2);
+		when(subscriptionRepository.compareAndSet(same(subscription), any())).thenReturn(true);
+		when(subscriptionRepository.compareAndSet(argThat(expected -> expected != subscription), any()))
+			.thenReturn(false);
 
-		assertFalse(subscriptionService.changeSchedule(subscriptionPatchDto));
-		then(subscriptionRepository).shouldHaveNoMoreInteractions();
+		assertTrue(subscriptionService.changeSchedule(subscriptionPatchDto));
+
+		then(scheduledFuture).should().cancel(false);
+		then(scheduledFuture2).should().cancel(false);
 	}
 
 	@Test
-	void givenSubscriptionExistsAndIsNotYetScheduled_whenChangeSchedule_thenFalse() {
-		FrequencyDto frequencyDto = new FrequencyDto(1, 2, 3);
-		SubscriptionPatchDto subscriptionPatchDto = new SubscriptionPatchDto(URL, frequencyDto);
-		Subscription subscription = new Subscription(URL, frequencyDto, null);
+	void givenInitializingSubscription_whenChangeSchedule_thenRescheduledAndReturnTrue() {
+		SubscriptionPatchDto subscriptionPatchDto = new SubscriptionPatchDto(URL, new FrequencyDto(0, 2, 3));
+		Subscription subscription = new Subscription(URL, new FrequencyDto(1, 2, 3), null);
 		when(subscriptionRepository.get(URL)).thenReturn(subscription);
+		when(taskScheduler.scheduleAtFixedRate(any(), any(), any(), any())).thenReturn(scheduledFuture);
+		when(subscriptionRepository.compareAndSet(any(), any())).thenReturn(true);
+
+		assertTrue(subscriptionService.changeSchedule(subscriptionPatchDto));
+
+		then(subscriptionRepository).should(times(2)).compareAndSet(any(), any());
+		then(scheduledFuture).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void givenSubscriptionDoesNotExist_whenChangeSchedule_thenFalse() {
+		when(subscriptionRepository.get(URL)).thenReturn(null);
+
+		assertFalse(subscriptionService.changeSchedule(new SubscriptionPatchDto(URL, new FrequencyDto(1, 2, 3))));
 
-		assertFalse(subscriptionService.changeSchedule(subscriptionPatchDto));
 		then(subscriptionRepository).shouldHaveNoMoreInteractions();
+		then(taskScheduler).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void givenSubscriptionOwnedByAnotherNode_whenScheduleDeleteOrChangeSchedule_thenForwardedToIt() {
+		when(clusterMembership.remoteOwnerOf(URL)).thenReturn(NODE);
+		SubscriptionDto subscriptionDto = new SubscriptionDto(URL, new FrequencyDto(0, 0, 10));
+		SubscriptionPatchDto subscriptionPatchDto = new SubscriptionPatchDto(URL, new FrequencyDto(0, 0, 20));
+		when(clusterClient.schedule(NODE, subscriptionDto)).thenReturn(true);
+		when(clusterClient.delete(NODE, new SubscriptionDeleteDto(URL))).thenReturn(false);
+		when(clusterClient.changeSchedule(NODE, subscriptionPatchDto)).thenReturn(true);
+
+		assertTrue(subscriptionService.schedule(subscriptionDto));
+		assertFalse(subscriptionService.delete(URL));
+		assertTrue(subscriptionService.changeSchedule(subscriptionPatchDto));
+
+		then(subscriptionRepository).shouldHaveNoInteractions();
+		then(taskScheduler).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void givenHandoff_whenAdopt_thenStoredAndScheduledFromItsFirstFireTime() {
+		Instant phaseAnchor = Instant.parse("2022-06-05T16:30:06Z");
+		Instant firstFireTime = Instant.parse("2022-06-05T17:00:06Z");
+		when(subscriptionRepository.storeNew(any())).thenReturn(null);
+		when(taskScheduler.scheduleAtFixedRate(any(), eq(firstFireTime), eq(Duration.ofSeconds(10)),
+			eq(MissedTickPolicy.SKIP))).thenReturn(scheduledFuture);
+		ArgumentCaptor<Subscription> activeCaptor = ArgumentCaptor.forClass(Subscription.class);
+		when(subscriptionRepository.compareAndSet(any(), activeCaptor.capture())).thenReturn(true);
+
+		assertTrue(subscriptionService.adopt(new SubscriptionHandoffDto(URL, new FrequencyDto(0, 0, 10),
+			MissedTickPolicy.SKIP, 2, TimeFormat.EPOCH_MILLIS, PayloadEncoding.CBOR, phaseAnchor, firstFireTime)));
+
+		Subscription active = activeCaptor.getValue();
+		assertEquals(SubscriptionState.ACTIVE, active.getState());
+		assertEquals(phaseAnchor, active.getPhaseAnchor());
+		assertEquals(2, active.getMaxInFlight());
+		assertEquals(TimeFormat.EPOCH_MILLIS, active.getTimeFormat());
+		assertEquals(PayloadEncoding.CBOR, active.getEncoding());
+		assertEquals(scheduledFuture, active.getScheduledFuture());
+	}
+
+	@Test
+	void givenSubscriptionAlreadyAdopted_whenAdopt_thenNotScheduledAgain() {
+		when(subscriptionRepository.storeNew(any())).thenReturn(mock(Subscription.class));
+
+		assertFalse(subscriptionService.adopt(new SubscriptionHandoffDto(URL, new FrequencyDto(0, 0, 10),
+			MissedTickPolicy.SKIP, 1, TimeFormat.LEGACY, PayloadEncoding.JSON, Instant.now(), Instant.now())));
+
+		then(taskScheduler).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void givenSubscription_whenToHandoff_thenFirstFireTimeInItsPhaseAtOrAfterNotBefore() {
+		Subscription subscription = active(new FrequencyDto(0, 0, 10), scheduledFuture);
+		Instant phaseAnchor = Instant.parse("2022-06-05T16:30:06Z");
+		subscription.setPhaseAnchor(phaseAnchor);
+		Instant notBefore = Instant.parse("2022-06-05T17:00:00Z");
+		Instant nextFireTime = Instant.parse("2022-06-05T17:00:06Z");
+		when(phaseSpreader.nextFireTime(phaseAnchor, Duration.ofSeconds(10), notBefore)).thenReturn(nextFireTime);
+
+		SubscriptionHandoffDto handoff = subscriptionService.toHandoff(subscription, notBefore);
+
+		assertEquals(URL, handoff.getPostbackUrl());
+		assertEquals(phaseAnchor, handoff.getPhaseAnchor());
+		assertEquals(nextFireTime, handoff.getFirstFireTime());
+	}
+
+	private static Subscription active(FrequencyDto frequency, ScheduledFuture scheduledFuture) {
+		Subscription subscription = new Subscription(URL, frequency, scheduledFuture);
+		subscription.setState(SubscriptionState.ACTIVE);
+		return subscription;
+	}
+
+	private static String encode(String cursor) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes());
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package com.osotnikov.clockserver.subscription.service;
+
+import com.osotnikov.clockserver.metrics.SchedulerMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.inOrder;
+
+@ExtendWith(MockitoExtension.class)
+class TimePostbackBatchTest {
+
+	@Mock
+	private TimePostbackRunnable postbackA;
+	@Mock
+	private TimePostbackRunnable postbackB;
+	@Mock
+	private SchedulerMetrics schedulerMetrics;
+
+	@Test
+	void givenBatchHandedOff_whenRun_thenQueueWaitRecordedBeforeThePostbacks() {
+		Instant tickTime = Instant.now();
+		TimePostbackBatch batch = new TimePostbackBatch(Arrays.asList(postbackA, postbackB), tickTime,
+			schedulerMetrics);
+
+		batch.run();
+
+		InOrder inOrder = inOrder(schedulerMetrics, postbackA, postbackB);
+		then(schedulerMetrics).should(inOrder).recordQueueWait(anyLong());
+		then(postbackA).should(inOrder).postback(tickTime);
+		then(postbackB).should(inOrder).postback(tickTime);
+	}
+}
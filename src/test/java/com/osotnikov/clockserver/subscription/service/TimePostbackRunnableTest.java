@@ -0,0 +1,78 @@
+package com.osotnikov.clockserver.subscription.service;
+
+import com.osotnikov.clockserver.config.MetricsProperties;
+import com.osotnikov.clockserver.metrics.PostbackMetrics;
+import com.osotnikov.clockserver.subscription.delivery.PostbackDeliveryService;
+import com.osotnikov.clockserver.subscription.payload.CurrentTimePayloadCache;
+import com.osotnikov.clockserver.subscription.payload.PayloadEncoding;
+import com.osotnikov.clockserver.subscription.payload.PostbackPayload;
+import com.osotnikov.clockserver.subscription.payload.TimeFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TimePostbackRunnableTest {
+
+	private static final String URL = "http://some.url/path";
+	private static final PostbackPayload CURRENT_TIME = new PostbackPayload(MediaType.APPLICATION_JSON,
+		"{\"currentTime\":\"time\"}".getBytes());
+
+	@Mock
+	private PostbackDeliveryService postbackDeliveryService;
+	@Mock
+	private CurrentTimePayloadCache currentTimePayloadCache;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final PostbackMetrics postbackMetrics = new PostbackMetrics(meterRegistry, new MetricsProperties());
+
+	@Test
+	void givenMaxInFlightPostbacksNotAnswered_whenPostback_thenTickSkippedUntilOneCompletes() {
+		CompletableFuture<Boolean> inFlight = new CompletableFuture<>();
+		when(postbackDeliveryService.deliver(URL, CURRENT_TIME)).thenReturn(inFlight, new CompletableFuture<>());
+		TimePostbackRunnable timePostbackRunnable = new TimePostbackRunnable(URL, postbackDeliveryService,
+			currentTimePayloadCache, postbackMetrics, 1);
+
+		timePostbackRunnable.postback(CURRENT_TIME);
+		timePostbackRunnable.postback(CURRENT_TIME);
+		then(postbackDeliveryService).should(times(1)).deliver(URL, CURRENT_TIME);
+		assertEquals(1, meterRegistry.get("clockserver.postbacks").tag("result", "skipped").counter().count());
+
+		inFlight.complete(false);
+		timePostbackRunnable.postback(CURRENT_TIME);
+		then(postbackDeliveryService).should(times(2)).deliver(URL, CURRENT_TIME);
+	}
+
+	@Test
+	void givenNoPostbackInFlight_whenRun_thenDeliversCachedCurrentTimePayload() {
+		when(currentTimePayloadCache.current(TimeFormat.LEGACY, PayloadEncoding.JSON)).thenReturn(CURRENT_TIME);
+		when(postbackDeliveryService.deliver(URL, CURRENT_TIME)).thenReturn(CompletableFuture.completedFuture(true));
+
+		new TimePostbackRunnable(URL, postbackDeliveryService, currentTimePayloadCache, postbackMetrics, 1).run();
+
+		then(postbackDeliveryService).should().deliver(URL, CURRENT_TIME);
+	}
+
+	@Test
+	void givenTickTime_whenPostback_thenDeliversTickTimeInSubscriptionsFormatAndEncoding() {
+		Instant tickTime = Instant.parse("2022-06-05T16:30:06.123Z");
+		when(currentTimePayloadCache.at(tickTime, TimeFormat.EPOCH_MILLIS, PayloadEncoding.CBOR))
+			.thenReturn(CURRENT_TIME);
+		when(postbackDeliveryService.deliver(URL, CURRENT_TIME)).thenReturn(CompletableFuture.completedFuture(true));
+
+		new TimePostbackRunnable(URL, postbackDeliveryService, currentTimePayloadCache, postbackMetrics, 1,
+			TimeFormat.EPOCH_MILLIS, PayloadEncoding.CBOR).postback(tickTime);
+
+		then(postbackDeliveryService).should().deliver(URL, CURRENT_TIME);
+	}
+}
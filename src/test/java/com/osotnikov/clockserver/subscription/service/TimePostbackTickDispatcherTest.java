@@ -0,0 +1,73 @@
+package com.osotnikov.clockserver.subscription.service;
+
+import com.osotnikov.clockserver.config.SchedulerProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TimePostbackTickDispatcherTest {
+
+	@Mock
+	private TimePostbackRunnableFactory timePostbackRunnableFactory;
+	@Mock
+	private Executor executor;
+
+	private TimePostbackTickDispatcher timePostbackTickDispatcher;
+
+	@BeforeEach
+	void setUp() {
+		SchedulerProperties schedulerProperties = new SchedulerProperties();
+		schedulerProperties.setBatchSize(2);
+		timePostbackTickDispatcher = new TimePostbackTickDispatcher(timePostbackRunnableFactory, executor,
+			schedulerProperties);
+	}
+
+	@Test
+	void givenPostbacksDueOnSameTick_whenDispatch_thenBatchedWithSingleTimestamp() {
+		TimePostbackBatch batch1 = mock(TimePostbackBatch.class);
+		TimePostbackBatch batch2 = mock(TimePostbackBatch.class);
+		TimePostbackRunnable postbackA = new TimePostbackRunnable("http://a", null, null, null, 1);
+		TimePostbackRunnable postbackB = new TimePostbackRunnable("http://b", null, null, null, 1);
+		TimePostbackRunnable postbackC = new TimePostbackRunnable("http://c", null, null, null, 1);
+		when(timePostbackRunnableFactory.createBatch(eq(Arrays.asList(postbackA, postbackB)), any()))
+			.thenReturn(batch1);
+		when(timePostbackRunnableFactory.createBatch(eq(Arrays.asList(postbackC)), any())).thenReturn(batch2);
+
+		timePostbackTickDispatcher.dispatch(Arrays.asList(postbackA, postbackB, postbackC));
+
+		then(executor).should().execute(batch1);
+		then(executor).should().execute(batch2);
+		then(executor).shouldHaveNoMoreInteractions();
+		ArgumentCaptor<Instant> tickTimes = ArgumentCaptor.forClass(Instant.class);
+		then(timePostbackRunnableFactory).should(times(2)).createBatch(any(), tickTimes.capture());
+		assertSame(tickTimes.getAllValues().get(0), tickTimes.getAllValues().get(1));
+	}
+
+	@Test
+	void givenOtherTaskDueOnSameTick_whenDispatch_thenExecutedOnItsOwn() {
+		Runnable otherTask = mock(Runnable.class);
+		TimePostbackBatch batch = mock(TimePostbackBatch.class);
+		TimePostbackRunnable postback = new TimePostbackRunnable("http://a", null, null, null, 1);
+		when(timePostbackRunnableFactory.createBatch(eq(Arrays.asList(postback)), any())).thenReturn(batch);
+
+		timePostbackTickDispatcher.dispatch(Arrays.asList(otherTask, postback));
+
+		then(executor).should().execute(otherTask);
+		then(executor).should().execute(batch);
+		then(executor).shouldHaveNoMoreInteractions();
+	}
+}
@@ -11,8 +11,16 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.parallel.Execution;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -85,6 +93,102 @@ public class RestClientTest {
 		assertEquals("http", request.getRequestUrl().scheme());
 	}
 
+	@Test
+	void givenPostCalledWithValidDataAndRemoteOK_whenAsyncPostCalled_thenCompletesWithTrue() throws Exception {
+
+		String expectedPostbackUrl = String.format(MOCK_BASE_URL, mockWebServer.getPort());
+
+		mockWebServer.enqueue(new MockResponse().addHeader("Content-Type", "application/json"));
+
+		String expectedTimeStr = "2022-06-05 16:30:06";
+		Boolean success = restClient.post(expectedPostbackUrl, new CurrentTimeDto(expectedTimeStr))
+			.block(Duration.ofSeconds(5));
+
+		assertTrue(success);
+		RecordedRequest request = mockWebServer.takeRequest();
+		CurrentTimeDto postedTimeCurrentDto = new ObjectMapper().readValue(request.getBody().readUtf8(),
+			CurrentTimeDto.class);
+		assertEquals(expectedTimeStr, postedTimeCurrentDto.getCurrentTime());
+	}
+
+	@Test
+	void givenUnreachableRemote_whenAsyncPostCalled_thenCompletesWithFalseInsteadOfError() {
+
+		Boolean success = restClient.post("http://localhost:1/unreachable", new CurrentTimeDto("time"))
+			.block(Duration.ofSeconds(5));
+
+		assertFalse(success);
+	}
+
+	@Test
+	void givenEncodedBody_whenPostEncodedCalled_thenBodyIsPostedAsIsWithGivenContentType() throws Exception {
+
+		String expectedPostbackUrl = String.format(MOCK_BASE_URL, mockWebServer.getPort());
+		byte[] body = "{\"currentTime\":\"2022-06-05 16:30:06\"}".getBytes(StandardCharsets.UTF_8);
+
+		mockWebServer.enqueue(new MockResponse());
+		Boolean success = restClient.postEncoded(expectedPostbackUrl, MediaType.APPLICATION_JSON,
+				() -> DefaultDataBufferFactory.sharedInstance.wrap(body))
+			.block(Duration.ofSeconds(5));
+
+		assertTrue(success);
+		RecordedRequest request = mockWebServer.takeRequest();
+		assertEquals(MediaType.APPLICATION_JSON_VALUE, request.getHeader("Content-Type"));
+		assertArrayEquals(body, request.getBody().readByteArray());
+	}
+
+	@Test
+	void givenRemote500_whenPostEncodedForOutcome_thenFailure() throws Exception {
+
+		String expectedPostbackUrl = String.format(MOCK_BASE_URL, mockWebServer.getPort());
+
+		mockWebServer.enqueue(new MockResponse().setResponseCode(500));
+		PostOutcome outcome = restClient.postEncodedForOutcome(expectedPostbackUrl, MediaType.APPLICATION_JSON,
+				() -> DefaultDataBufferFactory.sharedInstance.wrap(new byte[0]))
+			.block(Duration.ofSeconds(5));
+
+		assertEquals(PostOutcome.FAILURE, outcome);
+		mockWebServer.takeRequest();
+	}
+
+	@Test
+	void givenRemoteRespondsAfterResponseTimeout_whenPostEncodedForOutcome_thenTimeout() throws Exception {
+
+		String expectedPostbackUrl = String.format(MOCK_BASE_URL, mockWebServer.getPort());
+		RestClient<CurrentTimeDto> timingOutRestClient = new RestClient<>(
+			new ReactorClientHttpConnector(HttpClient.create().responseTimeout(Duration.ofMillis(100))));
+
+		mockWebServer.enqueue(new MockResponse().setHeadersDelay(1, TimeUnit.SECONDS));
+		PostOutcome outcome = timingOutRestClient.postEncodedForOutcome(expectedPostbackUrl,
+				MediaType.APPLICATION_JSON, () -> DefaultDataBufferFactory.sharedInstance.wrap(new byte[0]))
+			.block(Duration.ofSeconds(5));
+
+		assertEquals(PostOutcome.TIMEOUT, outcome);
+		mockWebServer.takeRequest();
+	}
+
+	@Test
+	void givenPooledConnector_whenTwoPostsToSameHost_thenConnectionIsReused() throws Exception {
+
+		String expectedPostbackUrl = String.format(MOCK_BASE_URL, mockWebServer.getPort());
+		ConnectionProvider connectionProvider = ConnectionProvider.builder("test").maxConnections(1).build();
+		RestClient<CurrentTimeDto> pooledRestClient = new RestClient<>(
+			new ReactorClientHttpConnector(HttpClient.create(connectionProvider).keepAlive(true)));
+
+		try {
+			mockWebServer.enqueue(new MockResponse());
+			mockWebServer.enqueue(new MockResponse());
+			assertTrue(pooledRestClient.postAndIgnoreResponseBody(expectedPostbackUrl, new CurrentTimeDto("1")));
+			assertTrue(pooledRestClient.postAndIgnoreResponseBody(expectedPostbackUrl, new CurrentTimeDto("2")));
+
+			// sequence number is the index of the request on its connection
+			assertEquals(0, mockWebServer.takeRequest().getSequenceNumber());
+			assertEquals(1, mockWebServer.takeRequest().getSequenceNumber());
+		} finally {
+			connectionProvider.dispose();
+		}
+	}
+
 	@Data
 	@AllArgsConstructor
 	private static class DummyResponse {
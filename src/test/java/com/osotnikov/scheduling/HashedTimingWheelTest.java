@@ -0,0 +1,142 @@
+package com.osotnikov.scheduling;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimingWheelTest {
+
+	private ExecutorService executor;
+	private HashedTimingWheel timingWheel;
+
+	@BeforeEach
+	void setUp() {
+		executor = Executors.newFixedThreadPool(2);
+		// 8 buckets of 10ms, so any period above 80ms spans more than one rotation
+		timingWheel = new HashedTimingWheel(Duration.ofMillis(10), 8, executor, "HashedTimingWheelTest");
+	}
+
+	@AfterEach
+	void tearDown() {
+		timingWheel.close();
+		executor.shutdownNow();
+	}
+
+	@Test
+	void givenTaskScheduledWithoutStartTime_whenPeriodsElapse_thenRunsImmediatelyAndAtFixedRate() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+
+		timingWheel.scheduleAtFixedRate(runs::incrementAndGet, Duration.ofMillis(100));
+		Thread.sleep(550);
+
+		// runs at 0, 100, 200, 300, 400, 500 ms, allow one run of slack for slow build machines
+		assertThat(runs.get()).isBetween(5, 6);
+	}
+
+	@Test
+	void givenTaskScheduledWithStartTime_whenStartTimeNotReached_thenDoesNotRun() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+
+		ScheduledFuture<?> future = timingWheel.scheduleAtFixedRate(runs::incrementAndGet,
+			Instant.now().plusMillis(300), Duration.ofMillis(200));
+		Thread.sleep(150);
+
+		assertEquals(0, runs.get());
+		assertThat(future.getDelay(TimeUnit.MILLISECONDS)).isBetween(100L, 160L);
+		Thread.sleep(250);
+		assertEquals(1, runs.get());
+	}
+
+	@Test
+	void givenScheduledTask_whenCancelled_thenStopsRunningAndIsNotCounted() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		ScheduledFuture<?> future = timingWheel.scheduleAtFixedRate(runs::incrementAndGet, Duration.ofMillis(50));
+		Thread.sleep(120);
+		assertEquals(1, timingWheel.size());
+
+		assertTrue(future.cancel(false));
+		Thread.sleep(20); // a run that was already handed to the executor may still complete
+		int runsAtCancel = runs.get();
+		Thread.sleep(200);
+
+		assertEquals(runsAtCancel, runs.get());
+		assertTrue(future.isCancelled());
+		assertTrue(future.isDone());
+		assertFalse(future.cancel(false));
+		assertEquals(0, timingWheel.size());
+	}
+
+	@Test
+	void givenWheelPausedForSeveralPeriods_whenCatchUpPolicy_thenMissedTicksRunBackToBack() throws Exception {
+		assertThat(runsAfterPause(MissedTickPolicy.CATCH_UP)).isGreaterThanOrEqualTo(5);
+	}
+
+	@Test
+	void givenWheelPausedForSeveralPeriods_whenSkipPolicy_thenMissedTicksDoNotRun() throws Exception {
+		assertThat(runsAfterPause(MissedTickPolicy.SKIP)).isLessThanOrEqualTo(3);
+	}
+
+	/**
+	 * The first dispatch blocks the wheel thread for 350ms, so the ticks at 100, 200 and 300ms are missed.
+	 * @return number of runs after 550ms for a 100ms period, 6 if every tick runs
+	 * */
+	private int runsAfterPause(MissedTickPolicy missedTickPolicy) throws Exception {
+		timingWheel.close();
+		AtomicInteger runs = new AtomicInteger();
+		DueTaskDispatcher pausingDispatcher = dueTasks -> {
+			dueTasks.forEach(Runnable::run);
+			if (runs.get() == 1) {
+				sleep(350);
+			}
+		};
+		timingWheel = new HashedTimingWheel(Duration.ofMillis(10), 8, pausingDispatcher, "HashedTimingWheelTest");
+
+		timingWheel.scheduleAtFixedRate(runs::incrementAndGet, Instant.now(), Duration.ofMillis(100),
+			missedTickPolicy);
+		Thread.sleep(550);
+
+		return runs.get();
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	void givenLatenessRecorder_whenTaskRuns_thenLatenessOfEveryRunIsRecorded() throws Exception {
+		List<Long> latenesses = new CopyOnWriteArrayList<>();
+		timingWheel.setLatenessRecorder(latenesses::add);
+
+		timingWheel.scheduleAtFixedRate(() -> {}, Duration.ofMillis(50));
+		Thread.sleep(180);
+
+		assertThat(latenesses).hasSizeBetween(3, 4);
+		// fires at most one tick late plus scheduling noise
+		assertThat(latenesses).allMatch(lateness -> lateness >= 0 && lateness < TimeUnit.MILLISECONDS.toNanos(50));
+	}
+
+	@Test
+	void givenStoppedWheel_whenSchedule_thenIllegalState() {
+		timingWheel.close();
+
+		assertThrows(IllegalStateException.class,
+			() -> timingWheel.scheduleAtFixedRate(() -> {}, Duration.ofMillis(50)));
+	}
+}
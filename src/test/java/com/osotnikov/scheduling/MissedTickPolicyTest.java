@@ -0,0 +1,35 @@
+package com.osotnikov.scheduling;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MissedTickPolicyTest {
+
+	private static final long PERIOD = 100;
+
+	@ParameterizedTest(name = "{0} lateness {1}")
+	@MethodSource("com.osotnikov.scheduling.MissedTickPolicyTest#policies")
+	void givenLateness_whenPolicyApplied_thenRunsAndAdvancesAsExpected(MissedTickPolicy missedTickPolicy, long lateness,
+																	   boolean expectedRun, long expectedPeriods) {
+		assertEquals(expectedRun, missedTickPolicy.shouldRun(lateness, PERIOD));
+		assertEquals(expectedPeriods, missedTickPolicy.periodsToAdvance(lateness, PERIOD));
+	}
+
+	private static Stream<Arguments> policies() {
+		return Stream.of(
+			// on time or late by less than a period, nothing is missed
+			Arguments.of(MissedTickPolicy.CATCH_UP, 0, true, 1),
+			Arguments.of(MissedTickPolicy.COALESCE, 99, true, 1),
+			Arguments.of(MissedTickPolicy.SKIP, 99, true, 1),
+			// late by 3.5 periods, the ticks at +100, +200 and +300 are due as well
+			Arguments.of(MissedTickPolicy.CATCH_UP, 350, true, 1),
+			Arguments.of(MissedTickPolicy.COALESCE, 350, true, 4),
+			Arguments.of(MissedTickPolicy.SKIP, 350, false, 4)
+		);
+	}
+}